@@ -0,0 +1,79 @@
+package travel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of starting a new day with a different set of closed locations, and
+ * answering its first route. The mask only swaps a bitset and drops the
+ * cached routes; the alternative copies the network without the roads that
+ * leave closed locations, as rebuilding the graph every morning would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AvailabilityBenchmark {
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    /** Percentage of locations closed each day. */
+    @Param({"1"})
+    public int closedPercent;
+
+    private CompactGraph graph;
+    private AvailabilityMask mask;
+    private RouteCache routes;
+    private SplittableRandom random;
+    private int[] closed;
+
+    @Setup(Level.Trial)
+    public void build() {
+        graph = SyntheticNetworks.grid(nodes, 42);
+        graph.freeze();
+        mask = new AvailabilityMask();
+        routes = new RouteCache(graph);
+        routes.setMask(mask);
+        random = new SplittableRandom(7);
+        closed = new int[nodes];
+    }
+
+    @Benchmark
+    public int maskedDay() {
+        int count = pickClosed();
+        mask.closeOnly(closed, count, nodes);
+        return routes.distance(random.nextInt(nodes), random.nextInt(nodes));
+    }
+
+    @Benchmark
+    public int rebuiltDay() {
+        int count = pickClosed();
+        mask.closeOnly(closed, count, nodes);
+        CompactGraph day = new CompactGraph();
+        for (int node = 0; node < nodes; node++) {
+            day.intern(graph.codeOf(node));
+        }
+        for (int node = 0; node < nodes; node++) {
+            if (mask.isClosed(node)) {
+                continue;
+            }
+            for (int arc = graph.offsets().get(node), end = graph.offsets().get(node + 1); arc < end; arc++) {
+                day.addArc(node, graph.targets().get(arc), graph.weights().get(arc));
+            }
+        }
+        return new RouteCache(day).distance(random.nextInt(nodes), random.nextInt(nodes));
+    }
+
+    private int pickClosed() {
+        int count = 0;
+        for (int node = 0; node < nodes; node++) {
+            if (random.nextInt(100) < closedPercent) {
+                closed[count++] = node;
+            }
+        }
+        return count;
+    }
+}
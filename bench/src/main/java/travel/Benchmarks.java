@@ -0,0 +1,26 @@
+package travel;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line (a
+ * benchmark regex, -p size=1000, -f, -wi, ...) and always attaches the GC
+ * profiler, so every result carries its allocation rate (gc.alloc.rate.norm)
+ * next to the timing.
+ *
+ * Usage: java -jar bench/target/benchmarks.jar [QueueBenchmark|IntakeBenchmark|DijkstraBenchmark|DisplayRoutesBenchmark] [JMH options]
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
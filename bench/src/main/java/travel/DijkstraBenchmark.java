@@ -0,0 +1,58 @@
+package travel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Shortest-path latency on synthetic road networks of growing size: a full
+ * single-source tree (what {@code Graph.dijkstra} pays on a cache miss) and a
+ * point-to-point query (what a route between two orders pays).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DijkstraBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodes;
+
+    private CompactGraph graph;
+    private DijkstraSearch tree;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void build() {
+        graph = SyntheticNetworks.grid(nodes, 42);
+        tree = new DijkstraSearch(graph);
+        random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public int fullTree() {
+        tree.run(random.nextInt(nodes));
+        return tree.settledCount();
+    }
+
+    @Benchmark
+    public int pointToPoint(PointSearch search) {
+        return search.point.distance(random.nextInt(nodes), random.nextInt(nodes));
+    }
+
+    /** Point-to-point search state; only this benchmark is run once per search mode. */
+    @State(Scope.Thread)
+    public static class PointSearch {
+        @Param({"AUTO", "DIJKSTRA"})
+        public String mode;
+
+        PointToPointSearch point;
+
+        @Setup(Level.Trial)
+        public void build(DijkstraBenchmark benchmark) {
+            point = new PointToPointSearch(benchmark.graph);
+            point.setMode(PointToPointSearch.Mode.valueOf(mode));
+        }
+    }
+}
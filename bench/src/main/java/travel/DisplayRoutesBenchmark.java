@@ -0,0 +1,81 @@
+package travel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End to end dispatch: {@code OrderQueue.displayRoutes} over {@code orders}
+ * waiting orders on the A-H district network, including the console lines
+ * it reports. Output goes to a discarding stream so the terminal does not
+ * set the pace; {@code sink} picks the synchronous console sink, the
+ * background {@link AsyncEventSink}, or no events at all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DisplayRoutesBenchmark {
+    private static final String[] LOCATIONS = {"A", "B", "C", "D", "E", "F", "G", "H"};
+
+    @Param({"1000", "100000"})
+    public int orders;
+
+    @Param({"console", "async", "none"})
+    public String sink;
+
+    private PrintStream console;
+    private EventSink events;
+    private OrderQueue orderQueue;
+
+    @Setup(Level.Trial)
+    public void silence() {
+        console = System.out;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        events = "async".equals(sink) ? new AsyncEventSink(discard, EventSink.Level.DEBUG)
+                : "none".equals(sink) ? EventSink.NONE
+                : new ConsoleEventSink();
+    }
+
+    @TearDown(Level.Trial)
+    public void restore() {
+        events.close();
+        System.setOut(console);
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        events.flush(); // the previous invocation's lines are not this one's work
+        orderQueue = new OrderQueue();
+        orderQueue.setEventSink(events);
+        Map<String, String> districts = new HashMap<>();
+        for (String location : LOCATIONS) {
+            districts.put(location, location);
+        }
+        orderQueue.addLocations(districts);
+        orderQueue.addRoute("A", "B", 20);
+        orderQueue.addRoute("A", "C", 50);
+        orderQueue.addRoute("B", "C", 30);
+        orderQueue.addRoute("B", "D", 40);
+        orderQueue.addRoute("C", "D", 70);
+        orderQueue.addRoute("D", "E", 60);
+        orderQueue.addRoute("E", "F", 80);
+        orderQueue.addRoute("F", "G", 120);
+        orderQueue.addRoute("G", "H", 90);
+        for (int i = 0; i < orders; i++) {
+            orderQueue.enqueue("order" + i, i % 3 == 0, LOCATIONS[(i * 5) % LOCATIONS.length]);
+        }
+    }
+
+    @Benchmark
+    public OrderQueue displayRoutes() {
+        orderQueue.displayRoutes();
+        return orderQueue;
+    }
+}
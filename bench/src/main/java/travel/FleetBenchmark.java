@@ -0,0 +1,72 @@
+package travel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Fleet planning time against the number of planning threads: the same orders
+ * split between the same vehicles, planned on pools of growing size. Each
+ * invocation gets a new dispatcher, so every run starts with cold route caches
+ * the way a dispatch run from the command line does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FleetBenchmark {
+    private static final int NETWORK = 10_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"8"})
+    public int vehicles;
+
+    @Param({"2000"})
+    public int orders;
+
+    @Param({"BALANCED"})
+    public String assignment;
+
+    private Graph graph;
+    private OrderStore store;
+    private int[] handles;
+    private List<String> depots;
+    private FleetDispatcher fleet;
+
+    @Setup(Level.Trial)
+    public void build() {
+        CompactGraph network = SyntheticNetworks.grid(NETWORK, 42);
+        graph = new Graph(network);
+        store = new OrderStore();
+        handles = new int[orders];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < orders; i++) {
+            handles[i] = store.add("order" + i, 1 + random.nextInt(2), network.codeOf(random.nextInt(NETWORK)), 0);
+        }
+        depots = new ArrayList<>();
+        for (int v = 0; v < vehicles; v++) {
+            depots.add(network.codeOf(random.nextInt(NETWORK)));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newFleet() {
+        fleet = new FleetDispatcher(graph, depots, FleetDispatcher.Assignment.valueOf(assignment), threads);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeFleet() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public List<FleetDispatcher.VehiclePlan> plan() {
+        return fleet.plan(handles, orders, store);
+    }
+}
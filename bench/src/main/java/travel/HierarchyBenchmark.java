@@ -0,0 +1,48 @@
+package travel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Pair query latency with a {@link ContractionHierarchy} against the best
+ * plain search ({@code PointToPointSearch} in AUTO mode, A* on these
+ * networks). Contracting the network is part of the trial setup and takes a
+ * few minutes at a million locations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class HierarchyBenchmark {
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    /** Whether the grid carries random highways; without them it has the hierarchy of a road map. */
+    @Param({"false", "true"})
+    public boolean highways;
+
+    private HierarchySearch hierarchy;
+    private PointToPointSearch plain;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void build() {
+        CompactGraph graph = SyntheticNetworks.grid(nodes, 42, highways);
+        hierarchy = new HierarchySearch(ContractionHierarchy.build(graph));
+        plain = new PointToPointSearch(graph);
+        random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public int hierarchyQuery() {
+        return hierarchy.distance(random.nextInt(nodes), random.nextInt(nodes));
+    }
+
+    @Benchmark
+    public int plainQuery() {
+        return plain.distance(random.nextInt(nodes), random.nextInt(nodes));
+    }
+}
@@ -0,0 +1,75 @@
+package travel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of keeping one shortest-path tree current while roads change: every
+ * invocation gives a random road a new length, then either repairs the tree
+ * with an {@link IncrementalSearch} or searches the whole graph again, as the
+ * route cache does without dynamic routing. Lengths drift both ways, so about
+ * half the changes lengthen a road and half shorten one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IncrementalRouteBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int nodes;
+
+    private CompactGraph graph;
+    private DijkstraSearch full;
+    private IncrementalSearch incremental;
+    private SplittableRandom random;
+    private int[] dist;
+    private int[] pred;
+    private final int[] changed = new int[4];
+
+    @Setup(Level.Trial)
+    public void build() {
+        graph = SyntheticNetworks.grid(nodes, 42);
+        full = new DijkstraSearch(graph);
+        incremental = new IncrementalSearch(graph);
+        random = new SplittableRandom(7);
+        full.run(0);
+        dist = new int[nodes];
+        pred = new int[nodes];
+        full.copyDistances(dist);
+        full.copyPredecessors(pred);
+    }
+
+    /** Changed road plus an incremental repair of the tree rooted at node 0. */
+    @Benchmark
+    public int repairTree() {
+        changeRoad();
+        incremental.update(dist, pred, changed);
+        return incremental.settledCount();
+    }
+
+    /** Changed road plus a fresh search from node 0. */
+    @Benchmark
+    public int recomputeTree() {
+        changeRoad();
+        full.run(0);
+        return full.settledCount();
+    }
+
+    private void changeRoad() {
+        int from;
+        int arcs;
+        do {
+            from = random.nextInt(nodes);
+            arcs = graph.offsets().get(from + 1) - graph.offsets().get(from);
+        } while (arcs == 0);
+        int to = graph.targets().get(graph.offsets().get(from) + random.nextInt(arcs));
+        graph.setEdgeWeight(from, to, 10 + random.nextInt(41));
+        changed[0] = from;
+        changed[1] = to;
+        changed[2] = to;
+        changed[3] = from;
+    }
+}
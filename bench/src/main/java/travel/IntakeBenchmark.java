@@ -0,0 +1,80 @@
+package travel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Intake throughput of {@link ConcurrentTieredScheduler} over a concurrent
+ * {@link OrderStore} by number of producers: each invocation has the
+ * producers store and queue {@value #ORDERS} orders between them, two thirds
+ * normal and one third fast, while the benchmark thread dispatches them in
+ * batches of {@value #BATCH} and removes them from the store. Scores are
+ * orders per microsecond from enqueue to dispatch. The correctness of the
+ * same run, with snapshots taken alongside, is checked by
+ * ConcurrentTieredSchedulerTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IntakeBenchmark {
+    private static final int TIERS = 2;
+    private static final int BATCH = 1024;
+    private static final int ORDERS = 1 << 20;
+    private static final String[] LOCATIONS = {"A", "B", "C", "D", "E", "F", "G", "H"};
+
+    @Param({"1", "2", "4", "8"})
+    public int producers;
+
+    private ExecutorService pool;
+    private final int[] batch = new int[BATCH];
+
+    @Setup(Level.Trial)
+    public void start() {
+        pool = Executors.newFixedThreadPool(producers);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public long intake() throws Exception {
+        ConcurrentTieredScheduler queue = new ConcurrentTieredScheduler(TIERS);
+        OrderStore store = new OrderStore(true);
+        int perProducer = ORDERS / producers;
+        List<Future<?>> intake = new ArrayList<>(producers);
+        for (int p = 0; p < producers; p++) {
+            String location = LOCATIONS[p & 7];
+            intake.add(pool.submit(() -> {
+                for (int seq = 0; seq < perProducer; seq++) {
+                    int tier = seq % 3 == 0 ? 0 : 1;
+                    queue.add(tier, store.add("order", tier + 1, location, seq));
+                }
+            }));
+        }
+        long sum = 0;
+        int received = 0;
+        while (received < ORDERS) {
+            int count = queue.drainTo(batch, BATCH);
+            if (count == 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                sum += store.remove(batch[i]).getPriority();
+            }
+            received += count;
+        }
+        for (Future<?> producer : intake) {
+            producer.get();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,92 @@
+package travel;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of journaling on the queue's hot path: an order stored, journaled and
+ * queued, then the next one journaled as dispatched and removed, the same
+ * work {@link QueueBenchmark#storeRoundTrip} does without a journal. A batch
+ * of {@value #BATCH} orders is committed at once, the way bulk imports commit;
+ * checkpoints are taken whenever the journal asks for one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JournalBenchmark {
+    private static final int PRIORITY_LEVELS = 2;
+    private static final int BATCH = 64;
+    private static final int DEPTH = 100_000;
+    private static final String[] LOCATIONS = {"A", "B", "C", "D", "E", "F", "G", "H"};
+
+    @Param({"NONE", "ASYNC", "GROUP_COMMIT"})
+    public String durability;
+
+    private Path directory;
+    private TieredQueue queue;
+    private OrderStore store;
+    private OrderJournal journal;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        queue = new TieredScheduler(PRIORITY_LEVELS);
+        store = new OrderStore();
+        if (!"NONE".equals(durability)) {
+            directory = Files.createTempDirectory("journal-bench");
+            journal = OrderJournal.open(directory, OrderJournal.Durability.valueOf(durability), store, queue);
+        }
+        for (int i = 0; i < DEPTH; i++) {
+            enqueue();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int roundTrip() throws IOException {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            enqueue();
+            int handle = queue.poll();
+            if (journal != null) {
+                journal.dispatched(handle);
+            }
+            sum += store.remove(handle).getPriority();
+        }
+        if (journal != null) {
+            journal.commit();
+            if (journal.checkpointDue()) {
+                journal.checkpoint(store, queue, Set.of());
+            }
+        }
+        return sum;
+    }
+
+    private void enqueue() {
+        int tier = next % 3 == 0 ? 0 : 1;
+        String location = LOCATIONS[next++ & 7];
+        int handle = store.add("order", tier + 1, location, 0);
+        if (journal != null) {
+            journal.enqueued(handle, "order", tier + 1, location);
+        }
+        queue.add(tier, handle);
+    }
+}
@@ -0,0 +1,78 @@
+package travel;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Enqueue/dequeue throughput of the delivery schedulers while they hold
+ * {@code size} waiting orders. The scheduler benchmarks queue bare handles;
+ * {@link #storeRoundTrip} adds the {@link OrderStore} work an
+ * {@code OrderQueue} does around them, from storing the order to handing out
+ * the dispatched {@link Order}. Like store handles, the handles stay dense:
+ * each one dispatched is queued again, as the store would hand it out again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class QueueBenchmark {
+    private static final int PRIORITY_LEVELS = 2;
+    private static final int BATCH = 64;
+    private static final String[] LOCATIONS = {"A", "B", "C", "D", "E", "F", "G", "H"};
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"tiered", "concurrent"})
+    public String scheduler;
+
+    private TieredQueue queue;
+    private OrderStore store;
+    private final int[] batch = new int[BATCH];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        boolean concurrent = "concurrent".equals(scheduler);
+        queue = concurrent ? new ConcurrentTieredScheduler(PRIORITY_LEVELS) : new TieredScheduler(PRIORITY_LEVELS);
+        store = new OrderStore(concurrent);
+        for (int i = 0; i < size; i++) {
+            int tier = tierOf(next);
+            queue.add(tier, store.add("order" + next, tier + 1, LOCATIONS[next & 7], 0));
+            next++;
+        }
+    }
+
+    private static int tierOf(int sequence) {
+        return sequence % 3 == 0 ? 0 : 1;
+    }
+
+    /** One handle out, then in again, at a steady depth of {@code size}. */
+    @Benchmark
+    public int enqueueDequeue() {
+        int handle = queue.poll();
+        queue.add(tierOf(next++), handle);
+        return handle;
+    }
+
+    /** The batch path used by dispatchers: {@value #BATCH} handles drained in one call, then queued again. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int enqueueDrain() {
+        int drained = queue.drainTo(batch, BATCH);
+        for (int i = 0; i < drained; i++) {
+            queue.add(tierOf(next++), batch[i]);
+        }
+        return drained;
+    }
+
+    /** An order stored and queued, then the next one dispatched and removed from the store. */
+    @Benchmark
+    public Order storeRoundTrip() {
+        int tier = tierOf(next);
+        queue.add(tier, store.add("order", tier + 1, LOCATIONS[next++ & 7], 0));
+        return store.remove(queue.poll());
+    }
+}
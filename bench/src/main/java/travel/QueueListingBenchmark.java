@@ -0,0 +1,61 @@
+package travel;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Showing the first {@code PAGE} orders of a tier holding {@code orders}, as
+ * VIEW does: one page of a walk against a copy of the whole tier, for the
+ * plain scheduler and for earliest-deadline-first with every order dated,
+ * where the copy has to be sorted as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class QueueListingBenchmark {
+    private static final int PAGE = 100;
+
+    @Param({"100000", "1000000"})
+    public int orders;
+
+    private TieredScheduler tiered;
+    private DeadlineScheduler deadline;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        SplittableRandom random = new SplittableRandom(42);
+        long[] deadlines = new long[orders];
+        tiered = new TieredScheduler(2);
+        deadline = new DeadlineScheduler(2, handle -> deadlines[handle]);
+        for (int handle = 0; handle < orders; handle++) {
+            deadlines[handle] = 1_700_000_000_000L + random.nextLong(8 * 3_600_000);
+            tiered.add(1, handle);
+            deadline.add(1, handle);
+        }
+    }
+
+    @Benchmark
+    public List<Integer> tieredPage() {
+        return tiered.page(1, new TieredQueue.Cursor(), handle -> true, PAGE, Integer::valueOf);
+    }
+
+    @Benchmark
+    public List<Integer> tieredCopy() {
+        return tiered.toList(1, Integer::valueOf).subList(0, PAGE);
+    }
+
+    @Benchmark
+    public List<Integer> deadlinePage() {
+        return deadline.page(1, new TieredQueue.Cursor(), handle -> true, PAGE, Integer::valueOf);
+    }
+
+    @Benchmark
+    public List<Integer> deadlineCopy() {
+        return deadline.toList(1, Integer::valueOf).subList(0, PAGE);
+    }
+}
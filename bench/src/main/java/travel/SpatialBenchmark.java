@@ -0,0 +1,129 @@
+package travel;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Finding the waiting orders near a van with {@code orders} orders spread
+ * over 10,000 locations across Sri Lanka. The locator answers from its tree;
+ * the alternative measures the distance to every waiting order, the least a
+ * dispatcher without one has to do. {@code churn} is the cost the index adds
+ * to queueing and dispatching an order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SpatialBenchmark {
+    private static final int LOCATIONS = 10_000;
+    private static final int K = 10;
+    private static final double RADIUS_KM = 10;
+
+    @Param({"100000", "1000000"})
+    public int orders;
+
+    private OrderLocator locator;
+    private double[] latitudes;
+    private double[] longitudes;
+    private String[] codes;
+    private int[] locationOf;
+    private int[] found;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        random = new SplittableRandom(42);
+        locator = new OrderLocator();
+        latitudes = new double[LOCATIONS];
+        longitudes = new double[LOCATIONS];
+        codes = new String[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; i++) {
+            latitudes[i] = 5.9 + 3.9 * random.nextDouble();
+            longitudes[i] = 79.7 + 2.1 * random.nextDouble();
+            codes[i] = "L" + i;
+            locator.setCoordinates(codes[i], latitudes[i], longitudes[i]);
+        }
+        locationOf = new int[orders];
+        for (int handle = 0; handle < orders; handle++) {
+            locationOf[handle] = random.nextInt(LOCATIONS);
+            locator.add(handle, codes[locationOf[handle]]);
+        }
+        found = new int[K];
+    }
+
+    @Benchmark
+    public int nearestIndexed() {
+        return locator.nearest(latitude(), longitude(), found);
+    }
+
+    @Benchmark
+    public int nearestScan() {
+        double latitude = latitude();
+        double longitude = longitude();
+        double[] best = new double[K];
+        Arrays.fill(best, Double.MAX_VALUE);
+        for (int handle = 0; handle < orders; handle++) {
+            double km = haversine(latitude, longitude, latitudes[locationOf[handle]], longitudes[locationOf[handle]]);
+            if (km < best[K - 1]) {
+                int slot = K - 1;
+                while (slot > 0 && best[slot - 1] > km) {
+                    best[slot] = best[slot - 1];
+                    found[slot] = found[slot - 1];
+                    slot--;
+                }
+                best[slot] = km;
+                found[slot] = handle;
+            }
+        }
+        return found[0];
+    }
+
+    @Benchmark
+    public int withinIndexed() {
+        int[] count = new int[1];
+        locator.forEachWithin(latitude(), longitude(), RADIUS_KM, handle -> count[0]++);
+        return count[0];
+    }
+
+    @Benchmark
+    public int withinScan() {
+        double latitude = latitude();
+        double longitude = longitude();
+        int count = 0;
+        for (int handle = 0; handle < orders; handle++) {
+            if (haversine(latitude, longitude, latitudes[locationOf[handle]], longitudes[locationOf[handle]]) <= RADIUS_KM) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Dispatches a random order and queues a new one in its place. */
+    @Benchmark
+    public boolean churn() {
+        int handle = random.nextInt(orders);
+        boolean removed = locator.remove(handle);
+        locator.add(handle, codes[random.nextInt(LOCATIONS)]);
+        return removed;
+    }
+
+    private double latitude() {
+        return 5.9 + 3.9 * random.nextDouble();
+    }
+
+    private double longitude() {
+        return 79.7 + 2.1 * random.nextDouble();
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * OrderLocator.EARTH_RADIUS_KM * Math.asin(Math.sqrt(h));
+    }
+}
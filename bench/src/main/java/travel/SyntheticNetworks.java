@@ -0,0 +1,50 @@
+package travel;
+
+import java.util.SplittableRandom;
+
+/**
+ * Road-like networks for the routing benchmarks: a square grid of junctions
+ * 10 units apart, each road 10 to 50 units long, plus a sprinkling of longer
+ * highways between random junctions. Coordinates are set so the A* heuristic
+ * applies. The same size and seed always give the same network.
+ */
+final class SyntheticNetworks {
+    private SyntheticNetworks() {
+    }
+
+    static CompactGraph grid(int nodes, long seed) {
+        return grid(nodes, seed, true);
+    }
+
+    /**
+     * The grid with or without its highways. Random highways tie far corners
+     * of the grid together with no hierarchy to them, which is the worst case
+     * for a {@link ContractionHierarchy}.
+     */
+    static CompactGraph grid(int nodes, long seed, boolean highways) {
+        int side = (int) Math.ceil(Math.sqrt(nodes));
+        SplittableRandom random = new SplittableRandom(seed);
+        CompactGraph graph = new CompactGraph();
+        for (int i = 0; i < nodes; i++) {
+            graph.setCoordinates(graph.intern("N" + i), (i % side) * 10.0, (i / side) * 10.0);
+        }
+        for (int i = 0; i < nodes; i++) {
+            if (i % side + 1 < side && i + 1 < nodes) {
+                graph.addEdge(i, i + 1, 10 + random.nextInt(41));
+            }
+            if (i + side < nodes) {
+                graph.addEdge(i, i + side, 10 + random.nextInt(41));
+            }
+        }
+        for (int highway = highways ? nodes / 100 : 0; highway > 0; highway--) {
+            int a = random.nextInt(nodes);
+            int b = random.nextInt(nodes);
+            int dx = a % side - b % side;
+            int dy = a / side - b / side;
+            // Never shorter than the straight line, so the heuristic stays admissible
+            graph.addEdge(a, b, (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) * 10.0) + 1);
+        }
+        graph.freeze();
+        return graph;
+    }
+}
@@ -0,0 +1,78 @@
+package travel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One second of deadline tracking with {@code timers} orders waiting, each
+ * due between a minute and eight hours out. Every second a few orders are
+ * queued or dispatched, which sets or replaces their timers, and the timers
+ * that came due are handled and set again so the number waiting stays put.
+ * The wheel only touches those timers; the alternative scans every waiting
+ * deadline each second, as checking the queues for SLA breaches would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TimerWheelBenchmark {
+    private static final long TICK_MILLIS = 1000;
+    private static final long MIN_DELAY = 60_000;
+    private static final long MAX_DELAY = 8 * 3_600_000;
+
+    @Param({"100000", "1000000", "4000000"})
+    public int timers;
+
+    /** Orders queued or dispatched per second. */
+    @Param({"16"})
+    public int churn;
+
+    private TimerWheel wheel;
+    private long[] deadlines;
+    private SplittableRandom random;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        random = new SplittableRandom(42);
+        now = 1_700_000_000_000L;
+        wheel = new TimerWheel(TICK_MILLIS, now);
+        deadlines = new long[timers];
+        for (int handle = 0; handle < timers; handle++) {
+            deadlines[handle] = due();
+            wheel.schedule(handle, deadlines[handle]);
+        }
+    }
+
+    @Benchmark
+    public int wheel() {
+        now += TICK_MILLIS;
+        for (int i = 0; i < churn; i++) {
+            wheel.schedule(random.nextInt(timers), due());
+        }
+        return wheel.advance(now, handle -> wheel.schedule(handle, due()));
+    }
+
+    @Benchmark
+    public int scan() {
+        now += TICK_MILLIS;
+        for (int i = 0; i < churn; i++) {
+            deadlines[random.nextInt(timers)] = due();
+        }
+        int fired = 0;
+        for (int handle = 0; handle < timers; handle++) {
+            if (deadlines[handle] <= now) {
+                deadlines[handle] = due();
+                fired++;
+            }
+        }
+        return fired;
+    }
+
+    private long due() {
+        return now + random.nextLong(MIN_DELAY, MAX_DELAY);
+    }
+}
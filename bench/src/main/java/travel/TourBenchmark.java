@@ -0,0 +1,44 @@
+package travel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Tour planning time for one tier of distinct stops spread over a synthetic
+ * road network. The distance matrix is built once per trial, so this measures
+ * only the nearest-neighbour, 2-opt and Or-opt passes of {@link TourPlanner}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TourBenchmark {
+    private static final int NETWORK = 10_000;
+
+    @Param({"10", "100", "1000", "5000"})
+    public int stops;
+
+    private int[] distances;
+    private int size;
+
+    @Setup(Level.Trial)
+    public void build() {
+        CompactGraph network = SyntheticNetworks.grid(NETWORK, 42);
+        SplittableRandom random = new SplittableRandom(7);
+        int[] picked = random.ints(0, NETWORK).distinct().limit(stops + 1).toArray();
+        String[] locations = new String[picked.length];
+        for (int i = 0; i < picked.length; i++) {
+            locations[i] = network.codeOf(picked[i]);
+        }
+        size = locations.length;
+        distances = new Graph(network).distanceMatrix(locations);
+    }
+
+    @Benchmark
+    public int[] plan() {
+        return TourPlanner.optimize(distances, size);
+    }
+}
@@ -0,0 +1,237 @@
+package travel;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands events to a background writer through a preallocated ring of
+ * {@link Event} slots. Reporting an event claims the next slot, copies the
+ * values into it and returns; the writer formats up to a thousand events into
+ * one buffer and writes them with a single call, so callers never wait on the
+ * console. Any number of threads may report at once and their events keep the
+ * order in which slots were claimed. When the writer falls a whole ring
+ * behind, reporters wait for it rather than lose lines.
+ */
+class AsyncEventSink implements EventSink {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final long WAIT_PARK_NANOS = 20_000;
+    private static final long DROPPED = -1; // the event's level is off or the sink has closed
+
+    private final PrintStream out;
+    private final Level level;
+    private final Event[] slots;
+    private final Route[] routes; // each slot's own copy of a reported route, made on first use
+    private final AtomicLongArray published; // sequence number last written into each slot
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong(); // events printed so far; their slots are free again
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public AsyncEventSink(PrintStream out, Level level) {
+        this(out, level, DEFAULT_CAPACITY);
+    }
+
+    public AsyncEventSink(PrintStream out, Level level, int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.out = out;
+        this.level = level;
+        this.slots = new Event[capacity];
+        this.routes = new Route[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Event();
+            published.set(i, -1);
+        }
+        writer = new Thread(this::write, "event-sink");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public boolean isEnabled(Level level) {
+        return !closed && level.compareTo(this.level) >= 0;
+    }
+
+    @Override
+    public void orderAdded(String name, int priority, String location) {
+        long sequence = claim(Level.DEBUG);
+        if (sequence != DROPPED) {
+            Event e = slot(sequence, Event.Kind.ORDER_ADDED);
+            e.text = name;
+            e.value = priority;
+            e.location = location;
+            publish(sequence);
+        }
+    }
+
+    @Override
+    public void orderDispatched(Order order) {
+        long sequence = claim(Level.INFO);
+        if (sequence != DROPPED) {
+            Event e = slot(sequence, Event.Kind.ORDER_DISPATCHED);
+            e.order = order;
+            publish(sequence);
+        }
+    }
+
+    @Override
+    public void queueEmpty() {
+        long sequence = claim(Level.WARN);
+        if (sequence != DROPPED) {
+            slot(sequence, Event.Kind.QUEUE_EMPTY);
+            publish(sequence);
+        }
+    }
+
+    @Override
+    public void batchDispatched(int orders) {
+        long sequence = claim(Level.INFO);
+        if (sequence != DROPPED) {
+            Event e = slot(sequence, Event.Kind.BATCH_DISPATCHED);
+            e.value = orders;
+            publish(sequence);
+        }
+    }
+
+    @Override
+    public void routeAdded(String start, String end, int distance) {
+        long sequence = claim(Level.DEBUG);
+        if (sequence != DROPPED) {
+            Event e = slot(sequence, Event.Kind.ROUTE_ADDED);
+            e.text = start;
+            e.end = end;
+            e.value = distance;
+            publish(sequence);
+        }
+    }
+
+    @Override
+    public void routeComputed(Route route) {
+        long sequence = claim(Level.INFO);
+        if (sequence != DROPPED) {
+            Event e = slot(sequence, Event.Kind.ROUTE_COMPUTED);
+            int index = (int) sequence & mask;
+            if (routes[index] == null) {
+                routes[index] = new Route();
+            }
+            e.route = routes[index].copyOf(route); // the caller reuses its route for the next order
+            publish(sequence);
+        }
+    }
+
+    @Override
+    public void message(Level level, String text) {
+        long sequence = claim(level);
+        if (sequence != DROPPED) {
+            Event e = slot(sequence, Event.Kind.MESSAGE);
+            e.text = text;
+            publish(sequence);
+        }
+    }
+
+    /** Waits until everything reported before the call has been printed. */
+    @Override
+    public void flush() {
+        long target = claimed.get();
+        LockSupport.unpark(writer);
+        while (written.get() < target && writer.isAlive()) {
+            LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+        }
+        out.flush();
+    }
+
+    /** Prints what is still pending and stops the writer; later events are dropped. The stream stays open. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        out.flush();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the next slot for an event at {@code level}, waiting while the ring
+     * is full, or returns {@link #DROPPED} when the event is not wanted. A
+     * reporter that got in just as the sink closed may find the writer gone
+     * and the ring never draining; its event is dropped like any after close.
+     */
+    private long claim(Level level) {
+        if (!isEnabled(level)) {
+            return DROPPED;
+        }
+        long sequence = claimed.getAndIncrement();
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint >= written.get()) {
+            LockSupport.unpark(writer);
+            while (wrapPoint >= written.get()) {
+                if (closed && !writer.isAlive()) {
+                    return DROPPED;
+                }
+                LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+            }
+        }
+        return sequence;
+    }
+
+    private Event slot(long sequence, Event.Kind kind) {
+        Event e = slots[(int) sequence & mask];
+        e.kind = kind;
+        return e;
+    }
+
+    private void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        if ((sequence & (mask >> 1)) == 0) {
+            LockSupport.unpark(writer); // half a ring since the last nudge, don't wait for the idle park
+        }
+    }
+
+    private void write() {
+        StringBuilder text = new StringBuilder(MAX_BATCH * 64);
+        long next = 0;
+        boolean unflushed = false;
+        while (true) {
+            int batch = 0;
+            while (batch < MAX_BATCH && published.get((int) next & mask) == next) {
+                Event e = slots[(int) next & mask];
+                e.appendTo(text);
+                e.clear();
+                next++;
+                batch++;
+            }
+            if (batch > 0) {
+                out.print(text);
+                text.setLength(0);
+                written.set(next);
+                unflushed = true;
+            } else if (closed && next == claimed.get()) {
+                out.flush();
+                return;
+            } else {
+                if (unflushed) {
+                    out.flush();
+                    unflushed = false;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package travel;
+
+import java.util.*;
+
+/**
+ * The locations closed for the day, as a bitset over node ids. The search
+ * engines consult it while relaxing arcs: a closed location can still be where
+ * a route starts or ends, but no route passes through it. Nodes beyond the
+ * bitset, such as locations added after the mask was set, are open.
+ *
+ * Every change of the closed set bumps {@link #version()}, which is what
+ * cached routes are keyed by; setting the same set again is not a change.
+ * Switching days costs a pass over the bitset, not a rebuild of the network.
+ */
+class AvailabilityMask {
+    private long[] closed = new long[0];
+    private int closedCount;
+    private int version;
+
+    /** True when routes may not pass through {@code node}. */
+    public boolean isClosed(int node) {
+        int word = node >>> 6;
+        return word < closed.length && (closed[word] & (1L << node)) != 0;
+    }
+
+    /** Number of closed nodes; 0 when every location is open. */
+    public int closedCount() {
+        return closedCount;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Closes the first {@code count} of {@code nodes} and opens every other
+     * node of a network with {@code nodeCount} nodes. Returns true when that
+     * changed the closed set.
+     */
+    public boolean closeOnly(int[] nodes, int count, int nodeCount) {
+        long[] words = new long[(nodeCount + 63) >>> 6];
+        int bits = 0;
+        for (int i = 0; i < count; i++) {
+            int node = nodes[i];
+            if (node < 0 || node >= nodeCount) {
+                throw new IllegalArgumentException("No node " + node + " in a network of " + nodeCount);
+            }
+            long bit = 1L << node;
+            if ((words[node >>> 6] & bit) == 0) {
+                words[node >>> 6] |= bit;
+                bits++;
+            }
+        }
+        if (bits == closedCount && sameBits(words, closed)) {
+            return false;
+        }
+        closed = words;
+        closedCount = bits;
+        version++;
+        return true;
+    }
+
+    /** Opens every node. */
+    public boolean openAll() {
+        return closeOnly(new int[0], 0, 0);
+    }
+
+    /** Equal closed sets, reading words past the end of either array as empty. */
+    private static boolean sameBits(long[] a, long[] b) {
+        int common = Math.min(a.length, b.length);
+        if (!Arrays.equals(a, 0, common, b, 0, common)) {
+            return false;
+        }
+        long[] longer = a.length > common ? a : b;
+        for (int i = common; i < longer.length; i++) {
+            if (longer[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
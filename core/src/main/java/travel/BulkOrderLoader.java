@@ -0,0 +1,544 @@
+package travel;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Streams order files into a queue without the interactive prompts. Each line
+ * is one order, either CSV
+ * <pre>
+ *   name,location,type
+ *   Rice 5kg,A,fast
+ *   "Tea, Ceylon",D,2
+ * </pre>
+ * or NDJSON
+ * <pre>
+ *   {"name": "Rice 5kg", "location": "A", "fast": true}
+ *   {"name": "Tea", "location": "D", "priority": 2}
+ * </pre>
+ * and the two may be mixed. The type is {@code fast}/{@code normal},
+ * {@code true}/{@code false} or a priority number; a missing type means
+ * normal delivery. A first line starting with {@code name} is taken as a
+ * header.
+ *
+ * The file is read through a channel into one fixed buffer and parsed in
+ * place: location codes are matched byte for byte against the valid codes
+ * and only the order name becomes a new String. Accepted orders are handed to
+ * the sink in batches from reused arrays, so memory use does not depend on
+ * the size of the file.
+ */
+class BulkOrderLoader {
+    /** Receives accepted orders; the arrays are reused after the call returns. */
+    interface Sink {
+        void accept(String[] names, String[] locations, int[] priorities, int count);
+    }
+
+    public static final int FAST_PRIORITY = 1;
+    public static final int NORMAL_PRIORITY = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 4096;
+    private static final int MAX_REJECT_SAMPLES = 20;
+
+    private final int maxPriority;
+    private final byte[][] codeBytes;
+    private final String[] codes;
+    private final int[] table; // open addressing over codes, -1 = empty
+    private final String[] names = new String[BATCH_SIZE];
+    private final String[] locations = new String[BATCH_SIZE];
+    private final int[] priorities = new int[BATCH_SIZE];
+    private final Field name = new Field();
+    private final Field location = new Field();
+    private final Field type = new Field();
+    private final Field[] csvFields = {name, location, type};
+    private byte[] scratch = new byte[64];
+    private int pending;
+
+    public BulkOrderLoader(Collection<String> validLocations, int maxPriority) {
+        this.maxPriority = maxPriority;
+        codes = validLocations.toArray(new String[0]);
+        codeBytes = new byte[codes.length][];
+        table = new int[Integer.highestOneBit(Math.max(1, codes.length) * 4 - 1) * 2];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < codes.length; i++) {
+            codeBytes[i] = codes[i].getBytes(StandardCharsets.UTF_8);
+            int slot = hash(codeBytes[i], 0, codeBytes[i].length) & (table.length - 1);
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = i;
+        }
+    }
+
+    public Report load(Path file, Sink sink) throws IOException {
+        Report report = new Report(file);
+        long start = System.nanoTime();
+        byte[] chunk = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        pending = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean skipping = false; // inside a line longer than the buffer
+            boolean eof = false;
+            while (!eof) {
+                int read = channel.read(buffer);
+                eof = read < 0;
+                report.bytes += Math.max(0, read);
+                int limit = buffer.position();
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (chunk[i] != '\n') {
+                        continue;
+                    }
+                    if (skipping) {
+                        skipping = false;
+                    } else {
+                        parseLine(chunk, lineStart, i, report, sink);
+                    }
+                    lineStart = i + 1;
+                }
+                if (eof) {
+                    if (lineStart < limit && !skipping) {
+                        parseLine(chunk, lineStart, limit, report, sink);
+                    }
+                } else if (lineStart == 0 && limit == chunk.length) {
+                    if (!skipping) {
+                        report.lines++;
+                        report.reject("line too long");
+                        skipping = true;
+                    }
+                    buffer.clear();
+                } else {
+                    System.arraycopy(chunk, lineStart, chunk, 0, limit - lineStart);
+                    buffer.position(limit - lineStart);
+                }
+            }
+        }
+        flush(sink);
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private void parseLine(byte[] line, int from, int to, Report report, Sink sink) {
+        if (to > from && line[to - 1] == '\r') {
+            to--;
+        }
+        from = skipSpaces(line, from, to);
+        if (from == to) {
+            return;
+        }
+        report.lines++;
+        boolean parsed = line[from] == '{' ? parseJson(line, from, to) : parseCsv(line, from, to);
+        if (!parsed) {
+            report.reject("malformed record");
+            return;
+        }
+        if (report.lines == 1 && line[from] != '{' && name.equalsIgnoreCase("name")) {
+            report.lines--;
+            return;
+        }
+        if (name.length == 0) {
+            report.reject("missing order name");
+            return;
+        }
+        String code = lookup(location);
+        if (code == null) {
+            report.reject("unknown location '" + location + "'");
+            return;
+        }
+        int priority = priority(type);
+        if (priority < 1 || priority > maxPriority) {
+            report.reject("invalid delivery type '" + type + "'");
+            return;
+        }
+        names[pending] = name.toString();
+        locations[pending] = code;
+        priorities[pending] = priority;
+        report.accepted++;
+        if (++pending == BATCH_SIZE) {
+            flush(sink);
+        }
+    }
+
+    private void flush(Sink sink) {
+        if (pending > 0) {
+            sink.accept(names, locations, priorities, pending);
+            Arrays.fill(names, 0, pending, null);
+            pending = 0;
+        }
+    }
+
+    /** name,location[,type] with optional double quotes around any field. */
+    private boolean parseCsv(byte[] line, int from, int to) {
+        name.clear();
+        location.clear();
+        type.clear();
+        int pos = from;
+        for (int f = 0; f < csvFields.length && pos <= to; f++) {
+            pos = readCsvField(line, pos, to, csvFields[f]);
+            if (pos < 0) {
+                return false;
+            }
+            pos++; // past the comma
+        }
+        return location.length > 0;
+    }
+
+    private int readCsvField(byte[] line, int pos, int to, Field field) {
+        pos = skipSpaces(line, pos, to);
+        if (pos < to && line[pos] == '"') {
+            int start = pos + 1;
+            boolean escaped = false;
+            for (pos = start; pos < to; pos++) {
+                if (line[pos] == '"') {
+                    if (pos + 1 < to && line[pos + 1] == '"') {
+                        escaped = true;
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+            if (pos >= to) {
+                return -1;
+            }
+            if (escaped) {
+                field.setUnescaped(unescapeCsv(line, start, pos));
+            } else {
+                field.set(line, start, pos);
+            }
+            pos = skipSpaces(line, pos + 1, to);
+            return pos == to || line[pos] == ',' ? pos : -1;
+        }
+        int start = pos;
+        while (pos < to && line[pos] != ',') {
+            pos++;
+        }
+        int end = pos;
+        while (end > start && line[end - 1] == ' ') {
+            end--;
+        }
+        field.set(line, start, end);
+        return pos;
+    }
+
+    private String unescapeCsv(byte[] line, int from, int to) {
+        int length = 0;
+        byte[] out = scratch(to - from);
+        for (int i = from; i < to; i++) {
+            out[length++] = line[i];
+            if (line[i] == '"') {
+                i++;
+            }
+        }
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /** A flat JSON object; unknown keys are ignored. */
+    private boolean parseJson(byte[] line, int from, int to) {
+        name.clear();
+        location.clear();
+        type.clear();
+        int pos = skipSpaces(line, from + 1, to);
+        if (pos < to && line[pos] == '}') {
+            return false;
+        }
+        while (pos < to) {
+            if (line[pos] != '"') {
+                return false;
+            }
+            int keyStart = pos + 1;
+            int keyEnd = indexOf(line, keyStart, to, '"');
+            if (keyEnd < 0) {
+                return false;
+            }
+            pos = skipSpaces(line, keyEnd + 1, to);
+            if (pos >= to || line[pos] != ':') {
+                return false;
+            }
+            pos = skipSpaces(line, pos + 1, to);
+            Field target = keyIs(line, keyStart, keyEnd, "name") ? name
+                    : keyIs(line, keyStart, keyEnd, "location") ? location
+                    : keyIs(line, keyStart, keyEnd, "fast") || keyIs(line, keyStart, keyEnd, "priority") || keyIs(line, keyStart, keyEnd, "type") ? type
+                    : null;
+            pos = readJsonValue(line, pos, to, target);
+            if (pos < 0) {
+                return false;
+            }
+            pos = skipSpaces(line, pos, to);
+            if (pos < to && line[pos] == ',') {
+                pos = skipSpaces(line, pos + 1, to);
+            } else if (pos < to && line[pos] == '}') {
+                return skipSpaces(line, pos + 1, to) == to && location.length > 0;
+            } else {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private int readJsonValue(byte[] line, int pos, int to, Field target) {
+        if (pos >= to) {
+            return -1;
+        }
+        if (line[pos] != '"') {
+            int start = pos;
+            while (pos < to && line[pos] != ',' && line[pos] != '}' && line[pos] != ' ') {
+                pos++;
+            }
+            if (target != null) {
+                target.set(line, start, pos);
+            }
+            return pos;
+        }
+        int start = pos + 1;
+        boolean escaped = false;
+        for (pos = start; pos < to && line[pos] != '"'; pos++) {
+            if (line[pos] == '\\') {
+                escaped = true;
+                pos++;
+            }
+        }
+        if (pos >= to) {
+            return -1;
+        }
+        if (target != null) {
+            if (escaped) {
+                String value = unescapeJson(line, start, pos);
+                if (value == null) {
+                    return -1;
+                }
+                target.setUnescaped(value);
+            } else {
+                target.set(line, start, pos);
+            }
+        }
+        return pos + 1;
+    }
+
+    private String unescapeJson(byte[] line, int from, int to) {
+        StringBuilder value = new StringBuilder(to - from);
+        int runStart = from;
+        for (int i = from; i < to; i++) {
+            if (line[i] != '\\') {
+                continue;
+            }
+            value.append(new String(line, runStart, i - runStart, StandardCharsets.UTF_8));
+            if (++i >= to) {
+                return null;
+            }
+            switch (line[i]) {
+                case 'n': value.append('\n'); break;
+                case 't': value.append('\t'); break;
+                case 'r': value.append('\r'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'u':
+                    if (i + 4 >= to) {
+                        return null;
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(new String(line, i + 1, 4, StandardCharsets.US_ASCII), 16));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    i += 4;
+                    break;
+                default: value.append((char) line[i]);
+            }
+            runStart = i + 1;
+        }
+        value.append(new String(line, runStart, to - runStart, StandardCharsets.UTF_8));
+        return value.toString();
+    }
+
+    private String lookup(Field field) {
+        if (field.unescaped != null) {
+            return codes.length == 0 ? null : lookupString(field.unescaped);
+        }
+        int slot = hash(field.bytes, field.start, field.length) & (table.length - 1);
+        for (int index; (index = table[slot]) >= 0; slot = (slot + 1) & (table.length - 1)) {
+            if (Arrays.equals(codeBytes[index], 0, codeBytes[index].length, field.bytes, field.start, field.start + field.length)) {
+                return codes[index];
+            }
+        }
+        return null;
+    }
+
+    private String lookupString(String value) {
+        for (String code : codes) {
+            if (code.equals(value)) {
+                return code;
+            }
+        }
+        return null;
+    }
+
+    private static int priority(Field type) {
+        if (type.length == 0 || type.equalsIgnoreCase("normal") || type.equalsIgnoreCase("false")) {
+            return NORMAL_PRIORITY;
+        }
+        if (type.equalsIgnoreCase("fast") || type.equalsIgnoreCase("true")) {
+            return FAST_PRIORITY;
+        }
+        return type.parseInt();
+    }
+
+    private static int hash(byte[] bytes, int from, int length) {
+        int h = 1;
+        for (int i = from; i < from + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean keyIs(byte[] line, int from, int to, String key) {
+        if (to - from != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (line[from + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(byte[] line, int pos, int to) {
+        while (pos < to && (line[pos] == ' ' || line[pos] == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int indexOf(byte[] line, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] scratch(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    /** A slice of the read buffer, or a decoded value when the field contained escapes. */
+    private static final class Field {
+        byte[] bytes;
+        int start;
+        int length;
+        String unescaped;
+
+        void set(byte[] bytes, int from, int to) {
+            this.bytes = bytes;
+            this.start = from;
+            this.length = to - from;
+            this.unescaped = null;
+        }
+
+        void setUnescaped(String value) {
+            this.bytes = null;
+            this.start = 0;
+            this.length = value.length();
+            this.unescaped = value;
+        }
+
+        void clear() {
+            set(null, 0, 0);
+        }
+
+        boolean equalsIgnoreCase(String value) {
+            if (unescaped != null) {
+                return unescaped.equalsIgnoreCase(value);
+            }
+            if (length != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (Character.toLowerCase((char) bytes[start + i]) != Character.toLowerCase(value.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int parseInt() {
+            String text = unescaped;
+            if (text == null) {
+                if (length == 0 || length > 9) {
+                    return 0;
+                }
+                int value = 0;
+                for (int i = start; i < start + length; i++) {
+                    if (bytes[i] < '0' || bytes[i] > '9') {
+                        return 0;
+                    }
+                    value = value * 10 + bytes[i] - '0';
+                }
+                return value;
+            }
+            try {
+                return Integer.parseInt(text.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return unescaped != null ? unescaped : new String(bytes, start, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Counts and timing of one load, with the first few rejected lines. */
+    static final class Report {
+        private final Path file;
+        private final List<String> rejectSamples = new ArrayList<>();
+        long lines;
+        long accepted;
+        long rejected;
+        long bytes;
+        long elapsedNanos;
+
+        Report(Path file) {
+            this.file = file;
+        }
+
+        void reject(String reason) {
+            rejected++;
+            if (rejectSamples.size() < MAX_REJECT_SAMPLES) {
+                rejectSamples.add("line " + lines + ": " + reason);
+            }
+        }
+
+        public long accepted() {
+            return accepted;
+        }
+
+        public long rejected() {
+            return rejected;
+        }
+
+        public double ordersPerSecond() {
+            return elapsedNanos == 0 ? 0 : accepted * 1e9 / elapsedNanos;
+        }
+
+        public List<String> rejectSamples() {
+            return rejectSamples;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d orders from %s (%d rejected) in %.3f s, %.0f orders/sec, %.1f MB/s",
+                    accepted, file, rejected, elapsedNanos / 1e9, ordersPerSecond(),
+                    elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1 << 20));
+        }
+    }
+}
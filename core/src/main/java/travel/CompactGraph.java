@@ -0,0 +1,345 @@
+package travel;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Int-indexed road network. Location codes are interned to dense ids and the
+ * adjacency is stored in CSR form (offsets/targets/weights) so that searches
+ * walk flat int arrays instead of per-edge objects.
+ *
+ * Edges are appended to a pending edge list and folded into the CSR arrays the
+ * next time the adjacency is read, so building a network costs one counting
+ * sort no matter how many edges it has. Changing the weight of an existing arc
+ * writes straight into the CSR arrays instead; only adding or removing arcs
+ * marks them for a rebuild.
+ *
+ * Every arc that is added, reweighted or removed is kept in a short change
+ * log, so caches can bring their results up to date instead of starting over.
+ * Adding a node clears the log.
+ */
+class CompactGraph implements RoadNetwork {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] codes = new String[16];
+    private int nodeCount;
+
+    private int[] edgeFrom = new int[32];
+    private int[] edgeTo = new int[32];
+    private int[] edgeWeight = new int[32];
+    private int edgeCount;
+
+    private IntBuffer offsets = IntBuffer.wrap(new int[1]);
+    private IntBuffer targets = IntBuffer.wrap(new int[0]);
+    private IntBuffer weights = IntBuffer.wrap(new int[0]);
+    private IntBuffer reverseOffsets = IntBuffer.wrap(new int[1]);
+    private IntBuffer reverseSources = IntBuffer.wrap(new int[0]);
+    private IntBuffer reverseWeights = IntBuffer.wrap(new int[0]);
+    private int[] arcEdge = new int[0]; // forward CSR slot -> index in the edge list
+    private boolean dirty;
+    private int version;
+
+    // Arcs changed after version logStart, as from/to pairs, with the version each change produced
+    private static final int CHANGE_LOG_LIMIT = 4096;
+    private int[] changedArcs = new int[32];
+    private int[] changedAt = new int[16];
+    private int changes;
+    private int logStart;
+
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private int placed;
+    private double heuristicScale;
+    private boolean scaleDirty = true;
+
+    public int intern(String code) {
+        Integer id = ids.get(code);
+        if (id != null) {
+            return id;
+        }
+        if (nodeCount == codes.length) {
+            codes = Arrays.copyOf(codes, nodeCount * 2);
+        }
+        codes[nodeCount] = code;
+        ids.put(code, nodeCount);
+        dirty = true;
+        version++;
+        changes = 0;
+        logStart = version;
+        return nodeCount++;
+    }
+
+    @Override
+    public int idOf(String code) {
+        Integer id = ids.get(code);
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    public String codeOf(int id) {
+        return codes[id];
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int arcCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int version() {
+        return version;
+    }
+
+    @Override
+    public int[] changedArcsSince(int since) {
+        if (since < logStart) {
+            return null;
+        }
+        int first = changes;
+        while (first > 0 && changedAt[first - 1] > since) {
+            first--;
+        }
+        return Arrays.copyOfRange(changedArcs, 2 * first, 2 * changes);
+    }
+
+    public void addArc(int from, int to, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative edge weight: " + weight);
+        }
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+        }
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        edgeWeight[edgeCount] = weight;
+        edgeCount++;
+        dirty = true;
+        changed(from, to);
+    }
+
+    public void addEdge(int a, int b, int weight) {
+        addArc(a, b, weight);
+        addArc(b, a, weight); // Undirected graph
+    }
+
+    /** Gives every arc from → to the new weight, adding the arc if there is none. */
+    public void setArcWeight(int from, int to, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative edge weight: " + weight);
+        }
+        freeze();
+        boolean found = false;
+        for (int slot = offsets.get(from), end = offsets.get(from + 1); slot < end; slot++) {
+            if (targets.get(slot) == to) {
+                edgeWeight[arcEdge[slot]] = weight;
+                weights.put(slot, weight);
+                found = true;
+            }
+        }
+        if (!found) {
+            addArc(from, to, weight);
+            return;
+        }
+        for (int slot = reverseOffsets.get(to), end = reverseOffsets.get(to + 1); slot < end; slot++) {
+            if (reverseSources.get(slot) == from) {
+                reverseWeights.put(slot, weight);
+            }
+        }
+        // A longer arc leaves the heuristic admissible; a shorter one may lower the scale
+        double line = hasCoordinates() ? straightLine(from, to) : 0;
+        if (line > 0) {
+            heuristicScale = Math.min(heuristicScale, weight / line * (1 - 1e-9));
+        }
+        changed(from, to);
+    }
+
+    public void setEdgeWeight(int a, int b, int weight) {
+        setArcWeight(a, b, weight);
+        setArcWeight(b, a, weight);
+    }
+
+    /** Removes every arc from → to; returns false when there was none. */
+    public boolean removeArc(int from, int to) {
+        freeze();
+        int[] doomed = new int[offsets.get(from + 1) - offsets.get(from)];
+        int count = 0;
+        for (int slot = offsets.get(from), end = offsets.get(from + 1); slot < end; slot++) {
+            if (targets.get(slot) == to) {
+                doomed[count++] = arcEdge[slot];
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        // Highest index first, so moving the last edge into a hole never moves a doomed one
+        Arrays.sort(doomed, 0, count);
+        for (int i = count - 1; i >= 0; i--) {
+            int last = --edgeCount;
+            edgeFrom[doomed[i]] = edgeFrom[last];
+            edgeTo[doomed[i]] = edgeTo[last];
+            edgeWeight[doomed[i]] = edgeWeight[last];
+        }
+        dirty = true;
+        changed(from, to);
+        return true;
+    }
+
+    public boolean removeEdge(int a, int b) {
+        boolean removed = removeArc(a, b);
+        return removeArc(b, a) || removed;
+    }
+
+    private void changed(int from, int to) {
+        version++;
+        if (changes == CHANGE_LOG_LIMIT) {
+            // Forget the older half; caches built before that recompute from scratch
+            int half = CHANGE_LOG_LIMIT / 2;
+            logStart = changedAt[half - 1];
+            System.arraycopy(changedAt, half, changedAt, 0, changes - half);
+            System.arraycopy(changedArcs, 2 * half, changedArcs, 0, 2 * (changes - half));
+            changes -= half;
+        }
+        if (changes == changedAt.length) {
+            changedAt = Arrays.copyOf(changedAt, changes * 2);
+            changedArcs = Arrays.copyOf(changedArcs, changes * 4);
+        }
+        changedArcs[2 * changes] = from;
+        changedArcs[2 * changes + 1] = to;
+        changedAt[changes++] = version;
+    }
+
+    /** Places {@code node} at (x, y) in the same length unit as the edge weights, enabling A* queries. */
+    public void setCoordinates(int node, double x, double y) {
+        if (xs.length < nodeCount) {
+            int oldLength = xs.length;
+            xs = Arrays.copyOf(xs, codes.length);
+            ys = Arrays.copyOf(ys, codes.length);
+            Arrays.fill(xs, oldLength, xs.length, Double.NaN);
+            Arrays.fill(ys, oldLength, ys.length, Double.NaN);
+        }
+        if (Double.isNaN(xs[node])) {
+            placed++;
+        }
+        xs[node] = x;
+        ys[node] = y;
+        scaleDirty = true;
+    }
+
+    @Override
+    public boolean hasCoordinates() {
+        return nodeCount > 0 && placed == nodeCount;
+    }
+
+    @Override
+    public double straightLine(int a, int b) {
+        return Math.hypot(xs[a] - xs[b], ys[a] - ys[b]);
+    }
+
+    @Override
+    public double heuristicScale() {
+        freeze();
+        return heuristicScale;
+    }
+
+    @Override
+    public IntBuffer offsets() {
+        freeze();
+        return offsets;
+    }
+
+    @Override
+    public IntBuffer targets() {
+        freeze();
+        return targets;
+    }
+
+    @Override
+    public IntBuffer weights() {
+        freeze();
+        return weights;
+    }
+
+    @Override
+    public IntBuffer reverseOffsets() {
+        freeze();
+        return reverseOffsets;
+    }
+
+    @Override
+    public IntBuffer reverseSources() {
+        freeze();
+        return reverseSources;
+    }
+
+    @Override
+    public IntBuffer reverseWeights() {
+        freeze();
+        return reverseWeights;
+    }
+
+    /**
+     * Rebuilds the CSR arrays from the edge list if anything changed since the
+     * last call. Must be called before the graph is shared between threads.
+     */
+    public void freeze() {
+        if (dirty) {
+            int[] newOffsets = new int[nodeCount + 1];
+            int[] newTargets = new int[edgeCount];
+            int[] newWeights = new int[edgeCount];
+            int[] newArcEdge = new int[edgeCount];
+            buildCsr(edgeFrom, edgeTo, newOffsets, newTargets, newWeights, newArcEdge);
+            arcEdge = newArcEdge;
+            offsets = IntBuffer.wrap(newOffsets);
+            targets = IntBuffer.wrap(newTargets);
+            weights = IntBuffer.wrap(newWeights);
+            int[] newReverseOffsets = new int[nodeCount + 1];
+            int[] newReverseSources = new int[edgeCount];
+            int[] newReverseWeights = new int[edgeCount];
+            buildCsr(edgeTo, edgeFrom, newReverseOffsets, newReverseSources, newReverseWeights, null);
+            reverseOffsets = IntBuffer.wrap(newReverseOffsets);
+            reverseSources = IntBuffer.wrap(newReverseSources);
+            reverseWeights = IntBuffer.wrap(newReverseWeights);
+            scaleDirty = true;
+            dirty = false;
+        }
+        if (scaleDirty) {
+            double scale = Double.POSITIVE_INFINITY;
+            if (hasCoordinates()) {
+                for (int i = 0; i < edgeCount; i++) {
+                    double line = straightLine(edgeFrom[i], edgeTo[i]);
+                    if (line > 0) {
+                        scale = Math.min(scale, edgeWeight[i] / line);
+                    }
+                }
+            }
+            heuristicScale = scale == Double.POSITIVE_INFINITY ? 0 : scale * (1 - 1e-9);
+            scaleDirty = false;
+        }
+    }
+
+    private void buildCsr(int[] from, int[] to, int[] newOffsets, int[] newTargets, int[] newWeights,
+                          int[] newEdges) {
+        for (int i = 0; i < edgeCount; i++) {
+            newOffsets[from[i] + 1]++;
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            newOffsets[v + 1] += newOffsets[v];
+        }
+        int[] cursor = Arrays.copyOf(newOffsets, nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            int slot = cursor[from[i]]++;
+            newTargets[slot] = to[i];
+            newWeights[slot] = edgeWeight[i];
+            if (newEdges != null) {
+                newEdges[slot] = i;
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package travel;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Thread-safe {@link TieredQueue} for many intake threads feeding one
+ * dispatcher. Each tier is a lock-free multi-producer single-consumer queue
+ * of int handles kept in chunks of 1024 slots: a producer claims the next
+ * position with one atomic increment, writes its handle into the slot and
+ * never waits for another producer or for the dispatcher. A queued handle
+ * costs 12 bytes of chunk, with no object of its own.
+ *
+ * Producers also hold the read side of one of several striped read-write
+ * locks, picked by thread id, while they append. {@link #snapshot} takes the
+ * write side of every stripe together with the consumer lock, so the tiers
+ * it reports are one consistent cut: no handle is half-added and none is
+ * reported after it was dispatched. Ordinary intake never contends on the
+ * write side. {@link #page} only needs the consumer lock: it holds off the
+ * dispatcher for one page and, like the dispatcher, stops at the first slot
+ * whose producer has not written it yet, so intake never waits for a listing
+ * and the next page starts from that slot.
+ *
+ * {@link #poll} and {@link #drainTo} serialize on the consumer lock. That is
+ * free for a single dispatcher thread and keeps several of them safe. A
+ * handle whose producer is still between its claim and its write may stay
+ * invisible to the dispatcher for a moment; it is never lost.
+ *
+ * {@link #remove} also takes the consumer lock, looks for the handle from the
+ * head of its tier and overwrites its slot with a tombstone, which the
+ * dispatcher, snapshots and pages step over. It costs a scan of the tier, so
+ * it suits rare moves such as deadline escalations, not bulk cancellation.
+ */
+class ConcurrentTieredScheduler implements TieredQueue {
+    private static final int CHUNK = 1024;
+    private static final int REMOVED = -1; // slot value of a handle taken out by remove
+
+    private final Tier[] tiers;
+    private final ReentrantReadWriteLock[] stripes;
+    private final ReentrantLock consumerLock = new ReentrantLock();
+    private volatile long served;
+    private volatile long agingLimit;
+
+    public ConcurrentTieredScheduler(int tierCount) {
+        if (tierCount < 1 || tierCount > TieredScheduler.MAX_TIERS) {
+            throw new IllegalArgumentException("Tier count must be between 1 and " + TieredScheduler.MAX_TIERS + ": " + tierCount);
+        }
+        tiers = new Tier[tierCount];
+        for (int i = 0; i < tierCount; i++) {
+            tiers[i] = new Tier();
+        }
+        stripes = new ReentrantReadWriteLock[stripeCount()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /** Power of two of at least two stripes per processor; also used to segment {@link OrderStore}. */
+    static int stripeCount() {
+        int stripeCount = 1;
+        while (stripeCount < 2 * Runtime.getRuntime().availableProcessors()) {
+            stripeCount <<= 1;
+        }
+        return stripeCount;
+    }
+
+    @Override
+    public int tierCount() {
+        return tiers.length;
+    }
+
+    @Override
+    public void setAgingLimit(long limit) {
+        this.agingLimit = limit;
+    }
+
+    @Override
+    public void add(int tier, int handle) {
+        if (handle < 0) {
+            throw new IllegalArgumentException("Handles are non-negative: " + handle);
+        }
+        Tier bucket = tiers[tier];
+        Lock gate = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)].readLock();
+        gate.lock();
+        try {
+            bucket.add(handle, served);
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    @Override
+    public int poll() {
+        consumerLock.lock();
+        try {
+            return pollLocked();
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(int[] sink, int max) {
+        int limit = Math.min(max, sink.length);
+        consumerLock.lock();
+        try {
+            int moved = 0;
+            int handle;
+            while (moved < limit && (handle = pollLocked()) != EMPTY) {
+                sink[moved++] = handle;
+            }
+            return moved;
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(int tier, int handle) {
+        if (handle < 0) {
+            return false;
+        }
+        Tier bucket = tiers[tier];
+        consumerLock.lock();
+        try {
+            Chunk chunk = bucket.headChunk;
+            for (long index = bucket.head, end = bucket.tail.get(); index < end; index++) {
+                while (chunk != null && index - chunk.base >= CHUNK) {
+                    chunk = chunk.next.get();
+                }
+                if (chunk == null) {
+                    return false;
+                }
+                int offset = (int) (index - chunk.base);
+                // Only a handle the dispatcher can already see counts as queued; written slots never change under us
+                if (chunk.slots.get(offset) == handle + 1) {
+                    chunk.slots.set(offset, REMOVED);
+                    bucket.tombstoned();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        long total = 0;
+        for (Tier tier : tiers) {
+            total += tier.size();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    @Override
+    public int size(int tier) {
+        return (int) Math.min(Integer.MAX_VALUE, tiers[tier].size());
+    }
+
+    @Override
+    public <T> List<List<T>> snapshot(IntFunction<? extends T> view) {
+        consumerLock.lock();
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+        try {
+            List<List<T>> tierItems = new ArrayList<>(tiers.length);
+            for (Tier tier : tiers) {
+                List<T> items = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, tier.size()));
+                Chunk chunk = tier.headChunk;
+                for (long index = tier.head, end = tier.tail.get(); index < end; index++) {
+                    if (index - chunk.base == CHUNK) {
+                        chunk = chunk.next.get();
+                    }
+                    int slot = chunk.slots.get((int) (index - chunk.base));
+                    if (slot != REMOVED) {
+                        items.add(view.apply(slot - 1));
+                    }
+                }
+                tierItems.add(items);
+            }
+            return tierItems;
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].writeLock().unlock();
+            }
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public <T> List<T> page(int tier, Cursor cursor, IntPredicate filter, int max, IntFunction<? extends T> view) {
+        Tier bucket = tiers[tier];
+        consumerLock.lock();
+        try {
+            List<T> items = new ArrayList<>((int) Math.max(0, Math.min(max, bucket.size())));
+            long index = cursor.started ? Math.max(bucket.head, cursor.sequence + 1) : bucket.head;
+            Chunk chunk = bucket.headChunk;
+            for (long end = bucket.tail.get(); index < end && items.size() < max; index++) {
+                while (chunk != null && index - chunk.base >= CHUNK) {
+                    chunk = chunk.next.get();
+                }
+                if (chunk == null) {
+                    break; // claimed, but its chunk is not linked in yet
+                }
+                int slot = chunk.slots.get((int) (index - chunk.base));
+                if (slot == 0) {
+                    break; // claimed, but not written yet; the cursor stays in front of it
+                }
+                cursor.started = true;
+                cursor.sequence = index;
+                if (slot != REMOVED && filter.test(slot - 1)) {
+                    items.add(view.apply(slot - 1));
+                }
+            }
+            return items;
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    private int pollLocked() {
+        int tier = nextTier();
+        if (tier < 0) {
+            return EMPTY;
+        }
+        int handle = tiers[tier].take();
+        served = served + 1;
+        return handle;
+    }
+
+    private int nextTier() {
+        int first = -1;
+        long limit = agingLimit;
+        for (int tier = 0; tier < tiers.length; tier++) {
+            Tier bucket = tiers[tier];
+            if (!bucket.ready()) {
+                continue;
+            }
+            if (first < 0) {
+                first = tier;
+                if (limit <= 0) {
+                    break;
+                }
+            } else if (served - bucket.headArrival() > limit) {
+                return tier;
+            }
+        }
+        return first;
+    }
+
+    /** CHUNK consecutive positions of a tier; a slot holds handle + 1 once written, 0 before, REMOVED after remove. */
+    private static final class Chunk {
+        final long base;
+        final AtomicIntegerArray slots = new AtomicIntegerArray(CHUNK);
+        final long[] arrivals = new long[CHUNK]; // published by the slot write that follows
+        final AtomicReference<Chunk> next = new AtomicReference<>();
+
+        Chunk(long base) {
+            this.base = base;
+        }
+    }
+
+    /** One MPSC queue: producers claim positions from tail, the consumer follows head. */
+    private static final class Tier {
+        final AtomicLong tail = new AtomicLong();
+        final AtomicLong removed = new AtomicLong(); // head + tombstones, for size()
+        volatile Chunk tailChunk; // a chunk at or before every position not yet claimed
+        Chunk headChunk; // consumer only, like head and tombstones
+        long head;
+        long tombstones; // REMOVED slots at or after head
+
+        Tier() {
+            headChunk = tailChunk = new Chunk(0);
+        }
+
+        void add(int handle, long arrival) {
+            Chunk chunk = tailChunk; // read before claiming, so it cannot be past our position
+            long index = tail.getAndIncrement();
+            while (index - chunk.base >= CHUNK) {
+                Chunk next = chunk.next.get();
+                if (next == null) {
+                    Chunk fresh = new Chunk(chunk.base + CHUNK);
+                    next = chunk.next.compareAndSet(null, fresh) ? fresh : chunk.next.get();
+                }
+                chunk = next;
+            }
+            if (chunk.base > tailChunk.base) {
+                tailChunk = chunk;
+            }
+            int offset = (int) (index - chunk.base);
+            chunk.arrivals[offset] = arrival;
+            chunk.slots.set(offset, handle + 1);
+        }
+
+        /**
+         * Whether the handle at head has been written; moves to the next chunk
+         * when the current one is used up, and past removed handles.
+         */
+        boolean ready() {
+            while (true) {
+                if (head - headChunk.base == CHUNK) {
+                    Chunk next = headChunk.next.get();
+                    if (next == null) {
+                        return false;
+                    }
+                    headChunk = next;
+                }
+                int slot = headChunk.slots.get((int) (head - headChunk.base));
+                if (slot != REMOVED) {
+                    return slot != 0;
+                }
+                head++;
+                tombstones--;
+            }
+        }
+
+        long headArrival() {
+            return headChunk.arrivals[(int) (head - headChunk.base)];
+        }
+
+        /** Removes the head handle; only after {@link #ready} returned true. */
+        int take() {
+            int handle = headChunk.slots.get((int) (head - headChunk.base)) - 1;
+            head++;
+            removed.lazySet(head + tombstones);
+            return handle;
+        }
+
+        /** Counts a slot remove just overwrote. */
+        void tombstoned() {
+            tombstones++;
+            removed.lazySet(head + tombstones);
+        }
+
+        long size() {
+            return Math.max(0, tail.get() - removed.get());
+        }
+    }
+}
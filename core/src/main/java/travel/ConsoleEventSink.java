@@ -0,0 +1,107 @@
+package travel;
+
+import java.io.PrintStream;
+
+/**
+ * Prints each event on the calling thread before returning, so its lines
+ * interleave with prompts and listings exactly as before. The default sink
+ * of the command line applications.
+ */
+class ConsoleEventSink implements EventSink {
+    private final PrintStream out; // null: whatever System.out is when the event arrives
+    private final Level level;
+    private final Event event = new Event();
+    private final StringBuilder line = new StringBuilder(128);
+
+    public ConsoleEventSink() {
+        this(null, Level.DEBUG);
+    }
+
+    public ConsoleEventSink(PrintStream out, Level level) {
+        this.out = out;
+        this.level = level;
+    }
+
+    @Override
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0;
+    }
+
+    @Override
+    public synchronized void orderAdded(String name, int priority, String location) {
+        if (isEnabled(Level.DEBUG)) {
+            Event e = start(Event.Kind.ORDER_ADDED);
+            e.text = name;
+            e.value = priority;
+            e.location = location;
+            print(e);
+        }
+    }
+
+    @Override
+    public synchronized void orderDispatched(Order order) {
+        if (isEnabled(Level.INFO)) {
+            Event e = start(Event.Kind.ORDER_DISPATCHED);
+            e.order = order;
+            print(e);
+        }
+    }
+
+    @Override
+    public synchronized void queueEmpty() {
+        if (isEnabled(Level.WARN)) {
+            print(start(Event.Kind.QUEUE_EMPTY));
+        }
+    }
+
+    @Override
+    public synchronized void batchDispatched(int orders) {
+        if (isEnabled(Level.INFO)) {
+            Event e = start(Event.Kind.BATCH_DISPATCHED);
+            e.value = orders;
+            print(e);
+        }
+    }
+
+    @Override
+    public synchronized void routeAdded(String start, String end, int distance) {
+        if (isEnabled(Level.DEBUG)) {
+            Event e = start(Event.Kind.ROUTE_ADDED);
+            e.text = start;
+            e.end = end;
+            e.value = distance;
+            print(e);
+        }
+    }
+
+    @Override
+    public synchronized void routeComputed(Route route) {
+        if (isEnabled(Level.INFO)) {
+            Event e = start(Event.Kind.ROUTE_COMPUTED);
+            e.route = route;
+            print(e);
+        }
+    }
+
+    @Override
+    public synchronized void message(Level level, String text) {
+        if (isEnabled(level)) {
+            Event e = start(Event.Kind.MESSAGE);
+            e.text = text;
+            print(e);
+        }
+    }
+
+    // The event methods are synchronized: they share one scratch event and line buffer
+    private Event start(Event.Kind kind) {
+        event.clear().kind = kind;
+        return event;
+    }
+
+    private void print(Event e) {
+        line.setLength(0);
+        e.appendTo(line);
+        e.clear();
+        (out != null ? out : System.out).print(line);
+    }
+}
@@ -0,0 +1,575 @@
+package travel;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Contraction hierarchy over a {@link RoadNetwork}, for pair queries on large
+ * networks that settle a few hundred nodes instead of a large part of the
+ * graph. Preprocessing contracts the nodes one at a time, least important
+ * first: a contracted node leaves the remaining graph, and wherever that would
+ * lengthen a shortest path between two of its neighbours a shortcut through it
+ * is added. A node's importance is the number of shortcuts its contraction
+ * would add against the arcs it removes, weighed by the original arcs behind
+ * them, plus how many of its neighbours are already gone. It is re-estimated
+ * whenever the node reaches the head of the queue.
+ *
+ * Afterwards every arc, original or shortcut, leads up or down the order, and
+ * a {@link HierarchySearch} only ever climbs: forward from the source over
+ * upward arcs and backward from the target over downward arcs, meeting at the
+ * most important node of the shortest path. Shortcuts remember the node they
+ * skip, so paths unpack into original arcs.
+ *
+ * {@link #save} writes the hierarchy to a file that {@link #load} maps back
+ * without rebuilding, after checking it was built for the same network. A
+ * hierarchy describes the network as it was when it was built or loaded, and
+ * the route cache stops using it once the network changes.
+ *
+ * Layout, little-endian ints after a fixed header:
+ * <pre>
+ *   magic, format, nodeCount, arcCount, fingerprint, upArcs, downArcs, 0
+ *   rank[n]
+ *   upOffsets[n + 1]  upTargets[u]  upWeights[u]  upMiddles[u]
+ *   downOffsets[n + 1]  downSources[d]  downWeights[d]  downMiddles[d]
+ * </pre>
+ * The upward arcs of v lead from v to more important nodes; its downward arcs
+ * come into v from more important nodes. A middle of -1 marks an original arc.
+ *
+ * Usage: java travel.ContractionHierarchy network.rnet [network.ch]
+ */
+class ContractionHierarchy {
+    static final int MAGIC = 0x4348524E; // "CHRN"
+    static final int FORMAT = 1;
+    static final int HEADER_BYTES = 32;
+
+    private static final int WRITE_BUFFER = 1 << 20;
+    private static final int VERIFY_QUERIES = 1000;
+    private static final int VERIFY_SOURCES = 10; // each needs a full Dijkstra row to check against
+
+    private final int nodeCount;
+    private final int arcCount;
+    private final int fingerprint;
+    private final int networkVersion;
+    private final IntBuffer rank;
+    private final IntBuffer upOffsets;
+    private final IntBuffer upTargets;
+    private final IntBuffer upWeights;
+    private final IntBuffer upMiddles;
+    private final IntBuffer downOffsets;
+    private final IntBuffer downSources;
+    private final IntBuffer downWeights;
+    private final IntBuffer downMiddles;
+
+    private ContractionHierarchy(RoadNetwork network, int fingerprint, IntBuffer rank,
+                                 IntBuffer upOffsets, IntBuffer upTargets, IntBuffer upWeights, IntBuffer upMiddles,
+                                 IntBuffer downOffsets, IntBuffer downSources, IntBuffer downWeights,
+                                 IntBuffer downMiddles) {
+        this.nodeCount = network.nodeCount();
+        this.arcCount = network.arcCount();
+        this.fingerprint = fingerprint;
+        this.networkVersion = network.version();
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downMiddles = downMiddles;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java travel.ContractionHierarchy <compiled network> [hierarchy file]");
+            return;
+        }
+        Path networkFile = Paths.get(args[0]);
+        Path output = args.length > 1 ? Paths.get(args[1]) : Paths.get(args[0] + ".ch");
+        MappedRoadNetwork network = MappedRoadNetwork.open(networkFile);
+
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = build(network);
+        System.out.printf("Contracted %d locations in %.3f s, %d upward and %d downward arcs%n", network.nodeCount(),
+                (System.nanoTime() - start) / 1e9, hierarchy.upArcCount(), hierarchy.downArcCount());
+        hierarchy.save(output);
+        System.out.println("Saved to " + output);
+        verify(new Graph(network), network, load(output, network));
+    }
+
+    /**
+     * Compares random pairs with Graph.dijkstra and prints the query times of
+     * both engines. The pairs start from a few random sources, one after
+     * another, so every one of them is checked for the price of a Dijkstra
+     * row per source.
+     */
+    private static void verify(Graph graph, RoadNetwork network, ContractionHierarchy hierarchy) {
+        int n = network.nodeCount();
+        if (n == 0) {
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(n);
+        int[] sources = new int[VERIFY_SOURCES];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = random.nextInt(n);
+        }
+        HierarchySearch search = new HierarchySearch(hierarchy);
+        PointToPointSearch plain = new PointToPointSearch(network);
+        long hierarchyNanos = 0;
+        long plainNanos = 0;
+        for (int i = 0; i < VERIFY_QUERIES; i++) {
+            int from = sources[i * VERIFY_SOURCES / VERIFY_QUERIES];
+            int to = random.nextInt(n);
+            long begin = System.nanoTime();
+            int distance = search.distance(from, to);
+            hierarchyNanos += System.nanoTime() - begin;
+            begin = System.nanoTime();
+            plain.distance(from, to);
+            plainNanos += System.nanoTime() - begin;
+            int expected = graph.dijkstra(network.codeOf(from)).get(network.codeOf(to));
+            if (distance != expected) {
+                throw new IllegalStateException("Hierarchy gives " + distance + " from " + network.codeOf(from)
+                        + " to " + network.codeOf(to) + ", Dijkstra " + expected);
+            }
+        }
+        System.out.printf("%d queries agree with Dijkstra: %.1f us per hierarchy query, %.1f us per %s query%n",
+                VERIFY_QUERIES, hierarchyNanos / 1e3 / VERIFY_QUERIES, plainNanos / 1e3 / VERIFY_QUERIES,
+                network.hasCoordinates() ? "A*" : "bidirectional");
+    }
+
+    /** Contracts every node of {@code network}; takes seconds on a network of a million locations. */
+    public static ContractionHierarchy build(RoadNetwork network) {
+        return new Contractor(network).contract();
+    }
+
+    /** Maps a hierarchy written by {@link #save}; fails when it was built for another network. */
+    public static ContractionHierarchy load(Path file, RoadNetwork network) throws IOException {
+        ByteBuffer map;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Contraction hierarchy larger than 2 GB: " + file);
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a contraction hierarchy: " + file);
+        }
+        if (map.getInt(4) != FORMAT) {
+            throw new IOException("Unsupported contraction hierarchy format " + map.getInt(4) + " in " + file);
+        }
+        int n = map.getInt(8);
+        if (n != network.nodeCount() || map.getInt(12) != network.arcCount() || map.getInt(16) != fingerprint(network)) {
+            throw new IOException(file + " was built for a different road network");
+        }
+        int up = map.getInt(20);
+        int down = map.getInt(24);
+        int[] position = {HEADER_BYTES};
+        IntBuffer rank = ints(map, position, n);
+        IntBuffer upOffsets = ints(map, position, n + 1);
+        IntBuffer upTargets = ints(map, position, up);
+        IntBuffer upWeights = ints(map, position, up);
+        IntBuffer upMiddles = ints(map, position, up);
+        IntBuffer downOffsets = ints(map, position, n + 1);
+        IntBuffer downSources = ints(map, position, down);
+        IntBuffer downWeights = ints(map, position, down);
+        IntBuffer downMiddles = ints(map, position, down);
+        if (position[0] != map.capacity()) {
+            throw new IOException("Truncated or corrupt contraction hierarchy: " + file);
+        }
+        return new ContractionHierarchy(network, map.getInt(16), rank, upOffsets, upTargets, upWeights, upMiddles,
+                downOffsets, downSources, downWeights, downMiddles);
+    }
+
+    private static IntBuffer ints(ByteBuffer map, int[] position, int count) throws IOException {
+        if (count < 0 || (long) position[0] + count * 4L > map.capacity()) {
+            throw new IOException("Truncated or corrupt contraction hierarchy");
+        }
+        IntBuffer values = map.slice(position[0], count * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        position[0] += count * 4;
+        return values;
+    }
+
+    public void save(Path output) throws IOException {
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT).putInt(nodeCount).putInt(arcCount).putInt(fingerprint)
+                    .putInt(upArcCount()).putInt(downArcCount()).putInt(0);
+            for (IntBuffer values : new IntBuffer[] {rank, upOffsets, upTargets, upWeights, upMiddles,
+                    downOffsets, downSources, downWeights, downMiddles}) {
+                for (int i = 0, count = values.limit(); i < count; i++) {
+                    if (buffer.remaining() < 4) {
+                        drain(channel, buffer);
+                    }
+                    buffer.putInt(values.get(i));
+                }
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Checksum of the forward adjacency, so a saved hierarchy is never paired with another network. */
+    static int fingerprint(RoadNetwork network) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (IntBuffer values : new IntBuffer[] {network.offsets(), network.targets(), network.weights()}) {
+            for (int i = 0, count = values.limit(); i < count; i++) {
+                if (!chunk.hasRemaining()) {
+                    chunk.flip();
+                    crc.update(chunk);
+                    chunk.clear();
+                }
+                chunk.putInt(values.get(i));
+            }
+        }
+        chunk.flip();
+        crc.update(chunk);
+        return (int) crc.getValue();
+    }
+
+    /** True while {@code network} is still the network this hierarchy describes. */
+    public boolean isCurrent(RoadNetwork network) {
+        return network.version() == networkVersion && network.nodeCount() == nodeCount;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int upArcCount() {
+        return upTargets.limit();
+    }
+
+    public int downArcCount() {
+        return downSources.limit();
+    }
+
+    /** Position of a node in the contraction order; higher is more important. */
+    public int rank(int node) {
+        return rank.get(node);
+    }
+
+    IntBuffer upOffsets() {
+        return upOffsets;
+    }
+
+    IntBuffer upTargets() {
+        return upTargets;
+    }
+
+    IntBuffer upWeights() {
+        return upWeights;
+    }
+
+    IntBuffer upMiddles() {
+        return upMiddles;
+    }
+
+    IntBuffer downOffsets() {
+        return downOffsets;
+    }
+
+    IntBuffer downSources() {
+        return downSources;
+    }
+
+    IntBuffer downWeights() {
+        return downWeights;
+    }
+
+    IntBuffer downMiddles() {
+        return downMiddles;
+    }
+
+    /** Preprocessing state: the graph that remains while nodes are contracted. */
+    private static final class Contractor {
+        /** Ints per arc of the remaining graph: neighbour, weight, middle, original arcs it stands for. */
+        private static final int ARC = 4;
+        /** Witness searches give up after this many nodes and add the shortcut. */
+        private static final int WITNESS_SETTLE_LIMIT = 500;
+        /** Tighter limit while only estimating a node's importance. */
+        private static final int ESTIMATE_SETTLE_LIMIT = 50;
+
+        private final RoadNetwork network;
+        private final int n;
+        private final int[][] out;
+        private final int[][] in;
+        private final int[] outSize;
+        private final int[] inSize;
+        private final int[] gone; // contracted neighbours
+        private final IndexedMinHeap order;
+
+        private final IndexedMinHeap witnessHeap;
+        private final int[] witnessDist;
+        private final int[] witnessStamp;
+        private final int[] targetOf; // == targetRound for the out-neighbours of the node being looked at
+        private int currentStamp;
+        private int targetRound;
+        private int addedHops; // original arcs behind the shortcuts of the last shortcuts() call
+
+        // Arcs of every contracted node as it left the remaining graph
+        private final int[][] up;
+        private final int[][] down;
+        private final int[] rank;
+
+        Contractor(RoadNetwork network) {
+            this.network = network;
+            this.n = network.nodeCount();
+            out = new int[n][];
+            in = new int[n][];
+            outSize = new int[n];
+            inSize = new int[n];
+            gone = new int[n];
+            order = new IndexedMinHeap(Math.max(n, 1));
+            witnessHeap = new IndexedMinHeap(Math.max(n, 1));
+            witnessDist = new int[n];
+            witnessStamp = new int[n];
+            targetOf = new int[n];
+            up = new int[n][];
+            down = new int[n][];
+            rank = new int[n];
+        }
+
+        ContractionHierarchy contract() {
+            IntBuffer offsets = network.offsets();
+            IntBuffer targets = network.targets();
+            IntBuffer weights = network.weights();
+            IntBuffer reverseOffsets = network.reverseOffsets();
+            for (int v = 0; v < n; v++) {
+                out[v] = new int[ARC * Math.max(1, offsets.get(v + 1) - offsets.get(v))];
+                in[v] = new int[ARC * Math.max(1, reverseOffsets.get(v + 1) - reverseOffsets.get(v))];
+            }
+            for (int v = 0; v < n; v++) {
+                for (int arc = offsets.get(v), end = offsets.get(v + 1); arc < end; arc++) {
+                    if (targets.get(arc) != v) {
+                        addArc(v, targets.get(arc), weights.get(arc), -1, 1);
+                    }
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                order.offer(v, priority(v));
+            }
+
+            int contracted = 0;
+            while (!order.isEmpty()) {
+                int v = order.poll();
+                int priority = priority(v);
+                if (!order.isEmpty() && priority > order.minKey()) {
+                    // Importance went up since it was queued: wait for its turn again
+                    order.offer(v, priority);
+                    continue;
+                }
+                rank[v] = contracted++;
+                up[v] = Arrays.copyOf(out[v], outSize[v]);
+                down[v] = Arrays.copyOf(in[v], inSize[v]);
+                shortcuts(v, true);
+
+                // Neighbours are only re-estimated when they reach the head of the queue;
+                // re-estimating them all here costs more than it gains in the dense core
+                for (int i = 0; i < outSize[v]; i += ARC) {
+                    int x = out[v][i];
+                    inSize[x] = remove(in[x], inSize[x], v);
+                    gone[x]++;
+                }
+                for (int i = 0; i < inSize[v]; i += ARC) {
+                    int u = in[v][i];
+                    outSize[u] = remove(out[u], outSize[u], v);
+                    gone[u]++;
+                }
+                out[v] = in[v] = null;
+                outSize[v] = inSize[v] = 0;
+            }
+            return assemble();
+        }
+
+        /**
+         * Importance of v: the arcs its contraction would add against those it
+         * removes, weighted by the original arcs behind them, plus its
+         * contracted neighbours.
+         */
+        private int priority(int v) {
+            int added = shortcuts(v, false);
+            int removed = (outSize[v] + inSize[v]) / ARC;
+            int removedHops = 0;
+            for (int i = 3; i < outSize[v]; i += ARC) {
+                removedHops += out[v][i];
+            }
+            for (int i = 3; i < inSize[v]; i += ARC) {
+                removedHops += in[v][i];
+            }
+            return 10 * (added - removed) + (addedHops - removedHops) + gone[v];
+        }
+
+        /**
+         * Shortcuts needed to keep shortest paths through v once it is gone,
+         * added to the remaining graph when {@code add} is set; returns their count.
+         */
+        private int shortcuts(int v, boolean add) {
+            addedHops = 0;
+            if (outSize[v] == 0 || inSize[v] == 0) {
+                return 0;
+            }
+            int longestOut = 0;
+            targetRound++;
+            for (int i = 0; i < outSize[v]; i += ARC) {
+                longestOut = Math.max(longestOut, out[v][i + 1]);
+                targetOf[out[v][i]] = targetRound;
+            }
+            int count = 0;
+            int[] incoming = in[v];
+            for (int i = 0; i < inSize[v]; i += ARC) {
+                int u = incoming[i];
+                int toV = incoming[i + 1];
+                witnessSearch(u, v, toV + longestOut, outSize[v] / ARC,
+                        add ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+                int[] outgoing = out[v];
+                for (int j = 0; j < outSize[v]; j += ARC) {
+                    int x = outgoing[j];
+                    int via = toV + outgoing[j + 1];
+                    if (x != u && witnessDistance(x) > via) {
+                        count++;
+                        addedHops += incoming[i + 3] + outgoing[j + 3];
+                        if (add) {
+                            addArc(u, x, via, v, incoming[i + 3] + outgoing[j + 3]);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Dijkstra from {@code source} around {@code skip}. Stops once all
+         * {@code targets} current targets are settled, beyond {@code limit}, or
+         * after {@code settleLimit} nodes.
+         */
+        private void witnessSearch(int source, int skip, int limit, int targets, int settleLimit) {
+            if (++currentStamp == Integer.MAX_VALUE) {
+                Arrays.fill(witnessStamp, 0);
+                currentStamp = 1;
+            }
+            witnessHeap.clear();
+            witnessReach(source, 0);
+            for (int settled = 0; !witnessHeap.isEmpty() && settled < settleLimit; settled++) {
+                int node = witnessHeap.poll();
+                int nodeDist = witnessDist[node];
+                if (nodeDist > limit || (targetOf[node] == targetRound && --targets == 0)) {
+                    break;
+                }
+                int[] arcs = out[node];
+                for (int i = 0; i < outSize[node]; i += ARC) {
+                    int next = arcs[i];
+                    int newDist = nodeDist + arcs[i + 1];
+                    if (next != skip && newDist < witnessDistance(next)) {
+                        witnessReach(next, newDist);
+                    }
+                }
+            }
+        }
+
+        private int witnessDistance(int node) {
+            return witnessStamp[node] == currentStamp ? witnessDist[node] : Integer.MAX_VALUE;
+        }
+
+        private void witnessReach(int node, int dist) {
+            witnessDist[node] = dist;
+            witnessStamp[node] = currentStamp;
+            witnessHeap.offer(node, dist);
+        }
+
+        /** Adds the arc u -> x, or lowers the one already there. */
+        private void addArc(int u, int x, int weight, int middle, int hops) {
+            int[] arcs = out[u];
+            for (int i = 0; i < outSize[u]; i += ARC) {
+                if (arcs[i] == x) {
+                    if (weight < arcs[i + 1]) {
+                        set(arcs, i, x, weight, middle, hops);
+                        int[] back = in[x];
+                        for (int j = 0; j < inSize[x]; j += ARC) {
+                            if (back[j] == u) {
+                                set(back, j, u, weight, middle, hops);
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            out[u] = append(out[u], outSize[u], x, weight, middle, hops);
+            outSize[u] += ARC;
+            in[x] = append(in[x], inSize[x], u, weight, middle, hops);
+            inSize[x] += ARC;
+        }
+
+        private static int[] append(int[] arcs, int size, int node, int weight, int middle, int hops) {
+            if (size + ARC > arcs.length) {
+                arcs = Arrays.copyOf(arcs, Math.max(size + ARC, arcs.length * 2));
+            }
+            set(arcs, size, node, weight, middle, hops);
+            return arcs;
+        }
+
+        private static void set(int[] arcs, int at, int node, int weight, int middle, int hops) {
+            arcs[at] = node;
+            arcs[at + 1] = weight;
+            arcs[at + 2] = middle;
+            arcs[at + 3] = hops;
+        }
+
+        /** Drops the arc to {@code node} by moving the last one into its place; returns the new size. */
+        private static int remove(int[] arcs, int size, int node) {
+            for (int i = 0; i < size; i += ARC) {
+                if (arcs[i] == node) {
+                    System.arraycopy(arcs, size - ARC, arcs, i, ARC);
+                    return size - ARC;
+                }
+            }
+            return size;
+        }
+
+        private ContractionHierarchy assemble() {
+            int[] upOffsets = new int[n + 1];
+            int[] downOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                upOffsets[v + 1] = upOffsets[v] + up[v].length / ARC;
+                downOffsets[v + 1] = downOffsets[v] + down[v].length / ARC;
+            }
+            int[][] upArcs = columns(up, upOffsets[n]);
+            int[][] downArcs = columns(down, downOffsets[n]);
+            return new ContractionHierarchy(network, fingerprint(network), IntBuffer.wrap(rank),
+                    IntBuffer.wrap(upOffsets), IntBuffer.wrap(upArcs[0]), IntBuffer.wrap(upArcs[1]),
+                    IntBuffer.wrap(upArcs[2]), IntBuffer.wrap(downOffsets), IntBuffer.wrap(downArcs[0]),
+                    IntBuffer.wrap(downArcs[1]), IntBuffer.wrap(downArcs[2]));
+        }
+
+        /** Concatenates the arcs of every node, in node order, into neighbour, weight and middle columns. */
+        private int[][] columns(int[][] arcs, int count) {
+            int[][] columns = new int[3][count];
+            int arc = 0;
+            for (int v = 0; v < n; v++) {
+                for (int i = 0; i < arcs[v].length; i += ARC, arc++) {
+                    columns[0][arc] = arcs[v][i];
+                    columns[1][arc] = arcs[v][i + 1];
+                    columns[2][arc] = arcs[v][i + 2];
+                }
+                arcs[v] = null;
+            }
+            return columns;
+        }
+    }
+}
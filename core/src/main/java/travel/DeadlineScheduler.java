@@ -0,0 +1,330 @@
+package travel;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Earliest-deadline-first {@link TieredQueue}. Handles whose order carries a
+ * deadline wait in a binary heap keyed by deadline, then tier, then arrival,
+ * and every one of them leaves before any handle without a deadline. Those
+ * wait in a {@link TieredScheduler} and leave in the usual tier order, with
+ * its aging.
+ *
+ * The heap keeps the slot of every handle it holds, so {@link #remove} is
+ * O(log n) for a handle with a deadline and O(1) for one without. Not thread
+ * safe.
+ *
+ * A {@link #page} of dated handles is the next few in deadline order, picked
+ * by a walk down the heap that stops at any subtree due after the whole
+ * page. It needs no copy of the heap, but it looks again at the handles
+ * earlier pages passed that are still waiting, so the first pages are the
+ * cheap ones.
+ */
+class DeadlineScheduler implements TieredQueue {
+    private static final int NONE = -1;
+    private static final long UNDATED = Long.MAX_VALUE; // Cursor.rank once a walk has passed every dated handle
+
+    private final TieredScheduler undated;
+    private final IntToLongFunction deadlineOf;
+    private final int[] datedCount; // per tier
+
+    // Min-heap of handles; the key columns are indexed by handle
+    private int[] heap = new int[16];
+    private int heapSize;
+    private long[] deadlines = new long[16];
+    private long[] arrivals = new long[16];
+    private byte[] tierOf = new byte[16];
+    private int[] slotOf = new int[16]; // heap slot, NONE when not in the heap
+    private long arrived;
+
+    /** Tiers as in {@link TieredScheduler}; {@code deadlineOf} gives a handle's deadline, 0 for none. */
+    public DeadlineScheduler(int tierCount, IntToLongFunction deadlineOf) {
+        this.undated = new TieredScheduler(tierCount);
+        this.deadlineOf = deadlineOf;
+        this.datedCount = new int[tierCount];
+        Arrays.fill(slotOf, NONE);
+    }
+
+    @Override
+    public int tierCount() {
+        return undated.tierCount();
+    }
+
+    @Override
+    public void add(int tier, int handle) {
+        long deadline = deadlineOf.applyAsLong(handle);
+        if (deadline == 0) {
+            undated.add(tier, handle);
+            return;
+        }
+        if (tier < 0 || tier >= datedCount.length) {
+            throw new IndexOutOfBoundsException("No tier " + tier);
+        }
+        if (handle >= slotOf.length) {
+            grow(handle);
+        }
+        deadlines[handle] = deadline;
+        arrivals[handle] = arrived++;
+        tierOf[handle] = (byte) tier;
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        heap[heapSize] = handle;
+        slotOf[handle] = heapSize;
+        siftUp(heapSize++);
+        datedCount[tier]++;
+    }
+
+    @Override
+    public int poll() {
+        if (heapSize == 0) {
+            return undated.poll();
+        }
+        int handle = heap[0];
+        removeAt(0);
+        return handle;
+    }
+
+    @Override
+    public boolean remove(int tier, int handle) {
+        if (handle >= 0 && handle < slotOf.length && slotOf[handle] != NONE) {
+            if (tierOf[handle] != tier) {
+                return false;
+            }
+            removeAt(slotOf[handle]);
+            return true;
+        }
+        return undated.remove(tier, handle);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return heapSize == 0 && undated.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return heapSize + undated.size();
+    }
+
+    @Override
+    public int size(int tier) {
+        return datedCount[tier] + undated.size(tier);
+    }
+
+    @Override
+    public void setAgingLimit(long limit) {
+        undated.setAgingLimit(limit);
+    }
+
+    @Override
+    public <T> List<T> toList(int tier, IntFunction<? extends T> view) {
+        Integer[] dated = new Integer[datedCount[tier]];
+        int count = 0;
+        for (int i = 0; i < heapSize; i++) {
+            if (tierOf[heap[i]] == tier) {
+                dated[count++] = heap[i];
+            }
+        }
+        Arrays.sort(dated, this::compare);
+        List<T> items = new ArrayList<>(count + undated.size(tier));
+        for (int handle : dated) {
+            items.add(view.apply(handle));
+        }
+        items.addAll(undated.toList(tier, view));
+        return items;
+    }
+
+    @Override
+    public <T> List<List<T>> snapshot(IntFunction<? extends T> view) {
+        List<List<T>> tierItems = new ArrayList<>(datedCount.length);
+        for (int tier = 0; tier < datedCount.length; tier++) {
+            tierItems.add(toList(tier, view));
+        }
+        return tierItems;
+    }
+
+    @Override
+    public <T> List<T> page(int tier, Cursor cursor, IntPredicate filter, int max, IntFunction<? extends T> view) {
+        if (cursor.rank == UNDATED) {
+            return undated.page(tier, cursor, filter, max, view);
+        }
+        List<T> items = datedPage(tier, cursor, filter, max, view);
+        if (items.size() < max) {
+            cursor.started = false;
+            cursor.rank = UNDATED;
+            items.addAll(undated.page(tier, cursor, filter, max - items.size(), view));
+        }
+        return items;
+    }
+
+    /**
+     * The first {@code max} dated handles of {@code tier} after the cursor
+     * that {@code filter} accepts. They are gathered in a bounded max-heap of
+     * the page so far, and a subtree of the main heap whose root leaves after
+     * everything gathered, with the page full, is not entered.
+     */
+    private <T> List<T> datedPage(int tier, Cursor cursor, IntPredicate filter, int max, IntFunction<? extends T> view) {
+        int[] page = new int[Math.max(0, Math.min(max, datedCount[tier]))];
+        int found = 0;
+        if (page.length > 0 && heapSize > 0) {
+            int[] pending = new int[64]; // slots to visit; a depth-first walk holds at most one per level of the heap, plus one
+            int depth = 0;
+            pending[depth++] = 0;
+            while (depth > 0) {
+                int slot = pending[--depth];
+                int handle = heap[slot];
+                if (found == page.length && compare(handle, page[0]) > 0) {
+                    continue;
+                }
+                if (tierOf[handle] == tier && isAfter(handle, cursor) && filter.test(handle)) {
+                    if (found < page.length) {
+                        page[found] = handle;
+                        siftUpLatest(page, found++);
+                    } else {
+                        page[0] = handle;
+                        siftDownLatest(page, found);
+                    }
+                }
+                int child = 2 * slot + 1;
+                if (child < heapSize) {
+                    pending[depth++] = child;
+                }
+                if (child + 1 < heapSize) {
+                    pending[depth++] = child + 1;
+                }
+            }
+        }
+        // Heapsort the page into leaving order
+        for (int end = found - 1; end > 0; end--) {
+            int latest = page[0];
+            page[0] = page[end];
+            page[end] = latest;
+            siftDownLatest(page, end);
+        }
+        List<T> items = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            items.add(view.apply(page[i]));
+        }
+        if (found > 0) {
+            cursor.started = true;
+            cursor.rank = deadlines[page[found - 1]];
+            cursor.sequence = arrivals[page[found - 1]];
+        }
+        return items;
+    }
+
+    /** Whether a dated handle leaves its tier after the last one the cursor passed. */
+    private boolean isAfter(int handle, Cursor cursor) {
+        if (!cursor.started) {
+            return true;
+        }
+        if (deadlines[handle] != cursor.rank) {
+            return deadlines[handle] > cursor.rank;
+        }
+        return arrivals[handle] > cursor.sequence;
+    }
+
+    /** Sift for the page max-heap, whose root is the handle leaving last. */
+    private void siftUpLatest(int[] page, int slot) {
+        int handle = page[slot];
+        while (slot > 0) {
+            int parentSlot = (slot - 1) >>> 1;
+            if (compare(page[parentSlot], handle) >= 0) {
+                break;
+            }
+            page[slot] = page[parentSlot];
+            slot = parentSlot;
+        }
+        page[slot] = handle;
+    }
+
+    /** Sifts the root of the first {@code size} entries of the page max-heap down. */
+    private void siftDownLatest(int[] page, int size) {
+        int slot = 0;
+        int handle = page[0];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            if (child + 1 < size && compare(page[child + 1], page[child]) > 0) {
+                child++;
+            }
+            if (compare(handle, page[child]) >= 0) {
+                break;
+            }
+            page[slot] = page[child];
+            slot = child;
+        }
+        page[slot] = handle;
+    }
+
+    private void removeAt(int slot) {
+        int handle = heap[slot];
+        slotOf[handle] = NONE;
+        datedCount[tierOf[handle]]--;
+        int last = heap[--heapSize];
+        if (slot < heapSize) {
+            heap[slot] = last;
+            slotOf[last] = slot;
+            siftDown(slot);
+            siftUp(slotOf[last]);
+        }
+    }
+
+    /** Deadline, then tier, then arrival. */
+    private int compare(int a, int b) {
+        int order = Long.compare(deadlines[a], deadlines[b]);
+        if (order == 0) {
+            order = Integer.compare(tierOf[a], tierOf[b]);
+        }
+        return order != 0 ? order : Long.compare(arrivals[a], arrivals[b]);
+    }
+
+    private void siftUp(int slot) {
+        int handle = heap[slot];
+        while (slot > 0) {
+            int parentSlot = (slot - 1) >>> 1;
+            int parent = heap[parentSlot];
+            if (compare(parent, handle) <= 0) {
+                break;
+            }
+            heap[slot] = parent;
+            slotOf[parent] = slot;
+            slot = parentSlot;
+        }
+        heap[slot] = handle;
+        slotOf[handle] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int handle = heap[slot];
+        int half = heapSize >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < heapSize && compare(heap[right], heap[child]) < 0) {
+                child = right;
+            }
+            if (compare(handle, heap[child]) <= 0) {
+                break;
+            }
+            heap[slot] = heap[child];
+            slotOf[heap[slot]] = slot;
+            slot = child;
+        }
+        heap[slot] = handle;
+        slotOf[handle] = slot;
+    }
+
+    private void grow(int handle) {
+        int capacity = Math.max(handle + 1, slotOf.length * 2);
+        int old = slotOf.length;
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        arrivals = Arrays.copyOf(arrivals, capacity);
+        tierOf = Arrays.copyOf(tierOf, capacity);
+        slotOf = Arrays.copyOf(slotOf, capacity);
+        Arrays.fill(slotOf, old, capacity, NONE);
+    }
+}
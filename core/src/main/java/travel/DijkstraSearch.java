@@ -0,0 +1,118 @@
+package travel;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Reusable Dijkstra workspace over a {@link RoadNetwork}. Distances and
+ * predecessors live in int arrays that are validated per search with a stamp,
+ * so starting a search does not clear anything and a search allocates nothing
+ * once the arrays have grown to the size of the graph. Locations closed by an
+ * {@link AvailabilityMask} are reached but never expanded, except the source.
+ * One instance serves one thread.
+ */
+class DijkstraSearch {
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final RoadNetwork graph;
+    private final IndexedMinHeap heap = new IndexedMinHeap(16);
+    private AvailabilityMask mask; // null when every location is open
+    private int[] dist = new int[16];
+    private int[] pred = new int[16];
+    private int[] stamp = new int[16];
+    private int currentStamp;
+    private int settled;
+
+    public DijkstraSearch(RoadNetwork graph) {
+        this.graph = graph;
+    }
+
+    /** Keeps later searches from passing through the locations {@code mask} closes; null lifts it. */
+    public void setMask(AvailabilityMask mask) {
+        this.mask = mask;
+    }
+
+    /** Computes the distance from {@code source} to every node of the graph. */
+    public void run(int source) {
+        begin();
+        IntBuffer offsets = graph.offsets();
+        IntBuffer targets = graph.targets();
+        IntBuffer weights = graph.weights();
+
+        reach(source, 0, -1);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            settled++;
+            if (mask != null && node != source && mask.isClosed(node)) {
+                continue;
+            }
+            int nodeDist = dist[node];
+            for (int arc = offsets.get(node), end = offsets.get(node + 1); arc < end; arc++) {
+                int next = targets.get(arc);
+                int newDist = nodeDist + weights.get(arc);
+                if (newDist < distance(next)) {
+                    reach(next, newDist, node);
+                }
+            }
+        }
+    }
+
+    public int distance(int node) {
+        return node < stamp.length && stamp[node] == currentStamp ? dist[node] : UNREACHED;
+    }
+
+    /** Node before {@code node} on its shortest path from the source, or -1 for the source and unreached nodes. */
+    public int predecessor(int node) {
+        return node < stamp.length && stamp[node] == currentStamp ? pred[node] : -1;
+    }
+
+    /** Number of nodes taken off the heap by the last search. */
+    public int settledCount() {
+        return settled;
+    }
+
+    /** Writes the distances of the last search into {@code row}, one slot per node. */
+    public void copyDistances(int[] row) {
+        for (int node = 0; node < row.length; node++) {
+            row[node] = distance(node);
+        }
+    }
+
+    /** Writes the predecessor tree of the last search into {@code row}, one slot per node. */
+    public void copyPredecessors(int[] row) {
+        for (int node = 0; node < row.length; node++) {
+            row[node] = predecessor(node);
+        }
+    }
+
+    /** Copies the distances of the last search into a read-only map keyed by location code. */
+    public Map<String, Integer> distances() {
+        int[] snapshot = new int[graph.nodeCount()];
+        copyDistances(snapshot);
+        return new DistanceView(graph, snapshot);
+    }
+
+    private void begin() {
+        int n = graph.nodeCount();
+        if (n > dist.length) {
+            int capacity = Math.max(n, dist.length * 2);
+            dist = Arrays.copyOf(dist, capacity);
+            pred = Arrays.copyOf(pred, capacity);
+            stamp = Arrays.copyOf(stamp, capacity);
+            heap.ensureCapacity(capacity);
+        }
+        if (++currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            currentStamp = 1;
+        }
+        heap.clear();
+        settled = 0;
+    }
+
+    private void reach(int node, int newDist, int from) {
+        dist[node] = newDist;
+        pred[node] = from;
+        stamp[node] = currentStamp;
+        heap.offer(node, newDist);
+    }
+}
@@ -0,0 +1,132 @@
+package travel;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loopback load for a {@link DispatchServer}. Each client connection sends
+ * its requests in windows of the pipeline depth: it writes a window, flushes
+ * once, and reads the answers. A request's latency runs from that flush to the
+ * arrival of its answer. Three in five requests queue an order, three in ten
+ * dispatch one, and the rest are route and size queries, all for random
+ * districts. Prints requests per second and latency percentiles for every
+ * combination of client count and depth.
+ *
+ * Without a port a server is started in this process over a fresh queue with
+ * the district roads, every location available and events switched off.
+ *
+ * Usage: java travel.DispatchLoadGenerator [requestsPerClient] [clientCounts, e.g. 1,4,16] [depths, e.g. 1,32] [port]
+ */
+public class DispatchLoadGenerator {
+    private static final String LOCATIONS = "ABCDEFGH";
+
+    public static void main(String[] args) throws Exception {
+        int requestsPerClient = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String clientCounts = args.length > 1 ? args[1] : "1,4,16";
+        String depths = args.length > 2 ? args[2] : "1,32";
+
+        DispatchServer local = null;
+        int port;
+        if (args.length > 3) {
+            port = Integer.parseInt(args[3]);
+        } else {
+            OrderQueue1 queue = new OrderQueue1();
+            queue.setEventSink(EventSink.NONE);
+            queue.addDistrictRoutes();
+            queue.addLocations();
+            local = new DispatchServer(queue, 0).start();
+            port = local.port();
+            System.out.println("Serving on port " + port + " with "
+                    + (local.usesVirtualThreads() ? "virtual" : "platform") + " threads");
+        }
+
+        System.out.println("Clients  Depth  Requests    Seconds  Requests/sec   p50 us   p99 us  p99.9 us   max us  Errors");
+        for (String clients : clientCounts.split(",")) {
+            for (String depth : depths.split(",")) {
+                run(port, Integer.parseInt(clients.trim()), Integer.parseInt(depth.trim()), requestsPerClient);
+            }
+        }
+        if (local != null) {
+            local.close();
+        }
+    }
+
+    private static void run(int port, int clients, int depth, int requestsPerClient) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<?>> running = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            running.add(pool.submit(() -> {
+                client(port, depth, requestsPerClient, new SplittableRandom(seed), latency, errors, start);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> client : running) {
+            client.get();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        pool.shutdown();
+
+        long total = (long) clients * requestsPerClient;
+        System.out.printf("%7d  %5d  %8d  %9.2f  %12.0f  %7.1f  %7.1f  %8.1f  %7.1f  %6d%n",
+                clients, depth, total, seconds, total / seconds,
+                latency.percentile(50) / 1e3, latency.percentile(99) / 1e3,
+                latency.percentile(99.9) / 1e3, latency.max() / 1e3, errors.sum());
+    }
+
+    private static void client(int port, int depth, int requests, SplittableRandom random,
+                               LatencyHistogram latency, LongAdder errors, CountDownLatch start) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            start.await();
+            int sent = 0;
+            while (sent < requests) {
+                int window = Math.min(depth, requests - sent);
+                for (int i = 0; i < window; i++) {
+                    out.write(request(random, sent + i));
+                    out.write('\n');
+                }
+                out.flush();
+                long flushed = System.nanoTime();
+                for (int i = 0; i < window; i++) {
+                    String answer = in.readLine();
+                    if (answer == null) {
+                        throw new EOFException("The server closed the connection");
+                    }
+                    latency.record(System.nanoTime() - flushed);
+                    if (answer.startsWith("ERR")) {
+                        errors.increment();
+                    }
+                }
+                sent += window;
+            }
+            out.write("QUIT\n");
+            out.flush();
+            in.readLine();
+        }
+    }
+
+    private static String request(SplittableRandom random, int sequence) {
+        int kind = random.nextInt(10);
+        char location = LOCATIONS.charAt(random.nextInt(LOCATIONS.length()));
+        if (kind < 6) {
+            return "ENQUEUE " + (kind == 0 ? 1 : 2) + " " + location + " order-" + sequence;
+        } else if (kind < 9) {
+            return "DEQUEUE";
+        } else if (random.nextBoolean()) {
+            return "ROUTE A " + location;
+        }
+        return "SIZE";
+    }
+}
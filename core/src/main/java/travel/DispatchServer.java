@@ -0,0 +1,630 @@
+package travel;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless front end for an {@link OrderQueue1}: a line protocol on a
+ * loopback port, so any number of clients can queue and dispatch orders at
+ * once instead of one operator at the menu.
+ *
+ * Each connection gets a thread of its own, virtual on JDK 21 and later. It
+ * parses requests and hands them to a single dispatcher thread, the only one
+ * that touches the queue. The dispatcher takes everything waiting at once and
+ * queues each run of consecutive ENQUEUE and BULK requests with one
+ * {@link OrderQueue1#enqueueChecked} call, so a whole run shares one journal
+ * commit. Clients may pipeline: a connection keeps reading while requests are
+ * buffered and only waits for answers, which go back in request order, once
+ * its input runs dry.
+ *
+ * <pre>
+ * PING                            PONG
+ * ENQUEUE priority location name  OK | ERR reason
+ * DEADLINE minutes priority location name
+ *                                 OK | ERR reason, for an order due within minutes (at least 1)
+ * BULK count                      OK accepted rejected, after count lines of
+ *                                 "priority location name"; over 100000 is refused
+ *                                 and the connection closed, as its lines would follow
+ * DEQUEUE                         ORDER priority location name | EMPTY
+ * DRAIN max                       ORDERS n, then n lines "priority location name"
+ * VIEW priority [limit [location]]
+ *                                 ORDERS n, the first limit (default 100) waiting with
+ *                                 priority (0 for any), for location if given
+ * MORE [limit]                    ORDERS n, the next limit of this connection's last VIEW;
+ *                                 fewer than limit once it is finished
+ * SIZE                            SIZE fast normal
+ * ROUTE from to                   ROUTE distance from ... to | NOROUTE
+ * NEAR latitude longitude km [limit]
+ *                                 ORDERS n, the closest limit (default 100) waiting within km
+ * NEAREST latitude longitude      ORDER priority location name | EMPTY, dispatching the closest
+ * LOCATIONS [letters]             LOCATIONS letters, after setting them if given
+ * QUIT                            BYE, then the connection is closed
+ * SHUTDOWN                        BYE, then the server stops
+ * </pre>
+ *
+ * A VIEW and its MOREs page through the live queue, at most 10000 orders at
+ * a time, while other clients keep queuing and dispatching.
+ */
+class DispatchServer implements AutoCloseable {
+    public static final int MAX_BATCH = 1024;
+    public static final int MAX_PIPELINE = 256;
+    public static final int MAX_BULK = 100_000; // orders in one BULK, all held in memory until queued
+    private static final int DEFAULT_VIEW_LIMIT = 100;
+    private static final int MAX_VIEW_LIMIT = 10_000;
+    private static final long WAIT_PARK_NANOS = 10_000_000;
+    private static final long IDLE_CHECK_SECONDS = 1; // how often an idle dispatcher fires deadline timers
+
+    private final OrderQueue1 queue;
+    private final ServerSocket listener;
+    private final ExecutorService connections;
+    private final boolean virtualThreads;
+    private final BlockingQueue<Request> inbox = new LinkedBlockingQueue<>();
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch stoppedLatch = new CountDownLatch(1);
+    private final Thread acceptor;
+    private final Thread dispatcher;
+    private volatile boolean stopped;
+    private boolean stopping; // dispatcher thread only
+
+    // Run of enqueues waiting for one enqueueChecked call; dispatcher thread only
+    private String[] names = new String[64];
+    private String[] locations = new String[64];
+    private int[] priorities = new int[64];
+    private boolean[] accepted = new boolean[64];
+    private int runLength;
+    private final List<Request> runRequests = new ArrayList<>();
+    private final Route route = new Route();
+
+    private LatencyHistogram batchSizes; // null until instrumented
+    private LongAdder requests;
+
+    /** Serves {@code queue} on {@code port} of the loopback interface; port 0 picks a free one. */
+    public DispatchServer(OrderQueue1 queue, int port) throws IOException {
+        this.queue = queue;
+        this.listener = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.connections = virtual != null ? virtual : Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "dispatch-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "dispatch-queue");
+        this.acceptor = new Thread(this::accept, "dispatch-accept");
+        acceptor.setDaemon(true);
+    }
+
+    /**
+     * One virtual thread per task on JDK 21 and later, looked up reflectively
+     * since the build targets 17; null where virtual threads are missing or
+     * still a preview feature.
+     */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /** Publishes the number of requests served and the sizes of the batches the dispatcher ran into {@code metrics}. */
+    public void instrument(Metrics metrics) {
+        batchSizes = metrics.histogram("server.batch.size");
+        requests = metrics.counter("server.requests");
+    }
+
+    public DispatchServer start() {
+        dispatcher.start();
+        acceptor.start();
+        return this;
+    }
+
+    public int port() {
+        return listener.getLocalPort();
+    }
+
+    /** True when connections run on virtual threads rather than a pool of platform threads. */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** Blocks until a client sends SHUTDOWN or the server is closed. */
+    public void awaitShutdown() throws InterruptedException {
+        stoppedLatch.await();
+    }
+
+    /**
+     * Stops accepting connections, lets every open connection answer what it
+     * has already sent, and stops the dispatcher.
+     */
+    @Override
+    public void close() throws IOException {
+        listener.close();
+        if (!stopped) {
+            inbox.add(new Request(Kind.SHUTDOWN, null, null));
+        }
+        boolean interrupted = false;
+        while (dispatcher.isAlive()) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.shutdownInput(); // the connection reads end of stream, answers and closes
+            } catch (IOException e) {
+                // already closed by the client
+            }
+        }
+        connections.shutdown();
+        try {
+            if (!connections.awaitTermination(5, TimeUnit.SECONDS)) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        while (!listener.isClosed()) {
+            Socket socket;
+            try {
+                socket = listener.accept();
+            } catch (IOException e) {
+                return; // closed
+            }
+            sockets.add(socket);
+            try {
+                connections.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                sockets.remove(socket);
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            ArrayDeque<Request> pending = new ArrayDeque<>();
+            Session session = new Session();
+            boolean open = true;
+            while (open) {
+                String line = in.readLine();
+                if (line == null) {
+                    break;
+                }
+                Request request = parse(line.trim(), in);
+                if (request == null) {
+                    continue;
+                }
+                request.session = session;
+                pending.add(request);
+                if (request.kind == Kind.QUIT) {
+                    open = false;
+                } else if (!request.done) {
+                    submit(request);
+                }
+                if (!open || pending.size() >= MAX_PIPELINE || !in.ready()) {
+                    answer(pending, out);
+                }
+            }
+            answer(pending, out);
+        } catch (IOException e) {
+            // the client went away; nothing to answer
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private void submit(Request request) {
+        if (stopped) {
+            request.response = "ERR server is shutting down";
+            request.done = true;
+        } else {
+            inbox.add(request);
+        }
+    }
+
+    /** Waits for the pending requests in order and writes their answers with one flush. */
+    private void answer(ArrayDeque<Request> pending, Writer out) throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Request request; (request = pending.poll()) != null; ) {
+            while (!request.done) {
+                if (stopped && !request.done) {
+                    request.response = "ERR server is shutting down";
+                    break;
+                }
+                LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+            }
+            out.write(request.response);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /** The request on {@code line}, reading the body of a BULK from {@code in}; null for a blank line. */
+    private static Request parse(String line, BufferedReader in) throws IOException {
+        if (line.isEmpty()) {
+            return null;
+        }
+        String[] words = line.split("\\s+", 4);
+        Kind kind;
+        try {
+            kind = Kind.valueOf(words[0].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Request.answered("ERR unknown request " + words[0]);
+        }
+        switch (kind) {
+            case PING:
+                return Request.answered("PONG");
+            case QUIT:
+                return new Request(Kind.QUIT, null, "BYE");
+            case ENQUEUE:
+                if (words.length < 4 || !isInt(words[1])) {
+                    return Request.answered("ERR usage: ENQUEUE priority location name");
+                }
+                return new Request(kind, words, null);
+            case BULK:
+                if (words.length != 2 || !isInt(words[1]) || Integer.parseInt(words[1]) < 0) {
+                    return Request.answered("ERR usage: BULK count");
+                }
+                int count = Integer.parseInt(words[1]);
+                if (count > MAX_BULK) {
+                    return new Request(Kind.QUIT, null, "ERR BULK count above " + MAX_BULK);
+                }
+                String[] body = new String[count];
+                for (int i = 0; i < count; i++) {
+                    body[i] = in.readLine();
+                    if (body[i] == null) {
+                        throw new EOFException("BULK ended after " + i + " of " + count + " orders");
+                    }
+                }
+                Request bulk = new Request(kind, words, null);
+                bulk.body = body;
+                return bulk;
+            case DRAIN:
+            case VIEW:
+                if (words.length < 2 || !isInt(words[1]) || (words.length > 2 && !isInt(words[2]))) {
+                    return Request.answered(kind == Kind.DRAIN ? "ERR usage: DRAIN max" : "ERR usage: VIEW priority [limit]");
+                }
+                return new Request(kind, words, null);
+            case MORE:
+                if (words.length > 2 || (words.length == 2 && !isInt(words[1]))) {
+                    return Request.answered("ERR usage: MORE [limit]");
+                }
+                return new Request(kind, words, null);
+            case DEADLINE:
+                words = line.split("\\s+", 5);
+                if (words.length < 5 || !isInt(words[1]) || !isInt(words[2])) {
+                    return Request.answered("ERR usage: DEADLINE minutes priority location name");
+                }
+                return new Request(kind, words, null);
+            case NEAR:
+                words = line.split("\\s+", 6);
+                if (words.length < 4 || words.length > 5 || !isDouble(words[1]) || !isDouble(words[2])
+                        || !isDouble(words[3]) || (words.length > 4 && !isInt(words[4]))) {
+                    return Request.answered("ERR usage: NEAR latitude longitude km [limit]");
+                }
+                return new Request(kind, words, null);
+            case NEAREST:
+                if (words.length != 3 || !isDouble(words[1]) || !isDouble(words[2])) {
+                    return Request.answered("ERR usage: NEAREST latitude longitude");
+                }
+                return new Request(kind, words, null);
+            case ROUTE:
+                if (words.length != 3) {
+                    return Request.answered("ERR usage: ROUTE from to");
+                }
+                return new Request(kind, words, null);
+            default:
+                return new Request(kind, words, null);
+        }
+    }
+
+    private static boolean isInt(String word) {
+        try {
+            Integer.parseInt(word);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDouble(String word) {
+        try {
+            return Double.isFinite(Double.parseDouble(word));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (!stopping) {
+                Request first = inbox.poll(IDLE_CHECK_SECONDS, TimeUnit.SECONDS);
+                if (first == null) {
+                    queue.checkDeadlines();
+                    continue;
+                }
+                batch.add(first);
+                inbox.drainTo(batch, MAX_BATCH - 1);
+                try {
+                    execute(batch);
+                } catch (RuntimeException e) {
+                    // Whatever is unanswered failed with it; the orders of an unfinished run are not retried
+                    clearRun();
+                    for (Request request : batch) {
+                        if (request.response == null) {
+                            request.response = "ERR " + e;
+                        }
+                    }
+                }
+                if (batchSizes != null) {
+                    batchSizes.record(batch.size());
+                    requests.add(batch.size());
+                }
+                for (Request request : batch) {
+                    request.done = true;
+                    if (request.waiter != null) {
+                        LockSupport.unpark(request.waiter);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            try {
+                listener.close();
+            } catch (IOException e) {
+                // nothing more to accept either way
+            }
+            stoppedLatch.countDown();
+        }
+    }
+
+    private void execute(List<Request> batch) {
+        for (Request request : batch) {
+            switch (request.kind) {
+                case ENQUEUE:
+                    addToRun(request, request.words[3], request.words[2], Integer.parseInt(request.words[1]));
+                    break;
+                case BULK:
+                    for (String line : request.body) {
+                        String[] fields = line.trim().split("\\s+", 3);
+                        if (fields.length == 3 && isInt(fields[0])) {
+                            addToRun(request, fields[2], fields[1], Integer.parseInt(fields[0]));
+                        } else {
+                            request.rejected++;
+                        }
+                    }
+                    if (request.runCount == 0) {
+                        request.response = "OK 0 " + request.rejected;
+                    }
+                    break;
+                default:
+                    flushRun();
+                    request.response = run(request);
+            }
+        }
+        flushRun();
+    }
+
+    private void addToRun(Request request, String name, String location, int priority) {
+        if (runLength == names.length) {
+            int capacity = runLength * 2;
+            names = Arrays.copyOf(names, capacity);
+            locations = Arrays.copyOf(locations, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            accepted = Arrays.copyOf(accepted, capacity);
+        }
+        if (request.runCount == 0) {
+            request.runStart = runLength;
+            runRequests.add(request);
+        }
+        names[runLength] = name;
+        locations[runLength] = location.toUpperCase(Locale.ROOT);
+        priorities[runLength] = priority;
+        runLength++;
+        request.runCount++;
+    }
+
+    /** Queues the run of enqueues gathered so far with one call, and so one journal commit. */
+    private void flushRun() {
+        if (runLength == 0) {
+            return;
+        }
+        queue.enqueueChecked(names, locations, priorities, runLength, accepted);
+        for (Request request : runRequests) {
+            int kept = 0;
+            for (int i = request.runStart; i < request.runStart + request.runCount; i++) {
+                if (accepted[i]) {
+                    kept++;
+                }
+            }
+            if (request.kind == Kind.BULK) {
+                request.response = "OK " + kept + " " + (request.runCount - kept + request.rejected);
+            } else if (kept == 1) {
+                request.response = "OK";
+            } else if (!queue.isLocationValid(locations[request.runStart])) {
+                request.response = "ERR location " + locations[request.runStart] + " is not available today";
+            } else {
+                request.response = "ERR priority must be 1 (fast) or 2 (normal)";
+            }
+        }
+        clearRun();
+    }
+
+    private void clearRun() {
+        Arrays.fill(names, 0, runLength, null);
+        Arrays.fill(locations, 0, runLength, null);
+        runRequests.clear();
+        runLength = 0;
+    }
+
+    private String run(Request request) {
+        String[] words = request.words;
+        switch (request.kind) {
+            case DEQUEUE: {
+                Order order = queue.queuedCount(1) + queue.queuedCount(2) == 0 ? null : queue.dequeue();
+                return order == null ? "EMPTY" : "ORDER " + describe(order);
+            }
+            case DRAIN: {
+                int max = Integer.parseInt(words[1]);
+                StringBuilder lines = new StringBuilder();
+                int count = 0;
+                while (count < max && queue.queuedCount(1) + queue.queuedCount(2) > 0) {
+                    lines.append('\n').append(describe(queue.dequeue()));
+                    count++;
+                }
+                return "ORDERS " + count + lines;
+            }
+            case VIEW: {
+                int priority = Integer.parseInt(words[1]);
+                if (priority < 0 || priority > 2) {
+                    return "ERR priority must be 0 (any), 1 (fast) or 2 (normal)";
+                }
+                String location = words.length > 3 ? words[3].toUpperCase(Locale.ROOT) : null;
+                request.session.listing = queue.listOrders(priority, location);
+                return nextPage(request.session.listing, words.length > 2 ? Integer.parseInt(words[2]) : DEFAULT_VIEW_LIMIT);
+            }
+            case MORE:
+                if (request.session.listing == null) {
+                    return "ERR no VIEW to continue";
+                }
+                return nextPage(request.session.listing, words.length > 1 ? Integer.parseInt(words[1]) : DEFAULT_VIEW_LIMIT);
+            case DEADLINE: {
+                int minutes = Integer.parseInt(words[1]);
+                int priority = Integer.parseInt(words[2]);
+                String location = words[3].toUpperCase(Locale.ROOT);
+                if (minutes < 1) {
+                    return "ERR minutes must be positive";
+                } else if (priority < 1 || priority > 2) {
+                    return "ERR priority must be 1 (fast) or 2 (normal)";
+                } else if (!queue.isLocationValid(location)) {
+                    return "ERR location " + location + " is not available today";
+                }
+                queue.enqueue(words[4], priority, location,
+                        queue.currentTimeMillis() + TimeUnit.MINUTES.toMillis(minutes));
+                return "OK";
+            }
+            case NEAR: {
+                int limit = words.length > 4 ? Integer.parseInt(words[4]) : DEFAULT_VIEW_LIMIT;
+                double latitude = Double.parseDouble(words[1]);
+                double longitude = Double.parseDouble(words[2]);
+                if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+                    return "ERR not a position: " + words[1] + " " + words[2];
+                }
+                List<Order> near = queue.ordersWithin(latitude, longitude, Double.parseDouble(words[3]));
+                int count = Math.max(0, Math.min(limit, near.size()));
+                StringBuilder lines = new StringBuilder("ORDERS ").append(count);
+                for (int i = 0; i < count; i++) {
+                    lines.append('\n').append(describe(near.get(i)));
+                }
+                return lines.toString();
+            }
+            case NEAREST: {
+                Order order = queue.dequeueNearest(Double.parseDouble(words[1]), Double.parseDouble(words[2]));
+                return order == null ? "EMPTY" : "ORDER " + describe(order);
+            }
+            case SIZE:
+                return "SIZE " + queue.queuedCount(1) + " " + queue.queuedCount(2);
+            case ROUTE: {
+                queue.route(words[1].toUpperCase(Locale.ROOT), words[2].toUpperCase(Locale.ROOT), route);
+                if (!route.isReachable()) {
+                    return "NOROUTE";
+                }
+                StringBuilder line = new StringBuilder("ROUTE ").append(route.distance());
+                for (int i = 0; i < route.length(); i++) {
+                    line.append(' ').append(route.location(i));
+                }
+                return line.toString();
+            }
+            case LOCATIONS:
+                if (words.length > 1) {
+                    queue.setAvailableLocations(words[1]);
+                }
+                return "LOCATIONS " + queue.availableLocationLetters();
+            case SHUTDOWN:
+                stopping = true;
+                return "BYE";
+            default:
+                return "ERR unexpected request " + request.kind;
+        }
+    }
+
+    private static String nextPage(OrderQueue1.Listing listing, int limit) {
+        List<Order> page = listing.next(Math.max(0, Math.min(limit, MAX_VIEW_LIMIT)));
+        StringBuilder lines = new StringBuilder("ORDERS ").append(page.size());
+        for (Order order : page) {
+            lines.append('\n').append(describe(order));
+        }
+        return lines.toString();
+    }
+
+    private static String describe(Order order) {
+        return order.getPriority() + " " + order.getLocation() + " " + order.getName();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing to release
+        }
+    }
+
+    private enum Kind { PING, ENQUEUE, DEADLINE, BULK, DEQUEUE, DRAIN, VIEW, MORE, SIZE, ROUTE, NEAR, NEAREST, LOCATIONS, QUIT, SHUTDOWN }
+
+    /** One request of one connection; the dispatcher fills in the response, then sets done. */
+    private static final class Request {
+        final Kind kind;
+        final String[] words;
+        final Thread waiter = Thread.currentThread();
+        String[] body; // order lines of a BULK
+        String response;
+        volatile boolean done;
+        int runStart; // this request's orders in the current run of enqueues
+        int runCount;
+        int rejected; // BULK lines that did not parse
+        Session session; // the connection's, for VIEW and MORE
+
+        Request(Kind kind, String[] words, String response) {
+            this.kind = kind;
+            this.words = words;
+            this.response = response;
+            this.done = response != null; // answered without the dispatcher
+        }
+
+        static Request answered(String response) {
+            return new Request(null, null, response);
+        }
+    }
+
+    /** What the dispatcher keeps for one connection between its requests; dispatcher thread only. */
+    private static final class Session {
+        OrderQueue1.Listing listing; // the last VIEW, continued by MORE
+    }
+}
@@ -0,0 +1,66 @@
+package travel;
+
+import java.util.*;
+
+/**
+ * Map view of one search result. Unreachable locations map to
+ * {@link Integer#MAX_VALUE} and unknown locations are absent, as with the
+ * original {@code HashMap} result.
+ */
+class DistanceView extends AbstractMap<String, Integer> {
+    private final RoadNetwork graph;
+    private final int[] dist;
+
+    DistanceView(RoadNetwork graph, int[] dist) {
+        this.graph = graph;
+        this.dist = dist;
+    }
+
+    @Override
+    public Integer get(Object key) {
+        int node = key instanceof String ? graph.idOf((String) key) : -1;
+        return node >= 0 && node < dist.length ? dist[node] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return dist.length;
+    }
+
+    @Override
+    public Set<Entry<String, Integer>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Integer>> iterator() {
+                return new Iterator<>() {
+                    private int node;
+
+                    @Override
+                    public boolean hasNext() {
+                        return node < dist.length;
+                    }
+
+                    @Override
+                    public Entry<String, Integer> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, Integer> entry = new SimpleImmutableEntry<>(graph.codeOf(node), dist[node]);
+                        node++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return dist.length;
+            }
+        };
+    }
+}
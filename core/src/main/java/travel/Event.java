@@ -0,0 +1,69 @@
+package travel;
+
+/**
+ * One reported event, kept as the values it was reported with. Sinks reuse
+ * instances: the console sink fills and prints a single one, the async sink
+ * preallocates a ring of them. {@link #appendTo} is the one place the console
+ * wording lives.
+ */
+final class Event {
+    enum Kind { ORDER_ADDED, ORDER_DISPATCHED, QUEUE_EMPTY, BATCH_DISPATCHED, ROUTE_ADDED, ROUTE_COMPUTED, MESSAGE }
+
+    private static final String NEWLINE = System.lineSeparator();
+
+    Kind kind;
+    Order order;
+    String text; // message text, order name, or the start of an added road
+    String location;
+    String end;
+    int value; // priority of an added order, distance of an added road, or size of a batch
+    Route route;
+
+    Event clear() {
+        order = null;
+        text = null;
+        location = null;
+        end = null;
+        route = null;
+        return this;
+    }
+
+    void appendTo(StringBuilder out) {
+        switch (kind) {
+            case ORDER_ADDED:
+                out.append("Order added: ").append(text)
+                        .append(" with priority: ").append(value)
+                        .append(", location: ").append(location).append(NEWLINE);
+                break;
+            case ORDER_DISPATCHED:
+                out.append(order.getPriority() == 1 ? "Fast" : "Normal")
+                        .append(" delivery order processed: ").append(order).append(NEWLINE);
+                break;
+            case QUEUE_EMPTY:
+                out.append("Queue is empty").append(NEWLINE);
+                break;
+            case BATCH_DISPATCHED:
+                out.append("Batch of ").append(value).append(" orders processed").append(NEWLINE);
+                break;
+            case ROUTE_ADDED:
+                out.append("Route added: ").append(text).append(" to ").append(end)
+                        .append(" with distance ").append(value).append(NEWLINE);
+                break;
+            case ROUTE_COMPUTED:
+                if (route.isReachable()) {
+                    out.append("Shortest path from ").append(route.start()).append(" to ").append(route.end())
+                            .append(": ").append(route.distance()).append(" units").append(NEWLINE);
+                    out.append("Route: ");
+                    for (int i = 0; i < route.length(); i++) {
+                        out.append(i == 0 ? "" : " -> ").append(route.location(i));
+                    }
+                    out.append(NEWLINE);
+                } else {
+                    out.append("No path found from ").append(route.start()).append(" to ").append(route.end()).append(NEWLINE);
+                }
+                break;
+            default:
+                out.append(text).append(NEWLINE);
+        }
+    }
+}
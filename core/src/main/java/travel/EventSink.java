@@ -0,0 +1,84 @@
+package travel;
+
+/**
+ * Where the order queues report what they do. Callers hand over the objects
+ * they already hold (the order, the route) rather than preformatted text, so
+ * a sink that is switched off or filtered by level costs no string building,
+ * and a sink that writes on another thread keeps the formatting off the
+ * caller's path.
+ *
+ * The console sink prints every event as it happens, exactly as the command
+ * line applications always have; {@link AsyncEventSink} batches the same
+ * lines on a background thread, and {@link #NONE} drops everything.
+ */
+interface EventSink extends AutoCloseable {
+    enum Level { DEBUG, INFO, WARN }
+
+    /** Discards every event; for benchmarks and embedded use. */
+    EventSink NONE = new EventSink() {
+        @Override
+        public boolean isEnabled(Level level) {
+            return false;
+        }
+
+        @Override
+        public void orderAdded(String name, int priority, String location) {
+        }
+
+        @Override
+        public void orderDispatched(Order order) {
+        }
+
+        @Override
+        public void queueEmpty() {
+        }
+
+        @Override
+        public void batchDispatched(int orders) {
+        }
+
+        @Override
+        public void routeAdded(String start, String end, int distance) {
+        }
+
+        @Override
+        public void routeComputed(Route route) {
+        }
+
+        @Override
+        public void message(Level level, String text) {
+        }
+    };
+
+    boolean isEnabled(Level level);
+
+    /** DEBUG: an order entered the queue. */
+    void orderAdded(String name, int priority, String location);
+
+    /** INFO: an order left the queue; priority 1 is reported as fast delivery. */
+    void orderDispatched(Order order);
+
+    /** WARN: a dequeue found nothing waiting. */
+    void queueEmpty();
+
+    /** INFO: a dispatcher drained {@code orders} orders at once. */
+    void batchDispatched(int orders);
+
+    /** DEBUG: a road was added to the network. */
+    void routeAdded(String start, String end, int distance);
+
+    /** INFO: a route was computed for an order. The route may be reused by the caller once this returns. */
+    void routeComputed(Route route);
+
+    /** Any other line, at the given level. */
+    void message(Level level, String text);
+
+    /** Returns once every event reported so far has been written. */
+    default void flush() {
+    }
+
+    @Override
+    default void close() {
+        flush();
+    }
+}
@@ -0,0 +1,285 @@
+package travel;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plans a dispatch run for a fleet instead of a single vehicle. Every vehicle
+ * starts from its own depot (several vehicles may share one). Queued orders
+ * are first split between the vehicles, one location at a time so a stop is
+ * never served twice, and then each vehicle's tour is planned by a
+ * {@link TourPlanner} on a fork/join pool.
+ *
+ * The split runs on the calling thread against the Graph given to the
+ * constructor. The planning tasks each query a {@link Graph#view()} of their
+ * worker thread, so they share the road network but not the route caches,
+ * and vehicles plan without any locking between them. The network must not be
+ * edited while a plan is running.
+ */
+class FleetDispatcher implements AutoCloseable {
+    /** How orders are split between vehicles. */
+    enum Assignment {
+        /** Each location goes to the nearest depot, and to the least loaded vehicle there. */
+        NEAREST_DEPOT,
+        /**
+         * Vehicles take about the same number of orders. Locations with the most
+         * to lose from a far depot choose first, taking the nearest vehicle that
+         * still has room.
+         */
+        BALANCED
+    }
+
+    /** One vehicle's share of a dispatch run. */
+    static final class VehiclePlan {
+        private final int vehicle;
+        private final String depot;
+        private final int[] handles;
+        private final long distance;
+        private final int stops;
+
+        VehiclePlan(int vehicle, String depot, int[] handles, long distance, int stops) {
+            this.vehicle = vehicle;
+            this.depot = depot;
+            this.handles = handles;
+            this.distance = distance;
+            this.stops = stops;
+        }
+
+        public int vehicle() {
+            return vehicle;
+        }
+
+        public String depot() {
+            return depot;
+        }
+
+        /** Order handles in the order this vehicle delivers them. */
+        public int[] handles() {
+            return handles;
+        }
+
+        /** Planned length of the tour from the depot, not counting unreachable legs. */
+        public long distance() {
+            return distance;
+        }
+
+        public int stops() {
+            return stops;
+        }
+
+        @Override
+        public String toString() {
+            return "Vehicle " + (vehicle + 1) + " from " + depot + ": " + handles.length + " orders, "
+                    + stops + " stops, " + distance + " units";
+        }
+    }
+
+    private final Graph graph;
+    private final String[] depots;
+    private final Assignment assignment;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Graph> views;
+    private long planNanos;
+
+    public FleetDispatcher(Graph graph, List<String> depots, Assignment assignment) {
+        this(graph, depots, assignment, Runtime.getRuntime().availableProcessors());
+    }
+
+    public FleetDispatcher(Graph graph, List<String> depots, Assignment assignment, int parallelism) {
+        if (depots.isEmpty()) {
+            throw new IllegalArgumentException("A fleet needs at least one vehicle");
+        }
+        this.graph = graph;
+        this.depots = depots.toArray(new String[0]);
+        this.assignment = assignment;
+        this.pool = new ForkJoinPool(parallelism);
+        this.views = ThreadLocal.withInitial(graph::view);
+    }
+
+    public int vehicles() {
+        return depots.length;
+    }
+
+    /**
+     * Splits the first {@code count} handles between the vehicles and plans
+     * every vehicle's tour, one plan per vehicle in vehicle order. The store
+     * is only read on the calling thread.
+     */
+    public List<VehiclePlan> plan(int[] handles, int count, OrderStore orders) {
+        long begin = System.nanoTime();
+        String[] locations = new String[count];
+        int[] priorities = new int[count];
+        Map<String, List<Integer>> stopOrders = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            locations[i] = orders.location(handles[i]);
+            priorities[i] = orders.priority(handles[i]);
+            stopOrders.computeIfAbsent(locations[i], location -> new ArrayList<>()).add(i);
+        }
+
+        int[] vehicleOf = assign(stopOrders, count);
+        int[] loads = new int[depots.length];
+        for (int i = 0; i < count; i++) {
+            loads[vehicleOf[i]]++;
+        }
+        int[][] shares = new int[depots.length][];
+        for (int v = 0; v < depots.length; v++) {
+            shares[v] = new int[loads[v]];
+        }
+        int[] filled = new int[depots.length];
+        for (int i = 0; i < count; i++) {
+            shares[vehicleOf[i]][filled[vehicleOf[i]]++] = i;
+        }
+
+        VehiclePlan[] plans = new VehiclePlan[depots.length];
+        pool.invoke(new PlanVehicles(0, depots.length, shares, handles, locations, priorities, plans));
+        planNanos = System.nanoTime() - begin;
+        return Arrays.asList(plans);
+    }
+
+    /** Time the last {@link #plan} took, split and tours together. */
+    public long planNanos() {
+        return planNanos;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /** Vehicle of every order index, decided per location. */
+    private int[] assign(Map<String, List<Integer>> stopOrders, int count) {
+        int[] vehicleOf = new int[count];
+        int[] loads = new int[depots.length];
+        List<String> stops = new ArrayList<>(stopOrders.keySet());
+        long[][] toDepot = depotDistances(stops);
+
+        if (assignment == Assignment.BALANCED) {
+            long[] regrets = new long[stops.size()];
+            Integer[] byRegret = new Integer[stops.size()];
+            for (int s = 0; s < stops.size(); s++) {
+                regrets[s] = regret(toDepot[s]);
+                byRegret[s] = s;
+            }
+            Arrays.sort(byRegret, Comparator.comparingLong((Integer s) -> regrets[s]).reversed());
+            int capacity = (count + depots.length - 1) / depots.length;
+            for (int s : byRegret) {
+                List<Integer> members = stopOrders.get(stops.get(s));
+                int vehicle = -1;
+                for (int v = 0; v < depots.length; v++) {
+                    boolean room = loads[v] == 0 || loads[v] + members.size() <= capacity;
+                    if (room && (vehicle < 0 || toDepot[s][v] < toDepot[s][vehicle])) {
+                        vehicle = v;
+                    }
+                }
+                if (vehicle < 0) {
+                    vehicle = leastLoaded(loads, null, 0);
+                }
+                give(members, vehicle, vehicleOf, loads);
+            }
+        } else {
+            for (int s = 0; s < stops.size(); s++) {
+                long nearest = Arrays.stream(toDepot[s]).min().orElse(Long.MAX_VALUE);
+                give(stopOrders.get(stops.get(s)), leastLoaded(loads, toDepot[s], nearest), vehicleOf, loads);
+            }
+        }
+        return vehicleOf;
+    }
+
+    /** Distance from each vehicle's depot to each stop, Long.MAX_VALUE when unreachable. */
+    private long[][] depotDistances(List<String> stops) {
+        long[][] distances = new long[stops.size()][depots.length];
+        Map<String, Integer> firstVehicle = new HashMap<>();
+        for (int v = 0; v < depots.length; v++) {
+            Integer same = firstVehicle.putIfAbsent(depots[v], v);
+            for (int s = 0; s < stops.size(); s++) {
+                if (same != null) {
+                    distances[s][v] = distances[s][same];
+                    continue;
+                }
+                Integer distance = graph.distance(depots[v], stops.get(s));
+                distances[s][v] = distance == null || distance == Integer.MAX_VALUE ? Long.MAX_VALUE : distance;
+            }
+        }
+        return distances;
+    }
+
+    /** How much further the second-nearest vehicle is than the nearest. */
+    private static long regret(long[] distances) {
+        long first = Long.MAX_VALUE;
+        long second = Long.MAX_VALUE;
+        for (long distance : distances) {
+            if (distance < first) {
+                second = first;
+                first = distance;
+            } else if (distance < second) {
+                second = distance;
+            }
+        }
+        return first == Long.MAX_VALUE ? 0 : second == Long.MAX_VALUE ? Long.MAX_VALUE / 2 : second - first;
+    }
+
+    /** Least loaded vehicle, among those at {@code distance} from the stop when distances are given. */
+    private static int leastLoaded(int[] loads, long[] distances, long distance) {
+        int vehicle = -1;
+        for (int v = 0; v < loads.length; v++) {
+            if ((distances == null || distances[v] == distance) && (vehicle < 0 || loads[v] < loads[vehicle])) {
+                vehicle = v;
+            }
+        }
+        return vehicle;
+    }
+
+    private static void give(List<Integer> members, int vehicle, int[] vehicleOf, int[] loads) {
+        for (int i : members) {
+            vehicleOf[i] = vehicle;
+        }
+        loads[vehicle] += members.size();
+    }
+
+    /** Plans vehicles [from, to), splitting the range until one vehicle is left per task. */
+    private final class PlanVehicles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int[][] shares;
+        private final int[] handles;
+        private final String[] locations;
+        private final int[] priorities;
+        private final VehiclePlan[] plans;
+
+        PlanVehicles(int from, int to, int[][] shares, int[] handles, String[] locations, int[] priorities,
+                     VehiclePlan[] plans) {
+            this.from = from;
+            this.to = to;
+            this.shares = shares;
+            this.handles = handles;
+            this.locations = locations;
+            this.priorities = priorities;
+            this.plans = plans;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PlanVehicles(from, middle, shares, handles, locations, priorities, plans),
+                        new PlanVehicles(middle, to, shares, handles, locations, priorities, plans));
+                return;
+            }
+            int[] share = shares[from];
+            int[] vehicleHandles = new int[share.length];
+            String[] vehicleLocations = new String[share.length];
+            int[] vehiclePriorities = new int[share.length];
+            for (int i = 0; i < share.length; i++) {
+                vehicleHandles[i] = handles[share[i]];
+                vehicleLocations[i] = locations[share[i]];
+                vehiclePriorities[i] = priorities[share[i]];
+            }
+            TourPlanner planner = new TourPlanner(views.get());
+            int[] tour = planner.plan(depots[from], vehicleHandles, vehicleLocations, vehiclePriorities, share.length);
+            plans[from] = new VehiclePlan(from, depots[from], tour, planner.plannedDistance(), planner.stops());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package travel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class Graph {
+    private final RoadNetwork network;
+    private final CompactGraph editable; // null when the network is a read-only compiled file
+    private final RouteCache routes;
+    private final AvailabilityMask closed; // shared with views
+    private ContractionHierarchy hierarchy; // null unless pair queries use one
+    private final Map<String, double[]> unplaced = new HashMap<>(); // coordinates of codes not in the network yet
+
+    public Graph() {
+        this(new CompactGraph());
+    }
+
+    public Graph(RoadNetwork network) {
+        this(network, network instanceof CompactGraph ? (CompactGraph) network : null, new AvailabilityMask());
+    }
+
+    private Graph(RoadNetwork network, CompactGraph editable, AvailabilityMask closed) {
+        this.network = network;
+        this.editable = editable;
+        this.closed = closed;
+        this.routes = new RouteCache(network);
+        routes.setMask(closed);
+    }
+
+    /** Opens a network written by RoadNetworkCompiler; searches run directly over the mapped file. */
+    public static Graph open(Path file) throws IOException {
+        return new Graph(MappedRoadNetwork.open(file));
+    }
+
+    /**
+     * A read-only Graph over the same network with a route cache of its own,
+     * for queries from another thread. The network must not be edited while
+     * views of it are in use, and neither may the closed locations change.
+     */
+    public Graph view() {
+        if (editable != null) {
+            editable.freeze();
+        }
+        Graph view = new Graph(network, null, closed);
+        view.useHierarchy(hierarchy);
+        return view;
+    }
+
+    /**
+     * Contracts the network into a hierarchy and answers pair queries from it.
+     * Queries go back to plain searches once the network is edited.
+     */
+    public ContractionHierarchy buildHierarchy() {
+        useHierarchy(ContractionHierarchy.build(network));
+        return hierarchy;
+    }
+
+    /** Loads a hierarchy saved for this network and answers pair queries from it. */
+    public ContractionHierarchy loadHierarchy(Path file) throws IOException {
+        useHierarchy(ContractionHierarchy.load(file, network));
+        return hierarchy;
+    }
+
+    /** Answers pair queries from {@code hierarchy}, or with plain searches again when it is null. */
+    public void useHierarchy(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        routes.setHierarchy(hierarchy);
+    }
+
+    public void addEdge(String start, String end, int weight) {
+        if (editable == null) {
+            throw new UnsupportedOperationException("A compiled road network is read-only");
+        }
+        editable.addEdge(intern(start), intern(end), weight); // Undirected graph
+    }
+
+    /** Sets the length of the road between two locations, adding the road if there is none. */
+    public void setRoute(String start, String end, int weight) {
+        if (editable == null) {
+            throw new UnsupportedOperationException("A compiled road network is read-only");
+        }
+        editable.setEdgeWeight(intern(start), intern(end), weight);
+    }
+
+    /** Closes the road between two locations; returns false when there was none. */
+    public boolean closeRoute(String start, String end) {
+        if (editable == null) {
+            throw new UnsupportedOperationException("A compiled road network is read-only");
+        }
+        int a = editable.idOf(start);
+        int b = editable.idOf(end);
+        return a >= 0 && b >= 0 && editable.removeEdge(a, b);
+    }
+
+    /**
+     * Places a location at a latitude and longitude in degrees. Once every
+     * location of the network is placed, pair queries are guided by A*; the
+     * heuristic is scaled to the shortest road per straight-line kilometre,
+     * so distances stay exact. A location not in the network yet is placed
+     * when a road first reaches it. A compiled network keeps the coordinates
+     * it was compiled with, so there this does nothing.
+     */
+    public void setCoordinates(String code, double latitude, double longitude) {
+        if (editable == null) {
+            return;
+        }
+        int node = editable.idOf(code);
+        if (node < 0) {
+            unplaced.put(code, new double[] {latitude, longitude});
+        } else {
+            place(node, latitude, longitude);
+        }
+    }
+
+    /**
+     * Keeps routes from passing through {@code locations}, for the places
+     * closed today, and opens every other location again. A closed location
+     * can still be where a route starts or ends. Unknown codes are ignored.
+     * Costs one pass over the locations; cached routes are recomputed on the
+     * next query, but only when the closed set actually changed.
+     */
+    public void setClosedLocations(Collection<String> locations) {
+        int[] nodes = new int[locations.size()];
+        int count = 0;
+        for (String code : locations) {
+            int node = network.idOf(code);
+            if (node >= 0) {
+                nodes[count++] = node;
+            }
+        }
+        closed.closeOnly(nodes, count, network.nodeCount());
+    }
+
+    /**
+     * With dynamic routing on, changing, adding or closing a road between known
+     * locations repairs the cached shortest-path trees it touches instead of
+     * recomputing every tree from scratch.
+     */
+    public void setDynamicRouting(boolean dynamic) {
+        routes.setIncremental(dynamic);
+    }
+
+    public Map<String, Integer> dijkstra(String start) {
+        int source = network.idOf(start);
+        if (source < 0) {
+            Map<String, Integer> distances = new HashMap<>();
+            for (int node = 0; node < network.nodeCount(); node++) {
+                distances.put(network.codeOf(node), Integer.MAX_VALUE);
+            }
+            distances.put(start, 0);
+            return distances;
+        }
+        return new DistanceView(network, routes.row(source));
+    }
+
+    /** Shortest distance between two locations; the same value as {@code dijkstra(start).get(end)}. */
+    public Integer distance(String start, String end) {
+        int source = network.idOf(start);
+        int target = network.idOf(end);
+        if (source < 0) {
+            return start.equals(end) ? Integer.valueOf(0) : target < 0 ? null : Integer.MAX_VALUE;
+        }
+        return target < 0 ? null : routes.distance(source, target);
+    }
+
+    /**
+     * Shortest distances between every pair of {@code locations} as a
+     * row-major matrix, Integer.MAX_VALUE where there is no route. Costs one
+     * single-source search per location the route cache does not hold.
+     */
+    public int[] distanceMatrix(String[] locations) {
+        int k = locations.length;
+        int[] ids = new int[k];
+        for (int i = 0; i < k; i++) {
+            ids[i] = network.idOf(locations[i]);
+        }
+        int[] matrix = new int[k * k];
+        for (int i = 0; i < k; i++) {
+            int[] row = ids[i] < 0 ? null : routes.row(ids[i]);
+            for (int j = 0; j < k; j++) {
+                matrix[i * k + j] = row != null && ids[j] >= 0 ? row[ids[j]]
+                        : locations[i].equals(locations[j]) ? 0 : Integer.MAX_VALUE;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Fills {@code route} with the shortest route from start to end and returns
+     * it. The route reuses its buffers, so one instance can serve every order.
+     */
+    public Route route(String start, String end, Route route) {
+        int source = network.idOf(start);
+        int target = network.idOf(end);
+        if (source < 0 || target < 0) {
+            return route.between(start, end);
+        }
+        return routes.route(source, target, route);
+    }
+
+    /** Times the searches behind every query and publishes the route cache counters into {@code metrics}. */
+    public void instrument(Metrics metrics) {
+        routes.instrument(metrics);
+        metrics.gauge("network.locations", network::nodeCount);
+        metrics.gauge("network.closedLocations", closed::closedCount);
+    }
+
+    /** Locations along the shortest path from start to end, empty when there is none. */
+    public List<String> path(String start, String end) {
+        return route(start, end, new Route()).locations();
+    }
+
+    private int intern(String code) {
+        int node = editable.idOf(code);
+        if (node < 0) {
+            node = editable.intern(code);
+            double[] at = unplaced.remove(code);
+            if (at != null) {
+                place(node, at[0], at[1]);
+            }
+        }
+        return node;
+    }
+
+    /** Projects degrees onto a plane in kilometres, accurate enough near the latitude of each location. */
+    private void place(int node, double latitude, double longitude) {
+        double phi = Math.toRadians(latitude);
+        editable.setCoordinates(node, OrderLocator.EARTH_RADIUS_KM * Math.toRadians(longitude) * Math.cos(phi),
+                OrderLocator.EARTH_RADIUS_KM * phi);
+    }
+}
@@ -0,0 +1,215 @@
+package travel;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Pair queries over a {@link ContractionHierarchy}: a forward search from the
+ * source over upward arcs and a backward search from the target over downward
+ * arcs, always expanding the side with the smaller key. A side stops once its
+ * smallest key reaches the best connection found so far. A node that a more
+ * important node already reaches more cheaply is not expanded (stall on
+ * demand), since no shortest path climbs through it.
+ *
+ * The path of the last query is unpacked into original arcs only when asked
+ * for. One instance serves one thread, like {@link PointToPointSearch}.
+ */
+class HierarchySearch {
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final ContractionHierarchy hierarchy;
+    private final PointToPointSearch.Frontier forward = new PointToPointSearch.Frontier();
+    private final PointToPointSearch.Frontier backward = new PointToPointSearch.Frontier();
+
+    private int lastFrom = -1;
+    private int lastTo = -1;
+    private int lastDistance = UNREACHED;
+    private int meet = -1;
+    private int settled;
+
+    private int[] path = new int[16];
+    private int pathLength = -1; // -1 until the last query is unpacked
+    private int[] pending = new int[16]; // hierarchy arcs still to unpack, as from/to pairs
+
+    public HierarchySearch(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /** Length of the shortest path, or {@link #UNREACHED} when {@code to} cannot be reached. */
+    public int distance(int from, int to) {
+        lastFrom = from;
+        lastTo = to;
+        meet = -1;
+        settled = 0;
+        pathLength = -1;
+        forward.begin(hierarchy.nodeCount());
+        backward.begin(hierarchy.nodeCount());
+        forward.reach(from, 0, -1, 0);
+        backward.reach(to, 0, -1, 0);
+
+        long best = UNREACHED;
+        while (true) {
+            boolean forwardOpen = !forward.heap.isEmpty() && forward.heap.minKey() < best;
+            boolean backwardOpen = !backward.heap.isEmpty() && backward.heap.minKey() < best;
+            if (!forwardOpen && !backwardOpen) {
+                break;
+            }
+            boolean forwardTurn = forwardOpen && (!backwardOpen || forward.heap.minKey() <= backward.heap.minKey());
+            PointToPointSearch.Frontier near = forwardTurn ? forward : backward;
+            PointToPointSearch.Frontier far = forwardTurn ? backward : forward;
+
+            int node = near.heap.poll();
+            settled++;
+            int nodeDist = near.dist[node];
+            int otherDist = far.distance(node);
+            if (otherDist != UNREACHED && (long) nodeDist + otherDist < best) {
+                best = (long) nodeDist + otherDist;
+                meet = node;
+            }
+            if (forwardTurn) {
+                if (!stalled(node, nodeDist, near, hierarchy.downOffsets(), hierarchy.downSources(), hierarchy.downWeights())) {
+                    relax(node, nodeDist, near, hierarchy.upOffsets(), hierarchy.upTargets(), hierarchy.upWeights());
+                }
+            } else if (!stalled(node, nodeDist, near, hierarchy.upOffsets(), hierarchy.upTargets(), hierarchy.upWeights())) {
+                relax(node, nodeDist, near, hierarchy.downOffsets(), hierarchy.downSources(), hierarchy.downWeights());
+            }
+        }
+        lastDistance = (int) best;
+        return lastDistance;
+    }
+
+    /** True when a more important node offers a shorter way to {@code node} than the one being expanded. */
+    private static boolean stalled(int node, int nodeDist, PointToPointSearch.Frontier side,
+                                   IntBuffer offsets, IntBuffer neighbours, IntBuffer weights) {
+        for (int arc = offsets.get(node), end = offsets.get(node + 1); arc < end; arc++) {
+            int higher = side.distance(neighbours.get(arc));
+            if (higher != UNREACHED && (long) higher + weights.get(arc) < nodeDist) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void relax(int node, int nodeDist, PointToPointSearch.Frontier side,
+                              IntBuffer offsets, IntBuffer neighbours, IntBuffer weights) {
+        for (int arc = offsets.get(node), end = offsets.get(node + 1); arc < end; arc++) {
+            int next = neighbours.get(arc);
+            int newDist = nodeDist + weights.get(arc);
+            if (newDist < side.distance(next)) {
+                side.reach(next, newDist, node, newDist);
+            }
+        }
+    }
+
+    public int lastFrom() {
+        return lastFrom;
+    }
+
+    public int lastTo() {
+        return lastTo;
+    }
+
+    public int lastDistance() {
+        return lastDistance;
+    }
+
+    /** Nodes taken off the heaps by the last query, both directions together. */
+    public int settledCount() {
+        return settled;
+    }
+
+    /** Number of nodes on the unpacked path of the last query, 0 when the target was unreachable. */
+    public int pathLength() {
+        unpack();
+        return pathLength;
+    }
+
+    /** Writes the path of the last query into the first {@link #pathLength()} slots of {@code into}. */
+    public void writePath(int[] into) {
+        unpack();
+        System.arraycopy(path, 0, into, 0, pathLength);
+    }
+
+    /** Node ids along the shortest path of the last query, from source to target. */
+    public int[] path() {
+        int[] nodes = new int[pathLength()];
+        writePath(nodes);
+        return nodes;
+    }
+
+    private void unpack() {
+        if (pathLength >= 0) {
+            return;
+        }
+        pathLength = 0;
+        if (lastDistance == UNREACHED) {
+            return;
+        }
+        // Hierarchy path: source up to the meeting node, then down to the target
+        int count = 0;
+        for (int node = meet; backward.pred(node) >= 0; node = backward.pred(node)) {
+            count++;
+        }
+        // Stack of arcs to unpack, pushed last first so the path comes out in order
+        int top = 0;
+        int[] down = new int[count];
+        int d = 0;
+        for (int node = meet; backward.pred(node) >= 0; node = backward.pred(node)) {
+            down[d++] = node;
+        }
+        for (int i = down.length - 1; i >= 0; i--) {
+            top = push(top, down[i], backward.pred(down[i]));
+        }
+        for (int node = meet; forward.pred(node) >= 0; node = forward.pred(node)) {
+            top = push(top, forward.pred(node), node);
+        }
+        append(lastFrom);
+        while (top > 0) {
+            int to = pending[--top];
+            int from = pending[--top];
+            int middle = middle(from, to);
+            if (middle < 0) {
+                append(to);
+            } else {
+                top = push(top, middle, to);
+                top = push(top, from, middle);
+            }
+        }
+    }
+
+    /** Node skipped by the hierarchy arc from -> to, -1 for an original arc. */
+    private int middle(int from, int to) {
+        if (hierarchy.rank(from) < hierarchy.rank(to)) {
+            IntBuffer offsets = hierarchy.upOffsets();
+            for (int arc = offsets.get(from), end = offsets.get(from + 1); arc < end; arc++) {
+                if (hierarchy.upTargets().get(arc) == to) {
+                    return hierarchy.upMiddles().get(arc);
+                }
+            }
+        } else {
+            IntBuffer offsets = hierarchy.downOffsets();
+            for (int arc = offsets.get(to), end = offsets.get(to + 1); arc < end; arc++) {
+                if (hierarchy.downSources().get(arc) == from) {
+                    return hierarchy.downMiddles().get(arc);
+                }
+            }
+        }
+        throw new IllegalStateException("No hierarchy arc " + from + " -> " + to);
+    }
+
+    private int push(int top, int from, int to) {
+        if (top + 2 > pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        pending[top] = from;
+        pending[top + 1] = to;
+        return top + 2;
+    }
+
+    private void append(int node) {
+        if (pathLength == path.length) {
+            path = Arrays.copyOf(path, path.length * 2);
+        }
+        path[pathLength++] = node;
+    }
+}
@@ -0,0 +1,203 @@
+package travel;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Brings a single-source shortest-path tree up to date after some arcs
+ * changed, in the manner of Ramalingam and Reps: only nodes whose distance can
+ * have moved are touched, instead of searching the whole graph again.
+ *
+ * An arc of the tree that got longer or was removed cuts off the subtree
+ * hanging below it. Those nodes are reset and re-entered from their best
+ * in-neighbour outside the subtree. An arc that got shorter or was added seeds
+ * its head when it now offers a shorter path. One Dijkstra pass from the seeds
+ * then settles both kinds of change, and it stops spreading wherever the old
+ * distances still hold. Like {@link DijkstraSearch}, the workspace is reused
+ * between updates, closed locations of an {@link AvailabilityMask} are never
+ * passed through, and one instance serves one thread. The tree must have been
+ * searched under the same mask.
+ */
+class IncrementalSearch {
+    private static final int UNREACHED = DijkstraSearch.UNREACHED;
+
+    private final RoadNetwork graph;
+    private final IndexedMinHeap heap = new IndexedMinHeap(16);
+    private AvailabilityMask mask; // null when every location is open
+    private int[] cutStamp = new int[16]; // == currentStamp while a node is in a cut-off subtree
+    private int[] cut = new int[16];
+    private int currentStamp;
+    private int settled;
+
+    public IncrementalSearch(RoadNetwork graph) {
+        this.graph = graph;
+    }
+
+    /** Keeps later updates from routing through the locations {@code mask} closes; null lifts it. */
+    public void setMask(AvailabilityMask mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * True when one of {@code changedArcs} (from/to pairs) moves a distance of
+     * the tree, so it needs an {@link #update} at all.
+     */
+    public boolean affects(int[] dist, int[] pred, int[] changedArcs) {
+        for (int i = 0; i < changedArcs.length; i += 2) {
+            int from = changedArcs[i];
+            int to = changedArcs[i + 1];
+            if (!expands(from, dist, pred)) {
+                continue;
+            }
+            int weight = weight(from, to);
+            if (weight != UNREACHED && dist[from] + weight < dist[to]) {
+                return true;
+            }
+            if (pred[to] == from && (weight == UNREACHED || dist[from] + weight > dist[to])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the distances and predecessor tree of one source, as left by a
+     * search of the graph before {@code changedArcs} changed, to the current
+     * graph. Nodes must not have been added since.
+     */
+    public void update(int[] dist, int[] pred, int[] changedArcs) {
+        begin();
+        IntBuffer offsets = graph.offsets();
+        IntBuffer targets = graph.targets();
+        IntBuffer weights = graph.weights();
+
+        // Arcs that got longer: everything below them loses its distance
+        int cutCount = 0;
+        for (int i = 0; i < changedArcs.length; i += 2) {
+            int from = changedArcs[i];
+            int to = changedArcs[i + 1];
+            if (pred[to] != from || isCut(to)) {
+                continue;
+            }
+            int weight = weight(from, to);
+            if (weight == UNREACHED || dist[from] + weight > dist[to]) {
+                cutCount = cutSubtree(to, pred, offsets, targets, cutCount);
+            }
+        }
+        for (int i = 0; i < cutCount; i++) {
+            dist[cut[i]] = UNREACHED;
+            pred[cut[i]] = -1;
+        }
+        IntBuffer reverseOffsets = graph.reverseOffsets();
+        IntBuffer reverseSources = graph.reverseSources();
+        IntBuffer reverseWeights = graph.reverseWeights();
+        for (int i = 0; i < cutCount; i++) {
+            int node = cut[i];
+            for (int arc = reverseOffsets.get(node), end = reverseOffsets.get(node + 1); arc < end; arc++) {
+                int source = reverseSources.get(arc);
+                if (!isCut(source) && expands(source, dist, pred) && dist[source] + reverseWeights.get(arc) < dist[node]) {
+                    dist[node] = dist[source] + reverseWeights.get(arc);
+                    pred[node] = source;
+                }
+            }
+            if (dist[node] != UNREACHED) {
+                heap.offer(node, dist[node]);
+            }
+        }
+
+        // Arcs that got shorter
+        for (int i = 0; i < changedArcs.length; i += 2) {
+            int from = changedArcs[i];
+            int to = changedArcs[i + 1];
+            int weight = weight(from, to);
+            if (expands(from, dist, pred) && weight != UNREACHED && dist[from] + weight < dist[to]) {
+                reach(dist, pred, to, dist[from] + weight, from);
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            settled++;
+            if (!expands(node, dist, pred)) {
+                continue;
+            }
+            int nodeDist = dist[node];
+            for (int arc = offsets.get(node), end = offsets.get(node + 1); arc < end; arc++) {
+                int next = targets.get(arc);
+                int newDist = nodeDist + weights.get(arc);
+                if (newDist < dist[next]) {
+                    reach(dist, pred, next, newDist, node);
+                }
+            }
+        }
+    }
+
+    /** Number of nodes taken off the heap by the last update. */
+    public int settledCount() {
+        return settled;
+    }
+
+    /** Lightest arc from → to, UNREACHED when there is none. */
+    private int weight(int from, int to) {
+        IntBuffer offsets = graph.offsets();
+        IntBuffer targets = graph.targets();
+        IntBuffer weights = graph.weights();
+        int weight = UNREACHED;
+        for (int arc = offsets.get(from), end = offsets.get(from + 1); arc < end; arc++) {
+            if (targets.get(arc) == to) {
+                weight = Math.min(weight, weights.get(arc));
+            }
+        }
+        return weight;
+    }
+
+    /** Appends {@code root} and every node whose tree path runs through it to the cut list. */
+    private int cutSubtree(int root, int[] pred, IntBuffer offsets, IntBuffer targets, int cutCount) {
+        // The cut list doubles as the work list: nodes before `next` have had their children added
+        int next = cutCount;
+        cutStamp[root] = currentStamp;
+        cut[cutCount++] = root;
+        while (next < cutCount) {
+            int node = cut[next++];
+            for (int arc = offsets.get(node), end = offsets.get(node + 1); arc < end; arc++) {
+                int child = targets.get(arc);
+                if (pred[child] == node && !isCut(child)) {
+                    cutStamp[child] = currentStamp;
+                    cut[cutCount++] = child;
+                }
+            }
+        }
+        return cutCount;
+    }
+
+    /** True when the tree reaches {@code node} and may continue through it: it is open, or it is the root. */
+    private boolean expands(int node, int[] dist, int[] pred) {
+        return dist[node] != UNREACHED && (mask == null || !mask.isClosed(node) || pred[node] < 0);
+    }
+
+    private boolean isCut(int node) {
+        return cutStamp[node] == currentStamp;
+    }
+
+    private void begin() {
+        int n = graph.nodeCount();
+        if (n > cutStamp.length) {
+            int capacity = Math.max(n, cutStamp.length * 2);
+            cutStamp = Arrays.copyOf(cutStamp, capacity);
+            cut = new int[capacity];
+            heap.ensureCapacity(capacity);
+        }
+        if (++currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(cutStamp, 0);
+            currentStamp = 1;
+        }
+        heap.clear();
+        settled = 0;
+    }
+
+    private void reach(int[] dist, int[] pred, int node, int newDist, int from) {
+        dist[node] = newDist;
+        pred[node] = from;
+        heap.offer(node, newDist);
+    }
+}
@@ -0,0 +1,122 @@
+package travel;
+
+import java.util.*;
+
+/**
+ * Binary min-heap over node ids with decrease-key. Each node appears at most
+ * once, so a search never expands stale entries, and nothing is allocated
+ * once the arrays have grown to the size of the graph.
+ */
+class IndexedMinHeap {
+    private int[] heap;
+    private int[] keys;
+    private int[] position; // node -> heap slot, -1 when not queued
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new int[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= position.length) {
+            return;
+        }
+        int oldLength = position.length;
+        heap = Arrays.copyOf(heap, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        position = Arrays.copyOf(position, capacity);
+        Arrays.fill(position, oldLength, capacity, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int node) {
+        return position[node] >= 0;
+    }
+
+    public int minKey() {
+        return keys[heap[0]];
+    }
+
+    /** Inserts {@code node} or lowers its key; a higher key is ignored. */
+    public void offer(int node, int key) {
+        int slot = position[node];
+        if (slot < 0) {
+            slot = size++;
+            heap[slot] = node;
+            position[node] = slot;
+            keys[node] = key;
+            siftUp(slot);
+        } else if (key < keys[node]) {
+            keys[node] = key;
+            siftUp(slot);
+        }
+    }
+
+    public int poll() {
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot) {
+        int node = heap[slot];
+        int key = keys[node];
+        while (slot > 0) {
+            int parentSlot = (slot - 1) >>> 1;
+            int parent = heap[parentSlot];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[slot] = parent;
+            position[parent] = slot;
+            slot = parentSlot;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int node = heap[slot];
+        int key = keys[node];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[slot] = heap[child];
+            position[heap[slot]] = slot;
+            slot = child;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+}
@@ -0,0 +1,201 @@
+package travel;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Read-only {@link RoadNetwork} served from a file written by
+ * {@link RoadNetworkCompiler}. The file is memory-mapped and every CSR array
+ * is an {@link IntBuffer} view into the mapping, so opening a network only
+ * reads the header and searches walk the mapped pages directly. Processes
+ * that open the same file share its pages through the OS page cache.
+ *
+ * Layout, little-endian ints after a fixed header:
+ * <pre>
+ *   magic, format, nodeCount, arcCount, tableSize, codeBytes, 0, 0
+ *   offsets[n + 1]  targets[m]  weights[m]
+ *   reverseOffsets[n + 1]  reverseSources[m]  reverseWeights[m]
+ *   codeOffsets[n + 1]  codeTable[tableSize]  UTF-8 code bytes
+ * </pre>
+ * {@code codeTable} is an open-addressing hash of node ids keyed by the code
+ * bytes, so {@link #idOf} needs no map built at load time. One mapping is
+ * limited to 2 GB.
+ */
+class MappedRoadNetwork implements RoadNetwork {
+    static final int MAGIC = 0x524E4554; // "RNET"
+    static final int FORMAT = 1;
+    static final int HEADER_BYTES = 32;
+
+    private final Path file;
+    private final int nodeCount;
+    private final int arcCount;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer weights;
+    private final IntBuffer reverseOffsets;
+    private final IntBuffer reverseSources;
+    private final IntBuffer reverseWeights;
+    private final IntBuffer codeOffsets;
+    private final IntBuffer codeTable;
+    private final ByteBuffer codeBytes;
+
+    private MappedRoadNetwork(Path file, ByteBuffer map) throws IOException {
+        this.file = file;
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a compiled road network: " + file);
+        }
+        if (map.getInt(4) != FORMAT) {
+            throw new IOException("Unsupported road network format " + map.getInt(4) + " in " + file);
+        }
+        nodeCount = map.getInt(8);
+        arcCount = map.getInt(12);
+        int tableSize = map.getInt(16);
+        int codeLength = map.getInt(20);
+
+        int position = HEADER_BYTES;
+        offsets = ints(map, position, nodeCount + 1);
+        position += (nodeCount + 1) * 4;
+        targets = ints(map, position, arcCount);
+        position += arcCount * 4;
+        weights = ints(map, position, arcCount);
+        position += arcCount * 4;
+        reverseOffsets = ints(map, position, nodeCount + 1);
+        position += (nodeCount + 1) * 4;
+        reverseSources = ints(map, position, arcCount);
+        position += arcCount * 4;
+        reverseWeights = ints(map, position, arcCount);
+        position += arcCount * 4;
+        codeOffsets = ints(map, position, nodeCount + 1);
+        position += (nodeCount + 1) * 4;
+        codeTable = ints(map, position, tableSize);
+        position += tableSize * 4;
+        if ((long) position + codeLength != map.capacity()) {
+            throw new IOException("Truncated or corrupt road network: " + file);
+        }
+        codeBytes = map.slice(position, codeLength);
+    }
+
+    public static MappedRoadNetwork open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Road network larger than 2 GB: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            return new MappedRoadNetwork(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    private static IntBuffer ints(ByteBuffer map, int position, int count) throws IOException {
+        if (count < 0 || (long) position + count * 4L > map.capacity()) {
+            throw new IOException("Truncated or corrupt road network");
+        }
+        return map.slice(position, count * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int arcCount() {
+        return arcCount;
+    }
+
+    @Override
+    public int idOf(String code) {
+        byte[] key = code.getBytes(StandardCharsets.UTF_8);
+        int mask = codeTable.capacity() - 1;
+        for (int slot = RoadNetworkCompiler.hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int id = codeTable.get(slot);
+            if (id < 0) {
+                return -1;
+            }
+            if (codeEquals(id, key)) {
+                return id;
+            }
+        }
+    }
+
+    @Override
+    public String codeOf(int id) {
+        int from = codeOffsets.get(id);
+        int length = codeOffsets.get(id + 1) - from;
+        byte[] bytes = new byte[length];
+        codeBytes.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean codeEquals(int id, byte[] key) {
+        int from = codeOffsets.get(id);
+        if (codeOffsets.get(id + 1) - from != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (codeBytes.get(from + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A mapped network never changes. */
+    @Override
+    public int version() {
+        return 0;
+    }
+
+    @Override
+    public IntBuffer offsets() {
+        return offsets;
+    }
+
+    @Override
+    public IntBuffer targets() {
+        return targets;
+    }
+
+    @Override
+    public IntBuffer weights() {
+        return weights;
+    }
+
+    @Override
+    public IntBuffer reverseOffsets() {
+        return reverseOffsets;
+    }
+
+    @Override
+    public IntBuffer reverseSources() {
+        return reverseSources;
+    }
+
+    @Override
+    public IntBuffer reverseWeights() {
+        return reverseWeights;
+    }
+
+    @Override
+    public boolean hasCoordinates() {
+        return false;
+    }
+
+    @Override
+    public double straightLine(int a, int b) {
+        return 0;
+    }
+
+    @Override
+    public double heuristicScale() {
+        return 0;
+    }
+}
@@ -0,0 +1,222 @@
+package travel;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import javax.management.*;
+
+/**
+ * Named counters, gauges and {@link LatencyHistogram}s for one application.
+ * Components look their instruments up once, when metrics are switched on,
+ * and record into them directly, so a disabled component pays nothing and an
+ * enabled one pays an atomic add per value.
+ *
+ * The whole set is published as one JMX MBean with an attribute per value
+ * (histograms as name.p50, name.p99, name.p999, name.max, name.mean and
+ * name.count) and can be dumped as text on a schedule through an
+ * {@link EventSink}.
+ */
+class Metrics implements AutoCloseable {
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>(); // sorted for the dump
+    private ObjectName registeredAs;
+    private ScheduledExecutorService dumper;
+
+    /**
+     * Metrics for a command line application: published over JMX as {@code name}
+     * and, when the travel.metrics.dumpSeconds system property is set, dumped to
+     * the console at that interval.
+     */
+    public static Metrics forApplication(String name) {
+        Metrics metrics = new Metrics();
+        try {
+            metrics.register(name);
+        } catch (JMException e) {
+            System.out.println("Metrics not published over JMX: " + e.getMessage());
+        }
+        long dumpSeconds = Long.getLong("travel.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            metrics.startDump(new ConsoleEventSink(), dumpSeconds, TimeUnit.SECONDS);
+        }
+        return metrics;
+    }
+
+    public LongAdder counter(String name) {
+        return (LongAdder) metrics.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return (LatencyHistogram) metrics.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /** Reads {@code value} whenever the metric is reported; replaces an earlier gauge of the same name. */
+    public void gauge(String name, LongSupplier value) {
+        metrics.put(name, value);
+    }
+
+    /** A gauge with a fractional value, such as a hit rate. */
+    public void ratioGauge(String name, DoubleSupplier value) {
+        metrics.put(name, value);
+    }
+
+    /** One line per metric, in name order. */
+    public String dump() {
+        StringBuilder text = new StringBuilder("Metrics at ").append(Instant.now()).append(':');
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            text.append(System.lineSeparator()).append("  ").append(entry.getKey()).append(' ');
+            Object metric = entry.getValue();
+            if (metric instanceof DoubleSupplier) {
+                text.append(String.format("%.4f", ((DoubleSupplier) metric).getAsDouble()));
+            } else {
+                text.append(valueOf(metric));
+            }
+        }
+        return text.toString();
+    }
+
+    /** Writes {@link #dump()} to {@code events} at INFO every {@code period} until closed. */
+    public synchronized void startDump(EventSink events, long period, TimeUnit unit) {
+        if (dumper != null) {
+            dumper.shutdownNow();
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> events.message(EventSink.Level.INFO, dump()), period, period, unit);
+    }
+
+    /** Publishes the metrics on the platform MBean server as travel:type=Metrics,name={@code name}. */
+    public synchronized ObjectName register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("travel:type=Metrics,name=" + name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(new Bean(), objectName);
+        registeredAs = objectName;
+        return objectName;
+    }
+
+    /** Stops the periodic dump and unregisters the MBean. */
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+        if (registeredAs != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+            } catch (JMException e) {
+                // already gone
+            }
+            registeredAs = null;
+        }
+    }
+
+    private static Object valueOf(Object metric) {
+        if (metric instanceof LongAdder) {
+            return ((LongAdder) metric).sum();
+        } else if (metric instanceof LongSupplier) {
+            return ((LongSupplier) metric).getAsLong();
+        } else if (metric instanceof DoubleSupplier) {
+            return ((DoubleSupplier) metric).getAsDouble();
+        }
+        return metric; // a histogram prints its summary
+    }
+
+    /** The MBean view: attributes are read live from the metrics on every request. */
+    private final class Bean implements DynamicMBean {
+        private static final String DUMP = "dump";
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object metric = metrics.get(attribute);
+            if (metric != null && !(metric instanceof LatencyHistogram)) {
+                return valueOf(metric);
+            }
+            int dot = attribute.lastIndexOf('.');
+            Object histogram = dot < 0 ? null : metrics.get(attribute.substring(0, dot));
+            if (histogram instanceof LatencyHistogram) {
+                LatencyHistogram h = (LatencyHistogram) histogram;
+                switch (attribute.substring(dot + 1)) {
+                    case "count": return h.count();
+                    case "p50": return h.percentile(50);
+                    case "p99": return h.percentile(99);
+                    case "p999": return h.percentile(99.9);
+                    case "max": return h.max();
+                    case "mean": return h.mean();
+                    default: break;
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // left out, as the DynamicMBean contract asks
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            if (DUMP.equals(actionName)) {
+                return dump();
+            }
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+                String name = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof LatencyHistogram) {
+                    for (String part : new String[] {"count", "p50", "p99", "p999", "max"}) {
+                        attributes.add(attribute(name + "." + part, "long"));
+                    }
+                    attributes.add(attribute(name + ".mean", "double"));
+                } else {
+                    attributes.add(attribute(name, metric instanceof DoubleSupplier ? "double" : "long"));
+                }
+            }
+            MBeanOperationInfo dump = new MBeanOperationInfo(DUMP, "All metrics as text",
+                    new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO);
+            return new MBeanInfo(Metrics.class.getName(), "Order queue and routing metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null,
+                    new MBeanOperationInfo[] {dump}, null);
+        }
+
+        private MBeanAttributeInfo attribute(String name, String type) {
+            return new MBeanAttributeInfo(name, type, name, true, false, false);
+        }
+    }
+}
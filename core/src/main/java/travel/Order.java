@@ -0,0 +1,65 @@
+package travel;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+class Order implements Comparable<Order> {
+    private String name;
+    private int priority;
+    private String location;
+    private long enqueuedAt;
+    private long deadline;
+
+    public Order(String name, int priority, String location) {
+        this(name, priority, location, 0);
+    }
+
+    public Order(String name, int priority, String location, long enqueuedAt) {
+        this(name, priority, location, enqueuedAt, 0);
+    }
+
+    public Order(String name, int priority, String location, long enqueuedAt, long deadline) {
+        this.name = name;
+        this.priority = priority;
+        this.location = location;
+        this.enqueuedAt = enqueuedAt;
+        this.deadline = deadline;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /** {@code System.nanoTime()} when the order was queued, 0 when the queue was not timing orders. */
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    /** Promised delivery time in epoch milliseconds, 0 when nothing was promised. */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public boolean hasDeadline() {
+        return deadline != 0;
+    }
+
+    @Override
+    public int compareTo(Order other) {
+        return Integer.compare(this.priority, other.priority); // Lower number is dispatched first (1 = fast)
+    }
+
+    @Override
+    public String toString() {
+        String due = deadline == 0 ? "" : ", Due: " + Instant.ofEpochMilli(deadline).truncatedTo(ChronoUnit.SECONDS);
+        return name + " (Priority: " + priority + ", Location: " + location + due + ")";
+    }
+}
@@ -0,0 +1,669 @@
+package travel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log and snapshots that let a queue survive a crash or restart.
+ * Every enqueue, dispatch, move to another tier and change of today's
+ * locations is appended as a checksummed record to a memory-mapped segment file. The OS keeps the mapped
+ * pages when the process dies, so a crash of the JVM loses nothing; a
+ * flusher thread forces them to disk as well, in the background for
+ * {@link Durability#ASYNC} or before {@link #commit} returns for
+ * {@link Durability#GROUP_COMMIT}, where every append waiting at the time
+ * shares one force.
+ *
+ * {@link #checkpoint} writes the whole queue to a compact snapshot, tier by
+ * tier in leaving order, and starts a new segment; segments the snapshot
+ * covers are deleted. Opening a journal loads the snapshot, replays the
+ * segments after it and rebuilds the store and queue, skipping orders that
+ * were dispatched. A record cut short by a crash ends the replay. Orders are
+ * identified by store handle, so a dispatch must be journaled before its
+ * handle is freed, and an enqueue before the handle is queued.
+ *
+ * Layout, little-endian:
+ * <pre>
+ *   segment   magic, format, segment number (long), records..., 0
+ *   record    length, crc32c, type, payload  (length and crc cover type and payload)
+ *   snapshot  magic, format, first segment (long), locations, tiers, {count, orders}..., crc32c
+ *   order     handle, priority (byte), name, location, deadline (long)  (strings as length + UTF-8)
+ * </pre>
+ * Enqueue and requeue records carry an order. A requeue takes the order
+ * already queued under its handle out of its tier and puts it at the back of
+ * the tier for its new priority, in one record so a crash cannot lose it.
+ * Format 1 files, written before orders had deadlines, lack the deadline;
+ * they and format 2 files, which have no requeue records, are still read.
+ *
+ * Appends may come from several threads. A checkpoint needs the queue held
+ * still: no enqueue or dispatch may run while it is taken.
+ */
+class OrderJournal implements AutoCloseable {
+    static final int SEGMENT_MAGIC = 0x4F4A524E; // "OJRN"
+    static final int SNAPSHOT_MAGIC = 0x4F534E50; // "OSNP"
+    static final int FORMAT = 3;
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+
+    private static final int SEGMENT_HEADER = 16;
+    private static final int RECORD_HEADER = 8;
+    private static final byte ENQUEUED = 1;
+    private static final byte DISPATCHED = 2;
+    private static final byte LOCATIONS = 3;
+    private static final byte REQUEUED = 4;
+    private static final long FLUSH_MILLIS = 50;
+    private static final String SNAPSHOT = "snapshot.bin";
+
+    /** When appended records reach the disk. */
+    enum Durability {
+        /** Forced in the background every few milliseconds; a power cut may lose the last of them. */
+        ASYNC,
+        /** {@link #commit} waits until everything appended so far is forced. */
+        GROUP_COMMIT
+    }
+
+    /** What was found when the journal was opened. */
+    static final class Recovery {
+        private final int orders;
+        private final Set<String> locations;
+        private final long records;
+        private final boolean torn;
+        private final long nanos;
+
+        Recovery(int orders, Set<String> locations, long records, boolean torn, long nanos) {
+            this.orders = orders;
+            this.locations = locations;
+            this.records = records;
+            this.torn = torn;
+            this.nanos = nanos;
+        }
+
+        /** Orders put back in the queue. */
+        public int orders() {
+            return orders;
+        }
+
+        /** Today's locations as last journaled, empty when none were. */
+        public Set<String> locations() {
+            return locations;
+        }
+
+        /** Journal records replayed on top of the snapshot. */
+        public long records() {
+            return records;
+        }
+
+        /** True when the last record had been cut short by a crash and was dropped. */
+        public boolean torn() {
+            return torn;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Recovered %d orders (%d journal records replayed%s) in %.1f ms",
+                    orders, records, torn ? ", torn last record dropped" : "", nanos / 1e6);
+        }
+    }
+
+    private final Path directory;
+    private final Durability durability;
+    private final int segmentBytes;
+    private final long checkpointBytes;
+    private final CRC32C crc = new CRC32C();
+    private final List<MappedByteBuffer> unforced = new ArrayList<>();
+    private final Thread flusher;
+    private Recovery recovery;
+
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private int offset;
+    private byte[] record = new byte[256];
+    private ByteBuffer out = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+    private long appended; // bytes appended since open
+    private long flushed;
+    private long sinceCheckpoint;
+    private boolean closed;
+
+    private OrderJournal(Path directory, Durability durability, int segmentBytes) {
+        this.directory = directory;
+        this.durability = durability;
+        this.segmentBytes = segmentBytes;
+        this.checkpointBytes = 4L * segmentBytes;
+        this.flusher = new Thread(this::flushLoop, "journal-flush");
+        this.flusher.setDaemon(true);
+    }
+
+    public static OrderJournal open(Path directory, Durability durability, OrderStore store, TieredQueue queue)
+            throws IOException {
+        return open(directory, durability, DEFAULT_SEGMENT_BYTES, store, queue);
+    }
+
+    /**
+     * Opens the journal in {@code directory}, creating it if needed, and puts
+     * every order it holds back into the empty {@code store} and
+     * {@code queue}. Ends with a checkpoint, because the recovered orders have
+     * new handles.
+     */
+    public static OrderJournal open(Path directory, Durability durability, int segmentBytes, OrderStore store,
+                                    TieredQueue queue) throws IOException {
+        if (store.size() != 0 || !queue.isEmpty()) {
+            throw new IllegalStateException("A journal must be opened before any order is queued");
+        }
+        Files.createDirectories(directory);
+        OrderJournal journal = new OrderJournal(directory, durability, segmentBytes);
+        Set<String> locations = journal.recover(store, queue);
+        journal.checkpoint(store, queue, locations);
+        journal.flusher.start();
+        return journal;
+    }
+
+    public Recovery recovery() {
+        return recovery;
+    }
+
+    /** Records an order that was stored under {@code handle} and is about to be queued. */
+    public void enqueued(int handle, String name, int priority, String location) {
+        enqueued(handle, name, priority, location, 0);
+    }
+
+    /** Records an order promised for {@code deadline} (epoch milliseconds, 0 for none). */
+    public synchronized void enqueued(int handle, String name, int priority, String location, long deadline) {
+        appendOrder(ENQUEUED, handle, name, priority, location, deadline);
+    }
+
+    /**
+     * Records that the order queued under {@code handle} now has
+     * {@code priority} and is about to join the back of that tier, e.g. when
+     * its deadline escalates it to fast delivery.
+     */
+    public synchronized void requeued(int handle, String name, int priority, String location, long deadline) {
+        appendOrder(REQUEUED, handle, name, priority, location, deadline);
+    }
+
+    private void appendOrder(byte type, int handle, String name, int priority, String location, long deadline) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] locationBytes = location.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + 1 + 4 + nameBytes.length + 4 + locationBytes.length + 8;
+        ByteBuffer payload = begin(type, length);
+        payload.putInt(handle).put((byte) priority);
+        putString(payload, nameBytes);
+        putString(payload, locationBytes);
+        payload.putLong(deadline);
+        append(length);
+    }
+
+    /** Records that the order under {@code handle} left the queue; must come before the handle is freed. */
+    public synchronized void dispatched(int handle) {
+        begin(DISPATCHED, 5).putInt(handle);
+        append(5);
+    }
+
+    /** Records today's available locations. */
+    public synchronized void locations(Set<String> locations) {
+        List<byte[]> codes = new ArrayList<>();
+        int length = 1 + 4;
+        for (String location : locations) {
+            byte[] code = location.getBytes(StandardCharsets.UTF_8);
+            codes.add(code);
+            length += 4 + code.length;
+        }
+        ByteBuffer payload = begin(LOCATIONS, length);
+        payload.putInt(codes.size());
+        for (byte[] code : codes) {
+            putString(payload, code);
+        }
+        append(length);
+    }
+
+    /**
+     * With {@link Durability#GROUP_COMMIT}, waits until every record appended
+     * so far is on disk; appends from other threads meanwhile join the same
+     * force. Returns at once with {@link Durability#ASYNC}.
+     */
+    public synchronized void commit() throws InterruptedIOException {
+        if (durability != Durability.GROUP_COMMIT) {
+            return;
+        }
+        long target = appended;
+        notifyAll();
+        try {
+            while (flushed < target && !closed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the order journal");
+        }
+    }
+
+    /** True once enough has been appended since the last checkpoint that replaying it would be slow. */
+    public synchronized boolean checkpointDue() {
+        return sinceCheckpoint >= checkpointBytes;
+    }
+
+    /**
+     * Writes a snapshot of {@code queue} and today's {@code locations}, then
+     * drops the journal segments it replaces. Nothing may be enqueued or
+     * dispatched while this runs.
+     */
+    public synchronized void checkpoint(OrderStore store, TieredQueue queue, Set<String> locations) throws IOException {
+        long first = segmentNumber + 1;
+        startSegment(first);
+        writeSnapshot(store, queue, locations, first);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                if (segmentNumberOf(file) < first) {
+                    Files.delete(file);
+                }
+            }
+        }
+        sinceCheckpoint = 0;
+    }
+
+    /** Forces what is left to disk and stops the flusher; appends after this fail. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            forceAll();
+        }
+    }
+
+    private ByteBuffer begin(byte type, int length) {
+        if (closed) {
+            throw new IllegalStateException("Order journal is closed");
+        }
+        if (RECORD_HEADER + length > record.length) {
+            record = new byte[Math.max(RECORD_HEADER + length, record.length * 2)];
+            out = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        out.clear();
+        out.putInt(length).putInt(0).put(type);
+        return out;
+    }
+
+    private void append(int length) {
+        int size = RECORD_HEADER + length;
+        // Leave room for the zero length that ends a segment
+        if (offset + size + 4 > segment.capacity()) {
+            if (SEGMENT_HEADER + size + 4 > segmentBytes) {
+                throw new IllegalArgumentException("Journal record of " + size + " bytes does not fit a segment");
+            }
+            try {
+                startSegment(segmentNumber + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        crc.reset();
+        crc.update(record, RECORD_HEADER, length);
+        out.putInt(4, (int) crc.getValue());
+        segment.put(offset, record, 0, size);
+        offset += size;
+        appended += size;
+        sinceCheckpoint += size;
+    }
+
+    private static void putString(ByteBuffer payload, byte[] bytes) {
+        payload.putInt(bytes.length).put(bytes);
+    }
+
+    private void startSegment(long number) throws IOException {
+        Path file = directory.resolve(String.format("journal-%016d.log", number));
+        MappedByteBuffer next;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            next = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        next.order(ByteOrder.LITTLE_ENDIAN);
+        next.putInt(0, SEGMENT_MAGIC).putInt(4, FORMAT).putLong(8, number);
+        if (segment != null) {
+            unforced.add(segment);
+        }
+        segment = next;
+        segmentNumber = number;
+        offset = SEGMENT_HEADER;
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                long target;
+                List<MappedByteBuffer> buffers;
+                synchronized (this) {
+                    if (durability == Durability.ASYNC && !closed) {
+                        wait(FLUSH_MILLIS);
+                    }
+                    while (appended == flushed && !closed) {
+                        wait(durability == Durability.ASYNC ? FLUSH_MILLIS : 0);
+                    }
+                    if (appended == flushed) {
+                        return;
+                    }
+                    target = appended;
+                    buffers = new ArrayList<>(unforced);
+                    buffers.add(segment);
+                    unforced.clear();
+                }
+                // Forced outside the lock so appends carry on meanwhile
+                for (MappedByteBuffer buffer : buffers) {
+                    buffer.force();
+                }
+                synchronized (this) {
+                    flushed = target;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void forceAll() {
+        for (MappedByteBuffer buffer : unforced) {
+            buffer.force();
+        }
+        unforced.clear();
+        segment.force();
+        flushed = appended;
+        notifyAll();
+    }
+
+    private void writeSnapshot(OrderStore store, TieredQueue queue, Set<String> locations, long first)
+            throws IOException {
+        Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+        List<List<Integer>> tiers = queue.snapshot(Integer::valueOf);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SnapshotWriter out = new SnapshotWriter(channel);
+            out.putInt(SNAPSHOT_MAGIC);
+            out.putInt(FORMAT);
+            out.putLong(first);
+            out.putInt(locations.size());
+            for (String location : locations) {
+                out.putString(location);
+            }
+            out.putInt(tiers.size());
+            for (List<Integer> tier : tiers) {
+                out.putInt(tier.size());
+                for (int handle : tier) {
+                    out.putInt(handle);
+                    out.putByte((byte) store.priority(handle));
+                    out.putString(store.get(handle).getName());
+                    out.putString(store.location(handle));
+                    out.putLong(store.deadline(handle));
+                }
+            }
+            out.finish();
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Loads the snapshot and replays the segments after it; returns today's locations. */
+    private Set<String> recover(OrderStore store, TieredQueue queue) throws IOException {
+        long begin = System.nanoTime();
+        Set<String> locations = new LinkedHashSet<>();
+        // Every queued order is an entry, pointing at its encoding in the snapshot or a segment
+        List<ByteBuffer> sources = new ArrayList<>();
+        List<Integer> formats = new ArrayList<>(); // of each source
+        long[] entries = new long[1024];
+        int entryCount = 0;
+        int[] entryOf = new int[1024]; // journaled handle -> entry + 1, 0 when not queued
+        BitSet dispatched = new BitSet();
+        long first = 0;
+
+        Path snapshotFile = directory.resolve(SNAPSHOT);
+        if (Files.exists(snapshotFile)) {
+            ByteBuffer snapshot = map(snapshotFile);
+            sources.add(snapshot);
+            int format = snapshot.getInt(4);
+            formats.add(format);
+            int end = snapshot.capacity() - 4;
+            if (end < 24 || snapshot.getInt(0) != SNAPSHOT_MAGIC || !isKnownFormat(format)) {
+                throw new IOException("Not an order snapshot: " + snapshotFile);
+            }
+            crc.reset();
+            crc.update(snapshot.duplicate().limit(end));
+            if ((int) crc.getValue() != snapshot.getInt(end)) {
+                throw new IOException("Corrupt order snapshot: " + snapshotFile);
+            }
+            first = snapshot.getLong(8);
+            int position = 16;
+            int count = snapshot.getInt(position);
+            position += 4;
+            for (int i = 0; i < count; i++) {
+                locations.add(getString(snapshot, position));
+                position += 4 + snapshot.getInt(position);
+            }
+            int tiers = snapshot.getInt(position);
+            position += 4;
+            for (int tier = 0; tier < tiers; tier++) {
+                int orders = snapshot.getInt(position);
+                position += 4;
+                for (int i = 0; i < orders; i++) {
+                    if (entryCount == entries.length) {
+                        entries = Arrays.copyOf(entries, entryCount * 2);
+                    }
+                    entryOf = mapHandle(entryOf, snapshot.getInt(position), entryCount);
+                    entries[entryCount++] = position;
+                    position = skipOrder(snapshot, position, format);
+                }
+            }
+        }
+
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                if (segmentNumberOf(file) >= first) {
+                    segments.add(file);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(OrderJournal::segmentNumberOf));
+        long records = 0;
+        boolean torn = false;
+        for (int s = 0; s < segments.size() && !torn; s++) {
+            Path file = segments.get(s);
+            ByteBuffer log = map(file);
+            if (log.capacity() < SEGMENT_HEADER || log.getInt(0) != SEGMENT_MAGIC || !isKnownFormat(log.getInt(4))) {
+                throw new IOException("Not an order journal segment: " + file);
+            }
+            long source = (long) sources.size() << 32;
+            sources.add(log);
+            formats.add(log.getInt(4));
+            segmentNumber = Math.max(segmentNumber, log.getLong(8));
+            int position = SEGMENT_HEADER;
+            while (position + RECORD_HEADER <= log.capacity()) {
+                int length = log.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || length > log.capacity() - position - RECORD_HEADER || !checksumMatches(log, position, length)) {
+                    if (s < segments.size() - 1) {
+                        throw new IOException("Corrupt order journal record at " + position + " in " + file);
+                    }
+                    torn = true;
+                    break;
+                }
+                int payload = position + RECORD_HEADER + 1;
+                byte type = log.get(position + RECORD_HEADER);
+                switch (type) {
+                    case REQUEUED:
+                    case ENQUEUED:
+                        int queued = log.getInt(payload);
+                        if (type == REQUEUED && queued >= 0 && queued < entryOf.length && entryOf[queued] > 0) {
+                            dispatched.set(entryOf[queued] - 1); // leaves its old place in the queue
+                        }
+                        if (entryCount == entries.length) {
+                            entries = Arrays.copyOf(entries, entryCount * 2);
+                        }
+                        entryOf = mapHandle(entryOf, log.getInt(payload), entryCount);
+                        entries[entryCount++] = source | payload;
+                        break;
+                    case DISPATCHED:
+                        int handle = log.getInt(payload);
+                        if (handle >= 0 && handle < entryOf.length && entryOf[handle] > 0) {
+                            dispatched.set(entryOf[handle] - 1);
+                            entryOf[handle] = 0;
+                        }
+                        break;
+                    case LOCATIONS:
+                        locations.clear();
+                        int count = log.getInt(payload);
+                        for (int i = 0, at = payload + 4; i < count; i++, at += 4 + log.getInt(at)) {
+                            locations.add(getString(log, at));
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unknown order journal record at " + position + " in " + file);
+                }
+                position += RECORD_HEADER + length;
+                records++;
+            }
+        }
+
+        int recovered = 0;
+        for (int e = dispatched.nextClearBit(0); e < entryCount; e = dispatched.nextClearBit(e + 1)) {
+            int index = (int) (entries[e] >>> 32);
+            ByteBuffer source = sources.get(index);
+            int position = (int) entries[e] + 4;
+            int priority = source.get(position);
+            String name = getString(source, position + 1);
+            int at = position + 5 + source.getInt(position + 1);
+            String location = getString(source, at);
+            long deadline = formats.get(index) >= 2 ? source.getLong(at + 4 + source.getInt(at)) : 0;
+            queue.add(priority - 1, store.add(name, priority, location, 0, deadline));
+            recovered++;
+        }
+        recovery = new Recovery(recovered, locations, records, torn, System.nanoTime() - begin);
+        return locations;
+    }
+
+    private static int[] mapHandle(int[] entryOf, int handle, int entry) throws IOException {
+        if (handle < 0) {
+            throw new IOException("Corrupt order journal: negative handle " + handle);
+        }
+        if (handle >= entryOf.length) {
+            entryOf = Arrays.copyOf(entryOf, Math.max(handle + 1, entryOf.length * 2));
+        }
+        entryOf[handle] = entry + 1;
+        return entryOf;
+    }
+
+    private static int skipOrder(ByteBuffer source, int position, int format) {
+        position += 5;
+        position += 4 + source.getInt(position);
+        return position + 4 + source.getInt(position) + (format >= 2 ? 8 : 0);
+    }
+
+    private static boolean isKnownFormat(int format) {
+        return format >= 1 && format <= FORMAT;
+    }
+
+    private boolean checksumMatches(ByteBuffer log, int position, int length) {
+        crc.reset();
+        crc.update(log.duplicate().position(position + RECORD_HEADER).limit(position + RECORD_HEADER + length));
+        return (int) crc.getValue() == log.getInt(position + 4);
+    }
+
+    private static String getString(ByteBuffer source, int position) {
+        byte[] bytes = new byte[source.getInt(position)];
+        source.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Order journal file larger than 2 GB: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private static long segmentNumberOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+
+    /** Buffered little-endian writes with a running CRC-32C, which {@link #finish} appends. */
+    private static final class SnapshotWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            room(4).putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            room(8).putLong(value);
+        }
+
+        void putByte(byte value) throws IOException {
+            room(1).put(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int from = 0; from < bytes.length; ) {
+                int chunk = Math.min(bytes.length - from, buffer.capacity());
+                room(chunk).put(bytes, from, chunk);
+                from += chunk;
+            }
+        }
+
+        void finish() throws IOException {
+            drain();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private ByteBuffer room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+            return buffer;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
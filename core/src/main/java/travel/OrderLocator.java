@@ -0,0 +1,601 @@
+package travel;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Where pending orders are, for questions such as "which orders are within
+ * 10 km of this van". Locations get coordinates with {@link #setCoordinates};
+ * orders are int handles (see {@link OrderStore}) added and removed as they
+ * are queued and dispatched. Orders for a location without coordinates are
+ * counted but never found.
+ *
+ * Locations are points of a 3-d tree over their unit vectors on the sphere,
+ * so straight-line distance orders them exactly as great-circle distance
+ * does and the split planes prune correctly anywhere on Earth. The orders of
+ * a location hang off it in a list threaded through int arrays indexed by
+ * handle, oldest first, and every subtree knows how many orders it holds, so
+ * queries skip empty regions and adding or removing an order is O(log n) in
+ * the number of locations. The tree is rebuilt, in O(n log n), on the first
+ * query after coordinates change.
+ *
+ * Not thread safe.
+ */
+class OrderLocator {
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final int NONE = -1;
+
+    // Per location
+    private final Map<String, Integer> pointIds = new HashMap<>();
+    private double[] xyz = new double[48]; // unit vector, three per location
+    private boolean[] placed = new boolean[16];
+    private int[] head = new int[16];
+    private int[] tail = new int[16];
+    private int[] orderCount = new int[16];
+    private int pointCount;
+
+    // Per handle
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    private int[] pointOf = new int[0];
+    private int size;
+    private int unplaced; // orders for locations without coordinates
+
+    // Implicit tree: the range [lo, hi) of tree has its split location at (lo + hi) >>> 1
+    private int[] tree = new int[0]; // placed locations
+    private byte[] axis = new byte[0]; // split axis at each position
+    private int[] subtreeOrders = new int[0]; // orders in the range a position splits
+    private int[] positionOf = new int[16]; // location -> position in tree
+    private boolean stale;
+
+    /** Places {@code location} at a latitude and longitude in degrees. */
+    public void setCoordinates(String location, double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Not a position: " + latitude + ", " + longitude);
+        }
+        int point = pointId(location);
+        if (!placed[point]) {
+            placed[point] = true;
+            unplaced -= orderCount[point];
+        }
+        System.arraycopy(unitVector(latitude, longitude), 0, xyz, 3 * point, 3);
+        stale = true;
+    }
+
+    /** Orders being tracked, found or not. */
+    public int size() {
+        return size;
+    }
+
+    /** Orders whose location has no coordinates. */
+    public int unplaced() {
+        return unplaced;
+    }
+
+    /** Tracks the order under {@code handle}, going to {@code location}. */
+    public void add(int handle, String location) {
+        if (handle < 0) {
+            throw new IllegalArgumentException("Negative handle: " + handle);
+        }
+        if (handle >= pointOf.length) {
+            grow(handle);
+        }
+        if (pointOf[handle] != NONE) {
+            throw new IllegalStateException("Order " + handle + " is already tracked");
+        }
+        int point = pointId(location);
+        pointOf[handle] = point;
+        next[handle] = NONE;
+        prev[handle] = tail[point];
+        if (tail[point] == NONE) {
+            head[point] = handle;
+        } else {
+            next[tail[point]] = handle;
+        }
+        tail[point] = handle;
+        orderCount[point]++;
+        size++;
+        if (!placed[point]) {
+            unplaced++;
+        } else if (!stale) {
+            countAlongPath(positionOf[point], 1);
+        }
+    }
+
+    /** Stops tracking {@code handle}; returns false when it was not tracked. */
+    public boolean remove(int handle) {
+        if (handle < 0 || handle >= pointOf.length || pointOf[handle] == NONE) {
+            return false;
+        }
+        int point = pointOf[handle];
+        int before = prev[handle];
+        int after = next[handle];
+        if (before == NONE) {
+            head[point] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            tail[point] = before;
+        } else {
+            prev[after] = before;
+        }
+        pointOf[handle] = NONE;
+        orderCount[point]--;
+        size--;
+        if (!placed[point]) {
+            unplaced--;
+        } else if (!stale) {
+            countAlongPath(positionOf[point], -1);
+        }
+        return true;
+    }
+
+    /**
+     * Fills {@code handles} with up to {@code handles.length} orders nearest
+     * to a position, closest first and oldest first at the same location.
+     * Returns how many were found.
+     */
+    public int nearest(double latitude, double longitude, int[] handles) {
+        int k = handles.length;
+        if (k == 0 || size - unplaced == 0) {
+            return 0;
+        }
+        ensureTree();
+        Nearest search = new Nearest(unitVector(latitude, longitude), k);
+        search.visit(0, tree.length);
+        return search.emit(handles);
+    }
+
+    /** Hands every order within {@code km} of a position to {@code action}, in no particular order. */
+    public void forEachWithin(double latitude, double longitude, double km, IntConsumer action) {
+        if (size - unplaced == 0 || km < 0) {
+            return;
+        }
+        ensureTree();
+        double[] q = unitVector(latitude, longitude);
+        double reach = chord(km);
+        within(q, reach * reach, reach, 0, tree.length, action);
+    }
+
+    /** Great-circle distance in km from a position to the location of {@code handle}, NaN when it has no coordinates. */
+    public double distanceKm(int handle, double latitude, double longitude) {
+        int point = pointOf[handle];
+        if (!placed[point]) {
+            return Double.NaN;
+        }
+        double[] q = unitVector(latitude, longitude);
+        return kilometres(Math.sqrt(squaredDistance(q, point)));
+    }
+
+    /**
+     * Groups the orders at locations with coordinates into at most
+     * {@code count} delivery zones of nearby locations, by k-means weighted
+     * by the number of orders at each location, seeded with k-means++ from
+     * {@code seed}. Orders of one location always share a zone. Zones come
+     * largest first; each lists its orders through {@code view}, nearest to
+     * its centre first.
+     */
+    public <T> List<Zone<T>> zones(int count, long seed, IntFunction<? extends T> view) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Zone count must be positive: " + count);
+        }
+        int[] points = new int[pointCount];
+        int used = 0;
+        for (int point = 0; point < pointCount; point++) {
+            if (placed[point] && orderCount[point] > 0) {
+                points[used++] = point;
+            }
+        }
+        int k = Math.min(count, used);
+        double[] centres = seedCentres(points, used, k, new SplittableRandom(seed));
+        int[] zoneOf = new int[used];
+        Arrays.fill(zoneOf, NONE);
+        for (int iteration = 0; iteration < 100; iteration++) {
+            boolean moved = false;
+            for (int i = 0; i < used; i++) {
+                int zone = closestCentre(centres, k, points[i]);
+                if (zone != zoneOf[i]) {
+                    zoneOf[i] = zone;
+                    moved = true;
+                }
+            }
+            if (!moved) {
+                break;
+            }
+            double[] sums = new double[3 * k];
+            for (int i = 0; i < used; i++) {
+                int point = points[i];
+                for (int d = 0; d < 3; d++) {
+                    sums[3 * zoneOf[i] + d] += orderCount[point] * xyz[3 * point + d];
+                }
+            }
+            for (int zone = 0; zone < k; zone++) {
+                double norm = Math.sqrt(sums[3 * zone] * sums[3 * zone] + sums[3 * zone + 1] * sums[3 * zone + 1]
+                        + sums[3 * zone + 2] * sums[3 * zone + 2]);
+                if (norm > 0) {
+                    for (int d = 0; d < 3; d++) {
+                        centres[3 * zone + d] = sums[3 * zone + d] / norm;
+                    }
+                }
+            }
+        }
+
+        List<Zone<T>> zones = new ArrayList<>(k);
+        for (int zone = 0; zone < k; zone++) {
+            double[] centre = Arrays.copyOfRange(centres, 3 * zone, 3 * zone + 3);
+            List<double[]> members = new ArrayList<>(); // {distance, location}
+            for (int i = 0; i < used; i++) {
+                if (zoneOf[i] == zone) {
+                    members.add(new double[] {Math.sqrt(squaredDistance(centre, points[i])), points[i]});
+                }
+            }
+            if (members.isEmpty()) {
+                continue;
+            }
+            members.sort(Comparator.comparingDouble(member -> member[0]));
+            List<T> orders = new ArrayList<>();
+            for (double[] member : members) {
+                for (int handle = head[(int) member[1]]; handle != NONE; handle = next[handle]) {
+                    orders.add(view.apply(handle));
+                }
+            }
+            double radius = kilometres(members.get(members.size() - 1)[0]);
+            zones.add(new Zone<>(Math.toDegrees(Math.asin(Math.max(-1, Math.min(1, centre[2])))),
+                    Math.toDegrees(Math.atan2(centre[1], centre[0])), radius, orders));
+        }
+        zones.sort((a, b) -> Integer.compare(b.orders().size(), a.orders().size()));
+        return zones;
+    }
+
+    /** A group of nearby orders: its centre, the distance to its farthest location, and its orders. */
+    static final class Zone<T> {
+        private final double latitude;
+        private final double longitude;
+        private final double radiusKm;
+        private final List<T> orders;
+
+        Zone(double latitude, double longitude, double radiusKm, List<T> orders) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusKm = radiusKm;
+            this.orders = orders;
+        }
+
+        public double latitude() {
+            return latitude;
+        }
+
+        public double longitude() {
+            return longitude;
+        }
+
+        public double radiusKm() {
+            return radiusKm;
+        }
+
+        public List<T> orders() {
+            return orders;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Zone around %.4f, %.4f: %d orders within %.1f km", latitude, longitude,
+                    orders.size(), radiusKm);
+        }
+    }
+
+    private double[] seedCentres(int[] points, int used, int k, SplittableRandom random) {
+        double[] centres = new double[3 * k];
+        double[] nearest = new double[used]; // squared distance to the closest centre so far
+        Arrays.fill(nearest, Double.MAX_VALUE);
+        for (int zone = 0; zone < k; zone++) {
+            double total = 0;
+            for (int i = 0; i < used; i++) {
+                total += orderCount[points[i]] * (zone == 0 ? 1 : nearest[i]);
+            }
+            double pick = random.nextDouble() * total;
+            int chosen = used - 1;
+            for (int i = 0; i < used; i++) {
+                pick -= orderCount[points[i]] * (zone == 0 ? 1 : nearest[i]);
+                if (pick < 0) {
+                    chosen = i;
+                    break;
+                }
+            }
+            System.arraycopy(xyz, 3 * points[chosen], centres, 3 * zone, 3);
+            double[] centre = Arrays.copyOfRange(centres, 3 * zone, 3 * zone + 3);
+            for (int i = 0; i < used; i++) {
+                nearest[i] = Math.min(nearest[i], squaredDistance(centre, points[i]));
+            }
+        }
+        return centres;
+    }
+
+    private int closestCentre(double[] centres, int k, int point) {
+        int best = 0;
+        double bestDistance = Double.MAX_VALUE;
+        for (int zone = 0; zone < k; zone++) {
+            double dx = centres[3 * zone] - xyz[3 * point];
+            double dy = centres[3 * zone + 1] - xyz[3 * point + 1];
+            double dz = centres[3 * zone + 2] - xyz[3 * point + 2];
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = zone;
+            }
+        }
+        return best;
+    }
+
+    private void within(double[] q, double reach2, double reach, int lo, int hi, IntConsumer action) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (subtreeOrders[mid] == 0) {
+            return;
+        }
+        int point = tree[mid];
+        if (orderCount[point] > 0 && squaredDistance(q, point) <= reach2) {
+            for (int handle = head[point]; handle != NONE; handle = next[handle]) {
+                action.accept(handle);
+            }
+        }
+        double offset = q[axis[mid]] - xyz[3 * point + axis[mid]];
+        if (offset <= reach) {
+            within(q, reach2, reach, lo, mid, action);
+        }
+        if (offset >= -reach) {
+            within(q, reach2, reach, mid + 1, hi, action);
+        }
+    }
+
+    /** Nearest locations holding at least k orders between them, kept in a max-heap on distance. */
+    private final class Nearest {
+        final double[] q;
+        final int k;
+        int[] heap = new int[16];
+        double[] distances = new double[16]; // parallel to heap
+        int heapSize;
+        int covered; // orders at the locations in the heap
+
+        Nearest(double[] q, int k) {
+            this.q = q;
+            this.k = k;
+        }
+
+        void visit(int lo, int hi) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (subtreeOrders[mid] == 0) {
+                return;
+            }
+            int point = tree[mid];
+            if (orderCount[point] > 0) {
+                consider(point, squaredDistance(q, point));
+            }
+            double offset = q[axis[mid]] - xyz[3 * point + axis[mid]];
+            boolean leftFirst = offset < 0;
+            visit(leftFirst ? lo : mid + 1, leftFirst ? mid : hi);
+            if (covered < k || offset * offset <= distances[0]) {
+                visit(leftFirst ? mid + 1 : lo, leftFirst ? hi : mid);
+            }
+        }
+
+        private void consider(int point, double distance) {
+            if (covered >= k && distance >= distances[0]) {
+                return;
+            }
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+                distances = Arrays.copyOf(distances, heapSize * 2);
+            }
+            int slot = heapSize++;
+            while (slot > 0 && distances[(slot - 1) >>> 1] < distance) {
+                int parent = (slot - 1) >>> 1;
+                heap[slot] = heap[parent];
+                distances[slot] = distances[parent];
+                slot = parent;
+            }
+            heap[slot] = point;
+            distances[slot] = distance;
+            covered += orderCount[point];
+            // Drop the farthest locations while the rest still hold k orders
+            while (covered - orderCount[heap[0]] >= k) {
+                covered -= orderCount[heap[0]];
+                pollFarthest();
+            }
+        }
+
+        private void pollFarthest() {
+            int lastPoint = heap[--heapSize];
+            double last = distances[heapSize];
+            int slot = 0;
+            int half = heapSize >>> 1;
+            while (slot < half) {
+                int child = 2 * slot + 1;
+                if (child + 1 < heapSize && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (last >= distances[child]) {
+                    break;
+                }
+                heap[slot] = heap[child];
+                distances[slot] = distances[child];
+                slot = child;
+            }
+            heap[slot] = lastPoint;
+            distances[slot] = last;
+        }
+
+        int emit(int[] handles) {
+            Integer[] order = new Integer[heapSize];
+            for (int i = 0; i < heapSize; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> distances[i]));
+            int count = 0;
+            for (int i : order) {
+                for (int handle = head[heap[i]]; handle != NONE && count < k; handle = next[handle]) {
+                    handles[count++] = handle;
+                }
+            }
+            return count;
+        }
+    }
+
+    private void ensureTree() {
+        if (!stale) {
+            return;
+        }
+        int count = 0;
+        for (int point = 0; point < pointCount; point++) {
+            if (placed[point]) {
+                count++;
+            }
+        }
+        tree = new int[count];
+        axis = new byte[count];
+        subtreeOrders = new int[count];
+        count = 0;
+        for (int point = 0; point < pointCount; point++) {
+            if (placed[point]) {
+                tree[count++] = point;
+            }
+        }
+        build(0, count);
+        stale = false;
+    }
+
+    /** Splits [lo, hi) on its widest axis around the median and returns the orders in it. */
+    private int build(int lo, int hi) {
+        if (lo >= hi) {
+            return 0;
+        }
+        int widest = 0;
+        double widestSpread = -1;
+        for (int d = 0; d < 3; d++) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = lo; i < hi; i++) {
+                double value = xyz[3 * tree[i] + d];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widest = d;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, widest);
+        axis[mid] = (byte) widest;
+        positionOf[tree[mid]] = mid;
+        subtreeOrders[mid] = orderCount[tree[mid]] + build(lo, mid) + build(mid + 1, hi);
+        return subtreeOrders[mid];
+    }
+
+    /** Puts the location with the {@code nth} smallest coordinate on {@code d} at {@code nth}, smaller ones before it. */
+    private void select(int lo, int hi, int nth, int d) {
+        while (lo < hi) {
+            double pivot = xyz[3 * tree[(lo + hi) >>> 1] + d];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (xyz[3 * tree[i] + d] < pivot) {
+                    i++;
+                }
+                while (xyz[3 * tree[j] + d] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = tree[i];
+                    tree[i] = tree[j];
+                    tree[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (nth <= j) {
+                hi = j;
+            } else if (nth >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Adds {@code delta} to the order count of every range on the way down to {@code position}. */
+    private void countAlongPath(int position, int delta) {
+        int lo = 0;
+        int hi = tree.length;
+        while (true) {
+            int mid = (lo + hi) >>> 1;
+            subtreeOrders[mid] += delta;
+            if (position == mid) {
+                return;
+            } else if (position < mid) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+    }
+
+    private int pointId(String location) {
+        Integer id = pointIds.get(location);
+        if (id != null) {
+            return id;
+        }
+        if (pointCount == head.length) {
+            int capacity = pointCount * 2;
+            xyz = Arrays.copyOf(xyz, 3 * capacity);
+            placed = Arrays.copyOf(placed, capacity);
+            head = Arrays.copyOf(head, capacity);
+            tail = Arrays.copyOf(tail, capacity);
+            orderCount = Arrays.copyOf(orderCount, capacity);
+            positionOf = Arrays.copyOf(positionOf, capacity);
+        }
+        int point = pointCount++;
+        head[point] = NONE;
+        tail[point] = NONE;
+        pointIds.put(location, point);
+        return point;
+    }
+
+    private void grow(int handle) {
+        int capacity = Math.max(handle + 1, Math.max(16, pointOf.length * 2));
+        int old = pointOf.length;
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        pointOf = Arrays.copyOf(pointOf, capacity);
+        Arrays.fill(pointOf, old, capacity, NONE);
+    }
+
+    private double squaredDistance(double[] q, int point) {
+        double dx = q[0] - xyz[3 * point];
+        double dy = q[1] - xyz[3 * point + 1];
+        double dz = q[2] - xyz[3 * point + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double[] unitVector(double latitude, double longitude) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        return new double[] {Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    /** Straight-line distance between unit vectors {@code km} apart on the surface. */
+    private static double chord(double km) {
+        return km >= Math.PI * EARTH_RADIUS_KM ? 2 : 2 * Math.sin(km / (2 * EARTH_RADIUS_KM));
+    }
+
+    private static double kilometres(double chord) {
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, chord / 2));
+    }
+}
@@ -0,0 +1,416 @@
+package travel;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+public class OrderQueue {
+    private static final int FAST_DELIVERY_PRIORITY = 1;
+    private static final int NORMAL_DELIVERY_PRIORITY = 2;
+    private static final int PRIORITY_LEVELS = 2;
+    private static final int DISPLAY_PAGE = 1000; // orders fetched from the queue at a time by display
+    private final TieredQueue deliveryQueue; // handles into orders, tier = priority - 1
+    private final OrderStore orders;
+    private Graph graph = new Graph();
+    private EventSink events = new ConsoleEventSink();
+    private Metrics metrics;
+    private LatencyHistogram waitNanos; // null until metrics are switched on
+    private LongAdder rejected;
+    private Set<String> locations = new HashSet<>();
+    private final Map<String, String> districtNames = new HashMap<>(); // location code -> district, for messages
+    private static final String DEFAULT_START_LOCATION = "A"; // Colombo
+    private String startLocation = DEFAULT_START_LOCATION; // where routes begin
+
+    public OrderQueue() {
+        this(false);
+    }
+
+    /**
+     * With {@code concurrent} set, enqueue may be called from any number of
+     * intake threads while a single dispatcher dequeues or drains.
+     */
+    public OrderQueue(boolean concurrent) {
+        deliveryQueue = concurrent ? new ConcurrentTieredScheduler(PRIORITY_LEVELS) : new TieredScheduler(PRIORITY_LEVELS);
+        orders = new OrderStore(concurrent);
+    }
+
+    public void enqueue(String order, boolean isFastDelivery, String location) {
+        enqueue(order, isFastDelivery ? FAST_DELIVERY_PRIORITY : NORMAL_DELIVERY_PRIORITY, location);
+    }
+
+    public void enqueue(String order, int priority, String location) {
+        if (priority < 1 || priority > PRIORITY_LEVELS) {
+            throw new IllegalArgumentException("Priority must be between 1 and " + PRIORITY_LEVELS + ": " + priority);
+        }
+        deliveryQueue.add(priority - 1, orders.add(order, priority, location, stamp()));
+        events.orderAdded(order, priority, location);
+    }
+
+    /** Adds orders without printing a line for each one; the sink used by bulk imports. */
+    public void enqueueBatch(String[] names, String[] locations, int[] priorities, int count) {
+        long now = stamp();
+        for (int i = 0; i < count; i++) {
+            deliveryQueue.add(priorities[i] - 1, orders.add(names[i], priorities[i], locations[i], now));
+        }
+    }
+
+    /** Streams a CSV or NDJSON order file into the queue, accepting only the given locations. */
+    public BulkOrderLoader.Report loadOrders(Path file, Collection<String> validLocations) throws IOException {
+        BulkOrderLoader.Report report = new BulkOrderLoader(validLocations, PRIORITY_LEVELS).load(file, this::enqueueBatch);
+        if (rejected != null) {
+            rejected.add(report.rejected());
+        }
+        events.message(EventSink.Level.INFO, report.toString());
+        for (String sample : report.rejectSamples()) {
+            events.message(EventSink.Level.WARN, "Rejected " + sample);
+        }
+        return report;
+    }
+
+    public Order dequeue() {
+        Order order = next();
+        if (order == null) {
+            events.queueEmpty();
+        }
+        return order;
+    }
+
+    /**
+     * Takes the next order, or null once the queue yields nothing. Concurrent
+     * intake can leave {@link TieredQueue#size} counting an order whose
+     * producer has not finished writing it, so loops end on null, not size.
+     */
+    private Order next() {
+        int handle = deliveryQueue.poll();
+        Order order = handle == TieredQueue.EMPTY ? null : orders.remove(handle);
+        if (order != null) {
+            recordWait(order, stamp());
+            events.orderDispatched(order);
+        }
+        return order;
+    }
+
+    /**
+     * Removes up to {@code maxOrders} orders in dispatch order, for dispatchers
+     * that work in batches. Keeps draining while orders arrive, so producers
+     * that finish during the call are not cut off at the size seen first.
+     */
+    public List<Order> drainTo(int maxOrders) {
+        if (maxOrders < 0) {
+            throw new IllegalArgumentException("maxOrders must not be negative: " + maxOrders);
+        }
+        int[] handles = new int[Math.min(maxOrders, Math.max(deliveryQueue.size(), 16))];
+        List<Order> batch = new ArrayList<>(handles.length);
+        long now = stamp();
+        while (batch.size() < maxOrders) {
+            int wanted = Math.min(handles.length, maxOrders - batch.size());
+            int count = deliveryQueue.drainTo(handles, wanted);
+            for (int i = 0; i < count; i++) {
+                Order order = orders.remove(handles[i]);
+                recordWait(order, now);
+                batch.add(order);
+            }
+            if (count < wanted) {
+                break;
+            }
+        }
+        if (!batch.isEmpty()) {
+            events.batchDispatched(batch.size());
+        }
+        return batch;
+    }
+
+    /**
+     * Sends order, dispatch and route events to {@code events} instead of the
+     * console, e.g. an {@link AsyncEventSink} or {@link EventSink#NONE}.
+     * Listings and prompts still print directly.
+     */
+    public void setEventSink(EventSink events) {
+        this.events = events;
+    }
+
+    /**
+     * Times every order from enqueue to dispatch and publishes the tier depths,
+     * rejected orders, search times and route cache hit rate into {@code metrics}.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        graph.instrument(metrics);
+        waitNanos = metrics.histogram("queue.wait.nanos");
+        rejected = metrics.counter("orders.rejected");
+        metrics.gauge("queue.fast.depth", () -> deliveryQueue.size(FAST_DELIVERY_PRIORITY - 1));
+        metrics.gauge("queue.normal.depth", () -> deliveryQueue.size(NORMAL_DELIVERY_PRIORITY - 1));
+    }
+
+    private long stamp() {
+        return waitNanos != null ? System.nanoTime() : 0;
+    }
+
+    private void recordWait(Order order, long now) {
+        if (waitNanos != null && order.getEnqueuedAt() != 0) {
+            waitNanos.record(now - order.getEnqueuedAt());
+        }
+    }
+
+    /** Number of orders waiting, fast and normal. */
+    public int size() {
+        return deliveryQueue.size();
+    }
+
+    /** Lets an order waiting behind more than {@code dequeues} others go next regardless of priority; 0 disables. */
+    public void setAgingLimit(long dequeues) {
+        deliveryQueue.setAgingLimit(dequeues);
+    }
+
+    /**
+     * Prints both tiers in dispatch order. Each is read and printed a page at
+     * a time rather than copied whole, so intake and dispatch carry on while a
+     * long queue is printed.
+     */
+    public void display() {
+        events.flush();
+        if (deliveryQueue.size(FAST_DELIVERY_PRIORITY - 1) == 0 && deliveryQueue.size(NORMAL_DELIVERY_PRIORITY - 1) == 0) {
+            System.out.println("Queue is empty");
+        } else {
+            printTier("Fast delivery orders in queue: ", FAST_DELIVERY_PRIORITY - 1);
+            printTier("Normal delivery orders in queue: ", NORMAL_DELIVERY_PRIORITY - 1);
+        }
+    }
+
+    private void printTier(String heading, int tier) {
+        StringBuilder line = new StringBuilder(heading).append('[');
+        TieredQueue.Cursor cursor = new TieredQueue.Cursor();
+        String separator = "";
+        List<Order> page;
+        do {
+            page = deliveryQueue.page(tier, cursor, handle -> true, DISPLAY_PAGE, orders::get);
+            for (Order order : page) {
+                line.append(separator).append(order);
+                separator = ", ";
+            }
+            System.out.print(line);
+            line.setLength(0);
+        } while (page.size() == DISPLAY_PAGE);
+        System.out.println(']');
+    }
+
+    public void displayRoutes() {
+        if (locations.isEmpty()) {
+            events.message(EventSink.Level.WARN, "No locations to display routes for.");
+        } else {
+            events.message(EventSink.Level.INFO, "Displaying shortest paths for each order location starting from " + startName() + ":");
+            String currentLocation = startLocation;
+            Route route = new Route();
+            Order nextOrder;
+            while ((nextOrder = next()) != null) {
+                graph.route(currentLocation, nextOrder.getLocation(), route);
+                events.routeComputed(route);
+                currentLocation = nextOrder.getLocation(); // Update current location to the last delivered location
+            }
+        }
+    }
+
+    /**
+     * Dispatches everything queued along a planned tour instead of in queue
+     * order: fast orders first, each tier visiting its locations in the
+     * order {@link TourPlanner} finds shortest, then reports the distance
+     * saved against plain dequeue order.
+     */
+    public void displayOptimizedRoutes() {
+        if (locations.isEmpty()) {
+            events.message(EventSink.Level.WARN, "No locations to display routes for.");
+            return;
+        }
+        events.message(EventSink.Level.INFO, "Displaying optimized delivery tour starting from " + startName() + ":");
+        int[] handles = new int[deliveryQueue.size()];
+        int count = deliveryQueue.drainTo(handles, handles.length);
+        TourPlanner planner = new TourPlanner(graph, orders);
+        int[] tour = planner.plan(startLocation, handles, count);
+        String currentLocation = startLocation;
+        Route route = new Route();
+        long now = stamp();
+        for (int i = 0; i < count; i++) {
+            Order nextOrder = orders.remove(tour[i]);
+            recordWait(nextOrder, now);
+            events.orderDispatched(nextOrder);
+            graph.route(currentLocation, nextOrder.getLocation(), route);
+            events.routeComputed(route);
+            currentLocation = nextOrder.getLocation();
+        }
+        if (count > 0) {
+            events.message(EventSink.Level.INFO, planner.summary());
+        }
+    }
+
+    /**
+     * Dispatches everything queued with a fleet, one vehicle per entry of
+     * {@code depots}: orders are split between the vehicles and each
+     * vehicle's tour is planned in parallel, then every vehicle's deliveries
+     * are reported in turn.
+     */
+    public void displayFleetRoutes(List<String> depots, FleetDispatcher.Assignment assignment) {
+        if (locations.isEmpty()) {
+            events.message(EventSink.Level.WARN, "No locations to display routes for.");
+            return;
+        }
+        int[] handles = new int[deliveryQueue.size()];
+        int count = deliveryQueue.drainTo(handles, handles.length);
+        List<FleetDispatcher.VehiclePlan> plans;
+        long planNanos;
+        try (FleetDispatcher fleet = new FleetDispatcher(graph, depots, assignment)) {
+            plans = fleet.plan(handles, count, orders);
+            planNanos = fleet.planNanos();
+        }
+        Route route = new Route();
+        long now = stamp();
+        long total = 0;
+        for (FleetDispatcher.VehiclePlan plan : plans) {
+            events.message(EventSink.Level.INFO, plan.toString());
+            String currentLocation = plan.depot();
+            for (int handle : plan.handles()) {
+                Order nextOrder = orders.remove(handle);
+                recordWait(nextOrder, now);
+                events.orderDispatched(nextOrder);
+                graph.route(currentLocation, nextOrder.getLocation(), route);
+                events.routeComputed(route);
+                currentLocation = nextOrder.getLocation();
+            }
+            total += plan.distance();
+        }
+        events.message(EventSink.Level.INFO, String.format("Fleet of %d vehicles: %d orders, %d units, planned in %.1f ms",
+                plans.size(), count, total, planNanos / 1e6));
+    }
+
+    /** The district routes start from, or its location code when it has no district name. */
+    private String startName() {
+        return districtNames.getOrDefault(startLocation, startLocation);
+    }
+
+    public void addLocations(Map<String, String> districts) {
+        locations.addAll(districts.keySet());
+        districtNames.putAll(districts);
+        events.message(EventSink.Level.INFO, "Locations added: " + districts);
+    }
+
+    /**
+     * Replaces the road network with a compiled, memory-mapped one, e.g. from
+     * {@link WorkloadGenerator}, and starts routes at {@code depot}, one of its
+     * locations, instead of Colombo.
+     */
+    public void loadNetwork(Path file, String depot) throws IOException {
+        graph = Graph.open(file);
+        if (metrics != null) {
+            graph.instrument(metrics);
+        }
+        startLocation = depot;
+        locations.add(depot);
+        events.message(EventSink.Level.INFO, "Road network loaded from " + file);
+    }
+
+    public void addRoute(String start, String end, int distance) {
+        if (locations.contains(start) && locations.contains(end)) {
+            graph.addEdge(start, end, distance);
+            events.routeAdded(start, end, distance);
+        } else {
+            events.message(EventSink.Level.WARN, "Invalid locations. Ensure both locations are added before creating a route.");
+        }
+    }
+
+    public static void main(String[] args) {
+        OrderQueue orderQueue = new OrderQueue();
+        orderQueue.setMetrics(Metrics.forApplication("OrderQueue"));
+
+        // Add locations (districts)
+        Map<String, String> districts = new HashMap<>();
+        districts.put("A", "Colombo");
+        districts.put("B", "Gampaha");
+        districts.put("C", "Kurunegala");
+        districts.put("D", "Kandy");
+        districts.put("E", "Galle");
+        districts.put("F", "Matara");
+        districts.put("G", "Jaffna");
+        districts.put("H", "Anuradhapura");
+
+        orderQueue.addLocations(districts);
+
+        // Display locations
+        System.out.println("Available locations:");
+        for (Map.Entry<String, String> entry : districts.entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+        }
+
+        Scanner scanner = new Scanner(System.in);
+
+        // Add today's available locations
+        Set<String> availableLocations = new HashSet<>();
+        System.out.println("Enter today's available locations (A-H) or type 'done' to finish:");
+        while (true) {
+            String location = scanner.nextLine();
+            if (location.equalsIgnoreCase("done")) break;
+            if (districts.containsKey(location)) {
+                availableLocations.add(location);
+                System.out.println("Location " + location + " (" + districts.get(location) + ") added to today's available locations.");
+            } else {
+                System.out.println("Invalid location. Please enter a valid location code (A-H).");
+            }
+        }
+
+        if (args.length > 0) {
+            // Import orders from the files given on the command line instead of prompting
+            for (String file : args) {
+                try {
+                    orderQueue.loadOrders(Paths.get(file), availableLocations);
+                } catch (IOException | InvalidPathException e) {
+                    System.out.println("Could not read orders from " + file + ": " + e.getMessage());
+                }
+            }
+        } else {
+            // Add fast delivery orders
+            System.out.println("Enter fast delivery orders (name, location) or type 'done' to finish:");
+            while (true) {
+                System.out.print("Order name: ");
+                String name = scanner.nextLine();
+                if (name.equalsIgnoreCase("done")) break;
+
+                System.out.print("Order location: ");
+                String location = scanner.nextLine();
+                if (availableLocations.contains(location)) {
+                    orderQueue.enqueue(name, true, location);
+                } else {
+                    System.out.println("Invalid location. Please enter a location from today's available locations.");
+                }
+            }
+
+            // Add normal delivery orders
+            System.out.println("Enter normal delivery orders (name, location) or type 'done' to finish:");
+            while (true) {
+                System.out.print("Order name: ");
+                String name = scanner.nextLine();
+                if (name.equalsIgnoreCase("done")) break;
+
+                System.out.print("Order location: ");
+                String location = scanner.nextLine();
+                if (availableLocations.contains(location)) {
+                    orderQueue.enqueue(name, false, location);
+                } else {
+                    System.out.println("Invalid location. Please enter a location from today's available locations.");
+                }
+            }
+        }
+
+        // Add routes between locations
+        orderQueue.addRoute("A", "B", 20); // Colombo to Gampaha
+        orderQueue.addRoute("A", "C", 50); // Colombo to Kurunegala
+        orderQueue.addRoute("B", "C", 30); // Gampaha to Kurunegala
+        orderQueue.addRoute("B", "D", 40); // Gampaha to Kandy
+        orderQueue.addRoute("C", "D", 70); // Kurunegala to Kandy
+        orderQueue.addRoute("D", "E", 60); // Kandy to Galle
+        orderQueue.addRoute("E", "F", 80); // Galle to Matara
+        orderQueue.addRoute("F", "G", 120); // Matara to Jaffna
+        orderQueue.addRoute("G", "H", 90); // Jaffna to Anuradhapura
+
+        // Process orders
+        orderQueue.displayRoutes();
+    }
+}
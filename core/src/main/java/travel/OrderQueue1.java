@@ -0,0 +1,1065 @@
+package travel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+import java.util.function.LongSupplier;
+
+public class OrderQueue1 {
+    private static final int FAST_DELIVERY_PRIORITY = 1;
+    private static final int NORMAL_DELIVERY_PRIORITY = 2;
+    private static final int PRIORITY_LEVELS = 2;
+    private static final long DEADLINE_TICK_MILLIS = 1000;
+    private static final Duration DEFAULT_ESCALATION_LEAD = Duration.ofMinutes(30);
+    private static final int LISTING_PAGE = 1000; // orders printed per page of a listing
+
+    /** How queued orders are ordered for dispatch. */
+    enum DispatchPolicy {
+        /** Fast before normal, first come first served; a normal order near its deadline is moved to fast. */
+        PRIORITY,
+        /** Earliest deadline first, then orders without a deadline by priority. */
+        DEADLINE
+    }
+
+    private final OrderStore orders = new OrderStore();
+    private DispatchPolicy dispatchPolicy = DispatchPolicy.PRIORITY;
+    private TieredQueue deliveryQueue = new TieredScheduler(PRIORITY_LEVELS); // handles into orders, tier = priority - 1
+    private long agingLimit;
+    private TimerWheel deadlineTimers; // null until an order has a deadline
+    private final BitSet warned = new BitSet(); // handles whose at-risk alert has gone out
+    private LongSupplier clock = System::currentTimeMillis;
+    private long escalationLeadMillis = DEFAULT_ESCALATION_LEAD.toMillis();
+    private LongAdder escalated;
+    private LongAdder breached;
+    private Graph graph = new Graph();
+    private EventSink events = new ConsoleEventSink();
+    private Metrics metrics;
+    private LatencyHistogram waitNanos; // null until metrics are switched on
+    private LongAdder rejected;
+    private OrderJournal journal; // null unless orders are persisted
+    private Set<String> availableLocations = new HashSet<>();
+    private static final String DEFAULT_START_LOCATION = "A"; 
+
+    // Existing available locations (for reference)
+    private final Map<String, String> allLocations = Map.of(
+        "A", "Colombo",
+        "B", "Gampaha",
+        "C", "Kurunegala",
+        "D", "Kandy",
+        "E", "Galle",
+        "F", "Matara",
+        "G", "Jaffna",
+        "H", "Anuradhapura"
+    );
+
+    // Town centre of each district, latitude and longitude in degrees
+    private final Map<String, double[]> districtCoordinates = Map.of(
+        "A", new double[] {6.9271, 79.8612},
+        "B", new double[] {7.0840, 80.0098},
+        "C", new double[] {7.4863, 80.3647},
+        "D", new double[] {7.2906, 80.6337},
+        "E", new double[] {6.0535, 80.2210},
+        "F", new double[] {5.9549, 80.5550},
+        "G", new double[] {9.6615, 80.0255},
+        "H", new double[] {8.3114, 80.4037}
+    );
+    private final OrderLocator locator = new OrderLocator(); // where the waiting orders are
+
+    public OrderQueue1() {
+        for (Map.Entry<String, double[]> district : districtCoordinates.entrySet()) {
+            setCoordinates(district.getKey(), district.getValue()[0], district.getValue()[1]);
+        }
+    }
+
+    public void inputAvailableLocations() {
+        Scanner scanner = new Scanner(System.in);
+        System.out.println("Select today's available locations (enter the letter corresponding to each location):");
+        for (Map.Entry<String, String> entry : allLocations.entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+        }
+        System.out.println("Enter the letters of available locations (e.g., ABC for Colombo, Gampaha, and Kurunegala):");
+        String input = scanner.nextLine().toUpperCase();
+
+        setAvailableLocations(input);
+        System.out.println("Available locations for today: " + availableLocations);
+    }
+
+    /** Makes today's locations the districts whose letters appear in {@code letters}, e.g. "ABC"; other characters are ignored. */
+    public void setAvailableLocations(String letters) {
+        availableLocations.clear(); 
+        for (char c : letters.toUpperCase().toCharArray()) {
+            String locationKey = String.valueOf(c);
+            if (allLocations.containsKey(locationKey)) {
+                availableLocations.add(locationKey);
+            }
+        }
+        closeUnavailableLocations();
+        if (journal != null) {
+            journal.locations(availableLocations);
+        }
+    }
+
+    /** Today's locations as their letters in alphabetical order, e.g. "ABC". */
+    public String availableLocationLetters() {
+        return String.join("", new TreeSet<>(availableLocations));
+    }
+
+    /** Keeps routes from passing through the districts that are not available today. */
+    private void closeUnavailableLocations() {
+        Set<String> closed = new HashSet<>(allLocations.keySet());
+        closed.removeAll(availableLocations);
+        graph.setClosedLocations(closed);
+    }
+
+    public void enqueue(String order, boolean isFastDelivery, String location) {
+        enqueue(order, isFastDelivery ? FAST_DELIVERY_PRIORITY : NORMAL_DELIVERY_PRIORITY, location);
+    }
+
+    public void enqueue(String order, int priority, String location) {
+        enqueue(order, priority, location, 0);
+    }
+
+    /**
+     * Queues an order promised for {@code deadline}, in epoch milliseconds of
+     * the deadline clock, or 0 for no promise. The escalation lead before the
+     * deadline the order is flagged as at risk, and once it passes as breached.
+     */
+    public void enqueue(String order, int priority, String location, long deadline) {
+        if (!availableLocations.contains(location)) {
+            if (rejected != null) {
+                rejected.increment();
+            }
+            events.message(EventSink.Level.WARN, "Invalid location. The location is not available for today.");
+            return;
+        }
+        if (priority < 1 || priority > PRIORITY_LEVELS) {
+            throw new IllegalArgumentException("Priority must be between 1 and " + PRIORITY_LEVELS + ": " + priority);
+        }
+        int handle = orders.add(order, priority, location, stamp(), deadline);
+        if (journal != null) {
+            journal.enqueued(handle, order, priority, location, deadline);
+        }
+        deliveryQueue.add(priority - 1, handle);
+        locator.add(handle, location);
+        watchDeadline(handle, deadline);
+        commitJournal();
+        events.orderAdded(order, priority, location);
+        checkDeadlines();
+    }
+
+    /** Adds orders without printing a line for each one; the sink used by bulk imports. */
+    public void enqueueBatch(String[] names, String[] locations, int[] priorities, int count) {
+        enqueueBatch(names, locations, priorities, null, count);
+    }
+
+    /** As {@link #enqueueBatch(String[], String[], int[], int)}, with a deadline per order; null means none. */
+    public void enqueueBatch(String[] names, String[] locations, int[] priorities, long[] deadlines, int count) {
+        long now = stamp();
+        for (int i = 0; i < count; i++) {
+            long deadline = deadlines == null ? 0 : deadlines[i];
+            int handle = orders.add(names[i], priorities[i], locations[i], now, deadline);
+            if (journal != null) {
+                journal.enqueued(handle, names[i], priorities[i], locations[i], deadline);
+            }
+            deliveryQueue.add(priorities[i] - 1, handle);
+            locator.add(handle, locations[i]);
+            watchDeadline(handle, deadline);
+        }
+        commitJournal();
+        checkDeadlines();
+    }
+
+    /**
+     * Queues the first {@code count} orders under a single journal commit,
+     * skipping those for locations not available today or with a priority
+     * outside 1-2. {@code accepted[i]} tells whether order i was queued; the
+     * return value is how many were.
+     */
+    public int enqueueChecked(String[] names, String[] locations, int[] priorities, int count, boolean[] accepted) {
+        String[] keptNames = new String[count];
+        String[] keptLocations = new String[count];
+        int[] keptPriorities = new int[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            accepted[i] = availableLocations.contains(locations[i]) && priorities[i] >= 1 && priorities[i] <= PRIORITY_LEVELS;
+            if (accepted[i]) {
+                keptNames[kept] = names[i];
+                keptLocations[kept] = locations[i];
+                keptPriorities[kept] = priorities[i];
+                kept++;
+            }
+        }
+        if (rejected != null) {
+            rejected.add(count - kept);
+        }
+        if (kept > 0) {
+            enqueueBatch(keptNames, keptLocations, keptPriorities, kept);
+        }
+        return kept;
+    }
+
+    /** Streams a CSV or NDJSON order file into the queue, accepting only today's available locations. */
+    public BulkOrderLoader.Report loadOrders(Path file) throws IOException {
+        BulkOrderLoader.Report report = new BulkOrderLoader(availableLocations, PRIORITY_LEVELS).load(file, this::enqueueBatch);
+        if (rejected != null) {
+            rejected.add(report.rejected());
+        }
+        events.message(EventSink.Level.INFO, report.toString());
+        for (String sample : report.rejectSamples()) {
+            events.message(EventSink.Level.WARN, "Rejected " + sample);
+        }
+        return report;
+    }
+
+    public Order dequeue() {
+        checkDeadlines();
+        int handle = deliveryQueue.poll();
+        Order order = handle == TieredQueue.EMPTY ? null : take(handle);
+        if (order == null) {
+            events.queueEmpty();
+        } else {
+            recordWait(order, stamp());
+            events.orderDispatched(order);
+            checkpointIfDue();
+        }
+        return order;
+    }
+
+    /**
+     * Persists the queue and today's locations in {@code directory} and puts
+     * back whatever an earlier run left there. Must be called before any order
+     * is queued; today's locations are restored if they were journaled.
+     */
+    public OrderJournal.Recovery openJournal(Path directory, OrderJournal.Durability durability) throws IOException {
+        if (journal != null) {
+            throw new IllegalStateException("An order journal is already open");
+        }
+        journal = OrderJournal.open(directory, durability, orders, deliveryQueue);
+        OrderJournal.Recovery recovery = journal.recovery();
+        // Timers are not journaled; escalations and alerts are worked out again from the deadlines
+        for (List<Integer> tier : deliveryQueue.snapshot(Integer::valueOf)) {
+            for (int handle : tier) {
+                locator.add(handle, orders.location(handle));
+                watchDeadline(handle, orders.deadline(handle));
+            }
+        }
+        if (!recovery.locations().isEmpty()) {
+            availableLocations.clear();
+            availableLocations.addAll(recovery.locations());
+            closeUnavailableLocations();
+        }
+        events.message(EventSink.Level.INFO, recovery.toString());
+        return recovery;
+    }
+
+    /** Snapshots the queue so a restart replays nothing before this point. */
+    public void checkpoint() throws IOException {
+        if (journal != null) {
+            journal.checkpoint(orders, deliveryQueue, availableLocations);
+        }
+    }
+
+    /** Takes a last checkpoint and closes the journal. */
+    public void closeJournal() throws IOException {
+        if (journal != null) {
+            checkpoint();
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /** Removes a dispatched order, journaling it first so the handle cannot be reused ahead of the record. */
+    private Order take(int handle) {
+        if (journal != null) {
+            journal.dispatched(handle);
+        }
+        if (deadlineTimers != null) {
+            deadlineTimers.cancel(handle);
+            warned.clear(handle);
+        }
+        locator.remove(handle);
+        return orders.remove(handle);
+    }
+
+    /**
+     * Places {@code location} at a latitude and longitude in degrees, for the
+     * proximity queries and for A* route searches; the districts come placed.
+     */
+    public void setCoordinates(String location, double latitude, double longitude) {
+        locator.setCoordinates(location, latitude, longitude);
+        graph.setCoordinates(location, latitude, longitude);
+    }
+
+    /** Up to {@code count} waiting orders nearest to a position, closest first. */
+    public List<Order> ordersNear(double latitude, double longitude, int count) {
+        int[] handles = new int[count];
+        int found = locator.nearest(latitude, longitude, handles);
+        List<Order> near = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            near.add(orders.get(handles[i]));
+        }
+        return near;
+    }
+
+    /** Waiting orders within {@code km} of a position, closest first. */
+    public List<Order> ordersWithin(double latitude, double longitude, double km) {
+        List<Integer> handles = new ArrayList<>();
+        locator.forEachWithin(latitude, longitude, km, handles::add);
+        handles.sort(Comparator.comparingDouble(handle -> locator.distanceKm(handle, latitude, longitude)));
+        List<Order> within = new ArrayList<>(handles.size());
+        for (int handle : handles) {
+            within.add(orders.get(handle));
+        }
+        return within;
+    }
+
+    /**
+     * Dispatches the waiting order nearest to a position, such as a van's,
+     * whatever its priority; the oldest one when several go to the same
+     * location. Returns null when no waiting order has a placed location.
+     */
+    public Order dequeueNearest(double latitude, double longitude) {
+        checkDeadlines();
+        int[] nearest = new int[1];
+        if (locator.nearest(latitude, longitude, nearest) == 0) {
+            events.queueEmpty();
+            return null;
+        }
+        deliveryQueue.remove(orders.priority(nearest[0]) - 1, nearest[0]);
+        Order order = take(nearest[0]);
+        recordWait(order, stamp());
+        events.orderDispatched(order);
+        checkpointIfDue();
+        return order;
+    }
+
+    /** The waiting orders grouped into at most {@code count} delivery zones of nearby locations, largest first. */
+    public List<OrderLocator.Zone<Order>> deliveryZones(int count) {
+        return locator.zones(count, 1, orders::get);
+    }
+
+    public void showDeliveryZones(int count) {
+        events.flush();
+        List<OrderLocator.Zone<Order>> zones = deliveryZones(count);
+        if (zones.isEmpty()) {
+            System.out.println("No orders to group into zones.");
+        }
+        for (OrderLocator.Zone<Order> zone : zones) {
+            System.out.println(zone);
+            for (Order order : zone.orders()) {
+                System.out.println("  " + order);
+            }
+        }
+    }
+
+    /**
+     * Chooses how orders are ordered for dispatch. Must be called before any
+     * order is queued and before the journal is opened.
+     */
+    public void setDispatchPolicy(DispatchPolicy policy) {
+        if (!deliveryQueue.isEmpty() || journal != null) {
+            throw new IllegalStateException("The dispatch policy must be chosen before any order is queued");
+        }
+        dispatchPolicy = policy;
+        deliveryQueue = policy == DispatchPolicy.DEADLINE
+                ? new DeadlineScheduler(PRIORITY_LEVELS, orders::deadline)
+                : new TieredScheduler(PRIORITY_LEVELS);
+        deliveryQueue.setAgingLimit(agingLimit);
+    }
+
+    public DispatchPolicy dispatchPolicy() {
+        return dispatchPolicy;
+    }
+
+    /** How long before its deadline an order counts as at risk; 30 minutes unless changed. */
+    public void setEscalationLead(Duration lead) {
+        if (lead.isNegative()) {
+            throw new IllegalArgumentException("Escalation lead must not be negative: " + lead);
+        }
+        escalationLeadMillis = lead.toMillis();
+    }
+
+    /** Reads the time deadlines are measured against from {@code clock}, in epoch milliseconds. */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /** The current time on the deadline clock, in epoch milliseconds. */
+    public long currentTimeMillis() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Fires the deadline timers that are due. Runs on every enqueue and
+     * dispatch; an idle server calls it now and then as well. The cost is the
+     * timers that fire, however many orders wait.
+     */
+    public void checkDeadlines() {
+        if (deadlineTimers != null && deadlineTimers.size() > 0
+                && deadlineTimers.advance(clock.getAsLong(), this::deadlineReached) > 0) {
+            commitJournal(); // escalations
+        }
+    }
+
+    private void watchDeadline(int handle, long deadline) {
+        if (deadline == 0) {
+            return;
+        }
+        if (deadlineTimers == null) {
+            deadlineTimers = new TimerWheel(DEADLINE_TICK_MILLIS, clock.getAsLong());
+        }
+        deadlineTimers.schedule(handle, deadline - escalationLeadMillis);
+    }
+
+    /**
+     * The timer of a queued order went off: the first time its deadline is
+     * near, so it is flagged and, under {@link DispatchPolicy#PRIORITY},
+     * moved to fast delivery; the second time the deadline has passed.
+     */
+    private void deadlineReached(int handle) {
+        long deadline = orders.deadline(handle);
+        long now = clock.getAsLong();
+        String name = orders.get(handle).getName();
+        if (!warned.get(handle)) {
+            warned.set(handle);
+            int priority = orders.priority(handle);
+            boolean moved = dispatchPolicy == DispatchPolicy.PRIORITY && priority != FAST_DELIVERY_PRIORITY
+                    && deliveryQueue.remove(priority - 1, handle);
+            if (moved) {
+                if (journal != null) {
+                    journal.requeued(handle, name, FAST_DELIVERY_PRIORITY, orders.location(handle), deadline);
+                }
+                orders.setPriority(handle, FAST_DELIVERY_PRIORITY);
+                deliveryQueue.add(FAST_DELIVERY_PRIORITY - 1, handle);
+                if (escalated != null) {
+                    escalated.increment();
+                }
+            }
+            if (deadline > now) {
+                events.message(EventSink.Level.WARN, "Order " + name + " is due by " + formatDeadline(deadline)
+                        + (moved ? "; moved to fast delivery." : "."));
+                deadlineTimers.schedule(handle, deadline);
+                return;
+            }
+        }
+        if (breached != null) {
+            breached.increment();
+        }
+        events.message(EventSink.Level.WARN, "Order " + name + " missed its deadline of " + formatDeadline(deadline) + ".");
+    }
+
+    private static String formatDeadline(long deadline) {
+        return Instant.ofEpochMilli(deadline).truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+
+    private void commitJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkpointIfDue();
+    }
+
+    private void checkpointIfDue() {
+        if (journal != null && journal.checkpointDue()) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Sends order, dispatch and route events to {@code events} instead of the
+     * console, e.g. an {@link AsyncEventSink} or {@link EventSink#NONE}.
+     * Listings and prompts still print directly.
+     */
+    public void setEventSink(EventSink events) {
+        this.events = events;
+    }
+
+    /**
+     * Times every order from enqueue to dispatch and publishes the tier depths,
+     * rejected orders, search times and route cache hit rate into {@code metrics}.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        graph.instrument(metrics);
+        waitNanos = metrics.histogram("queue.wait.nanos");
+        rejected = metrics.counter("orders.rejected");
+        escalated = metrics.counter("orders.escalated");
+        breached = metrics.counter("orders.breached");
+        metrics.gauge("orders.unplaced", locator::unplaced);
+        metrics.gauge("deadline.timers", () -> deadlineTimers == null ? 0 : deadlineTimers.size());
+        metrics.gauge("queue.fast.depth", () -> deliveryQueue.size(FAST_DELIVERY_PRIORITY - 1));
+        metrics.gauge("queue.normal.depth", () -> deliveryQueue.size(NORMAL_DELIVERY_PRIORITY - 1));
+    }
+
+    private long stamp() {
+        return waitNanos != null ? System.nanoTime() : 0;
+    }
+
+    private void recordWait(Order order, long now) {
+        if (waitNanos != null && order.getEnqueuedAt() != 0) {
+            waitNanos.record(now - order.getEnqueuedAt());
+        }
+    }
+
+    /** Lets an order waiting behind more than {@code dequeues} others go next regardless of priority; 0 disables. */
+    public void setAgingLimit(long dequeues) {
+        agingLimit = dequeues;
+        deliveryQueue.setAgingLimit(dequeues);
+    }
+
+    /** Number of orders waiting with {@code priority}, 1 for fast delivery and 2 for normal. */
+    public int queuedCount(int priority) {
+        return deliveryQueue.size(priority - 1);
+    }
+
+    /** Orders waiting with {@code priority}, in the order they will be dispatched. */
+    public List<Order> queuedOrders(int priority) {
+        return deliveryQueue.toList(priority - 1, orders::get);
+    }
+
+    /**
+     * Lists the waiting orders a page at a time instead of copying them all:
+     * those with {@code priority}, or every priority when it is 0, going to
+     * {@code location}, or anywhere when it is null. Fast orders come first
+     * and each priority is listed in dispatch order.
+     */
+    public Listing listOrders(int priority, String location) {
+        if (priority < 0 || priority > PRIORITY_LEVELS) {
+            throw new IllegalArgumentException("Priority must be between 0 and " + PRIORITY_LEVELS + ": " + priority);
+        }
+        return priority == 0 ? new Listing(0, PRIORITY_LEVELS - 1, location) : new Listing(priority - 1, priority - 1, location);
+    }
+
+    /**
+     * A walk through the waiting orders from {@link #listOrders}. Only the
+     * page being returned is held, and dispatching may go on between pages:
+     * an order dispatched meanwhile is not listed, one queued meanwhile is
+     * listed if the walk has not passed its place yet, and none is listed
+     * twice.
+     */
+    public final class Listing {
+        private final int lastTier;
+        private final IntPredicate filter;
+        private int tier;
+        private TieredQueue.Cursor cursor = new TieredQueue.Cursor();
+
+        private Listing(int firstTier, int lastTier, String location) {
+            this.tier = firstTier;
+            this.lastTier = lastTier;
+            this.filter = location == null ? handle -> true : handle -> location.equals(orders.location(handle));
+        }
+
+        /** Up to {@code count} more orders; fewer only once the listing has reached the end. */
+        public List<Order> next(int count) {
+            List<Order> page = new ArrayList<>(Math.max(0, Math.min(count, LISTING_PAGE)));
+            while (page.size() < count && tier <= lastTier) {
+                int wanted = count - page.size();
+                List<Order> more = deliveryQueue.page(tier, cursor, filter, wanted, orders::get);
+                page.addAll(more);
+                if (more.size() < wanted) {
+                    tier++;
+                    cursor = new TieredQueue.Cursor();
+                }
+            }
+            return page;
+        }
+    }
+
+    /** Prints a listing one page at a time; false when it had no orders. */
+    private static boolean printListing(Listing listing) {
+        boolean any = false;
+        List<Order> page;
+        do {
+            page = listing.next(LISTING_PAGE);
+            for (Order order : page) {
+                System.out.println(order);
+            }
+            any |= !page.isEmpty();
+        } while (page.size() == LISTING_PAGE);
+        return any;
+    }
+
+    /** Fills {@code route} with the shortest route between two locations under today's closures and returns it. */
+    public Route route(String start, String end, Route route) {
+        return graph.route(start, end, route);
+    }
+
+    public void showAvailableLocations() {
+        events.flush();
+        System.out.println("Available Locations:");
+        for (String location : availableLocations) {
+            System.out.println(location + ": " + allLocations.get(location));
+        }
+    }
+
+    public void showFastDeliveryOrders() {
+        events.flush();
+        System.out.println("Today's available fast delivery orders:");
+        if (!printListing(listOrders(FAST_DELIVERY_PRIORITY, null))) {
+            System.out.println("No fast delivery orders available.");
+        }
+    }
+
+    public void showNormalDeliveryOrders() {
+        events.flush();
+        System.out.println("Today's available normal delivery orders:");
+        if (!printListing(listOrders(NORMAL_DELIVERY_PRIORITY, null))) {
+            System.out.println("No normal delivery orders available.");
+        }
+    }
+
+    /** Every waiting order for {@code location}, fast ones first, in dispatch order. */
+    public void showOrdersFor(String location) {
+        events.flush();
+        System.out.println("Orders waiting for " + location + ": " + allLocations.getOrDefault(location, location));
+        if (!printListing(listOrders(0, location))) {
+            System.out.println("No orders waiting for this location.");
+        }
+    }
+
+    public void displayRoutes() {
+        if (availableLocations.isEmpty()) {
+            events.message(EventSink.Level.WARN, "No locations to display routes for.");
+        } else {
+            events.message(EventSink.Level.INFO, "Displaying shortest paths for each order location starting from Colombo:");
+            String currentLocation = DEFAULT_START_LOCATION;
+            Route route = new Route();
+            while (!deliveryQueue.isEmpty()) {
+                Order nextOrder = dequeue();
+                if (nextOrder == null) break; 
+
+                graph.route(currentLocation, nextOrder.getLocation(), route);
+                events.routeComputed(route);
+                currentLocation = nextOrder.getLocation(); 
+            }
+        }
+    }
+
+    /**
+     * Dispatches everything queued along a planned tour instead of in queue
+     * order: fast orders first, each tier visiting its locations in the
+     * order {@link TourPlanner} finds shortest, then reports the distance
+     * saved against plain dequeue order.
+     */
+    public void displayOptimizedRoutes() {
+        if (availableLocations.isEmpty()) {
+            events.message(EventSink.Level.WARN, "No locations to display routes for.");
+            return;
+        }
+        events.message(EventSink.Level.INFO, "Displaying optimized delivery tour starting from Colombo:");
+        int[] handles = new int[deliveryQueue.size()];
+        int count = deliveryQueue.drainTo(handles, handles.length);
+        TourPlanner planner = new TourPlanner(graph, orders);
+        int[] tour = planner.plan(DEFAULT_START_LOCATION, handles, count);
+        String currentLocation = DEFAULT_START_LOCATION;
+        Route route = new Route();
+        long now = stamp();
+        for (int i = 0; i < count; i++) {
+            Order nextOrder = take(tour[i]);
+            recordWait(nextOrder, now);
+            events.orderDispatched(nextOrder);
+            graph.route(currentLocation, nextOrder.getLocation(), route);
+            events.routeComputed(route);
+            currentLocation = nextOrder.getLocation();
+        }
+        if (count > 0) {
+            events.message(EventSink.Level.INFO, planner.summary());
+        }
+        checkpointIfDue();
+    }
+
+    public boolean isLocationValid(String location) {
+        return availableLocations.contains(location);
+    }
+
+    public void addLocations() {
+        availableLocations.addAll(allLocations.keySet());
+        closeUnavailableLocations();
+        if (journal != null) {
+            journal.locations(availableLocations);
+        }
+    }
+
+    /** Replaces the road network with a compiled, memory-mapped one. */
+    public void loadNetwork(Path file) throws IOException {
+        graph = Graph.open(file);
+        if (metrics != null) {
+            graph.instrument(metrics);
+        }
+        closeUnavailableLocations();
+        events.message(EventSink.Level.INFO, "Road network loaded from " + file);
+    }
+
+    /**
+     * Answers route queries from a contraction hierarchy kept in {@code file},
+     * contracting the current network and saving the result first when the
+     * file does not exist yet.
+     */
+    public void useHierarchy(Path file) throws IOException {
+        if (Files.exists(file)) {
+            graph.loadHierarchy(file);
+            events.message(EventSink.Level.INFO, "Contraction hierarchy loaded from " + file);
+            return;
+        }
+        long start = System.nanoTime();
+        graph.buildHierarchy().save(file);
+        events.message(EventSink.Level.INFO, String.format("Contraction hierarchy built in %.1f s and saved to %s",
+                (System.nanoTime() - start) / 1e9, file));
+    }
+
+    /** The roads between the A-H districts that the application starts with. */
+    public void addDistrictRoutes() {
+        addRoute("A", "B", 20);
+        addRoute("A", "C", 50);
+        addRoute("A", "D", 100);
+        addRoute("A", "E", 150);
+        addRoute("A", "F", 200);
+        addRoute("A", "G", 250);
+        addRoute("A", "H", 300);
+
+        addRoute("B", "C", 30);
+        addRoute("B", "D", 60);
+        addRoute("B", "E", 90);
+        addRoute("B", "F", 130);
+        addRoute("B", "G", 180);
+        addRoute("B", "H", 230);
+
+        addRoute("C", "D", 70);
+        addRoute("C", "E", 100);
+        addRoute("C", "F", 140);
+        addRoute("C", "G", 190);
+        addRoute("C", "H", 240);
+
+        addRoute("D", "E", 60);
+        addRoute("D", "F", 100);
+        addRoute("D", "G", 150);
+        addRoute("D", "H", 200);
+
+        addRoute("E", "F", 80);
+        addRoute("E", "G", 130);
+        addRoute("E", "H", 180);
+
+        addRoute("F", "G", 120);
+        addRoute("F", "H", 170);
+
+        addRoute("G", "H", 90);
+    }
+
+    public void addRoute(String start, String end, int distance) {
+        if (allLocations.containsKey(start) && allLocations.containsKey(end)) {
+            graph.addEdge(start, end, distance);
+        } else {
+            events.message(EventSink.Level.WARN, "Invalid locations. Ensure both locations are added before creating a route.");
+        }
+    }
+
+    /** Changes the length of a road during the day, for diversions and reopened roads. */
+    public void updateRoute(String start, String end, int distance) {
+        if (!allLocations.containsKey(start) || !allLocations.containsKey(end)) {
+            events.message(EventSink.Level.WARN, "Invalid locations. Ensure both locations are added before changing a route.");
+        } else if (distance < 0) {
+            events.message(EventSink.Level.WARN, "Invalid distance: " + distance);
+        } else {
+            try {
+                graph.setRoute(start, end, distance);
+            } catch (UnsupportedOperationException e) {
+                events.message(EventSink.Level.WARN, e.getMessage());
+            }
+        }
+    }
+
+    public void closeRoute(String start, String end) {
+        try {
+            if (!graph.closeRoute(start, end)) {
+                events.message(EventSink.Level.WARN, "There is no route between " + start + " and " + end + ".");
+            }
+        } catch (UnsupportedOperationException e) {
+            events.message(EventSink.Level.WARN, e.getMessage());
+        }
+    }
+
+    /**
+     * Serves the queue on a loopback port until a client sends SHUTDOWN. Every
+     * location is available unless the journal restored today's, and events
+     * below WARN are not printed.
+     */
+    private void serve(String port, boolean recovered) {
+        if (!recovered) {
+            addLocations();
+        }
+        setEventSink(new AsyncEventSink(System.out, EventSink.Level.WARN));
+        try (DispatchServer server = new DispatchServer(this, Integer.parseInt(port))) {
+            if (metrics != null) {
+                server.instrument(metrics);
+            }
+            server.start();
+            System.out.println("Serving orders on localhost:" + server.port()
+                    + (server.usesVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+            server.awaitShutdown();
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Could not serve on port " + port + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        events.close();
+        try {
+            closeJournal();
+        } catch (IOException e) {
+            System.out.println("Could not write order snapshot: " + e.getMessage());
+        }
+    }
+
+    /** Repairs cached routes when roads change instead of recomputing all of them. */
+    public void setDynamicRouting(boolean dynamic) {
+        graph.setDynamicRouting(dynamic);
+    }
+
+    public static void main(String[] args) {
+        Scanner scanner = new Scanner(System.in);
+        OrderQueue1 orderQueue = new OrderQueue1();
+        orderQueue.setMetrics(Metrics.forApplication("OrderQueue1"));
+        orderQueue.setDynamicRouting(true);
+        // Earliest deadline first with -Dtravel.dispatch=deadline
+        if ("deadline".equalsIgnoreCase(System.getProperty("travel.dispatch"))) {
+            orderQueue.setDispatchPolicy(DispatchPolicy.DEADLINE);
+        }
+
+        // Orders survive a crash or restart when run with -Dtravel.journal=<directory>
+        boolean recovered = false;
+        String journalDirectory = System.getProperty("travel.journal");
+        if (journalDirectory != null) {
+            OrderJournal.Durability durability = Boolean.getBoolean("travel.journal.sync")
+                    ? OrderJournal.Durability.GROUP_COMMIT : OrderJournal.Durability.ASYNC;
+            try {
+                recovered = !orderQueue.openJournal(Paths.get(journalDirectory), durability).locations().isEmpty();
+            } catch (IOException | InvalidPathException e) {
+                System.out.println("Could not open order journal " + journalDirectory + ": " + e.getMessage());
+                return;
+            }
+        }
+
+         
+        if (args.length > 0) {
+            // A road network compiled with: java travel.RoadNetworkCompiler edges.txt network.rnet
+            try {
+                orderQueue.loadNetwork(Paths.get(args[0]));
+            } catch (IOException | InvalidPathException e) {
+                System.out.println("Could not open road network " + args[0] + ": " + e.getMessage());
+                return;
+            }
+        } else {
+            orderQueue.addDistrictRoutes();
+        }
+
+        // Large networks route faster with -Dtravel.hierarchy=<file>, built on first use
+        String hierarchyFile = System.getProperty("travel.hierarchy");
+        if (hierarchyFile != null) {
+            try {
+                orderQueue.useHierarchy(Paths.get(hierarchyFile));
+            } catch (IOException | InvalidPathException e) {
+                System.out.println("Could not use contraction hierarchy " + hierarchyFile + ": " + e.getMessage());
+                return;
+            }
+        }
+
+        // Headless with -Dtravel.server=<port>: clients on this machine talk to DispatchServer instead of the menu
+        String serverPort = System.getProperty("travel.server");
+        if (serverPort != null) {
+            orderQueue.serve(serverPort, recovered);
+            return;
+        }
+
+        while (true) {
+            if (recovered) {
+                recovered = false;
+                orderQueue.closeUnavailableLocations(); // the districts exist only now that the routes are added
+            } else {
+                orderQueue.inputAvailableLocations();
+            }
+
+            while (true) {
+                System.out.println("\n1. Add Fast Delivery Orders");
+                System.out.println("2. Add Normal Delivery Orders");
+                System.out.println("3. Show Available Locations");
+                System.out.println("4. Show Fast Delivery Orders");
+                System.out.println("5. Show Normal Delivery Orders");
+                System.out.println("6. Display Routes");
+                System.out.println("7. Exit");
+                System.out.println("8. Restart Program");
+                System.out.println("9. Import Orders From File");
+                System.out.println("10. Display Optimized Routes");
+                System.out.println("11. Change Route");
+                System.out.println("12. Add Order With Deadline");
+                System.out.println("13. Show Delivery Zones");
+                System.out.println("14. Show Orders For Location");
+                System.out.print("Enter your choice: ");
+                int choice = scanner.nextInt();
+                scanner.nextLine(); 
+
+                switch (choice) {
+                    case 1:
+                        while (true) {
+                            System.out.print("Enter fast delivery order name (or type 'done' to finish): ");
+                            String fastOrder = scanner.nextLine();
+                            if (fastOrder.equalsIgnoreCase("done")) break;
+                            System.out.print("Enter delivery location (A-H): ");
+                            String fastLocation = scanner.nextLine().toUpperCase();
+                            if (!orderQueue.isLocationValid(fastLocation)) {
+                                System.out.println("Invalid location. Please enter a valid location (A-H).");
+                                continue;
+                            }
+                            orderQueue.enqueue(fastOrder, true, fastLocation);
+                        }
+                        break;
+
+                    case 2:
+                        while (true) {
+                            System.out.print("Enter normal delivery order name (or type 'done' to finish): ");
+                            String normalOrder = scanner.nextLine();
+                            if (normalOrder.equalsIgnoreCase("done")) break;
+                            System.out.print("Enter delivery location (A-H): ");
+                            String normalLocation = scanner.nextLine().toUpperCase();
+                            if (!orderQueue.isLocationValid(normalLocation)) {
+                                System.out.println("Invalid location. Please enter a valid location (A-H).");
+                                continue;
+                            }
+                            orderQueue.enqueue(normalOrder, false, normalLocation);
+                        }
+                        break;
+
+                    case 3:
+                        orderQueue.showAvailableLocations();
+                        break;
+
+                    case 4:
+                        orderQueue.showFastDeliveryOrders();
+                        break;
+
+                    case 5:
+                        orderQueue.showNormalDeliveryOrders();
+                        break;
+
+                    case 6:
+                        orderQueue.displayRoutes();
+                        break;
+
+                    case 7:
+                        System.out.println("Exiting...");
+                        try {
+                            orderQueue.closeJournal();
+                        } catch (IOException e) {
+                            System.out.println("Could not write order snapshot: " + e.getMessage());
+                        }
+                        return;
+
+                    case 8:
+                        System.out.println("Restarting the program...");
+                        try {
+                            orderQueue.checkpoint();
+                        } catch (IOException e) {
+                            System.out.println("Could not write order snapshot: " + e.getMessage());
+                        }
+                        break;
+
+                    case 9:
+                        System.out.print("Enter order file path (CSV or NDJSON): ");
+                        String file = scanner.nextLine().trim();
+                        try {
+                            orderQueue.loadOrders(Paths.get(file));
+                        } catch (IOException | InvalidPathException e) {
+                            System.out.println("Could not read orders from " + file + ": " + e.getMessage());
+                        }
+                        break;
+
+                    case 10:
+                        orderQueue.displayOptimizedRoutes();
+                        break;
+
+                    case 11:
+                        System.out.print("Enter the two locations of the route (e.g., AB): ");
+                        String ends = scanner.nextLine().trim().toUpperCase();
+                        System.out.print("Enter the new distance (or 'closed'): ");
+                        String distance = scanner.nextLine().trim();
+                        if (ends.length() != 2) {
+                            System.out.println("Invalid route. Please enter two locations (A-H).");
+                        } else if (distance.equalsIgnoreCase("closed")) {
+                            orderQueue.closeRoute(ends.substring(0, 1), ends.substring(1));
+                        } else {
+                            try {
+                                orderQueue.updateRoute(ends.substring(0, 1), ends.substring(1), Integer.parseInt(distance));
+                            } catch (NumberFormatException e) {
+                                System.out.println("Invalid distance. Please enter a whole number.");
+                            }
+                        }
+                        break;
+
+                    case 12:
+                        System.out.print("Enter order name: ");
+                        String dueOrder = scanner.nextLine();
+                        System.out.print("Enter delivery location (A-H): ");
+                        String dueLocation = scanner.nextLine().toUpperCase();
+                        System.out.print("Fast delivery? (y/n): ");
+                        boolean dueFast = scanner.nextLine().trim().equalsIgnoreCase("y");
+                        System.out.print("Deliver within how many minutes? ");
+                        String minutes = scanner.nextLine().trim();
+                        if (!orderQueue.isLocationValid(dueLocation)) {
+                            System.out.println("Invalid location. Please enter a valid location (A-H).");
+                        } else {
+                            // An int, as DEADLINE takes over the wire, so the deadline cannot overflow
+                            int within;
+                            try {
+                                within = Integer.parseInt(minutes);
+                            } catch (NumberFormatException e) {
+                                within = 0;
+                            }
+                            if (within < 1) {
+                                System.out.println("Invalid number of minutes. Please enter a whole number from 1 to " + Integer.MAX_VALUE + ".");
+                            } else {
+                                long deadline = orderQueue.currentTimeMillis() + Duration.ofMinutes(within).toMillis();
+                                orderQueue.enqueue(dueOrder, dueFast ? FAST_DELIVERY_PRIORITY : NORMAL_DELIVERY_PRIORITY,
+                                        dueLocation, deadline);
+                            }
+                        }
+                        break;
+
+                    case 13:
+                        System.out.print("Enter the number of zones: ");
+                        String zones = scanner.nextLine().trim();
+                        try {
+                            orderQueue.showDeliveryZones(Integer.parseInt(zones));
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Invalid number of zones. Please enter a positive whole number.");
+                        }
+                        break;
+
+                    case 14:
+                        System.out.print("Enter delivery location (A-H): ");
+                        orderQueue.showOrdersFor(scanner.nextLine().trim().toUpperCase());
+                        break;
+
+                    default:
+                        System.out.println("Invalid choice. Please try again.");
+                }
+
+                if (choice == 8) {
+                    break; 
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package travel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queued orders kept column by column instead of one object each. An order is
+ * an int handle into parallel arrays: a byte of priority, an int location id
+ * (location codes are stored once, however many orders go there), the
+ * enqueue time when the queue is timing orders, the deadline once any order
+ * has one, and the name as UTF-8 in a shared byte pool. That is 13 to 29
+ * bytes plus the name per order, against
+ * well over a hundred as separate objects, and a dispatch touches a few
+ * adjacent array cells rather than chasing pointers.
+ *
+ * Handles are reused once {@link #remove}d, and the name pool is compacted
+ * when more than half of it belongs to removed orders. {@link Order} objects
+ * are only made at the edges, when an order is dispatched or listed, because
+ * callers may keep them long after the handle has been reused.
+ *
+ * A concurrent store is split into segments, one per intake stripe, each
+ * with its own lock, so intake threads rarely meet; a plain store has a
+ * single segment and takes no locks at all.
+ */
+class OrderStore {
+    private static final int MAX_SEGMENTS = 256;
+
+    private final Segment[] segments;
+    private final int segmentBits;
+    private final Map<String, Integer> locationIds = new ConcurrentHashMap<>();
+    private volatile String[] locationCodes = new String[8];
+    private int locationCount;
+
+    public OrderStore() {
+        this(false);
+    }
+
+    public OrderStore(boolean concurrent) {
+        int count = concurrent ? Math.min(MAX_SEGMENTS, ConcurrentTieredScheduler.stripeCount()) : 1;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(concurrent ? new ReentrantLock() : null);
+        }
+        segmentBits = Integer.numberOfTrailingZeros(count);
+    }
+
+    /** Stores an order and returns its handle. */
+    public int add(String name, int priority, String location, long enqueuedAt) {
+        return add(name, priority, location, enqueuedAt, 0);
+    }
+
+    /** Stores an order promised for {@code deadline} (epoch milliseconds, 0 for none) and returns its handle. */
+    public int add(String name, int priority, String location, long enqueuedAt, long deadline) {
+        if (priority < 1 || priority > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Priority out of range: " + priority);
+        }
+        int place = locationId(location);
+        int index = segments.length == 1 ? 0 : (int) Thread.currentThread().getId() & (segments.length - 1);
+        Segment segment = segments[index];
+        segment.lock();
+        try {
+            if (segment.freeCount == 0 && segment.slotsUsed > Integer.MAX_VALUE >>> segmentBits) {
+                throw new IllegalStateException("Order store is full");
+            }
+            return segment.add(name, (byte) priority, place, enqueuedAt, deadline) << segmentBits | index;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /** The order behind {@code handle}, which stays queued. */
+    public Order get(int handle) {
+        Segment segment = segmentOf(handle);
+        segment.lock();
+        try {
+            return segment.order(handle >>> segmentBits, locationCodes);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /** The order behind {@code handle}; the handle is free for reuse afterwards. */
+    public Order remove(int handle) {
+        Segment segment = segmentOf(handle);
+        segment.lock();
+        try {
+            int slot = handle >>> segmentBits;
+            Order order = segment.order(slot, locationCodes);
+            segment.free(slot);
+            return order;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    public int priority(int handle) {
+        Segment segment = segmentOf(handle);
+        segment.lock();
+        try {
+            return segment.priorities[handle >>> segmentBits];
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /** Changes the priority of a stored order, e.g. when it is escalated. */
+    public void setPriority(int handle, int priority) {
+        if (priority < 1 || priority > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Priority out of range: " + priority);
+        }
+        Segment segment = segmentOf(handle);
+        segment.lock();
+        try {
+            segment.priorities[handle >>> segmentBits] = (byte) priority;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /** Deadline of the order in epoch milliseconds, 0 when it has none. */
+    public long deadline(int handle) {
+        Segment segment = segmentOf(handle);
+        segment.lock();
+        try {
+            return segment.deadlines == null ? 0 : segment.deadlines[handle >>> segmentBits];
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    public String location(int handle) {
+        Segment segment = segmentOf(handle);
+        segment.lock();
+        try {
+            return locationCodes[segment.locations[handle >>> segmentBits]];
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /** Orders stored and not yet removed. */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                size += segment.live;
+            } finally {
+                segment.unlock();
+            }
+        }
+        return size;
+    }
+
+    /** Bytes held by the columns and name pools, including spare capacity. */
+    public long footprint() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                bytes += segment.footprint();
+            } finally {
+                segment.unlock();
+            }
+        }
+        return bytes;
+    }
+
+    private Segment segmentOf(int handle) {
+        return segments[handle & (segments.length - 1)];
+    }
+
+    private int locationId(String code) {
+        Integer id = locationIds.get(code);
+        if (id != null) {
+            return id;
+        }
+        synchronized (locationIds) {
+            id = locationIds.get(code);
+            if (id == null) {
+                String[] codes = locationCodes;
+                if (locationCount == codes.length) {
+                    codes = Arrays.copyOf(codes, codes.length * 2);
+                }
+                codes[locationCount] = code;
+                locationCodes = codes; // publish the code before its id
+                id = locationCount++;
+                locationIds.put(code, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * One lock's worth of columns. Slots of removed orders have a name length
+     * of -1. The enqueue time and deadline columns only exist once a value has
+     * been stored in them.
+     */
+    private static final class Segment {
+        final ReentrantLock lock; // null in a plain store
+        byte[] priorities = new byte[16];
+        int[] locations = new int[16];
+        long[] enqueuedAt;
+        long[] deadlines;
+        int[] nameOffsets = new int[16];
+        int[] nameLengths = new int[16];
+        byte[] names = new byte[256];
+        int namesUsed;
+        int namesDead;
+        int[] freeSlots = new int[16];
+        int freeCount;
+        int slotsUsed;
+        int live;
+
+        Segment(ReentrantLock lock) {
+            this.lock = lock;
+        }
+
+        void lock() {
+            if (lock != null) {
+                lock.lock();
+            }
+        }
+
+        void unlock() {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+
+        int add(String name, byte priority, int location, long time, long deadline) {
+            int slot;
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else {
+                if (slotsUsed == priorities.length) {
+                    grow();
+                }
+                slot = slotsUsed++;
+            }
+            priorities[slot] = priority;
+            locations[slot] = location;
+            if (time != 0 && enqueuedAt == null) {
+                enqueuedAt = new long[priorities.length];
+            }
+            if (enqueuedAt != null) {
+                enqueuedAt[slot] = time;
+            }
+            if (deadline != 0 && deadlines == null) {
+                deadlines = new long[priorities.length];
+            }
+            if (deadlines != null) {
+                deadlines[slot] = deadline;
+            }
+            nameOffsets[slot] = namesUsed;
+            nameLengths[slot] = appendName(name);
+            live++;
+            return slot;
+        }
+
+        Order order(int slot, String[] codes) {
+            if (slot >= slotsUsed || nameLengths[slot] < 0) {
+                throw new IllegalArgumentException("No order stored under this handle");
+            }
+            String name = new String(names, nameOffsets[slot], nameLengths[slot], StandardCharsets.UTF_8);
+            return new Order(name, priorities[slot], codes[locations[slot]], enqueuedAt == null ? 0 : enqueuedAt[slot],
+                    deadlines == null ? 0 : deadlines[slot]);
+        }
+
+        void free(int slot) {
+            namesDead += nameLengths[slot];
+            nameLengths[slot] = -1;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+            live--;
+            if (namesDead > 4096 && namesDead > namesUsed / 2) {
+                compactNames();
+            }
+        }
+
+        long footprint() {
+            return priorities.length * (13L + (enqueuedAt == null ? 0 : 8) + (deadlines == null ? 0 : 8))
+                    + names.length + freeSlots.length * 4L;
+        }
+
+        /** Appends the UTF-8 bytes of {@code name}, copying ASCII directly; returns their count. */
+        private int appendName(String name) {
+            int length = name.length();
+            ensureNames(length);
+            for (int i = 0; i < length; i++) {
+                char c = name.charAt(i);
+                if (c >= 0x80) {
+                    byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+                    ensureNames(encoded.length);
+                    System.arraycopy(encoded, 0, names, namesUsed, encoded.length);
+                    namesUsed += encoded.length;
+                    return encoded.length;
+                }
+                names[namesUsed + i] = (byte) c;
+            }
+            namesUsed += length;
+            return length;
+        }
+
+        private void ensureNames(int extra) {
+            if (names.length - namesUsed < extra) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, namesUsed + extra));
+            }
+        }
+
+        private void compactNames() {
+            byte[] compacted = new byte[Math.max(256, (namesUsed - namesDead) * 2)];
+            int used = 0;
+            for (int slot = 0; slot < slotsUsed; slot++) {
+                int length = nameLengths[slot];
+                if (length > 0) {
+                    System.arraycopy(names, nameOffsets[slot], compacted, used, length);
+                    nameOffsets[slot] = used;
+                    used += length;
+                }
+            }
+            names = compacted;
+            namesUsed = used;
+            namesDead = 0;
+        }
+
+        private void grow() {
+            int capacity = priorities.length * 2;
+            priorities = Arrays.copyOf(priorities, capacity);
+            locations = Arrays.copyOf(locations, capacity);
+            if (enqueuedAt != null) {
+                enqueuedAt = Arrays.copyOf(enqueuedAt, capacity);
+            }
+            if (deadlines != null) {
+                deadlines = Arrays.copyOf(deadlines, capacity);
+            }
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+        }
+    }
+}
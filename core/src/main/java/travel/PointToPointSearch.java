@@ -0,0 +1,276 @@
+package travel;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Single-pair shortest paths over a {@link RoadNetwork} that stop as soon as
+ * the answer is known, instead of settling the whole graph:
+ * <ul>
+ *   <li>{@code DIJKSTRA} stops when the target leaves the heap;</li>
+ *   <li>{@code BIDIRECTIONAL} grows a forward search from the source and a
+ *       backward search from the target and stops when their frontiers can no
+ *       longer produce a shorter connection;</li>
+ *   <li>{@code ASTAR} guides the forward search with scaled straight-line
+ *       distances and needs coordinates on every location.</li>
+ * </ul>
+ * {@code AUTO} picks A* when coordinates are present and bidirectional search
+ * otherwise. Both frontiers remember predecessors, so {@link #path} rebuilds
+ * the route of the last query without searching again. Every mode honours an
+ * {@link AvailabilityMask}: a closed location may be the source or the target
+ * but is never passed through. One instance serves one thread.
+ */
+class PointToPointSearch {
+    public enum Mode { AUTO, DIJKSTRA, BIDIRECTIONAL, ASTAR }
+
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final RoadNetwork graph;
+    private final Frontier forward = new Frontier();
+    private final Frontier backward = new Frontier();
+    private Mode mode = Mode.AUTO;
+    private AvailabilityMask mask; // null when every location is open
+
+    private int lastFrom = -1;
+    private int lastTo = -1;
+    private int lastDistance = UNREACHED;
+    private int meetTail = -1; // last arc of the result is meetTail -> meetHead
+    private int meetHead = -1;
+    private int settled;
+
+    public PointToPointSearch(RoadNetwork graph) {
+        this.graph = graph;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /** Keeps later queries from passing through the locations {@code mask} closes; null lifts it. */
+    public void setMask(AvailabilityMask mask) {
+        this.mask = mask;
+    }
+
+    /** Length of the shortest path, or {@link #UNREACHED} when {@code to} cannot be reached. */
+    public int distance(int from, int to) {
+        lastFrom = from;
+        lastTo = to;
+        meetTail = meetHead = -1;
+        settled = 0;
+        Mode effective = mode;
+        if (effective == Mode.AUTO) {
+            effective = graph.hasCoordinates() ? Mode.ASTAR : Mode.BIDIRECTIONAL;
+        }
+        if (from == to) {
+            forward.begin(graph.nodeCount());
+            backward.begin(graph.nodeCount());
+            forward.reach(from, 0, -1, 0);
+            lastDistance = 0;
+        } else if (effective == Mode.BIDIRECTIONAL) {
+            lastDistance = bidirectional(from, to);
+        } else {
+            double scale = effective == Mode.ASTAR ? graph.heuristicScale() : 0;
+            lastDistance = forwardOnly(from, to, scale);
+        }
+        return lastDistance;
+    }
+
+    /**
+     * Node ids along the shortest path of the last {@link #distance} call, from
+     * source to target; empty when the target was unreachable.
+     */
+    public int[] path() {
+        int[] path = new int[pathLength()];
+        writePath(path);
+        return path;
+    }
+
+    /** Number of nodes on the path of the last query, 0 when the target was unreachable. */
+    public int pathLength() {
+        if (lastDistance == UNREACHED) {
+            return 0;
+        }
+        int length = 0;
+        for (int node = meetTail >= 0 ? meetTail : lastTo; node >= 0; node = forward.pred(node)) {
+            length++;
+        }
+        for (int node = meetHead; node >= 0; node = backward.pred(node)) {
+            length++;
+        }
+        return length;
+    }
+
+    /** Writes the path of the last query into the first {@link #pathLength()} slots of {@code into}. */
+    public void writePath(int[] into) {
+        if (lastDistance == UNREACHED) {
+            return;
+        }
+        int tail = meetTail >= 0 ? meetTail : lastTo;
+        int forwardLength = 0;
+        for (int node = tail; node >= 0; node = forward.pred(node)) {
+            forwardLength++;
+        }
+        int slot = forwardLength;
+        for (int node = tail; node >= 0; node = forward.pred(node)) {
+            into[--slot] = node;
+        }
+        slot = forwardLength;
+        for (int node = meetHead; node >= 0; node = backward.pred(node)) {
+            into[slot++] = node;
+        }
+    }
+
+    public int[] path(int from, int to) {
+        distance(from, to);
+        return path();
+    }
+
+    public int lastFrom() {
+        return lastFrom;
+    }
+
+    public int lastTo() {
+        return lastTo;
+    }
+
+    public int lastDistance() {
+        return lastDistance;
+    }
+
+    /** Nodes taken off the heaps by the last query, both directions together. */
+    public int settledCount() {
+        return settled;
+    }
+
+    private int forwardOnly(int from, int to, double scale) {
+        IntBuffer offsets = graph.offsets();
+        IntBuffer targets = graph.targets();
+        IntBuffer weights = graph.weights();
+        forward.begin(graph.nodeCount());
+        backward.begin(graph.nodeCount());
+        IndexedMinHeap heap = forward.heap;
+
+        forward.reach(from, 0, -1, estimate(from, to, scale));
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            settled++;
+            int nodeDist = forward.dist[node];
+            if (node == to) {
+                return nodeDist;
+            }
+            if (closed(node, from, to)) {
+                continue;
+            }
+            for (int arc = offsets.get(node), end = offsets.get(node + 1); arc < end; arc++) {
+                int next = targets.get(arc);
+                int newDist = nodeDist + weights.get(arc);
+                if (newDist < forward.distance(next)) {
+                    forward.reach(next, newDist, node, newDist + estimate(next, to, scale));
+                }
+            }
+        }
+        return UNREACHED;
+    }
+
+    private int estimate(int node, int to, double scale) {
+        return scale == 0 ? 0 : (int) (scale * graph.straightLine(node, to));
+    }
+
+    private int bidirectional(int from, int to) {
+        IntBuffer offsets = graph.offsets();
+        IntBuffer targets = graph.targets();
+        IntBuffer weights = graph.weights();
+        IntBuffer reverseOffsets = graph.reverseOffsets();
+        IntBuffer reverseSources = graph.reverseSources();
+        IntBuffer reverseWeights = graph.reverseWeights();
+        forward.begin(graph.nodeCount());
+        backward.begin(graph.nodeCount());
+
+        forward.reach(from, 0, -1, 0);
+        backward.reach(to, 0, -1, 0);
+        long best = UNREACHED;
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+            if ((long) forward.heap.minKey() + backward.heap.minKey() >= best) {
+                break;
+            }
+            boolean forwardTurn = forward.heap.size() <= backward.heap.size();
+            Frontier near = forwardTurn ? forward : backward;
+            Frontier far = forwardTurn ? backward : forward;
+            IntBuffer nearOffsets = forwardTurn ? offsets : reverseOffsets;
+            IntBuffer nearTargets = forwardTurn ? targets : reverseSources;
+            IntBuffer nearWeights = forwardTurn ? weights : reverseWeights;
+
+            int node = near.heap.poll();
+            settled++;
+            if (closed(node, from, to)) {
+                continue;
+            }
+            int nodeDist = near.dist[node];
+            for (int arc = nearOffsets.get(node), end = nearOffsets.get(node + 1); arc < end; arc++) {
+                int next = nearTargets.get(arc);
+                int newDist = nodeDist + nearWeights.get(arc);
+                if (newDist < near.distance(next)) {
+                    near.reach(next, newDist, node, newDist);
+                }
+                if (closed(next, from, to)) {
+                    continue; // the two halves would meet inside a closed location
+                }
+                int otherDist = far.distance(next);
+                if (otherDist != UNREACHED && (long) newDist + otherDist < best) {
+                    best = (long) newDist + otherDist;
+                    meetTail = forwardTurn ? node : next;
+                    meetHead = forwardTurn ? next : node;
+                }
+            }
+        }
+        return (int) best;
+    }
+
+    /** True when a route from {@code from} to {@code to} may not pass through {@code node}. */
+    private boolean closed(int node, int from, int to) {
+        return mask != null && node != from && node != to && mask.isClosed(node);
+    }
+
+    /** Distances, predecessors and heap of one search direction. */
+    static final class Frontier {
+        final IndexedMinHeap heap = new IndexedMinHeap(16);
+        int[] dist = new int[16];
+        int[] pred = new int[16];
+        int[] stamp = new int[16];
+        int currentStamp;
+
+        void begin(int n) {
+            if (n > dist.length) {
+                int capacity = Math.max(n, dist.length * 2);
+                dist = Arrays.copyOf(dist, capacity);
+                pred = Arrays.copyOf(pred, capacity);
+                stamp = Arrays.copyOf(stamp, capacity);
+                heap.ensureCapacity(capacity);
+            }
+            if (++currentStamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                currentStamp = 1;
+            }
+            heap.clear();
+        }
+
+        int distance(int node) {
+            return stamp[node] == currentStamp ? dist[node] : UNREACHED;
+        }
+
+        int pred(int node) {
+            return stamp[node] == currentStamp ? pred[node] : -1;
+        }
+
+        void reach(int node, int newDist, int from, int key) {
+            dist[node] = newDist;
+            pred[node] = from;
+            stamp[node] = currentStamp;
+            heap.offer(node, key);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package travel;
+
+import java.nio.IntBuffer;
+
+/**
+ * Read side of a road network as the search engines see it: dense node ids,
+ * location codes, and forward and reverse adjacency in CSR form. The arcs
+ * leaving node v are {@code offsets().get(v)} until {@code offsets().get(v + 1)};
+ * the arcs entering v use the reverse buffers the same way.
+ *
+ * {@link CompactGraph} builds a network in memory; {@link MappedRoadNetwork}
+ * serves a compiled network straight from a memory-mapped file.
+ */
+interface RoadNetwork {
+    int nodeCount();
+
+    int arcCount();
+
+    /** Id of a location code, or -1 when the network does not know it. */
+    int idOf(String code);
+
+    String codeOf(int id);
+
+    /**
+     * Changes whenever a node or an edge is added, or an edge is reweighted or
+     * removed, so derived results can tell they are stale.
+     */
+    int version();
+
+    /**
+     * Arcs added, reweighted or removed after {@code version}, as from/to
+     * pairs, or null when that is not known (nodes were added, or the changes
+     * are too old) and only a full recompute will do.
+     */
+    default int[] changedArcsSince(int version) {
+        return null;
+    }
+
+    IntBuffer offsets();
+
+    IntBuffer targets();
+
+    IntBuffer weights();
+
+    IntBuffer reverseOffsets();
+
+    IntBuffer reverseSources();
+
+    IntBuffer reverseWeights();
+
+    /** True when every location has coordinates. */
+    boolean hasCoordinates();
+
+    /** Straight-line distance between two placed nodes. */
+    double straightLine(int a, int b);
+
+    /**
+     * Largest factor {@code s} such that {@code s * straightLine(u, v)} never
+     * exceeds the weight of an arc u-v; 0 without coordinates.
+     */
+    double heuristicScale();
+}
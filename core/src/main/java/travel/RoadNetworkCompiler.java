@@ -0,0 +1,167 @@
+package travel;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compiles a text edge list into the binary format read by
+ * {@link MappedRoadNetwork}. Each line of the input is one undirected road,
+ * the same as an {@code addRoute} call:
+ * <pre>
+ *   # start end distance
+ *   A B 20
+ *   A,C,50
+ * </pre>
+ * Fields may be separated by spaces, tabs or commas; {@code #} starts a
+ * comment.
+ *
+ * Usage: java travel.RoadNetworkCompiler edges.txt network.rnet
+ */
+public class RoadNetworkCompiler {
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java travel.RoadNetworkCompiler <edge list> <output file>");
+            return;
+        }
+        long start = System.nanoTime();
+        CompactGraph network = read(Paths.get(args[0]));
+        write(network, Paths.get(args[1]));
+        System.out.printf("Compiled %d locations and %d roads into %s in %.3f s%n",
+                network.nodeCount(), network.arcCount() / 2, args[1], (System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        MappedRoadNetwork mapped = MappedRoadNetwork.open(Paths.get(args[1]));
+        System.out.printf("Mapped %d locations back in %.3f ms%n", mapped.nodeCount(), (System.nanoTime() - start) / 1e6);
+    }
+
+    /** Reads an edge list into an in-memory network. */
+    public static CompactGraph read(Path edgeList) throws IOException {
+        CompactGraph network = new CompactGraph();
+        try (BufferedReader reader = Files.newBufferedReader(edgeList, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("[\\s,]+");
+                if (fields.length != 3) {
+                    throw new IOException(edgeList + " line " + lineNumber + ": expected 'start end distance'");
+                }
+                int weight;
+                try {
+                    weight = Integer.parseInt(fields[2]);
+                } catch (NumberFormatException e) {
+                    throw new IOException(edgeList + " line " + lineNumber + ": invalid distance '" + fields[2] + "'");
+                }
+                if (weight < 0) {
+                    throw new IOException(edgeList + " line " + lineNumber + ": negative distance " + weight);
+                }
+                network.addEdge(network.intern(fields[0]), network.intern(fields[1]), weight);
+            }
+        }
+        return network;
+    }
+
+    /** Writes any network in the mapped format. */
+    public static void write(RoadNetwork network, Path output) throws IOException {
+        int n = network.nodeCount();
+        int m = network.arcCount();
+        byte[][] codes = new byte[n][];
+        int codeLength = 0;
+        for (int id = 0; id < n; id++) {
+            codes[id] = network.codeOf(id).getBytes(StandardCharsets.UTF_8);
+            codeLength += codes[id].length;
+        }
+        int tableSize = 2;
+        while (tableSize < 2 * n) {
+            tableSize <<= 1;
+        }
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+        for (int id = 0; id < n; id++) {
+            int slot = hash(codes[id]) & (tableSize - 1);
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = id;
+        }
+        long size = MappedRoadNetwork.HEADER_BYTES + 4L * (3L * (n + 1) + 4L * m + tableSize) + codeLength;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Road network too large for one mapping: " + size + " bytes");
+        }
+
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MappedRoadNetwork.MAGIC).putInt(MappedRoadNetwork.FORMAT)
+                    .putInt(n).putInt(m).putInt(tableSize).putInt(codeLength).putInt(0).putInt(0);
+            putInts(channel, buffer, network.offsets());
+            putInts(channel, buffer, network.targets());
+            putInts(channel, buffer, network.weights());
+            putInts(channel, buffer, network.reverseOffsets());
+            putInts(channel, buffer, network.reverseSources());
+            putInts(channel, buffer, network.reverseWeights());
+            int offset = 0;
+            for (int id = 0; id < n; id++) {
+                putInt(channel, buffer, offset);
+                offset += codes[id].length;
+            }
+            putInt(channel, buffer, offset);
+            putInts(channel, buffer, IntBuffer.wrap(table));
+            for (byte[] code : codes) {
+                for (byte b : code) {
+                    if (!buffer.hasRemaining()) {
+                        drain(channel, buffer);
+                    }
+                    buffer.put(b);
+                }
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Hash of a UTF-8 location code; shared with the reader so lookups probe the same slots. */
+    static int hash(byte[] code) {
+        int h = 1;
+        for (byte b : code) {
+            h = 31 * h + b;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static void putInts(FileChannel channel, ByteBuffer buffer, IntBuffer values) throws IOException {
+        for (int i = 0, count = values.limit(); i < count; i++) {
+            putInt(channel, buffer, values.get(i));
+        }
+    }
+
+    private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            drain(channel, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,147 @@
+package travel;
+
+import java.util.*;
+
+/**
+ * Shortest route between two locations, filled in by {@code Graph.route}. When
+ * the result comes from a cached predecessor tree only the tree is referenced,
+ * and the node sequence is unwound the first time it is asked for. The node
+ * buffer is kept when the same instance is filled again, so one Route can be
+ * reused for every order of a dispatch run.
+ */
+class Route {
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    private RoadNetwork graph;
+    private String start;
+    private String end;
+    private int source = -1;
+    private int target = -1;
+    private int distance = UNREACHED;
+    private int[] predecessors; // tree rooted at source, null once nodes are filled
+    private int[] nodes = new int[8];
+    private int length;
+
+    Route fromTree(RoadNetwork graph, int source, int target, int distance, int[] predecessors) {
+        reset(graph, source, target, distance);
+        this.predecessors = distance == UNREACHED ? null : predecessors;
+        this.length = distance == UNREACHED ? 0 : -1;
+        return this;
+    }
+
+    Route fromSearch(RoadNetwork graph, PointToPointSearch search) {
+        reset(graph, search.lastFrom(), search.lastTo(), search.lastDistance());
+        length = search.pathLength();
+        ensureCapacity(length);
+        search.writePath(nodes);
+        return this;
+    }
+
+    Route fromHierarchy(RoadNetwork graph, HierarchySearch search) {
+        reset(graph, search.lastFrom(), search.lastTo(), search.lastDistance());
+        length = search.pathLength();
+        ensureCapacity(length);
+        search.writePath(nodes);
+        return this;
+    }
+
+    /** Makes this route a copy of {@code other} that stays valid when {@code other} is refilled. */
+    Route copyOf(Route other) {
+        other.materialize();
+        reset(other.graph, other.source, other.target, other.distance);
+        start = other.start;
+        end = other.end;
+        length = other.length;
+        ensureCapacity(length);
+        System.arraycopy(other.nodes, 0, nodes, 0, length);
+        return this;
+    }
+
+    /** A route between locations the network does not know: empty unless both are the same place. */
+    Route between(String start, String end) {
+        reset(null, -1, -1, start.equals(end) ? 0 : UNREACHED);
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    public boolean isReachable() {
+        return distance != UNREACHED;
+    }
+
+    public int distance() {
+        return distance;
+    }
+
+    public String start() {
+        return graph == null ? start : graph.codeOf(source);
+    }
+
+    public String end() {
+        return graph == null ? end : graph.codeOf(target);
+    }
+
+    /** Number of locations on the route including both ends, 0 when unreachable. */
+    public int length() {
+        if (graph == null) {
+            return isReachable() ? 1 : 0;
+        }
+        materialize();
+        return length;
+    }
+
+    public String location(int index) {
+        if (graph == null) {
+            Objects.checkIndex(index, length());
+            return start;
+        }
+        materialize();
+        Objects.checkIndex(index, length);
+        return graph.codeOf(nodes[index]);
+    }
+
+    public List<String> locations() {
+        List<String> locations = new ArrayList<>(length());
+        for (int i = 0; i < length(); i++) {
+            locations.add(location(i));
+        }
+        return locations;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" -> ", locations());
+    }
+
+    private void reset(RoadNetwork graph, int source, int target, int distance) {
+        this.graph = graph;
+        this.source = source;
+        this.target = target;
+        this.distance = distance;
+        this.predecessors = null;
+        this.length = 0;
+    }
+
+    private void materialize() {
+        if (length >= 0) {
+            return;
+        }
+        int count = 0;
+        for (int node = target; node >= 0; node = predecessors[node]) {
+            count++;
+        }
+        ensureCapacity(count);
+        int slot = count;
+        for (int node = target; node >= 0; node = predecessors[node]) {
+            nodes[--slot] = node;
+        }
+        length = count;
+        predecessors = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (nodes.length < capacity) {
+            nodes = new int[Math.max(capacity, nodes.length * 2)];
+        }
+    }
+}
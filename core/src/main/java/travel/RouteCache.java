@@ -0,0 +1,400 @@
+package travel;
+
+import java.util.*;
+
+/**
+ * Shortest-path cache in front of a {@link RoadNetwork}. Small networks (up to
+ * {@code matrixLimit} locations, such as the A-H districts) get an all-pairs
+ * matrix computed on first use. Larger networks keep whole single-source
+ * distance rows in a bounded LRU, so consecutive orders from the same place
+ * cost one search between them. Any change to the graph drops everything,
+ * unless incremental updates are switched on: then, as long as no node was
+ * added, every cached tree is repaired by an {@link IncrementalSearch} over the
+ * arcs that changed, and only trees those arcs actually touch are copied.
+ *
+ * On large networks a single pair query is answered by an early-exit
+ * {@link PointToPointSearch} until its source has been asked for
+ * {@code ROW_PROMOTION} times, and only then is the full row computed. When a
+ * {@link ContractionHierarchy} of the current network is set, pair queries go
+ * to a {@link HierarchySearch} instead and are never promoted to rows.
+ *
+ * Under an {@link AvailabilityMask} every search avoids the closed locations,
+ * and cached results are keyed by the mask version as well as the network
+ * version, so a new day's mask drops them like an edit does. A hierarchy
+ * cannot route around closed locations and is only used while none are closed.
+ *
+ * Every cached row comes with the predecessor tree of the same search, so a
+ * route can be unwound without searching again. Cached rows are handed out
+ * directly and never written again after they are filled, so callers may keep
+ * them as read-only snapshots.
+ */
+class RouteCache {
+    public static final int DEFAULT_MATRIX_LIMIT = 1024;
+    public static final long DEFAULT_ROW_BUDGET = 16L << 20; // ints kept in cached rows
+    public static final int ROW_PROMOTION = 4;
+
+    private static final int MATRIX = -2;
+    private static final int POINT = -1;
+
+    private final RoadNetwork graph;
+    private final DijkstraSearch search;
+    private final PointToPointSearch pointSearch;
+    private final IncrementalSearch repair;
+    private ContractionHierarchy hierarchy;
+    private HierarchySearch hierarchySearch;
+    private AvailabilityMask mask; // null when every location is open
+    private final int matrixLimit;
+    private final long rowBudget;
+    private int builtVersion = -1;
+    private int builtMaskVersion;
+    private int builtNodes;
+    private boolean incremental;
+
+    private int[][] matrix;
+    private int[][] matrixPredecessors;
+
+    // LRU of source rows: slotOf[source] -> slot, slots linked most recent first.
+    private int[] slotOf = new int[0];
+    private int[] pointQueries = new int[0];
+    private int[][] rows;
+    private int[][] predecessorRows;
+    private int[] rowSource;
+    private int[] prev;
+    private int[] next;
+    private int head = -1;
+    private int tail = -1;
+    private int used;
+
+    private long hits;
+    private long misses;
+    private long searches;
+    private long repairs;
+
+    private LatencyHistogram searchNanos; // null until instrumented
+    private LatencyHistogram searchSettled;
+    private LatencyHistogram pointSearchNanos;
+    private LatencyHistogram pointSearchSettled;
+    private LatencyHistogram hierarchySearchNanos;
+    private LatencyHistogram hierarchySearchSettled;
+    private LatencyHistogram repairNanos;
+    private LatencyHistogram repairSettled;
+
+    public RouteCache(RoadNetwork graph) {
+        this(graph, DEFAULT_MATRIX_LIMIT, DEFAULT_ROW_BUDGET);
+    }
+
+    public RouteCache(RoadNetwork graph, int matrixLimit, long rowBudget) {
+        this.graph = graph;
+        this.search = new DijkstraSearch(graph);
+        this.pointSearch = new PointToPointSearch(graph);
+        this.repair = new IncrementalSearch(graph);
+        this.matrixLimit = matrixLimit;
+        this.rowBudget = rowBudget;
+    }
+
+    public int distance(int from, int to) {
+        int slot = locate(from, true);
+        return slot == POINT ? pointQuery(from, to) : distances(from, slot)[to];
+    }
+
+    /** Fills {@code route} with the shortest route between two nodes and returns it. */
+    public Route route(int from, int to, Route route) {
+        int slot = locate(from, true);
+        if (slot == POINT) {
+            pointQuery(from, to);
+            return usesHierarchy() ? route.fromHierarchy(graph, hierarchySearch) : route.fromSearch(graph, pointSearch);
+        }
+        return route.fromTree(graph, from, to, distances(from, slot)[to], predecessors(from, slot));
+    }
+
+    /** The early-exit search used for uncached pairs. */
+    public PointToPointSearch pointSearch() {
+        return pointSearch;
+    }
+
+    /** Distances from {@code source} to every node; the array must not be modified. */
+    public int[] row(int source) {
+        return distances(source, locate(source, false));
+    }
+
+    /** Predecessor tree rooted at {@code source}; the array must not be modified. */
+    public int[] predecessorRow(int source) {
+        return predecessors(source, locate(source, false));
+    }
+
+    /** Answers pair queries from {@code hierarchy} while it matches the network; null goes back to plain searches. */
+    public void setHierarchy(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        this.hierarchySearch = hierarchy == null ? null : new HierarchySearch(hierarchy);
+    }
+
+    /** Routes around the locations {@code mask} closes from now on; null lifts it. */
+    public void setMask(AvailabilityMask mask) {
+        this.mask = mask;
+        search.setMask(mask);
+        pointSearch.setMask(mask);
+        repair.setMask(mask);
+        builtVersion = -1;
+    }
+
+    /**
+     * Repairs cached trees after arcs are added, reweighted or removed, instead
+     * of dropping them. Off by default.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /** Drops every cached result; the next query starts from the current graph. */
+    public void invalidate() {
+        int n = graph.nodeCount();
+        builtVersion = graph.version();
+        builtMaskVersion = maskVersion();
+        builtNodes = n;
+        matrix = null;
+        matrixPredecessors = null;
+        rows = null;
+        predecessorRows = null;
+        head = tail = -1;
+        used = 0;
+        if (n <= matrixLimit) {
+            buildMatrix(n);
+            return;
+        }
+        int capacity = (int) Math.max(1, Math.min(n, rowBudget / n));
+        rows = new int[capacity][];
+        predecessorRows = new int[capacity][];
+        rowSource = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        if (slotOf.length < n) {
+            slotOf = new int[n];
+            pointQueries = new int[n];
+        }
+        Arrays.fill(slotOf, -1);
+        Arrays.fill(pointQueries, 0);
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    /** Number of single-source searches run so far, including matrix rows but not pair queries. */
+    public long searches() {
+        return searches;
+    }
+
+    /** Number of cached trees brought up to date by an incremental update. */
+    public long repairs() {
+        return repairs;
+    }
+
+    /**
+     * Records the time and nodes settled of every search into {@code metrics},
+     * and publishes the hit and miss counts and the hit rate.
+     */
+    public void instrument(Metrics metrics) {
+        searchNanos = metrics.histogram("route.search.nanos");
+        searchSettled = metrics.histogram("route.search.settled");
+        pointSearchNanos = metrics.histogram("route.pointSearch.nanos");
+        pointSearchSettled = metrics.histogram("route.pointSearch.settled");
+        hierarchySearchNanos = metrics.histogram("route.hierarchySearch.nanos");
+        hierarchySearchSettled = metrics.histogram("route.hierarchySearch.settled");
+        repairNanos = metrics.histogram("route.repair.nanos");
+        repairSettled = metrics.histogram("route.repair.settled");
+        metrics.gauge("route.cache.hits", this::hits);
+        metrics.gauge("route.cache.misses", this::misses);
+        metrics.ratioGauge("route.cache.hitRate", () -> {
+            long found = hits;
+            long asked = found + misses;
+            return asked == 0 ? 0 : (double) found / asked;
+        });
+    }
+
+    /** Cache slot holding the row of {@code source}, loading it if needed, or MATRIX or POINT. */
+    private int locate(int source, boolean allowPoint) {
+        if (maskVersion() != builtMaskVersion) {
+            invalidate();
+        } else if (graph.version() != builtVersion && !repair()) {
+            invalidate();
+        }
+        if (matrix != null) {
+            hits++;
+            return MATRIX;
+        }
+        int slot = slotOf[source];
+        if (slot >= 0) {
+            hits++;
+            moveToFront(slot);
+            return slot;
+        }
+        misses++;
+        if (allowPoint && (usesHierarchy() || ++pointQueries[source] < ROW_PROMOTION)) {
+            return POINT;
+        }
+        return load(source);
+    }
+
+    private int[] distances(int source, int slot) {
+        return slot == MATRIX ? matrix[source] : rows[slot];
+    }
+
+    private int[] predecessors(int source, int slot) {
+        return slot == MATRIX ? matrixPredecessors[source] : predecessorRows[slot];
+    }
+
+    /** Brings every cached tree up to the current graph, or returns false when that takes a rebuild. */
+    private boolean repair() {
+        if (!incremental || builtVersion < 0 || graph.nodeCount() != builtNodes) {
+            return false;
+        }
+        int[] changedArcs = graph.changedArcsSince(builtVersion);
+        if (changedArcs == null) {
+            return false;
+        }
+        if (matrix != null) {
+            for (int source = 0; source < matrix.length; source++) {
+                repairTree(matrix, matrixPredecessors, source, changedArcs);
+            }
+        } else {
+            for (int slot = 0; slot < used; slot++) {
+                repairTree(rows, predecessorRows, slot, changedArcs);
+            }
+        }
+        builtVersion = graph.version();
+        return true;
+    }
+
+    private void repairTree(int[][] distances, int[][] predecessors, int index, int[] changedArcs) {
+        if (!repair.affects(distances[index], predecessors[index], changedArcs)) {
+            return;
+        }
+        // Repair copies: the old rows may still be held by a caller
+        int[] row = distances[index].clone();
+        int[] predecessorRow = predecessors[index].clone();
+        if (repairNanos == null) {
+            repair.update(row, predecessorRow, changedArcs);
+        } else {
+            long start = System.nanoTime();
+            repair.update(row, predecessorRow, changedArcs);
+            repairNanos.record(System.nanoTime() - start);
+            repairSettled.record(repair.settledCount());
+        }
+        distances[index] = row;
+        predecessors[index] = predecessorRow;
+        repairs++;
+    }
+
+    private void buildMatrix(int n) {
+        int[][] all = new int[n][];
+        int[][] allPredecessors = new int[n][];
+        for (int source = 0; source < n; source++) {
+            all[source] = new int[n];
+            allPredecessors[source] = new int[n];
+            compute(source, all[source], allPredecessors[source]);
+        }
+        matrix = all;
+        matrixPredecessors = allPredecessors;
+    }
+
+    private int load(int source) {
+        int slot;
+        if (used < rows.length) {
+            slot = used++;
+        } else {
+            slot = tail;
+            unlink(slot);
+            slotOf[rowSource[slot]] = -1;
+        }
+        // Fresh rows each time: an evicted row may still be held by a caller.
+        int n = graph.nodeCount();
+        rows[slot] = new int[n];
+        predecessorRows[slot] = new int[n];
+        compute(source, rows[slot], predecessorRows[slot]);
+        rowSource[slot] = source;
+        slotOf[source] = slot;
+        linkFirst(slot);
+        return slot;
+    }
+
+    private boolean usesHierarchy() {
+        return hierarchy != null && hierarchy.isCurrent(graph) && (mask == null || mask.closedCount() == 0);
+    }
+
+    private int maskVersion() {
+        return mask == null ? 0 : mask.version();
+    }
+
+    private int pointQuery(int from, int to) {
+        if (usesHierarchy()) {
+            if (hierarchySearchNanos == null) {
+                return hierarchySearch.distance(from, to);
+            }
+            long start = System.nanoTime();
+            int distance = hierarchySearch.distance(from, to);
+            hierarchySearchNanos.record(System.nanoTime() - start);
+            hierarchySearchSettled.record(hierarchySearch.settledCount());
+            return distance;
+        }
+        if (pointSearchNanos == null) {
+            return pointSearch.distance(from, to);
+        }
+        long start = System.nanoTime();
+        int distance = pointSearch.distance(from, to);
+        pointSearchNanos.record(System.nanoTime() - start);
+        pointSearchSettled.record(pointSearch.settledCount());
+        return distance;
+    }
+
+    private void compute(int source, int[] row, int[] predecessorRow) {
+        if (searchNanos == null) {
+            search.run(source);
+        } else {
+            long start = System.nanoTime();
+            search.run(source);
+            searchNanos.record(System.nanoTime() - start);
+            searchSettled.record(search.settledCount());
+        }
+        search.copyDistances(row);
+        search.copyPredecessors(predecessorRow);
+        searches++;
+    }
+
+    private void moveToFront(int slot) {
+        if (slot != head) {
+            unlink(slot);
+            linkFirst(slot);
+        }
+    }
+
+    private void linkFirst(int slot) {
+        prev[slot] = -1;
+        next[slot] = head;
+        if (head >= 0) {
+            prev[head] = slot;
+        }
+        head = slot;
+        if (tail < 0) {
+            tail = slot;
+        }
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before >= 0) {
+            next[before] = after;
+        } else {
+            head = after;
+        }
+        if (after >= 0) {
+            prev[after] = before;
+        } else {
+            tail = before;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package travel;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Priority tiers of int handles (see {@link OrderStore}), served lowest index
+ * first, FIFO inside each tier. {@link TieredScheduler} is the single-threaded
+ * implementation and {@link ConcurrentTieredScheduler} accepts handles from
+ * many threads at once.
+ *
+ * {@link #snapshot} copies whole tiers; {@link #page} walks one a bounded
+ * page at a time while handles keep arriving and leaving.
+ */
+interface TieredQueue {
+    int EMPTY = -1;
+
+    int tierCount();
+
+    /** Queues a non-negative handle on {@code tier}. */
+    void add(int tier, int handle);
+
+    /** Removes and returns the next handle, or {@link #EMPTY} when every tier is empty. */
+    int poll();
+
+    /**
+     * Moves up to {@code max} handles, in the order {@link #poll} would return
+     * them, into the front of {@code sink}. Returns how many were moved.
+     */
+    default int drainTo(int[] sink, int max) {
+        int limit = Math.min(max, sink.length);
+        int moved = 0;
+        int handle;
+        while (moved < limit && (handle = poll()) != EMPTY) {
+            sink[moved++] = handle;
+        }
+        return moved;
+    }
+
+    /**
+     * Takes {@code handle} out of {@code tier} wherever it waits there.
+     * Returns false when it is not queued on that tier.
+     */
+    boolean remove(int tier, int handle);
+
+    boolean isEmpty();
+
+    int size();
+
+    int size(int tier);
+
+    /** Serve a handle once it has been passed over {@code limit} times; 0 turns aging off. */
+    void setAgingLimit(long limit);
+
+    /**
+     * Contents of every tier, in leaving order, taken at a single point in time.
+     * Each handle is turned into an element by {@code view} while the queue is
+     * held still, so no handle can be dispatched and reused under it.
+     */
+    <T> List<List<T>> snapshot(IntFunction<? extends T> view);
+
+    /** Handles of one tier, mapped through {@code view}, in the order they will leave it. */
+    default <T> List<T> toList(int tier, IntFunction<? extends T> view) {
+        return this.<T>snapshot(view).get(tier);
+    }
+
+    /**
+     * The next page of a walk through {@code tier}: up to {@code max} handles
+     * that {@code filter} accepts, in leaving order, starting after the last
+     * one {@code cursor} passed, each mapped through {@code view} while the
+     * queue is held still. Moves the cursor past every handle looked at. A page
+     * shorter than {@code max} means the walk has reached the end of the tier.
+     *
+     * The walk is weakly consistent: handles that leave between pages are not
+     * returned, and handles added meanwhile are returned only if they queue
+     * behind the cursor. No handle is returned twice, and no handle that
+     * waits throughout the walk is missed.
+     */
+    <T> List<T> page(int tier, Cursor cursor, IntPredicate filter, int max, IntFunction<? extends T> view);
+
+    /**
+     * How far a walk with {@link #page} has got through one tier: the
+     * leaving-order key of the last handle it passed. Keys are positions
+     * rather than handles, so the walk carries on correctly after handles
+     * are dispatched and reused. A new cursor starts at the head of the tier.
+     */
+    final class Cursor {
+        boolean started;
+        long rank; // deadline under DeadlineScheduler, 0 otherwise
+        long sequence; // position in the tier, or arrival among handles of equal rank
+    }
+}
@@ -0,0 +1,267 @@
+package travel;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Multi-level bucket queue of handles. Tier 0 is served first, then tier 1 and
+ * so on; inside a tier handles leave in arrival order. Each tier is an int ring buffer and
+ * a bit mask records which tiers hold anything, so {@link #add} and
+ * {@link #poll} are O(1) instead of the O(log n) sift of a heap whose
+ * elements all share the same priority.
+ *
+ * With an aging limit, a handle that has watched more than that many others
+ * leave ahead of it is served next even if a higher tier is waiting,
+ * so lower tiers cannot starve. At most 64 tiers are supported. Not thread
+ * safe; see {@link ConcurrentTieredScheduler} for concurrent intake.
+ *
+ * {@link #remove} leaves a tombstone in the ring, found through the ring
+ * position remembered for every handle, so taking an order out of the middle
+ * of a tier is O(1) as well. Those positions are an array indexed by handle,
+ * so handles should be dense and reused, as {@link OrderStore} hands them out. Tombstones are dropped as the head passes them.
+ * A {@link #page} cursor is a ring position too, so each page costs the
+ * handles it looks at, however far into the tier it starts.
+ */
+class TieredScheduler implements TieredQueue {
+    public static final int MAX_TIERS = 64;
+
+    private final Tier[] tiers;
+    private int[] positionOf = new int[16]; // handle -> ring position in its tier, for remove
+    private long nonEmpty; // bit i set when tier i holds items
+    private long served;
+    private long agingLimit;
+    private int size;
+
+    public TieredScheduler(int tierCount) {
+        if (tierCount < 1 || tierCount > MAX_TIERS) {
+            throw new IllegalArgumentException("Tier count must be between 1 and " + MAX_TIERS + ": " + tierCount);
+        }
+        tiers = new Tier[tierCount];
+        for (int i = 0; i < tierCount; i++) {
+            tiers[i] = new Tier();
+        }
+    }
+
+    @Override
+    public void setAgingLimit(long limit) {
+        this.agingLimit = limit;
+    }
+
+    @Override
+    public int tierCount() {
+        return tiers.length;
+    }
+
+    @Override
+    public void add(int tier, int handle) {
+        if (handle >= positionOf.length) {
+            positionOf = Arrays.copyOf(positionOf, Math.max(handle + 1, positionOf.length * 2));
+        }
+        positionOf[handle] = tiers[tier].add(handle, served);
+        nonEmpty |= 1L << tier;
+        size++;
+    }
+
+    @Override
+    public int poll() {
+        if (nonEmpty == 0) {
+            return EMPTY;
+        }
+        int tier = nextTier();
+        Tier bucket = tiers[tier];
+        int handle = bucket.poll();
+        if (bucket.size == 0) {
+            nonEmpty &= ~(1L << tier);
+        }
+        served++;
+        size--;
+        return handle;
+    }
+
+    @Override
+    public boolean remove(int tier, int handle) {
+        Tier bucket = tiers[tier];
+        if (handle < 0 || handle >= positionOf.length || !bucket.remove(positionOf[handle], handle)) {
+            return false;
+        }
+        if (bucket.size == 0) {
+            nonEmpty &= ~(1L << tier);
+        }
+        size--;
+        return true;
+    }
+
+    /** The handle {@link #poll} would return next, or {@link #EMPTY}. */
+    public int peek() {
+        return nonEmpty == 0 ? EMPTY : tiers[nextTier()].peek();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int size(int tier) {
+        return tiers[tier].size;
+    }
+
+    @Override
+    public <T> List<T> toList(int tier, IntFunction<? extends T> view) {
+        Tier bucket = tiers[tier];
+        List<T> items = new ArrayList<>(bucket.size);
+        for (int i = 0; i < bucket.count; i++) {
+            int handle = bucket.get(i);
+            if (handle != Tier.REMOVED) {
+                items.add(view.apply(handle));
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public <T> List<T> page(int tier, Cursor cursor, IntPredicate filter, int max, IntFunction<? extends T> view) {
+        Tier bucket = tiers[tier];
+        int from = cursor.started ? Math.max(0, (int) cursor.sequence + 1 - bucket.head) : 0;
+        List<T> items = new ArrayList<>(Math.max(0, Math.min(max, bucket.size)));
+        for (int i = from; i < bucket.count && items.size() < max; i++) {
+            int handle = bucket.get(i);
+            cursor.started = true;
+            cursor.sequence = bucket.head + i;
+            if (handle != Tier.REMOVED && filter.test(handle)) {
+                items.add(view.apply(handle));
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public <T> List<List<T>> snapshot(IntFunction<? extends T> view) {
+        List<List<T>> tierItems = new ArrayList<>(tiers.length);
+        for (int tier = 0; tier < tiers.length; tier++) {
+            tierItems.add(toList(tier, view));
+        }
+        return tierItems;
+    }
+
+    public void clear() {
+        for (Tier tier : tiers) {
+            tier.clear();
+        }
+        nonEmpty = 0;
+        size = 0;
+    }
+
+    private int nextTier() {
+        int first = Long.numberOfTrailingZeros(nonEmpty);
+        if (agingLimit > 0) {
+            for (long rest = nonEmpty & (nonEmpty - 1); rest != 0; rest &= rest - 1) {
+                int tier = Long.numberOfTrailingZeros(rest);
+                if (served - tiers[tier].headArrival() > agingLimit) {
+                    return tier;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * FIFO ring buffer that also remembers how many handles had been served
+     * when each one arrived. Positions count up forever and are masked into
+     * the ring, so a handle keeps its position when the ring grows. The head
+     * is never a tombstone.
+     */
+    private static final class Tier {
+        static final int REMOVED = -1;
+
+        private int[] items = new int[16];
+        private long[] arrivals = new long[16];
+        private int head; // position of the first entry
+        private int count; // entries including tombstones
+        private int size; // live handles
+
+        /** Appends {@code handle} and returns its position. */
+        int add(int handle, long arrival) {
+            if (count == items.length) {
+                grow();
+            }
+            int position = head + count;
+            int slot = position & (items.length - 1);
+            items[slot] = handle;
+            arrivals[slot] = arrival;
+            count++;
+            size++;
+            return position;
+        }
+
+        int poll() {
+            int handle = items[head & (items.length - 1)];
+            head++;
+            count--;
+            size--;
+            dropTombstones();
+            return handle;
+        }
+
+        /** Tombstones {@code handle} if it is still at {@code position}. */
+        boolean remove(int position, int handle) {
+            int slot = position & (items.length - 1);
+            if (Integer.compareUnsigned(position - head, count) >= 0 || items[slot] != handle) {
+                return false;
+            }
+            items[slot] = REMOVED;
+            size--;
+            dropTombstones();
+            return true;
+        }
+
+        int peek() {
+            return items[head & (items.length - 1)];
+        }
+
+        /** Entry {@code index} from the head, possibly {@link #REMOVED}. */
+        int get(int index) {
+            return items[(head + index) & (items.length - 1)];
+        }
+
+        long headArrival() {
+            return arrivals[head & (items.length - 1)];
+        }
+
+        void clear() {
+            head = 0;
+            count = 0;
+            size = 0;
+        }
+
+        private void dropTombstones() {
+            int mask = items.length - 1;
+            while (count > 0 && items[head & mask] == REMOVED) {
+                head++;
+                count--;
+            }
+            while (count > 0 && items[(head + count - 1) & mask] == REMOVED) {
+                count--;
+            }
+        }
+
+        private void grow() {
+            int capacity = items.length * 2;
+            int[] newItems = new int[capacity];
+            long[] newArrivals = new long[capacity];
+            for (int i = 0; i < count; i++) {
+                int position = head + i;
+                newItems[position & (capacity - 1)] = items[position & (items.length - 1)];
+                newArrivals[position & (capacity - 1)] = arrivals[position & (items.length - 1)];
+            }
+            items = newItems;
+            arrivals = newArrivals;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package travel;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Hierarchical timing wheel of int handles (see {@link OrderStore}), one
+ * timer per handle. Four levels of 256 slots each cover 2^32 ticks: level 0
+ * holds the timers due within 256 ticks, one slot per tick, and each higher
+ * level holds 256 times as long a span per slot. When level 0 wraps around,
+ * the next slot of level 1 is cascaded down, and so on up the levels.
+ *
+ * Scheduling and cancelling are O(1). A timer moves down at most three times
+ * over its life, so advancing costs the timers that fire plus the few that
+ * move, whatever the number waiting. Slots are doubly linked lists threaded
+ * through int arrays indexed by handle, so millions of timers cost 20 bytes
+ * each and no objects. Advancing jumps straight to the next tick where a
+ * slot fires or cascades, found from per-level occupancy bits, so an idle
+ * stretch of any length costs a few word scans.
+ *
+ * A timer fires no earlier than its time and at most one tick later. Not
+ * thread safe.
+ */
+class TimerWheel {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int OVERDUE = LEVELS * SLOTS; // list of timers already due when scheduled
+    private static final int FIRING = OVERDUE + 1; // timers being handed out, so a callback can still cancel them
+    private static final int NONE = -1;
+
+    private final long tickMillis;
+    private final int[] heads = new int[FIRING + 1];
+    private final long[] occupied = new long[LEVELS * SLOTS / 64]; // bit per non-empty slot
+    private long current; // every timer due before this tick has fired
+
+    // Per handle; listOf is NONE when the handle has no timer
+    private long[] dueTick = new long[0];
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    private int[] listOf = new int[0];
+    private int size;
+
+    /** A wheel counting ticks of {@code tickMillis} from {@code nowMillis}. */
+    public TimerWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.current = Math.floorDiv(nowMillis, tickMillis);
+        Arrays.fill(heads, NONE);
+    }
+
+    public long tickMillis() {
+        return tickMillis;
+    }
+
+    /** Number of timers waiting. */
+    public int size() {
+        return size;
+    }
+
+    public boolean isScheduled(int handle) {
+        return handle < listOf.length && listOf[handle] != NONE;
+    }
+
+    /** Sets the timer of {@code handle} to {@code dueMillis}, replacing any it had. */
+    public void schedule(int handle, long dueMillis) {
+        if (handle < 0) {
+            throw new IllegalArgumentException("Negative handle: " + handle);
+        }
+        if (handle >= listOf.length) {
+            grow(handle);
+        }
+        if (listOf[handle] != NONE) {
+            unlink(handle);
+        } else {
+            size++;
+        }
+        dueTick[handle] = -Math.floorDiv(-dueMillis, tickMillis); // rounded up, so never early
+        insert(handle);
+    }
+
+    /** Cancels the timer of {@code handle}; returns false when it had none. */
+    public boolean cancel(int handle) {
+        if (!isScheduled(handle)) {
+            return false;
+        }
+        unlink(handle);
+        size--;
+        return true;
+    }
+
+    /**
+     * Fires every timer due by {@code nowMillis}, handing each handle to
+     * {@code expired} after its timer is removed. Handles may be scheduled
+     * again from inside {@code expired}; one already due then fires on the
+     * next advance. Returns the number of timers fired.
+     */
+    public int advance(long nowMillis, IntConsumer expired) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        int fired = fire(detach(OVERDUE), expired);
+        while (current <= target) {
+            long next = nextEvent();
+            if (next > target) {
+                current = target + 1;
+                break;
+            }
+            current = next;
+            int index = (int) current & SLOT_MASK;
+            if (index == 0) {
+                cascade();
+            }
+            int due = detach(index);
+            current++;
+            fired += fire(due, expired);
+        }
+        return fired;
+    }
+
+    /**
+     * The first tick from the current one on where a level-0 slot fires or a
+     * higher slot cascades, or {@link Long#MAX_VALUE} when nothing waits.
+     */
+    private long nextEvent() {
+        int index = (int) current & SLOT_MASK;
+        if (index == 0) {
+            return current; // the higher levels may cascade here
+        }
+        int slot = nextOccupied(0, index);
+        if (slot >= 0) {
+            return current - index + slot;
+        }
+        if (nextOccupied(0, 0) >= 0) {
+            return current - index + SLOTS; // due in the next turn of level 0
+        }
+        long best = Long.MAX_VALUE;
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * SLOT_BITS;
+            long block = current >> shift;
+            int at = (int) block & SLOT_MASK; // already cascaded, since the current tick is past its first
+            slot = nextOccupied(level, at + 1);
+            if (slot < 0) {
+                slot = nextOccupied(level, 0);
+                if (slot < 0) {
+                    continue;
+                }
+                slot += SLOTS;
+            }
+            best = Math.min(best, (block + slot - at) << shift);
+        }
+        return best;
+    }
+
+    /** Moves the slot of every higher level that starts at the current tick down the wheel. */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int index = (int) (current >> (level * SLOT_BITS)) & SLOT_MASK;
+            for (int handle = detach(level * SLOTS + index); handle != NONE; ) {
+                int following = next[handle];
+                insert(handle);
+                handle = following;
+            }
+            if (index != 0) {
+                break;
+            }
+        }
+    }
+
+    private int fire(int first, IntConsumer expired) {
+        for (int handle = first; handle != NONE; handle = next[handle]) {
+            listOf[handle] = FIRING;
+        }
+        heads[FIRING] = first;
+        int fired = 0;
+        for (int handle; (handle = heads[FIRING]) != NONE; ) {
+            unlink(handle);
+            size--;
+            fired++;
+            expired.accept(handle);
+        }
+        return fired;
+    }
+
+    private void insert(int handle) {
+        long delta = dueTick[handle] - current;
+        int list;
+        if (delta < 0) {
+            list = OVERDUE;
+        } else {
+            int level = 0;
+            while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+                level++;
+            }
+            long tick = level == LEVELS - 1 && delta >= 1L << (LEVELS * SLOT_BITS)
+                    ? current + (1L << (LEVELS * SLOT_BITS)) - 1 // beyond the wheel: park in the farthest slot
+                    : dueTick[handle];
+            list = level * SLOTS + ((int) (tick >> (level * SLOT_BITS)) & SLOT_MASK);
+        }
+        int head = heads[list];
+        next[handle] = head;
+        prev[handle] = NONE;
+        if (head != NONE) {
+            prev[head] = handle;
+        }
+        heads[list] = handle;
+        listOf[handle] = list;
+        if (list != OVERDUE) {
+            occupied[list >>> 6] |= 1L << list;
+        }
+    }
+
+    private void unlink(int handle) {
+        int list = listOf[handle];
+        int before = prev[handle];
+        int after = next[handle];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            heads[list] = after;
+            if (after == NONE && list < OVERDUE) {
+                occupied[list >>> 6] &= ~(1L << list);
+            }
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+        listOf[handle] = NONE;
+    }
+
+    /** Empties a list and returns its first handle; the rest still hang off {@code next}. */
+    private int detach(int list) {
+        int first = heads[list];
+        heads[list] = NONE;
+        if (list < OVERDUE) {
+            occupied[list >>> 6] &= ~(1L << list);
+        }
+        return first;
+    }
+
+    /** First occupied slot of {@code level} at or after index {@code from}, or -1. */
+    private int nextOccupied(int level, int from) {
+        int words = SLOTS / 64;
+        for (int word = from >>> 6; word < words; word++) {
+            long bits = occupied[level * words + word];
+            if (word == from >>> 6) {
+                bits &= -1L << from;
+            }
+            if (bits != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    private void grow(int handle) {
+        int capacity = Math.max(handle + 1, Math.max(16, listOf.length * 2));
+        int old = listOf.length;
+        dueTick = Arrays.copyOf(dueTick, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        listOf = Arrays.copyOf(listOf, capacity);
+        Arrays.fill(listOf, old, capacity, NONE);
+    }
+}
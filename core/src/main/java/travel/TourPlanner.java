@@ -0,0 +1,435 @@
+package travel;
+
+import java.util.*;
+
+/**
+ * Plans the visiting order of a whole dispatch run instead of following the
+ * queue. Orders are taken tier by tier, so every fast order is still
+ * delivered before any normal one, and within a tier orders for the same
+ * location are grouped into one stop. Each tier becomes an open tour that
+ * starts where the previous one ended: built nearest-neighbour first, then
+ * improved with 2-opt (reversing a stretch of the tour) and Or-opt (moving a
+ * run of one to three stops elsewhere) until neither finds a shorter tour.
+ * Tiers of up to {@value #EXACT_LIMIT} stops, such as the A-H districts, are
+ * solved exactly instead.
+ *
+ * Both improvement steps only look at each stop's {@value #NEIGHBOURS}
+ * nearest stops, so a pass costs O(stops) rather than O(stops^2) and
+ * thousands of stops plan in milliseconds. All distances come from one
+ * {@link Graph#distanceMatrix} over the distinct locations, which costs one
+ * single-source search per location and dominates on large networks.
+ * 2-opt is skipped on one-way road networks, where reversing a stretch would
+ * change its length.
+ */
+class TourPlanner {
+    public static final int NEIGHBOURS = 12;
+    public static final int EXACT_LIMIT = 11;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final Graph graph;
+    private final OrderStore orders;
+    private long greedyDistance;
+    private long plannedDistance;
+    private int unreachableLegs;
+    private int stops;
+    private long planNanos;
+
+    public TourPlanner(Graph graph, OrderStore orders) {
+        this.graph = graph;
+        this.orders = orders;
+    }
+
+    /** A planner for callers that pass each order's location and priority themselves. */
+    public TourPlanner(Graph graph) {
+        this(graph, null);
+    }
+
+    /**
+     * Returns the first {@code count} handles in the order they should be
+     * delivered, starting from {@code start}. The handles are expected in
+     * dequeue order, which is what the planned tour is compared against.
+     */
+    public int[] plan(String start, int[] handles, int count) {
+        String[] locations = new String[count];
+        int[] priorities = new int[count];
+        for (int i = 0; i < count; i++) {
+            locations[i] = orders.location(handles[i]);
+            priorities[i] = orders.priority(handles[i]);
+        }
+        return plan(start, handles, locations, priorities, count);
+    }
+
+    /**
+     * Same as {@link #plan(String, int[], int)} with the location and priority
+     * of {@code handles[i]} given at index i, so the store is not read.
+     */
+    public int[] plan(String start, int[] handles, String[] locations, int[] priorities, int count) {
+        long begin = System.nanoTime();
+        greedyDistance = 0;
+        plannedDistance = 0;
+        unreachableLegs = 0;
+        stops = 0;
+
+        // Every distance needed below comes from one matrix over the start and all distinct locations
+        Map<String, Integer> placeOf = new HashMap<>();
+        List<String> places = new ArrayList<>();
+        placeOf.put(start, 0);
+        places.add(start);
+        int[] place = new int[count];
+        for (int i = 0; i < count; i++) {
+            place[i] = placeOf.computeIfAbsent(locations[i], location -> {
+                places.add(location);
+                return places.size() - 1;
+            });
+        }
+        int k = places.size();
+        int[] distances = graph.distanceMatrix(places.toArray(new String[0]));
+
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            greedyDistance += leg(distances[previous * k + place[i]], false);
+            previous = place[i];
+        }
+
+        int[] tour = new int[count];
+        int placed = 0;
+        int current = 0;
+        for (int priority : distinct(priorities, count)) {
+            // Stops of this tier, each with its orders in queue order
+            Map<Integer, List<Integer>> stopOrders = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                if (priorities[i] == priority) {
+                    stopOrders.computeIfAbsent(place[i], p -> new ArrayList<>()).add(handles[i]);
+                }
+            }
+            int[] nodes = new int[stopOrders.size() + 1];
+            nodes[0] = current;
+            int next = 1;
+            for (int stop : stopOrders.keySet()) {
+                nodes[next++] = stop;
+            }
+            int m = nodes.length;
+            int[] tierDistances = new int[m * m];
+            for (int a = 0; a < m; a++) {
+                for (int b = 0; b < m; b++) {
+                    tierDistances[a * m + b] = distances[nodes[a] * k + nodes[b]];
+                }
+            }
+            int[] path = optimize(tierDistances, m);
+            for (int p = 1; p < m; p++) {
+                int stop = nodes[path[p]];
+                plannedDistance += leg(distances[current * k + stop], true);
+                for (int handle : stopOrders.get(stop)) {
+                    tour[placed++] = handle;
+                }
+                current = stop;
+            }
+            stops += stopOrders.size();
+        }
+        planNanos = System.nanoTime() - begin;
+        return tour;
+    }
+
+    /** Length of the queue-order route over the last plan, not counting unreachable legs. */
+    public long greedyDistance() {
+        return greedyDistance;
+    }
+
+    /** Length of the planned route, not counting unreachable legs. */
+    public long plannedDistance() {
+        return plannedDistance;
+    }
+
+    public int unreachableLegs() {
+        return unreachableLegs;
+    }
+
+    /** Distinct stops planned, summed over the tiers. */
+    public int stops() {
+        return stops;
+    }
+
+    public long planNanos() {
+        return planNanos;
+    }
+
+    /** One line comparing the planned tour with the queue order. */
+    public String summary() {
+        double saved = greedyDistance == 0 ? 0 : 100.0 * (greedyDistance - plannedDistance) / greedyDistance;
+        return String.format("Optimized tour: %d units against %d in queue order (%.1f%% shorter), %d stops planned in %.1f ms%s",
+                plannedDistance, greedyDistance, saved, stops, planNanos / 1e6,
+                unreachableLegs == 0 ? "" : ", " + unreachableLegs + " stops unreachable");
+    }
+
+    private long leg(int distance, boolean planned) {
+        if (distance == UNREACHED) {
+            if (planned) {
+                unreachableLegs++;
+            }
+            return 0;
+        }
+        return distance;
+    }
+
+    private static int[] distinct(int[] values, int count) {
+        return Arrays.stream(values, 0, count).distinct().sorted().toArray();
+    }
+
+    /**
+     * Shortest open path found from node 0 through every other node of a
+     * {@code size} x {@code size} row-major distance matrix, as the node
+     * sequence starting with 0. Unreachable pairs hold Integer.MAX_VALUE.
+     */
+    static int[] optimize(int[] distances, int size) {
+        if (size <= EXACT_LIMIT + 1) {
+            return exact(distances, size);
+        }
+        int[] tour = nearestNeighbour(distances, size);
+        new Improver(distances, size, tour).run();
+        return tour;
+    }
+
+    private static int[] nearestNeighbour(int[] d, int n) {
+        int[] tour = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for (int p = 1; p < n; p++) {
+            int from = tour[p - 1] * n;
+            int best = -1;
+            for (int c = 1; c < n; c++) {
+                if (!visited[c] && (best < 0 || d[from + c] < d[from + best])) {
+                    best = c;
+                }
+            }
+            tour[p] = best;
+            visited[best] = true;
+        }
+        return tour;
+    }
+
+    /** Held-Karp over subsets of the stops: best[set][last] is the shortest path from 0 through set ending at last. */
+    private static int[] exact(int[] d, int n) {
+        int stops = n - 1;
+        int sets = 1 << stops;
+        long[] best = new long[sets * Math.max(stops, 1)];
+        Arrays.fill(best, Long.MAX_VALUE);
+        for (int s = 0; s < stops; s++) {
+            best[(1 << s) * stops + s] = d[s + 1];
+        }
+        for (int set = 1; set < sets; set++) {
+            for (int last = 0; last < stops; last++) {
+                long length = best[set * stops + last];
+                if (length == Long.MAX_VALUE) {
+                    continue;
+                }
+                for (int s = 0; s < stops; s++) {
+                    if ((set & 1 << s) == 0) {
+                        int slot = (set | 1 << s) * stops + s;
+                        best[slot] = Math.min(best[slot], length + d[(last + 1) * n + s + 1]);
+                    }
+                }
+            }
+        }
+        int[] tour = new int[n];
+        int set = sets - 1;
+        int last = -1;
+        for (int s = 0; s < stops; s++) {
+            if (last < 0 || best[set * stops + s] < best[set * stops + last]) {
+                last = s;
+            }
+        }
+        for (int p = stops; p >= 1; p--) {
+            tour[p] = last + 1;
+            int rest = set & ~(1 << last);
+            int before = -1;
+            for (int s = 0; s < stops && rest != 0; s++) {
+                if ((rest & 1 << s) != 0 && best[rest * stops + s] + d[(s + 1) * n + last + 1] == best[set * stops + last]) {
+                    before = s;
+                    break;
+                }
+            }
+            set = rest;
+            last = before;
+        }
+        return tour;
+    }
+
+    /** 2-opt and Or-opt over neighbour lists; node 0 stays first and the last stop is free. */
+    private static final class Improver {
+        private final int[] d;
+        private final int n;
+        private final int[] tour;
+        private final int[] pos;
+        private final int[] near; // NEIGHBOURS nearest of each node, closest first
+        private final int k;
+        private final boolean symmetric;
+
+        Improver(int[] distances, int size, int[] tour) {
+            this.d = distances;
+            this.n = size;
+            this.tour = tour;
+            this.pos = new int[size];
+            for (int i = 0; i < size; i++) {
+                pos[tour[i]] = i;
+            }
+            this.k = Math.min(NEIGHBOURS, size - 1);
+            this.near = neighbours();
+            this.symmetric = isSymmetric();
+        }
+
+        void run() {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int i = 1; i < n; i++) {
+                    if (symmetric && twoOpt(i)) {
+                        improved = true;
+                    }
+                }
+                for (int i = 1; i < n; i++) {
+                    for (int length = 1; length <= 3 && i + length <= n; length++) {
+                        if (orOpt(i, length)) {
+                            improved = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        private long d(int a, int b) {
+            return d[a * n + b];
+        }
+
+        /** Tries the reversals that give tour[i] or tour[i - 1] a nearer neighbour; applies the first that shortens the tour. */
+        private boolean twoOpt(int i) {
+            int a = tour[i - 1];
+            int b = tour[i];
+            long ab = d(a, b);
+            for (int m = 0; m < k; m++) {
+                int c = near[a * k + m];
+                if (d(a, c) >= ab) {
+                    break;
+                }
+                int j = pos[c];
+                if (j > i ? tryReverse(i, j) : j < i - 1 && tryReverse(j + 1, i - 1)) {
+                    return true;
+                }
+            }
+            for (int m = 0; m < k; m++) {
+                int c = near[b * k + m];
+                if (d(b, c) >= ab) {
+                    break;
+                }
+                int j = pos[c];
+                if (j > i + 1 ? tryReverse(i, j - 1) : j >= 1 && j < i && tryReverse(j, i - 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean tryReverse(int s, int e) {
+            long before = d(tour[s - 1], tour[s]);
+            long after = d(tour[s - 1], tour[e]);
+            if (e + 1 < n) {
+                before += d(tour[e], tour[e + 1]);
+                after += d(tour[s], tour[e + 1]);
+            }
+            if (after >= before) {
+                return false;
+            }
+            for (; s < e; s++, e--) {
+                int t = tour[s];
+                tour[s] = tour[e];
+                tour[e] = t;
+                pos[tour[s]] = s;
+                pos[tour[e]] = e;
+            }
+            return true;
+        }
+
+        /** Moves tour[i .. i + length - 1] next to one of its first stop's nearest stops if that is shorter. */
+        private boolean orOpt(int i, int length) {
+            int last = i + length - 1;
+            int first = tour[i];
+            int tail = tour[last];
+            int prev = tour[i - 1];
+            int next = last + 1 < n ? tour[last + 1] : -1;
+            long saved = d(prev, first) + (next < 0 ? 0 : d(tail, next) - d(prev, next));
+            for (int m = 0; m < k; m++) {
+                int c = near[first * k + m];
+                int j = pos[c];
+                if (j >= i - 1 && j <= last) {
+                    continue;
+                }
+                int after = j + 1 < n ? tour[j + 1] : -1;
+                long added = d(c, first) + (after < 0 ? 0 : d(tail, after) - d(c, after));
+                if (added < saved) {
+                    move(i, length, j);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Moves the run of {@code length} stops at {@code i} to just after position {@code j}. */
+        private void move(int i, int length, int j) {
+            int[] run = Arrays.copyOfRange(tour, i, i + length);
+            int from;
+            int to;
+            if (j > i) {
+                System.arraycopy(tour, i + length, tour, i, j - i - length + 1);
+                System.arraycopy(run, 0, tour, j - length + 1, length);
+                from = i;
+                to = j;
+            } else {
+                System.arraycopy(tour, j + 1, tour, j + 1 + length, i - j - 1);
+                System.arraycopy(run, 0, tour, j + 1, length);
+                from = j + 1;
+                to = i + length - 1;
+            }
+            for (int p = from; p <= to; p++) {
+                pos[tour[p]] = p;
+            }
+        }
+
+        private int[] neighbours() {
+            int[] lists = new int[n * k];
+            long[] best = new long[k]; // distance << 32 | node, ascending
+            for (int a = 0; a < n; a++) {
+                int found = 0;
+                for (int c = 0; c < n; c++) {
+                    if (c == a) {
+                        continue;
+                    }
+                    long key = d(a, c) << 32 | c;
+                    if (found == k && key >= best[k - 1]) {
+                        continue;
+                    }
+                    int slot = found < k ? found++ : k - 1;
+                    while (slot > 0 && best[slot - 1] > key) {
+                        best[slot] = best[slot - 1];
+                        slot--;
+                    }
+                    best[slot] = key;
+                }
+                for (int m = 0; m < k; m++) {
+                    lists[a * k + m] = (int) best[m];
+                }
+            }
+            return lists;
+        }
+
+        private boolean isSymmetric() {
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    if (d[a * n + b] != d[b * n + a]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package travel;
+
+import java.io.*;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic road networks and order streams for scale and soak runs. The same
+ * parameters and seed give the same network and stream on every machine.
+ *
+ * A network is a square grid of junctions 10 units apart joined by local
+ * roads of 10 to 50 units. Every {@value #HIGHWAY_SPACING}th row and column
+ * is also a highway, with an interchange at each crossing and at about half
+ * the cost per unit of a local road. Away from the highway columns, one in
+ * five of the local roads between rows is missing, so shortest paths are not
+ * simply staircases. Roads along a row and every road on a highway column
+ * are always there, so every location can reach every other. Each location's
+ * roads follow from its position and a hash of the seed, so the network is
+ * written in the {@link MappedRoadNetwork} format without an edge list in
+ * between. 10^7 locations take about 1 GB of heap.
+ *
+ * An order stream arrives as a Poisson process at a given rate. Each order is
+ * fast with a given probability and picks its location from a Zipf-like
+ * power law with a given exponent, 0 for uniform. The busiest locations are
+ * scattered over the grid rather than packed into one corner.
+ *
+ * Usage:
+ * <pre>
+ *   java travel.WorkloadGenerator network nodes network.rnet [seed]
+ *   java travel.WorkloadGenerator orders count nodes orders.csv [fastShare] [skew] [seed]
+ * </pre>
+ * The order file is CSV for {@link BulkOrderLoader}, with locations named as
+ * in the generated network. {@link WorkloadReplay} produces the same stream
+ * in memory instead.
+ */
+public class WorkloadGenerator {
+    public static final int HIGHWAY_SPACING = 16;
+    public static final long DEFAULT_SEED = 42;
+    public static final double DEFAULT_FAST_SHARE = 0.2;
+    public static final double DEFAULT_SKEW = 1.0;
+    private static final int BLOCK = 10; // units between neighbouring junctions
+    private static final int MISSING_PERCENT = 20;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("network")) {
+            long start = System.nanoTime();
+            GridNetwork network = new GridNetwork(Integer.parseInt(args[1]), args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED);
+            RoadNetworkCompiler.write(network, Paths.get(args[2]));
+            System.out.printf("Wrote %d locations and %d roads to %s in %.3f s%n",
+                    network.nodeCount(), network.arcCount() / 2, args[2], (System.nanoTime() - start) / 1e9);
+        } else if (args.length >= 4 && args[0].equals("orders")) {
+            long count = Long.parseLong(args[1]);
+            OrderStream stream = new OrderStream(Integer.parseInt(args[2]),
+                    args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_FAST_SHARE,
+                    args.length > 5 ? Double.parseDouble(args[5]) : DEFAULT_SKEW, 0,
+                    args.length > 6 ? Long.parseLong(args[6]) : DEFAULT_SEED);
+            try (Writer out = Files.newBufferedWriter(Paths.get(args[3]), StandardCharsets.UTF_8)) {
+                out.write("name,location,type\n");
+                for (long i = 0; i < count; i++) {
+                    stream.next();
+                    out.write("O" + i + ",N" + stream.location() + ","
+                            + (stream.priority() == BulkOrderLoader.FAST_PRIORITY ? "fast" : "normal") + "\n");
+                }
+            }
+            System.out.printf("Wrote %d orders to %s%n", count, args[3]);
+        } else {
+            System.out.println("Usage: java travel.WorkloadGenerator network <nodes> <output file> [seed]");
+            System.out.println("       java travel.WorkloadGenerator orders <count> <nodes> <output file> [fastShare] [skew] [seed]");
+        }
+    }
+
+    /** SplitMix64 finaliser; spreads a seeded key into a well-mixed long. */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The grid network in memory, in CSR form. Roads are two-way with the same
+     * length both ways, so the reverse adjacency is the forward one. Location
+     * i is called "N" + i and sits at column i % side, row i / side.
+     */
+    static final class GridNetwork implements RoadNetwork {
+        private static final int LOCAL_ROW = 0;
+        private static final int LOCAL_COLUMN = 1;
+        private static final int HIGHWAY_ROW = 2;
+        private static final int HIGHWAY_COLUMN = 3;
+
+        private final int nodes;
+        private final int side;
+        private final long seed;
+        private final IntBuffer offsets;
+        private final IntBuffer targets;
+        private final IntBuffer weights;
+        private final double heuristicScale;
+        private int[] fillTargets; // null while counting
+        private int[] fillWeights;
+        private double minRatio = Double.POSITIVE_INFINITY;
+
+        GridNetwork(int nodes, long seed) {
+            if (nodes < 1) {
+                throw new IllegalArgumentException("A network needs at least one location: " + nodes);
+            }
+            this.nodes = nodes;
+            this.side = (int) Math.ceil(Math.sqrt(nodes));
+            this.seed = seed;
+            int[] starts = new int[nodes + 1];
+            for (int v = 0; v < nodes; v++) {
+                starts[v + 1] = arcsOf(v, starts[v]);
+            }
+            fillTargets = new int[starts[nodes]];
+            fillWeights = new int[starts[nodes]];
+            for (int v = 0; v < nodes; v++) {
+                arcsOf(v, starts[v]);
+            }
+            offsets = IntBuffer.wrap(starts);
+            targets = IntBuffer.wrap(fillTargets);
+            weights = IntBuffer.wrap(fillWeights);
+            heuristicScale = minRatio == Double.POSITIVE_INFINITY ? 0 : minRatio * (1 - 1e-9);
+            fillTargets = null;
+            fillWeights = null;
+        }
+
+        /** Writes the arcs leaving {@code v} from slot {@code at} once the arrays exist; returns the slot after them. */
+        private int arcsOf(int v, int at) {
+            int column = v % side;
+            int row = v / side;
+            if (column > 0) {
+                at = arc(at, v - 1, LOCAL_ROW, v - 1, 1);
+            }
+            if (column + 1 < side && v + 1 < nodes) {
+                at = arc(at, v + 1, LOCAL_ROW, v, 1);
+            }
+            if (row > 0 && hasColumnRoad(v - side)) {
+                at = arc(at, v - side, LOCAL_COLUMN, v - side, 1);
+            }
+            if (v + side < nodes && hasColumnRoad(v)) {
+                at = arc(at, v + side, LOCAL_COLUMN, v, 1);
+            }
+            if (column % HIGHWAY_SPACING == 0 && row % HIGHWAY_SPACING == 0) {
+                int across = HIGHWAY_SPACING;
+                int down = HIGHWAY_SPACING * side;
+                if (column >= across) {
+                    at = arc(at, v - across, HIGHWAY_ROW, v - across, across);
+                }
+                if (column + across < side && v + across < nodes) {
+                    at = arc(at, v + across, HIGHWAY_ROW, v, across);
+                }
+                if (row >= HIGHWAY_SPACING) {
+                    at = arc(at, v - down, HIGHWAY_COLUMN, v - down, across);
+                }
+                if ((long) v + down < nodes) {
+                    at = arc(at, v + down, HIGHWAY_COLUMN, v, across);
+                }
+            }
+            return at;
+        }
+
+        /** Whether the local road from {@code upper} to the junction below it exists. */
+        private boolean hasColumnRoad(int upper) {
+            return (upper % side) % HIGHWAY_SPACING == 0 || roll(upper, LOCAL_COLUMN + 4, 100) >= MISSING_PERCENT;
+        }
+
+        /** One arc to {@code to} over a road of {@code blocks} junctions, keyed by its lower end so both directions agree. */
+        private int arc(int at, int to, int kind, int lower, int blocks) {
+            if (fillTargets != null) {
+                int weight = kind == LOCAL_ROW || kind == LOCAL_COLUMN
+                        ? BLOCK + roll(lower, kind, 4 * BLOCK + 1)
+                        : blocks * BLOCK / 2 + roll(lower, kind, blocks * BLOCK / 4);
+                fillTargets[at] = to;
+                fillWeights[at] = weight;
+                minRatio = Math.min(minRatio, weight / (double) (blocks * BLOCK));
+            }
+            return at + 1;
+        }
+
+        private int roll(int node, int kind, int bound) {
+            return (int) ((mix(seed * 0x9E3779B97F4A7C15L + 8L * node + kind) >>> 1) % bound);
+        }
+
+        @Override
+        public int nodeCount() {
+            return nodes;
+        }
+
+        @Override
+        public int arcCount() {
+            return targets.limit();
+        }
+
+        @Override
+        public int idOf(String code) {
+            if (code.length() < 2 || code.length() > 11 || code.charAt(0) != 'N' || (code.charAt(1) == '0' && code.length() > 2)) {
+                return -1;
+            }
+            long id = 0;
+            for (int i = 1; i < code.length(); i++) {
+                char c = code.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                id = id * 10 + (c - '0');
+            }
+            return id < nodes ? (int) id : -1;
+        }
+
+        @Override
+        public String codeOf(int id) {
+            return "N" + id;
+        }
+
+        @Override
+        public int version() {
+            return 0;
+        }
+
+        @Override
+        public IntBuffer offsets() {
+            return offsets;
+        }
+
+        @Override
+        public IntBuffer targets() {
+            return targets;
+        }
+
+        @Override
+        public IntBuffer weights() {
+            return weights;
+        }
+
+        @Override
+        public IntBuffer reverseOffsets() {
+            return offsets;
+        }
+
+        @Override
+        public IntBuffer reverseSources() {
+            return targets;
+        }
+
+        @Override
+        public IntBuffer reverseWeights() {
+            return weights;
+        }
+
+        @Override
+        public boolean hasCoordinates() {
+            return true;
+        }
+
+        @Override
+        public double straightLine(int a, int b) {
+            return BLOCK * Math.hypot(a % side - b % side, a / side - b / side);
+        }
+
+        @Override
+        public double heuristicScale() {
+            return heuristicScale;
+        }
+    }
+
+    /** A seeded stream of orders over the locations 0 to nodes - 1 of a network; see the class comment. */
+    static final class OrderStream {
+        private final SplittableRandom random;
+        private final int nodes;
+        private final double fastShare;
+        private final double exponent; // 1 - skew
+        private final double top; // (nodes + 1)^exponent
+        private final double meanGapNanos; // 0 when every order arrives at once
+        private final long scatter; // coprime to nodes, so rank * scatter % nodes visits every location
+        private long arrivalNanos;
+        private int priority;
+        private int location;
+
+        /** Orders arrive {@code perSecond} a second on average, or all at time 0 when it is 0. */
+        OrderStream(int nodes, double fastShare, double skew, double perSecond, long seed) {
+            if (nodes < 1 || fastShare < 0 || fastShare > 1 || skew < 0 || perSecond < 0) {
+                throw new IllegalArgumentException("Invalid order stream: " + nodes + " locations, fast share " + fastShare
+                        + ", skew " + skew + ", rate " + perSecond);
+            }
+            this.random = new SplittableRandom(seed);
+            this.nodes = nodes;
+            this.fastShare = fastShare;
+            this.exponent = 1 - skew;
+            this.top = Math.pow(nodes + 1.0, exponent);
+            this.meanGapNanos = perSecond == 0 ? 0 : 1e9 / perSecond;
+            long candidate = Math.floorMod(0x9E3779B97F4A7C15L, (long) nodes) | 1;
+            while (gcd(candidate, nodes) != 1) {
+                candidate = (candidate + 2) % nodes;
+            }
+            this.scatter = candidate;
+        }
+
+        /** Draws the next order. */
+        void next() {
+            if (meanGapNanos > 0) {
+                arrivalNanos += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            }
+            priority = random.nextDouble() < fastShare ? BulkOrderLoader.FAST_PRIORITY : BulkOrderLoader.NORMAL_PRIORITY;
+            location = (int) (rank() * scatter % nodes);
+        }
+
+        /** Nanoseconds from the start of the stream to the arrival of the current order. */
+        long arrivalNanos() {
+            return arrivalNanos;
+        }
+
+        int priority() {
+            return priority;
+        }
+
+        /** Node id of the current order's location. */
+        int location() {
+            return location;
+        }
+
+        /** Popularity rank from 0, by inverting the continuous power law x^-skew over [1, nodes + 1). */
+        private long rank() {
+            double u = random.nextDouble();
+            double x = Math.abs(exponent) < 1e-9
+                    ? Math.pow(nodes + 1.0, u)
+                    : Math.pow(1 + u * (top - 1), 1 / exponent);
+            return Math.max(0, Math.min(nodes - 1, (long) x - 1));
+        }
+
+        private static long gcd(long a, long b) {
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package travel;
+
+import java.io.IOException;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a generated order stream through an {@link OrderQueue} over a
+ * generated or compiled road network and reports throughput, latency and
+ * heap, so capacity planning runs the same way every time.
+ *
+ * Every order is queued when it arrives. Each one is followed by a dequeue
+ * with probability {@code dequeueShare}, so a backlog builds up at the rest.
+ * After every {@code routeEvery} orders, {@link OrderQueue#displayRoutes}
+ * dispatches that backlog along shortest routes from the network's first
+ * location. With a rate the orders are paced to their arrival times, and
+ * enqueue latency is also measured from the time each order was due. That
+ * way a replay that falls behind shows in the numbers instead of hiding them.
+ *
+ * A node count instead of a network file generates a {@link WorkloadGenerator}
+ * grid of that size into a temporary file. Events are switched off, so the
+ * numbers are the queue's and the router's alone.
+ *
+ * Usage: java travel.WorkloadReplay network.rnet|nodes [orders] [ordersPerSecond, 0 = flat out]
+ *            [fastShare] [skew] [seed] [dequeueShare] [routeEvery]
+ */
+public class WorkloadReplay {
+    private static final int PROGRESS_ROWS = 10;
+    private static final long SPIN_NANOS = 100_000; // closer than this to an arrival, spin instead of parking
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java travel.WorkloadReplay <network file | nodes> [orders] [ordersPerSecond]"
+                    + " [fastShare] [skew] [seed] [dequeueShare] [routeEvery]");
+            return;
+        }
+        long orders = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        double perSecond = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        double fastShare = args.length > 3 ? Double.parseDouble(args[3]) : WorkloadGenerator.DEFAULT_FAST_SHARE;
+        double skew = args.length > 4 ? Double.parseDouble(args[4]) : WorkloadGenerator.DEFAULT_SKEW;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : WorkloadGenerator.DEFAULT_SEED;
+        double dequeueShare = args.length > 6 ? Double.parseDouble(args[6]) : 0.99;
+        long routeEvery = args.length > 7 ? Long.parseLong(args[7]) : 10_000;
+
+        Path file;
+        if (args[0].matches("\\d+")) {
+            file = Files.createTempFile("workload", ".rnet");
+            file.toFile().deleteOnExit();
+            long start = System.nanoTime();
+            RoadNetworkCompiler.write(new WorkloadGenerator.GridNetwork(Integer.parseInt(args[0]), seed), file);
+            System.out.printf("Generated a grid of %s locations in %.3f s%n", args[0], (System.nanoTime() - start) / 1e9);
+        } else {
+            file = Paths.get(args[0]);
+        }
+        MappedRoadNetwork network = MappedRoadNetwork.open(file);
+        System.out.printf("Network: %d locations, %d roads; %d orders %s, %.0f%% fast, skew %.2f, seed %d,"
+                        + " %.1f%% dequeued on arrival, routes every %d orders%n",
+                network.nodeCount(), network.arcCount() / 2, orders,
+                perSecond > 0 ? String.format("at %.0f a second", perSecond) : "flat out",
+                fastShare * 100, skew, seed, dequeueShare * 100, routeEvery);
+
+        OrderQueue queue = new OrderQueue();
+        queue.setEventSink(EventSink.NONE);
+        Metrics metrics = new Metrics();
+        queue.setMetrics(metrics);
+        queue.loadNetwork(file, network.codeOf(0));
+        new WorkloadReplay(queue, network, metrics).run(orders,
+                new WorkloadGenerator.OrderStream(network.nodeCount(), fastShare, skew, perSecond, seed),
+                new SplittableRandom(WorkloadGenerator.mix(seed)), dequeueShare, routeEvery, perSecond > 0);
+    }
+
+    private final OrderQueue queue;
+    private final RoadNetwork network;
+    private final Metrics metrics;
+    private final LatencyHistogram enqueueNanos = new LatencyHistogram();
+    private final LatencyHistogram arrivalNanos = new LatencyHistogram(); // from the due time, when paced
+    private final LatencyHistogram dequeueNanos = new LatencyHistogram();
+    private final LatencyHistogram routeNanos = new LatencyHistogram(); // per order dispatched by displayRoutes
+
+    WorkloadReplay(OrderQueue queue, RoadNetwork network, Metrics metrics) {
+        this.queue = queue;
+        this.network = network;
+        this.metrics = metrics;
+    }
+
+    void run(long orders, WorkloadGenerator.OrderStream stream, SplittableRandom dispatch,
+             double dequeueShare, long routeEvery, boolean paced) {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long collections = collections();
+        long collectionMillis = collectionMillis();
+        long progressEvery = Math.max(1, orders / PROGRESS_ROWS);
+        System.out.println("   Orders    Seconds  Orders/sec    Queued  Heap MB");
+
+        long begin = System.nanoTime();
+        for (long i = 1; i <= orders; i++) {
+            stream.next();
+            long due = begin + stream.arrivalNanos();
+            if (paced) {
+                waitUntil(due);
+            }
+            String name = "O" + i;
+            String location = network.codeOf(stream.location());
+            long start = System.nanoTime();
+            queue.enqueue(name, stream.priority(), location);
+            long end = System.nanoTime();
+            enqueueNanos.record(end - start);
+            if (paced) {
+                arrivalNanos.record(end - due);
+            }
+            if (dispatch.nextDouble() < dequeueShare) {
+                start = System.nanoTime();
+                queue.dequeue();
+                dequeueNanos.record(System.nanoTime() - start);
+            }
+            if (i % progressEvery == 0 || i == orders) {
+                double seconds = (System.nanoTime() - begin) / 1e9;
+                System.out.printf("%9d  %9.2f  %10.0f  %8d  %7d%n",
+                        i, seconds, i / seconds, queue.size(), heapUsed() >> 20);
+            }
+            if (i % routeEvery == 0) {
+                int backlog = queue.size();
+                start = System.nanoTime();
+                queue.displayRoutes();
+                if (backlog > 0) {
+                    long perOrder = (System.nanoTime() - start) / backlog;
+                    for (int k = 0; k < backlog; k++) {
+                        routeNanos.record(perOrder);
+                    }
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.println();
+        System.out.println("Operation                   Count     p50 us     p99 us   p99.9 us     max us");
+        print("enqueue", enqueueNanos);
+        if (paced) {
+            print("enqueue from arrival", arrivalNanos);
+        }
+        print("dequeue", dequeueNanos);
+        print("displayRoutes per order", routeNanos);
+        print("wait in queue", metrics.histogram("queue.wait.nanos"));
+        print("route search", metrics.histogram("route.pointSearch.nanos"));
+        print("route row search", metrics.histogram("route.search.nanos"));
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%nThroughput: %.0f orders a second over %.2f s%n", orders / seconds, seconds);
+        System.out.printf("GC: %d collections, %d ms%n", collections() - collections, collectionMillis() - collectionMillis);
+        System.gc();
+        System.out.printf("Heap: peak %d MB, %d MB in use after a full collection with %d orders queued%n",
+                peak >> 20, heapUsed() >> 20, queue.size());
+    }
+
+    private static void waitUntil(long due) {
+        long now;
+        while ((now = System.nanoTime()) < due) {
+            if (due - now > SPIN_NANOS) {
+                LockSupport.parkNanos(due - now - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static void print(String operation, LatencyHistogram histogram) {
+        if (histogram.count() > 0) {
+            System.out.printf("%-24s %8d  %9.1f  %9.1f  %9.1f  %9.1f%n", operation, histogram.count(),
+                    histogram.percentile(50) / 1e3, histogram.percentile(99) / 1e3,
+                    histogram.percentile(99.9) / 1e3, histogram.max() / 1e3);
+        }
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long collections() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long collectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+}
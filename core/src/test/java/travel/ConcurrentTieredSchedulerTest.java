@@ -0,0 +1,245 @@
+package travel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Several intake threads store orders in a concurrent {@link OrderStore} and
+ * queue their handles into both tiers while one dispatcher drains in batches
+ * and another thread keeps taking snapshots. Nothing may be lost or
+ * duplicated, and each producer's orders must leave every tier, and appear in
+ * every snapshot, in the order they were added. An order's location names its
+ * producer and its enqueue time carries its sequence number.
+ *
+ * Removals are checked the same way, against a {@link TieredScheduler} fed
+ * the same operations and under a thread that keeps taking handles out while
+ * they are being added and dispatched.
+ */
+class ConcurrentTieredSchedulerTest {
+    private static final int TIERS = 2;
+    private static final int BATCH = 1024;
+    private static final int PRODUCERS = 4;
+    private static final int ORDERS_PER_PRODUCER = 25_000;
+
+    @Test
+    @Timeout(60)
+    void keepsEveryOrderOnceAndInProducerOrder() throws Exception {
+        ConcurrentTieredScheduler queue = new ConcurrentTieredScheduler(TIERS);
+        OrderStore store = new OrderStore(true);
+        long total = (long) PRODUCERS * ORDERS_PER_PRODUCER;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean producing = new AtomicBoolean(true);
+        AtomicLong snapshots = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(PRODUCERS + 2);
+        try {
+            List<Future<?>> intake = new ArrayList<>();
+            for (int p = 0; p < PRODUCERS; p++) {
+                String producer = String.valueOf(p);
+                intake.add(pool.submit(() -> {
+                    start.await();
+                    for (int seq = 0; seq < ORDERS_PER_PRODUCER; seq++) {
+                        int tier = seq % 3 == 0 ? 0 : 1;
+                        queue.add(tier, store.add("order", tier + 1, producer, seq));
+                    }
+                    return null;
+                }));
+            }
+            Future<Long> dispatcher = pool.submit(() -> {
+                start.await();
+                long[] lastSeq = newLastSeq();
+                int[] batch = new int[BATCH];
+                long received = 0;
+                while (received < total) {
+                    int count = queue.drainTo(batch, BATCH);
+                    if (count == 0) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        checkOrder(lastSeq, store.remove(batch[i]));
+                    }
+                    received += count;
+                }
+                return received;
+            });
+            Future<?> observer = pool.submit(() -> {
+                start.await();
+                do {
+                    for (List<Order> tier : queue.snapshot(store::get)) {
+                        long[] lastSeq = newLastSeq();
+                        for (Order order : tier) {
+                            checkOrder(lastSeq, order);
+                        }
+                    }
+                    snapshots.incrementAndGet();
+                    Thread.sleep(1);
+                } while (producing.get());
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> producer : intake) {
+                join(producer);
+            }
+            long received = join(dispatcher);
+            producing.set(false);
+            join(observer);
+
+            assertEquals(total, received);
+            assertTrue(queue.isEmpty());
+            assertEquals(0, store.size());
+            assertTrue(snapshots.get() > 0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void removesLikeTheSingleThreadedScheduler() {
+        SplittableRandom random = new SplittableRandom(24);
+        ConcurrentTieredScheduler queue = new ConcurrentTieredScheduler(TIERS);
+        TieredScheduler expected = new TieredScheduler(TIERS);
+        int next = 0;
+        for (int op = 0; op < 20_000; op++) {
+            int choice = random.nextInt(10);
+            int tier = random.nextInt(TIERS);
+            if (choice < 5) {
+                queue.add(tier, next);
+                expected.add(tier, next++);
+            } else if (choice < 7) {
+                assertEquals(expected.poll(), queue.poll());
+            } else {
+                int handle = next == 0 ? 0 : random.nextInt(Math.max(0, next - 2500), next);
+                assertEquals(expected.remove(tier, handle), queue.remove(tier, handle), "remove " + handle);
+            }
+            assertEquals(expected.size(tier), queue.size(tier));
+            if (op % 500 == 0) {
+                assertEquals(expected.snapshot(Integer::valueOf), queue.snapshot(Integer::valueOf));
+                TieredQueue.Cursor cursor = new TieredQueue.Cursor();
+                List<Integer> paged = new ArrayList<>();
+                List<Integer> page;
+                do {
+                    page = queue.page(tier, cursor, handle -> true, 64, Integer::valueOf);
+                    paged.addAll(page);
+                } while (page.size() == 64);
+                assertEquals(expected.toList(tier, Integer::valueOf), paged);
+            }
+        }
+        int[] expectedRest = new int[next];
+        int[] rest = new int[next];
+        assertEquals(expected.drainTo(expectedRest, next), queue.drainTo(rest, next));
+        assertArrayEquals(expectedRest, rest);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    @Timeout(60)
+    void removesEachHandleAtMostOnceUnderIntake() throws Exception {
+        ConcurrentTieredScheduler queue = new ConcurrentTieredScheduler(TIERS);
+        int total = PRODUCERS * ORDERS_PER_PRODUCER;
+        AtomicIntegerArray taken = new AtomicIntegerArray(total); // 1 polled, 2 removed
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(PRODUCERS + 2);
+        try {
+            List<Future<?>> intake = new ArrayList<>();
+            for (int p = 0; p < PRODUCERS; p++) {
+                int first = p * ORDERS_PER_PRODUCER;
+                intake.add(pool.submit(() -> {
+                    start.await();
+                    for (int seq = 0; seq < ORDERS_PER_PRODUCER; seq++) {
+                        queue.add(tierOf(first + seq), first + seq);
+                    }
+                    return null;
+                }));
+            }
+            Future<Integer> remover = pool.submit(() -> {
+                start.await();
+                SplittableRandom random = new SplittableRandom(25);
+                int removed = 0;
+                while (producing.get() || !queue.isEmpty()) {
+                    int handle = random.nextInt(total);
+                    if (queue.remove(tierOf(handle), handle)) {
+                        assertTrue(taken.compareAndSet(handle, 0, 2), "handle " + handle + " removed after it left");
+                        removed++;
+                    }
+                }
+                return removed;
+            });
+            Future<Integer> dispatcher = pool.submit(() -> {
+                start.await();
+                int[] lastSeq = new int[PRODUCERS * TIERS];
+                Arrays.fill(lastSeq, -1);
+                int[] batch = new int[BATCH];
+                int received = 0;
+                while (producing.get() || !queue.isEmpty()) {
+                    int count = queue.drainTo(batch, BATCH);
+                    for (int i = 0; i < count; i++) {
+                        int handle = batch[i];
+                        assertTrue(taken.compareAndSet(handle, 0, 1), "handle " + handle + " left twice");
+                        int slot = handle / ORDERS_PER_PRODUCER * TIERS + tierOf(handle);
+                        assertTrue(handle > lastSeq[slot], "handle " + handle + " after " + lastSeq[slot]);
+                        lastSeq[slot] = handle;
+                    }
+                    received += count;
+                }
+                return received;
+            });
+
+            start.countDown();
+            for (Future<?> producer : intake) {
+                join(producer);
+            }
+            producing.set(false);
+            int received = join(dispatcher);
+            int removed = join(remover);
+
+            assertEquals(total, received + removed);
+            assertTrue(removed > 0);
+            for (int handle = 0; handle < total; handle++) {
+                assertNotEquals(0, taken.get(handle), "handle " + handle + " was lost");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Tier of a handle numbered producer by producer, as the intake threads queue them. */
+    private static int tierOf(int handle) {
+        return handle % ORDERS_PER_PRODUCER % 3 == 0 ? 0 : 1;
+    }
+
+    private static long[] newLastSeq() {
+        long[] lastSeq = new long[PRODUCERS * TIERS];
+        Arrays.fill(lastSeq, -1);
+        return lastSeq;
+    }
+
+    /** Orders of one producer must keep their relative order within a tier. */
+    private static void checkOrder(long[] lastSeq, Order order) {
+        int producer = Integer.parseInt(order.getLocation());
+        long seq = order.getEnqueuedAt();
+        int slot = producer * TIERS + order.getPriority() - 1;
+        assertTrue(seq > lastSeq[slot], "producer " + producer + " order " + seq + " after " + lastSeq[slot]);
+        lastSeq[slot] = seq;
+    }
+
+    /** Waits for a worker and rethrows what failed in it, assertion errors included. */
+    private static <T> T join(Future<T> worker) throws Exception {
+        try {
+            return worker.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package travel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Hierarchy queries on random networks against {@link Graph#dijkstra}, for
+ * every pair of locations. The networks mix two-way roads with one-way arcs,
+ * parallel and zero-length roads and parts that cannot reach each other.
+ */
+class ContractionHierarchyTest {
+    private static final int NETWORKS = 60;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void agreesWithDijkstraOnRandomNetworks() {
+        SplittableRandom random = new SplittableRandom(17);
+        for (int i = 0; i < NETWORKS; i++) {
+            CompactGraph network = randomNetwork(random, random.nextInt(2, 70));
+            assertAgrees(network, ContractionHierarchy.build(network));
+        }
+    }
+
+    @Test
+    void agreesWithDijkstraAfterSaveAndLoad() throws IOException {
+        CompactGraph network = randomNetwork(new SplittableRandom(18), 200);
+        Path file = directory.resolve("network.ch");
+        ContractionHierarchy.build(network).save(file);
+        assertAgrees(network, ContractionHierarchy.load(file, network));
+    }
+
+    @Test
+    void refusesAHierarchyBuiltForAnotherNetwork() throws IOException {
+        Path file = directory.resolve("network.ch");
+        ContractionHierarchy.build(randomNetwork(new SplittableRandom(19), 50)).save(file);
+        assertThrows(IOException.class, () -> ContractionHierarchy.load(file, randomNetwork(new SplittableRandom(20), 50)));
+    }
+
+    /** Checks the distance and the unpacked path of every pair. */
+    private static void assertAgrees(CompactGraph network, ContractionHierarchy hierarchy) {
+        Graph graph = new Graph(network);
+        HierarchySearch search = new HierarchySearch(hierarchy);
+        int n = network.nodeCount();
+        for (int from = 0; from < n; from++) {
+            Map<String, Integer> expected = graph.dijkstra(network.codeOf(from));
+            for (int to = 0; to < n; to++) {
+                int distance = search.distance(from, to);
+                String pair = network.codeOf(from) + " -> " + network.codeOf(to);
+                assertEquals(expected.get(network.codeOf(to)).intValue(), distance, pair);
+                int[] path = search.path();
+                if (distance == HierarchySearch.UNREACHED) {
+                    assertEquals(0, path.length, pair);
+                    continue;
+                }
+                assertEquals(from, path[0], pair);
+                assertEquals(to, path[path.length - 1], pair);
+                long length = 0;
+                for (int k = 1; k < path.length; k++) {
+                    int arc = shortestArc(network, path[k - 1], path[k]);
+                    assertTrue(arc >= 0, pair + " uses a road that does not exist");
+                    length += arc;
+                }
+                assertEquals(distance, length, pair + " unpacks to a path of another length");
+            }
+        }
+    }
+
+    private static int shortestArc(RoadNetwork network, int from, int to) {
+        IntBuffer offsets = network.offsets();
+        int best = -1;
+        for (int arc = offsets.get(from); arc < offsets.get(from + 1); arc++) {
+            if (network.targets().get(arc) == to && (best < 0 || network.weights().get(arc) < best)) {
+                best = network.weights().get(arc);
+            }
+        }
+        return best;
+    }
+
+    private static CompactGraph randomNetwork(SplittableRandom random, int nodes) {
+        CompactGraph network = new CompactGraph();
+        for (int i = 0; i < nodes; i++) {
+            network.intern("L" + i);
+        }
+        int roads = random.nextInt(nodes, 3 * nodes);
+        for (int i = 0; i < roads; i++) {
+            int a = random.nextInt(nodes);
+            int b = random.nextInt(nodes);
+            int weight = random.nextInt(10) == 0 ? 0 : random.nextInt(1, 100);
+            if (random.nextInt(4) == 0) {
+                network.addArc(a, b, weight);
+            } else {
+                network.addEdge(a, b, weight);
+            }
+        }
+        return network;
+    }
+}
@@ -0,0 +1,221 @@
+package travel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.IntBuffer;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Repaired shortest-path trees against fresh {@link DijkstraSearch} runs on
+ * random networks that keep changing: roads get longer and shorter, close and
+ * open, with and without an {@link AvailabilityMask}. Ties between equally
+ * short routes may be broken either way, so predecessors are checked as a
+ * shortest-path tree of the fresh distances rather than slot by slot.
+ */
+class IncrementalSearchTest {
+    private static final int NETWORKS = 40;
+    private static final int BATCHES = 25;
+    private static final int SOURCES = 4;
+
+    @Test
+    void agreesWithDijkstraAfterRandomChanges() {
+        SplittableRandom random = new SplittableRandom(21);
+        for (int i = 0; i < NETWORKS; i++) {
+            assertRepairs(random, randomNetwork(random, random.nextInt(2, 60)), null);
+        }
+    }
+
+    @Test
+    void agreesWithDijkstraAroundClosedLocations() {
+        SplittableRandom random = new SplittableRandom(22);
+        for (int i = 0; i < NETWORKS; i++) {
+            CompactGraph network = randomNetwork(random, random.nextInt(2, 60));
+            assertRepairs(random, network, randomMask(random, network.nodeCount()));
+        }
+    }
+
+    @Test
+    void routeCacheRepairsMatchRebuilds() {
+        SplittableRandom random = new SplittableRandom(23);
+        for (int matrixLimit : new int[] {RouteCache.DEFAULT_MATRIX_LIMIT, 0}) {
+            CompactGraph network = randomNetwork(random, 80);
+            AvailabilityMask mask = randomMask(random, network.nodeCount());
+            // A budget of a few rows, so the row cache also evicts between batches
+            RouteCache rebuilt = new RouteCache(network, matrixLimit, 6L * network.nodeCount());
+            RouteCache repaired = new RouteCache(network, matrixLimit, 6L * network.nodeCount());
+            repaired.setIncremental(true);
+            for (int batch = 0; batch < BATCHES; batch++) {
+                if (batch == BATCHES / 2) {
+                    rebuilt.setMask(mask);
+                    repaired.setMask(mask);
+                }
+                if (batch == BATCHES - 1) {
+                    // More changes than the graph's change log keeps: the repair has to rebuild
+                    long searches = repaired.searches();
+                    changeRandomly(random, network, 5000);
+                    assertNull(network.changedArcsSince(network.version() - 4500));
+                    assertSameRows(random, network, rebuilt, repaired);
+                    assertTrue(repaired.searches() > searches, "an overflowed change log must not be repaired");
+                } else {
+                    changeRandomly(random, network, random.nextInt(1, 12));
+                    assertSameRows(random, network, rebuilt, repaired);
+                }
+            }
+            assertTrue(repaired.repairs() > 0);
+        }
+    }
+
+    private static void assertRepairs(SplittableRandom random, CompactGraph network, AvailabilityMask mask) {
+        int n = network.nodeCount();
+        DijkstraSearch search = new DijkstraSearch(network);
+        IncrementalSearch repair = new IncrementalSearch(network);
+        search.setMask(mask);
+        repair.setMask(mask);
+        int[] sources = new int[SOURCES];
+        int[][] dist = new int[SOURCES][n];
+        int[][] pred = new int[SOURCES][n];
+        for (int s = 0; s < SOURCES; s++) {
+            sources[s] = random.nextInt(n);
+            search.run(sources[s]);
+            search.copyDistances(dist[s]);
+            search.copyPredecessors(pred[s]);
+        }
+        for (int batch = 0; batch < BATCHES; batch++) {
+            int version = network.version();
+            changeRandomly(random, network, random.nextInt(1, 8));
+            int[] changedArcs = network.changedArcsSince(version);
+            for (int s = 0; s < SOURCES; s++) {
+                boolean affected = repair.affects(dist[s], pred[s], changedArcs);
+                int[] before = dist[s].clone();
+                repair.update(dist[s], pred[s], changedArcs);
+                search.run(sources[s]);
+                int[] expected = new int[n];
+                search.copyDistances(expected);
+                String where = "batch " + batch + " from " + network.codeOf(sources[s]);
+                assertArrayEquals(expected, dist[s], where);
+                assertTree(network, mask, sources[s], dist[s], pred[s], where);
+                if (!affected) {
+                    assertArrayEquals(before, expected, where + ": a change that moves distances went unnoticed");
+                }
+            }
+        }
+    }
+
+    private static void assertSameRows(SplittableRandom random, CompactGraph network, RouteCache rebuilt,
+            RouteCache repaired) {
+        for (int i = 0; i < SOURCES; i++) {
+            int source = random.nextInt(network.nodeCount());
+            assertArrayEquals(rebuilt.row(source), repaired.row(source), "from " + network.codeOf(source));
+        }
+    }
+
+    /** Every reached node hangs off an expandable node along an arc that makes up its distance, back to the source. */
+    private static void assertTree(CompactGraph network, AvailabilityMask mask, int source, int[] dist, int[] pred,
+            String where) {
+        int n = network.nodeCount();
+        assertEquals(0, dist[source], where);
+        assertEquals(-1, pred[source], where);
+        for (int node = 0; node < n; node++) {
+            if (node == source) {
+                continue;
+            }
+            String at = where + " at " + network.codeOf(node);
+            if (dist[node] == DijkstraSearch.UNREACHED) {
+                assertEquals(-1, pred[node], at);
+                continue;
+            }
+            int from = pred[node];
+            assertTrue(from >= 0, at);
+            assertTrue(from == source || mask == null || !mask.isClosed(from), at + " passes through a closed location");
+            int arc = shortestArc(network, from, node);
+            assertTrue(arc >= 0, at + " hangs off a road that does not exist");
+            assertEquals(dist[node], dist[from] + arc, at);
+            int steps = 0;
+            for (int walk = node; walk != source; walk = pred[walk]) {
+                assertTrue(++steps <= n, at + " is on a predecessor cycle");
+            }
+        }
+    }
+
+    /** Reweights, closes and opens {@code count} roads, one-way arcs among them. */
+    private static void changeRandomly(SplittableRandom random, CompactGraph network, int count) {
+        int n = network.nodeCount();
+        IntBuffer offsets = network.offsets();
+        for (int i = 0; i < count; i++) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            int degree = offsets.get(a + 1) - offsets.get(a);
+            if (degree > 0) {
+                b = network.targets().get(offsets.get(a) + random.nextInt(degree));
+            }
+            int choice = random.nextInt(10);
+            int weight = random.nextInt(10) == 0 ? 0 : random.nextInt(1, 100);
+            if (choice < 5) {
+                if (random.nextBoolean()) {
+                    network.setEdgeWeight(a, b, weight);
+                } else {
+                    network.setArcWeight(a, b, weight);
+                }
+            } else if (choice < 7) {
+                if (random.nextBoolean()) {
+                    network.removeEdge(a, b);
+                } else {
+                    network.removeArc(a, b);
+                }
+            } else {
+                a = random.nextInt(n);
+                b = random.nextInt(n);
+                if (random.nextInt(4) == 0) {
+                    network.addArc(a, b, weight);
+                } else {
+                    network.addEdge(a, b, weight);
+                }
+            }
+            offsets = network.offsets();
+        }
+    }
+
+    private static int shortestArc(RoadNetwork network, int from, int to) {
+        IntBuffer offsets = network.offsets();
+        int best = -1;
+        for (int arc = offsets.get(from); arc < offsets.get(from + 1); arc++) {
+            if (network.targets().get(arc) == to && (best < 0 || network.weights().get(arc) < best)) {
+                best = network.weights().get(arc);
+            }
+        }
+        return best;
+    }
+
+    private static AvailabilityMask randomMask(SplittableRandom random, int nodes) {
+        int[] closed = new int[nodes];
+        int count = 0;
+        for (int node = 0; node < nodes; node++) {
+            if (random.nextInt(6) == 0) {
+                closed[count++] = node;
+            }
+        }
+        AvailabilityMask mask = new AvailabilityMask();
+        mask.closeOnly(closed, count, nodes);
+        return mask;
+    }
+
+    private static CompactGraph randomNetwork(SplittableRandom random, int nodes) {
+        CompactGraph network = new CompactGraph();
+        for (int i = 0; i < nodes; i++) {
+            network.intern("L" + i);
+        }
+        int roads = random.nextInt(nodes, 3 * nodes);
+        for (int i = 0; i < roads; i++) {
+            int a = random.nextInt(nodes);
+            int b = random.nextInt(nodes);
+            int weight = random.nextInt(10) == 0 ? 0 : random.nextInt(1, 100);
+            if (random.nextInt(4) == 0) {
+                network.addArc(a, b, weight);
+            } else {
+                network.addEdge(a, b, weight);
+            }
+        }
+        return network;
+    }
+}
@@ -0,0 +1,198 @@
+package travel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Random enqueues, dispatches, escalations, location changes and checkpoints
+ * against a journal with 4 KB segments, so records spill across many
+ * segments and freed handles are reused. After each run the journal is closed or simply
+ * abandoned, sometimes with its last record torn, and reopened; the recovered
+ * queue must match a model of what was acknowledged.
+ */
+class OrderJournalTest {
+    private static final int SEGMENT_BYTES = 4096;
+    private static final int TRIALS = 30;
+    private static final String[] LOCATIONS = {"A", "B", "C", "D", "E", "F"};
+
+    @TempDir
+    Path directory;
+
+    private final List<OrderJournal> abandoned = new ArrayList<>();
+
+    @Test
+    void recoversWhatWasJournaled() throws IOException {
+        SplittableRandom random = new SplittableRandom(15);
+        Model model = new Model();
+        try {
+            for (int trial = 0; trial < TRIALS; trial++) {
+                OrderStore store = new OrderStore();
+                TieredScheduler queue = new TieredScheduler(2);
+                OrderJournal journal = OrderJournal.open(directory, OrderJournal.Durability.ASYNC, SEGMENT_BYTES,
+                        store, queue);
+                model.assertMatches(store, queue, journal.recovery());
+
+                Model before = model.copy(); // the model without the last record written
+                int operations = random.nextInt(1, 400);
+                for (int op = 0; op < operations; op++) {
+                    Model previous = model.copy();
+                    int choice = random.nextInt(100);
+                    if (choice < 50) {
+                        int priority = random.nextInt(1, 3);
+                        String name = "O" + trial + "-" + op;
+                        String location = LOCATIONS[random.nextInt(LOCATIONS.length)];
+                        long deadline = random.nextBoolean() ? 0 : random.nextLong(1, Long.MAX_VALUE);
+                        int handle = store.add(name, priority, location, 0, deadline);
+                        journal.enqueued(handle, name, priority, location, deadline);
+                        queue.add(priority - 1, handle);
+                        model.tiers.get(priority - 1).add(describe(name, priority, location, deadline));
+                        before = previous;
+                    } else if (choice < 88) {
+                        int handle = queue.poll();
+                        if (handle == TieredQueue.EMPTY) {
+                            continue;
+                        }
+                        journal.dispatched(handle);
+                        store.remove(handle);
+                        model.tiers.get(model.tiers.get(0).isEmpty() ? 1 : 0).remove(0);
+                        before = previous;
+                    } else if (choice < 95) {
+                        List<Integer> normal = queue.snapshot(Integer::valueOf).get(1);
+                        if (normal.isEmpty()) {
+                            continue;
+                        }
+                        int index = random.nextInt(normal.size());
+                        int handle = normal.get(index);
+                        String name = store.get(handle).getName();
+                        journal.requeued(handle, name, 1, store.location(handle), store.deadline(handle));
+                        queue.remove(1, handle);
+                        store.setPriority(handle, 1);
+                        queue.add(0, handle);
+                        model.tiers.get(1).remove(index);
+                        model.tiers.get(0).add(describe(name, 1, store.location(handle), store.deadline(handle)));
+                        before = previous;
+                    } else if (choice < 98) {
+                        Set<String> today = new LinkedHashSet<>();
+                        for (String location : LOCATIONS) {
+                            if (random.nextBoolean()) {
+                                today.add(location);
+                            }
+                        }
+                        journal.locations(today);
+                        model.locations = today;
+                        before = previous;
+                    } else {
+                        journal.checkpoint(store, queue, model.locations);
+                        before = model.copy();
+                    }
+                }
+
+                if (random.nextBoolean()) {
+                    journal.close();
+                } else {
+                    abandoned.add(journal); // a crash: the mapped pages stay, nothing more is written
+                }
+                if (random.nextInt(3) == 0 && tearLastRecord()) {
+                    model = before;
+                }
+            }
+        } finally {
+            for (OrderJournal journal : abandoned) {
+                journal.close();
+            }
+        }
+    }
+
+    @Test
+    void reportsATornTailAndKeepsTheRest() throws IOException {
+        OrderStore store = new OrderStore();
+        TieredScheduler queue = new TieredScheduler(2);
+        try (OrderJournal journal = OrderJournal.open(directory, OrderJournal.Durability.GROUP_COMMIT, SEGMENT_BYTES,
+                store, queue)) {
+            for (int i = 0; i < 3; i++) {
+                int handle = store.add("O" + i, 2, "A", 0, 0);
+                journal.enqueued(handle, "O" + i, 2, "A", 0);
+                queue.add(1, handle);
+            }
+            journal.commit();
+        }
+        assertTrue(tearLastRecord());
+
+        OrderStore recoveredStore = new OrderStore();
+        TieredScheduler recoveredQueue = new TieredScheduler(2);
+        try (OrderJournal journal = OrderJournal.open(directory, OrderJournal.Durability.ASYNC, SEGMENT_BYTES,
+                recoveredStore, recoveredQueue)) {
+            assertTrue(journal.recovery().torn());
+            assertEquals(2, journal.recovery().orders());
+            assertEquals(List.of("O0", "O1"),
+                    recoveredQueue.snapshot(handle -> recoveredStore.get(handle).getName()).get(1));
+        }
+    }
+
+    /**
+     * Breaks the checksum of the last record in the newest segment, as a
+     * crash in the middle of writing it would. Returns false when that
+     * segment holds no record, after writing a half-finished one instead.
+     */
+    private boolean tearLastRecord() throws IOException {
+        Path newest;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            newest = null;
+            for (Path file : files) {
+                if (newest == null || file.getFileName().toString().compareTo(newest.getFileName().toString()) > 0) {
+                    newest = file;
+                }
+            }
+        }
+        assertNotNull(newest);
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer log = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            int position = 16;
+            int last = -1;
+            while (log.getInt(position) != 0) {
+                last = position;
+                position += 8 + log.getInt(position);
+            }
+            if (last < 0) {
+                log.putInt(position, 5).putInt(position + 4, 0x7EA12ABC).put(position + 8, (byte) 2);
+                return false;
+            }
+            log.put(last + 8, (byte) (log.get(last + 8) ^ 0x40));
+            return true;
+        }
+    }
+
+    private static String describe(String name, int priority, String location, long deadline) {
+        return name + "/" + priority + "/" + location + "/" + deadline;
+    }
+
+    /** What the queue held, tier by tier, once each acknowledged operation was applied. */
+    private static final class Model {
+        final List<List<String>> tiers = List.of(new ArrayList<>(), new ArrayList<>());
+        Set<String> locations = new LinkedHashSet<>();
+
+        Model copy() {
+            Model copy = new Model();
+            for (int tier = 0; tier < tiers.size(); tier++) {
+                copy.tiers.get(tier).addAll(tiers.get(tier));
+            }
+            copy.locations = locations;
+            return copy;
+        }
+
+        void assertMatches(OrderStore store, TieredQueue queue, OrderJournal.Recovery recovery) {
+            assertEquals(tiers, queue.snapshot(handle -> describe(store.get(handle).getName(), store.priority(handle),
+                    store.location(handle), store.deadline(handle))));
+            assertEquals(tiers.get(0).size() + tiers.get(1).size(), recovery.orders());
+            assertEquals(locations, recovery.locations());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package travel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.IntBuffer;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Bidirectional and A* queries on random placed networks against plain
+ * Dijkstra, for random pairs, with and without closed locations. Some
+ * networks have roads about as long as the straight line between their ends,
+ * so the A* heuristic is tight, others have lengths unrelated to it.
+ */
+class PointToPointSearchTest {
+    private static final int NETWORKS = 60;
+    private static final int PAIRS = 200;
+
+    @Test
+    void agreesWithDijkstraOnRandomNetworks() {
+        SplittableRandom random = new SplittableRandom(26);
+        for (int i = 0; i < NETWORKS; i++) {
+            CompactGraph network = randomNetwork(random, random.nextInt(2, 120), random.nextBoolean());
+            assertAgrees(random, network, null);
+        }
+    }
+
+    @Test
+    void agreesWithDijkstraAroundClosedLocations() {
+        SplittableRandom random = new SplittableRandom(27);
+        for (int i = 0; i < NETWORKS; i++) {
+            CompactGraph network = randomNetwork(random, random.nextInt(2, 120), random.nextBoolean());
+            int n = network.nodeCount();
+            int[] closed = new int[n];
+            int count = 0;
+            for (int node = 0; node < n; node++) {
+                if (random.nextInt(6) == 0) {
+                    closed[count++] = node;
+                }
+            }
+            AvailabilityMask mask = new AvailabilityMask();
+            mask.closeOnly(closed, count, n);
+            assertAgrees(random, network, mask);
+        }
+    }
+
+    @Test
+    void placesLocationsGivenInDegrees() {
+        SplittableRandom random = new SplittableRandom(28);
+        CompactGraph network = new CompactGraph();
+        Graph graph = new Graph(network);
+        int n = 80;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = random.nextDouble(5.9, 9.8);
+            longitudes[i] = random.nextDouble(79.7, 81.9);
+            if (i % 2 == 0) {
+                graph.setCoordinates("L" + i, latitudes[i], longitudes[i]); // before any road reaches it
+            }
+        }
+        for (int i = 0; i < 3 * n; i++) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            double km = OrderLocator.EARTH_RADIUS_KM * Math.toRadians(Math.hypot(latitudes[a] - latitudes[b],
+                    (longitudes[a] - longitudes[b]) * Math.cos(Math.toRadians(latitudes[a]))));
+            graph.addEdge("L" + a, "L" + b, (int) Math.ceil(km * random.nextDouble(1, 1.5)));
+        }
+        for (int i = 1; i < n; i += 2) {
+            graph.setCoordinates("L" + i, latitudes[i], longitudes[i]); // after its roads
+        }
+        assertEquals(n, network.nodeCount());
+        assertTrue(network.hasCoordinates());
+        assertTrue(network.heuristicScale() > 0);
+        assertAgrees(random, network, null);
+    }
+
+    /** Checks distances and the path of the last query of every mode against Dijkstra. */
+    private static void assertAgrees(SplittableRandom random, CompactGraph network, AvailabilityMask mask) {
+        int n = network.nodeCount();
+        DijkstraSearch dijkstra = new DijkstraSearch(network);
+        dijkstra.setMask(mask);
+        PointToPointSearch[] searches = new PointToPointSearch[PointToPointSearch.Mode.values().length];
+        for (PointToPointSearch.Mode mode : PointToPointSearch.Mode.values()) {
+            searches[mode.ordinal()] = new PointToPointSearch(network);
+            searches[mode.ordinal()].setMode(mode);
+            searches[mode.ordinal()].setMask(mask);
+        }
+        for (int pair = 0; pair < PAIRS; pair++) {
+            int from = random.nextInt(n);
+            int to = random.nextInt(n);
+            dijkstra.run(from);
+            int expected = dijkstra.distance(to);
+            for (PointToPointSearch search : searches) {
+                String where = search.mode() + " " + network.codeOf(from) + " -> " + network.codeOf(to);
+                assertEquals(expected, search.distance(from, to), where);
+                assertPath(network, mask, from, to, expected, search.path(), where);
+            }
+        }
+    }
+
+    private static void assertPath(CompactGraph network, AvailabilityMask mask, int from, int to, int distance,
+            int[] path, String where) {
+        if (distance == PointToPointSearch.UNREACHED) {
+            assertEquals(0, path.length, where);
+            return;
+        }
+        assertEquals(from, path[0], where);
+        assertEquals(to, path[path.length - 1], where);
+        long length = 0;
+        for (int k = 1; k < path.length; k++) {
+            if (k > 1) {
+                assertFalse(mask != null && mask.isClosed(path[k - 1]), where + " passes through a closed location");
+            }
+            int arc = shortestArc(network, path[k - 1], path[k]);
+            assertTrue(arc >= 0, where + " uses a road that does not exist");
+            length += arc;
+        }
+        assertEquals(distance, length, where);
+    }
+
+    private static int shortestArc(RoadNetwork network, int from, int to) {
+        IntBuffer offsets = network.offsets();
+        int best = -1;
+        for (int arc = offsets.get(from); arc < offsets.get(from + 1); arc++) {
+            if (network.targets().get(arc) == to && (best < 0 || network.weights().get(arc) < best)) {
+                best = network.weights().get(arc);
+            }
+        }
+        return best;
+    }
+
+    /** Locations on a 1000 by 1000 plane; {@code tight} makes roads 1 to 1.5 times their straight line. */
+    private static CompactGraph randomNetwork(SplittableRandom random, int nodes, boolean tight) {
+        CompactGraph network = new CompactGraph();
+        for (int i = 0; i < nodes; i++) {
+            network.setCoordinates(network.intern("L" + i), random.nextDouble(1000), random.nextDouble(1000));
+        }
+        int roads = random.nextInt(nodes, 3 * nodes);
+        for (int i = 0; i < roads; i++) {
+            int a = random.nextInt(nodes);
+            int b = random.nextInt(nodes);
+            int weight = tight ? (int) Math.ceil(network.straightLine(a, b) * random.nextDouble(1, 1.5))
+                    : random.nextInt(10) == 0 ? 0 : random.nextInt(1, 100);
+            if (random.nextInt(4) == 0) {
+                network.addArc(a, b, weight);
+            } else {
+                network.addEdge(a, b, weight);
+            }
+        }
+        return network;
+    }
+}
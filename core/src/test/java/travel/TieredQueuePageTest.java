@@ -0,0 +1,250 @@
+package travel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Walks with {@link TieredQueue#page} while handles keep arriving and
+ * leaving. Every handle that waits from the start of a walk until its end
+ * must be listed exactly once, and no handle twice: under
+ * {@link ConcurrentTieredScheduler} with producers still writing the slots
+ * they claimed, and under {@link DeadlineScheduler} as a walk passes from the
+ * dated handles to the undated ones.
+ *
+ * A concurrent walk must not step over a slot that is claimed but not yet
+ * written either: once it lists a producer's handle, it has listed every
+ * earlier handle of that producer on the tier that had not left by then.
+ * Real intake only leaves such a slot behind when a producer is preempted
+ * between its claim and its write, so one test stages that by claiming a
+ * slot through reflection.
+ */
+class TieredQueuePageTest {
+    private static final int TIERS = 2;
+    private static final int PRODUCERS = 4;
+    private static final int ORDERS_PER_PRODUCER = 25_000;
+    private static final int PAGE = 64;
+
+    @Test
+    @Timeout(60)
+    void concurrentWalksMissNothingThatWaits() throws Exception {
+        ConcurrentTieredScheduler queue = new ConcurrentTieredScheduler(TIERS);
+        int total = PRODUCERS * ORDERS_PER_PRODUCER;
+        // Walks completed before the dispatcher went for a handle, plus one; 0 while it waits
+        AtomicIntegerArray polledAfter = new AtomicIntegerArray(total);
+        AtomicLong walksDone = new AtomicLong();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<int[]> waiting = new ArrayList<>(); // per walk: the tier's handles when it started
+        List<int[]> listed = new ArrayList<>(); // per walk: what its pages returned
+        ExecutorService pool = Executors.newFixedThreadPool(PRODUCERS + 2);
+        try {
+            List<Future<?>> intake = new ArrayList<>();
+            for (int p = 0; p < PRODUCERS; p++) {
+                int first = p * ORDERS_PER_PRODUCER;
+                intake.add(pool.submit(() -> {
+                    start.await();
+                    for (int seq = 0; seq < ORDERS_PER_PRODUCER; seq++) {
+                        queue.add(tierOf(first + seq), first + seq);
+                    }
+                    return null;
+                }));
+            }
+            Future<?> dispatcher = pool.submit(() -> {
+                start.await();
+                while (producing.get() || !queue.isEmpty()) {
+                    if (producing.get() && queue.size() < 500) {
+                        Thread.onSpinWait(); // let the tiers fill, so walks have something to cross
+                        continue;
+                    }
+                    int walks = (int) walksDone.get();
+                    int handle = queue.poll();
+                    if (handle != TieredQueue.EMPTY) {
+                        assertTrue(polledAfter.compareAndSet(handle, 0, walks + 1), "handle " + handle + " left twice");
+                    }
+                }
+                return null;
+            });
+            Future<?> walker = pool.submit(() -> {
+                start.await();
+                int walk = 0;
+                do {
+                    int tier = walk++ % TIERS;
+                    int[] before = queue.snapshot(Integer::valueOf).get(tier).stream().mapToInt(Integer::intValue).toArray();
+                    TieredQueue.Cursor cursor = new TieredQueue.Cursor();
+                    List<Integer> items = new ArrayList<>();
+                    List<Integer> page;
+                    do {
+                        page = queue.page(tier, cursor, handle -> true, PAGE, Integer::valueOf);
+                        items.addAll(page);
+                    } while (page.size() == PAGE);
+                    waiting.add(before);
+                    listed.add(items.stream().mapToInt(Integer::intValue).toArray());
+                    walksDone.incrementAndGet();
+                } while (producing.get());
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> producer : intake) {
+                producer.get();
+            }
+            producing.set(false);
+            walker.get();
+            dispatcher.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertFalse(waiting.isEmpty());
+        for (int walk = 0; walk < waiting.size(); walk++) {
+            int[] times = new int[total];
+            int[] firstListed = new int[PRODUCERS];
+            int[] lastListed = new int[PRODUCERS];
+            Arrays.fill(firstListed, Integer.MAX_VALUE);
+            Arrays.fill(lastListed, -1);
+            for (int handle : listed.get(walk)) {
+                assertEquals(1, ++times[handle], "walk " + walk + " listed handle " + handle + " twice");
+                int p = handle / ORDERS_PER_PRODUCER;
+                firstListed[p] = Math.min(firstListed[p], handle);
+                lastListed[p] = Math.max(lastListed[p], handle);
+            }
+            for (int handle : waiting.get(walk)) {
+                if (!leftBy(polledAfter, handle, walk)) {
+                    assertEquals(1, times[handle], "walk " + walk + " missed handle " + handle);
+                }
+            }
+            int tier = walk % TIERS;
+            for (int p = 0; p < PRODUCERS; p++) {
+                for (int handle = firstListed[p]; handle < lastListed[p]; handle++) {
+                    if (tierOf(handle) == tier && times[handle] == 0 && !leftBy(polledAfter, handle, walk)) {
+                        fail("walk " + walk + " stepped over handle " + handle + " to list " + lastListed[p]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void concurrentWalkWaitsForAClaimedSlot() throws ReflectiveOperationException {
+        ConcurrentTieredScheduler queue = new ConcurrentTieredScheduler(TIERS);
+        for (int handle = 0; handle < 5; handle++) {
+            queue.add(1, handle);
+        }
+        long stalled = claim(queue, 1);
+        for (int handle = 6; handle < 9; handle++) {
+            queue.add(1, handle);
+        }
+        TieredQueue.Cursor cursor = new TieredQueue.Cursor();
+        assertEquals(List.of(0, 1, 2, 3, 4), queue.page(1, cursor, handle -> true, PAGE, Integer::valueOf));
+        assertEquals(List.of(), queue.page(1, cursor, handle -> true, PAGE, Integer::valueOf));
+        write(queue, 1, stalled, 5);
+        assertEquals(List.of(5, 6, 7, 8), queue.page(1, cursor, handle -> true, PAGE, Integer::valueOf));
+    }
+
+    @Test
+    void deadlineWalksCrossIntoUndatedHandles() {
+        SplittableRandom random = new SplittableRandom(29);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        DeadlineScheduler queue = new DeadlineScheduler(TIERS, handle -> deadlines.getOrDefault(handle, 0L));
+        int next = 0;
+        for (int walk = 0; walk < 300; walk++) {
+            int tier = random.nextInt(TIERS);
+            int orders = random.nextInt(0, 80);
+            for (int i = 0; i < orders; i++) {
+                next = add(random, queue, deadlines, next);
+            }
+            int max = random.nextInt(1, 12);
+
+            // Undisturbed, the pages put together are the tier in leaving order
+            List<Integer> expected = queue.toList(tier, Integer::valueOf);
+            List<Integer> items = new ArrayList<>();
+            TieredQueue.Cursor cursor = new TieredQueue.Cursor();
+            List<Integer> page;
+            do {
+                page = queue.page(tier, cursor, handle -> true, max, Integer::valueOf);
+                items.addAll(page);
+            } while (page.size() == max);
+            assertEquals(expected, items, "walk " + walk + " in pages of " + max);
+            assertEquals(Long.MAX_VALUE, cursor.rank, "walk " + walk + " never reached the undated handles");
+
+            // Disturbed between pages: what waits throughout is listed once
+            Set<Integer> waitingThroughout = new HashSet<>(queue.toList(tier, Integer::valueOf));
+            Set<Integer> seen = new HashSet<>();
+            cursor = new TieredQueue.Cursor();
+            do {
+                page = queue.page(tier, cursor, handle -> true, max, Integer::valueOf);
+                for (int handle : page) {
+                    assertTrue(seen.add(handle), "walk " + walk + " listed handle " + handle + " twice");
+                }
+                for (int change = random.nextInt(4); change > 0; change--) {
+                    int choice = random.nextInt(3);
+                    if (choice == 0) {
+                        next = add(random, queue, deadlines, next);
+                    } else if (choice == 1) {
+                        waitingThroughout.remove(queue.poll());
+                    } else if (next > 0) {
+                        int handle = random.nextInt(next);
+                        if (queue.remove(tier, handle)) {
+                            waitingThroughout.remove(handle);
+                        }
+                    }
+                }
+            } while (page.size() == max);
+            assertTrue(seen.containsAll(waitingThroughout), "walk " + walk + " missed a waiting handle");
+        }
+    }
+
+    /** Queues a new handle, due at a random time or, one time in three, undated. */
+    private static int add(SplittableRandom random, DeadlineScheduler queue, Map<Integer, Long> deadlines, int handle) {
+        if (random.nextInt(3) != 0) {
+            deadlines.put(handle, random.nextLong(1, 50)); // few distinct deadlines, so ties are common
+        }
+        queue.add(random.nextInt(TIERS), handle);
+        return handle + 1;
+    }
+
+    /** Claims the next slot of a tier the way a producer does, without writing it; returns its position. */
+    private static long claim(ConcurrentTieredScheduler queue, int tier) throws ReflectiveOperationException {
+        return ((AtomicLong) field(tierOf(queue, tier), "tail")).getAndIncrement();
+    }
+
+    /** What the producer holding {@code position} does once it runs again. */
+    private static void write(ConcurrentTieredScheduler queue, int tier, long position, int handle)
+            throws ReflectiveOperationException {
+        Object chunk = field(tierOf(queue, tier), "headChunk");
+        while ((long) field(chunk, "base") + 1024 <= position) { // chunks of 1024 slots
+            chunk = ((AtomicReference<?>) field(chunk, "next")).get();
+        }
+        ((AtomicIntegerArray) field(chunk, "slots")).set((int) (position - (long) field(chunk, "base")), handle + 1);
+    }
+
+    private static Object tierOf(ConcurrentTieredScheduler queue, int tier) throws ReflectiveOperationException {
+        return ((Object[]) field(queue, "tiers"))[tier];
+    }
+
+    private static Object field(Object owner, String name) throws ReflectiveOperationException {
+        Field field = owner.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(owner);
+    }
+
+    /** Whether the dispatcher took {@code handle} before walk number {@code walk} (from 0) ended. */
+    private static boolean leftBy(AtomicIntegerArray polledAfter, int handle, int walk) {
+        int after = polledAfter.get(handle);
+        return after != 0 && after <= walk + 1;
+    }
+
+    /** Tier of a handle numbered producer by producer, as the intake threads queue them. */
+    private static int tierOf(int handle) {
+        return handle % ORDERS_PER_PRODUCER % 3 == 0 ? 0 : 1;
+    }
+}